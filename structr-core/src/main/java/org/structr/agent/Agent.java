@@ -18,34 +18,33 @@
  */
 package org.structr.agent;
 
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import static org.structr.agent.ReturnValue.Retry;
-import org.structr.common.error.FrameworkException;
-import org.structr.core.Services;
+import org.structr.api.config.Settings;
 import org.structr.core.app.StructrApp;
 import org.structr.core.graph.Tx;
 
 /**
  * Abstract base class for all agents.
+ *
+ * Agents are executed by the worker threads of the {@link AgentService},
+ * an agent instance is used by at most one worker at a time.
  */
-public abstract class Agent<T> extends Thread implements StatusInfo {
+public abstract class Agent<T> implements StatusInfo {
 
 	public static final String AVERAGE_EXECUTION_TIME = "average_execution_time";
 	public static final String EXECUTION_STATUS       = "execution_status";
 	public static final String MAX_QUEUE_SIZE         = "max_queue_size";
 	private static final Logger logger                = LoggerFactory.getLogger(Agent.class.getName());
 
-	private final AtomicBoolean suspended      = new AtomicBoolean(false);
-	private final Queue<Task<T>> taskQueue     = new ConcurrentLinkedQueue<>();
-	private final AtomicBoolean acceptingTasks = new AtomicBoolean(true);
-	private AgentService agentService          = null;
-	private long averageExecutionTime          = 0;
-	private int maxAgents                      = 10;
-	private int maxQueueSize                   = 200;
+	private AgentService agentService = null;
+	private volatile boolean running  = false;
+	private long averageExecutionTime = 0;
+	private int maxAgents             = 10;
 
 	/**
 	 * This method will be called by the AgentService
@@ -54,142 +53,82 @@ public abstract class Agent<T> extends Thread implements StatusInfo {
 	public abstract ReturnValue processTask(final Task<T> task) throws Throwable;
 	public abstract Class getSupportedTaskType();
 
-	@Override
-	public final void run() {
-
-		agentService.notifyAgentStart(this);
-
-		do {
-
-			while (suspended.get()) {
-
-				Thread.yield();
-
-			}
+	/**
+	 * Processes the given tasks, in a single enclosing transaction if this
+	 * agent requests one. If a task fails, the enclosing transaction is
+	 * rolled back and the tasks are processed again one by one, so that a
+	 * single failing task does not affect the others. The writes of a task
+	 * that failed are never committed.
+	 *
+	 * @param tasks
+	 * @return the tasks that requested to be retried
+	 */
+	public final List<Task<T>> execute(final List<Task<T>> tasks) {
 
-			final Task<T> currentTask;
+		final List<Task<T>> retry = new LinkedList<>();
+		final long startTime      = System.nanoTime();
 
-			synchronized (taskQueue) {
+		running = true;
 
-				currentTask = taskQueue.poll();
+		try {
 
-			}
+			if (createEnclosingTransaction()) {
 
-			if (currentTask != null) {
+				try {
 
-				ReturnValue ret = null;
+					retry.addAll(processInTransaction(tasks));
 
-				// only execute process if Service layer is ready
-				// (and not shutting down right now)
-				if (Services.getInstance().isInitialized()) {
+				} catch (Throwable t) {
 
-					if (createEnclosingTransaction()) {
+					if (tasks.size() > 1) {
 
-						try (final Tx tx = StructrApp.getInstance().tx()) {
+						logger.warn("Processing {} task(s) failed, processing them one by one: {}", tasks.size(), t.toString());
 
-							ret = processTask(currentTask);
-							tx.success();
+						for (final Task<T> task : tasks) {
 
-						} catch (FrameworkException fex) {
+							try {
 
-							// task processing failed..
-							logger.error("Processing task {} failed: {}", currentTask.getType(), fex.toString());
+								retry.addAll(processInTransaction(Collections.singletonList(task)));
 
-						} catch (Throwable t) {
+							} catch (Throwable tt) {
 
-							// task processing failed..
-							logger.error("Processing task {} failed: {}", currentTask.getType(), t.getMessage());
+								logger.error("Processing task {} failed: {}", task.getType(), tt.toString());
+							}
 						}
 
 					} else {
 
-						try {
-
-							ret = processTask(currentTask);
+						logger.error("Processing task {} failed: {}", tasks.get(0).getType(), t.toString());
+					}
+				}
 
-						} catch (FrameworkException fex) {
+			} else {
 
-							// task processing failed..
-							logger.error("Processing task {} failed: {}", currentTask.getType(), fex.toString());
+				for (final Task<T> task : tasks) {
 
-						} catch (Throwable t) {
+					try {
 
-							// task processing failed..
-							logger.error("Processing task {} failed: {}", currentTask.getType(), t.getMessage());
+						if (Retry.equals(processTask(task))) {
+							retry.add(task);
 						}
-					}
-				}
 
-				if (ret != null && Retry.equals(ret) && currentTask.getRetryCount() < 2) {
+					} catch (Throwable t) {
 
-					// wait some time
-					try { Thread.sleep(2000); } catch (InterruptedException ex) {}
-
-					synchronized (taskQueue) {
-
-						currentTask.incrementRetryCount();
-						taskQueue.add(currentTask);
+						logger.error("Processing task {} failed: {}", task.getType(), t.toString());
 					}
 				}
-
-				long endTime = System.nanoTime();
-
-				// calc. average execution time
-				averageExecutionTime += endTime;
-				averageExecutionTime /= 2;
-
-			} else {
-
-				// queue is empty, quit.
-				acceptingTasks.set(false);
 			}
 
-		} while (acceptingTasks.get());
-
-		// call beforeShutdown to allow agents to clean up
-		beforeShutdown();
-		agentService.notifyAgentStop(this);
-	}
+		} finally {
 
-	public final boolean assignTask(final Task<T> task) {
-
-		if (canHandleMore() && acceptingTasks.get()) {
-
-			synchronized (taskQueue) {
-
-				taskQueue.add(task);
-			}
-
-			return true;
+			running = false;
 		}
 
-		return false;
-	}
-
-	public final void killAgent() {
-
-		// stop accepting tasks
-		acceptingTasks.set(false);
+		// calc. average execution time
+		averageExecutionTime += (System.nanoTime() - startTime) / 1000000L;
+		averageExecutionTime /= 2;
 
-		// clear queue
-		taskQueue.clear();
-
-		// interrupt running process..
-		// not sure if this works... see Thread.interrupt()'s description!
-		// may not work if the processTask method itself catches the interrupt..
-		this.interrupt();
-	}
-
-	public final void suspendAgent() {
-
-		acceptingTasks.set(false);
-		suspended.set(true);
-	}
-
-	public final void resumeAgent() {
-
-		acceptingTasks.set(true);
-		suspended.set(false);
+		return retry;
 	}
 
 	protected void beforeShutdown() {
@@ -197,32 +136,12 @@ public abstract class Agent<T> extends Thread implements StatusInfo {
 		// override me
 	}
 
-	protected boolean canHandleMore() {
-
-		int size = 0;
-
-		synchronized (taskQueue) {
-
-			// FIXME: size may not be a constant time operation! slow?
-			size = taskQueue.size();
-		}
-
-		// queue is empty, assume new agent
-		if (size == 0) {
-
-			return true;
-
-		}
-
-		return size < maxQueueSize;
-	}
-
 	public boolean createEnclosingTransaction() {
 		return true;
 	}
 
 	public final int getMaxQueueSize() {
-		return maxQueueSize;
+		return Settings.AgentQueueSize.getValue();
 	}
 
 	public final long getAverageExecutionTime() {
@@ -230,16 +149,23 @@ public abstract class Agent<T> extends Thread implements StatusInfo {
 	}
 
 	public final void setAgentService(AgentService service) {
-
-		this.setDaemon(true);
-
 		this.agentService = service;
 	}
 
+	/**
+	 * Returns the default number of tasks of the supported type that are
+	 * processed concurrently.
+	 *
+	 * @return the maximum number of concurrent agents
+	 */
 	public int getMaxAgents() {
 		return maxAgents;
 	}
 
+	public String getName() {
+		return getClass().getSimpleName();
+	}
+
 	// ----- interface StatusInfo -----
 	@Override
 	public Object getStatusProperty(String key) {
@@ -254,7 +180,7 @@ public abstract class Agent<T> extends Thread implements StatusInfo {
 
 		} else if (key.equals(EXECUTION_STATUS)) {
 
-			// TODO.
+			return running ? "running" : "idle";
 		}
 
 		return null;
@@ -264,11 +190,24 @@ public abstract class Agent<T> extends Thread implements StatusInfo {
 		return agentService;
 	}
 
-	public final boolean isSuspended() {
-		return suspended.get();
-	}
+	// ----- private methods -----
+	private List<Task<T>> processInTransaction(final List<Task<T>> tasks) throws Throwable {
+
+		final List<Task<T>> retry = new LinkedList<>();
+
+		try (final Tx tx = StructrApp.getInstance().tx()) {
+
+			for (final Task<T> task : tasks) {
+
+				if (Retry.equals(processTask(task))) {
+					retry.add(task);
+				}
+			}
+
+			// not reached if a task fails, so the transaction is rolled back
+			tx.success();
+		}
 
-	public final boolean isAcceptingTasks() {
-		return acceptingTasks.get();
+		return retry;
 	}
 }
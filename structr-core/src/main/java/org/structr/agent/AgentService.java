@@ -18,19 +18,33 @@
  */
 package org.structr.agent;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.PriorityQueue;
 import java.util.Queue;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.config.Setting;
+import org.structr.api.config.Settings;
 import org.structr.api.service.Command;
 import org.structr.api.service.RunnableService;
 import org.structr.api.service.StructrServices;
@@ -40,71 +54,99 @@ import org.structr.schema.ConfigurationProvider;
 /**
  * The agent service main class.
  *
+ * Tasks are queued per task type and handed over to a fixed pool of worker
+ * threads. The number of workers that process a task type concurrently is
+ * limited by <code>&lt;TaskName&gt;.concurrency</code> (default: the
+ * maxAgents value of the agent), task types with a higher
+ * <code>&lt;TaskName&gt;.priority</code> are served first. Within a task
+ * type, tasks with a higher priority are processed first, and up to
+ * agent.batch.size tasks are processed in a single transaction.
  *
+ * The number of pending tasks is limited by agent.queue.size, tasks that
+ * exceed the limit are rejected, which is signalled to the caller.
  */
-public class AgentService extends Thread implements RunnableService {
-
-	private static final Logger logger = LoggerFactory.getLogger(AgentService.class.getName());
-
-	private final int maxAgents                          = 10;    // TODO: make configurable
-	private final Map<String, List<Agent>> runningAgents = new ConcurrentHashMap<>(10, 0.9f, 8);
-	private final Map<String, Class> agentClassCache     = new ConcurrentHashMap<>(10, 0.9f, 8);
-	private final Queue<Task> taskQueue                  = new ConcurrentLinkedQueue<>();
-	private Set<Class> supportedCommands                 = null;
-	private boolean run                                  = false;
+public class AgentService implements RunnableService {
+
+	private static final Logger logger    = LoggerFactory.getLogger(AgentService.class.getName());
+	private static final long RETRY_DELAY = 2000L;
+	private static final int MAX_RETRIES  = 2;
+
+	private final Map<String, TaskLane> lanes        = new ConcurrentHashMap<>();
+	private final Map<String, Class> agentClassCache = new ConcurrentHashMap<>(10, 0.9f, 8);
+	private final AtomicInteger pendingTasks         = new AtomicInteger(0);
+	private final AtomicLong sequence                = new AtomicLong(0L);
+	private final LongAdder rejectedTasks            = new LongAdder();
+	private final Object capacityLock                = new Object();
+	private ScheduledExecutorService scheduler       = null;
+	private ThreadPoolExecutor workers               = null;
+	private Set<Class> supportedCommands             = null;
+	private volatile boolean run                     = false;
 
 	public AgentService() {
 
-		super("AgentService");
 		supportedCommands = new LinkedHashSet<>();
 		supportedCommands.add(ProcessTaskCommand.class);
+	}
 
-		super.setDaemon(true);
+	/**
+	 * Queues the given task for processing, or rejects it immediately if
+	 * the task queue is full.
+	 *
+	 * @param task
+	 * @return whether the task was accepted
+	 */
+	public boolean processTask(final Task task) {
+		return processTask(task, 0L, TimeUnit.MILLISECONDS);
 	}
 
-	public void processTask(Task task) {
+	/**
+	 * Queues the given task for processing, waiting at most the given
+	 * time for space in the task queue to become available.
+	 *
+	 * @param task
+	 * @param timeout
+	 * @param unit
+	 *
+	 * @return whether the task was accepted
+	 */
+	public boolean processTask(final Task task, final long timeout, final TimeUnit unit) {
 
-		synchronized (taskQueue) {
+		if (!run) {
 
-			taskQueue.add(task);
-			logger.debug("Task {} added to task queue", task);
+			logger.warn("AgentService is not running, rejecting task {}", task.getType());
+			return false;
 		}
-	}
 
-	@Override
-	public void run() {
+		final TaskLane lane = getLane(task.getClass());
+		if (lane == null) {
 
-		logger.info("AgentService started");
+			logger.warn("No agent found for task {}, rejecting task", task.getClass().getSimpleName());
+			return false;
+		}
 
-		while (run) {
+		if (!acquire(timeout, unit)) {
 
-			Task nextTask = taskQueue.poll();
-			if (nextTask != null) {
+			lane.rejected.increment();
+			rejectedTasks.increment();
 
-				assignNextAgentForTask(nextTask);
-			}
+			logger.warn("Task queue is full, rejecting task {}", task.getType());
 
-			// let others act
-			try { Thread.sleep(10); } catch(Throwable ignore) {}
+			return false;
 		}
-	}
 
-	public void notifyAgentStart(Agent agent) {
+		final long delay = task.getDelay(TimeUnit.MILLISECONDS);
+		if (delay > 0L) {
 
-		List<Agent> agents = getRunningAgentsForTask(agent.getSupportedTaskType());
+			scheduler.schedule(() -> lane.add(task), delay, TimeUnit.MILLISECONDS);
 
-		synchronized (agents) {
-			agents.add(agent);
-		}
-	}
+		} else {
 
-	public void notifyAgentStop(Agent agent) {
+			lane.add(task);
+		}
 
-		List<Agent> agents = getRunningAgentsForTask(agent.getSupportedTaskType());
+		logger.debug("Task {} added to task queue", task);
 
-		synchronized (agents) {
-			agents.remove(agent);
-		}
+		return true;
 	}
 
 	public Map<String, Class<? extends Agent>> getAgents() {
@@ -118,6 +160,30 @@ public class AgentService extends Thread implements RunnableService {
 		return Collections.emptyMap();
 	}
 
+	/**
+	 * Returns the queue depth, throughput and latency of the agent
+	 * service and of each task type.
+	 *
+	 * @return the statistics
+	 */
+	public Map<String, Object> getStatistics() {
+
+		final Map<String, Object> stats = new LinkedHashMap<>();
+		final Map<String, Object> types = new TreeMap<>();
+
+		for (final TaskLane lane : lanes.values()) {
+			types.put(lane.name, lane.getStatistics());
+		}
+
+		stats.put("threads",  Settings.AgentThreads.getValue());
+		stats.put("capacity", Settings.AgentQueueSize.getValue());
+		stats.put("pending",  pendingTasks.get());
+		stats.put("rejected", rejectedTasks.sum());
+		stats.put("types",    types);
+
+		return stats;
+	}
+
 	@Override
 	public void injectArguments(Command command) {
 		command.setArgument("agentService", this);
@@ -137,13 +203,51 @@ public class AgentService extends Thread implements RunnableService {
 	@Override
 	public void startService() throws Exception {
 
+		final int threads       = Math.max(1, Settings.AgentThreads.getValue());
+		final AtomicInteger num = new AtomicInteger(0);
+
+		workers = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new PriorityBlockingQueue<>(), r -> {
+
+			final Thread thread = new Thread(r, "AgentWorker-" + num.incrementAndGet());
+			thread.setDaemon(true);
+
+			return thread;
+		});
+
+		workers.allowCoreThreadTimeOut(true);
+
+		scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+
+			final Thread thread = new Thread(r, "AgentScheduler");
+			thread.setDaemon(true);
+
+			return thread;
+		});
+
 		run = true;
-		this.start();
+
+		logger.info("AgentService started");
 	}
 
 	@Override
 	public void stopService() {
+
 		run = false;
+
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+		}
+
+		if (workers != null) {
+
+			workers.shutdown();
+
+			try { workers.awaitTermination(10, TimeUnit.SECONDS); } catch (InterruptedException ignore) {}
+		}
+
+		for (final TaskLane lane : lanes.values()) {
+			lane.shutdown();
+		}
 	}
 
 	@Override
@@ -151,91 +255,123 @@ public class AgentService extends Thread implements RunnableService {
 		return true;
 	}
 
-	private void assignNextAgentForTask(final Task nextTask) {
+	/**
+	 * Returns the current queue of remaining tasks.
+	 * @return tasks
+	 */
+	public Collection<Task> getTaskQueue() {
 
-		Class taskClass    = nextTask.getClass();
-		List<Agent> agents = getRunningAgentsForTask(taskClass);
+		final List<Task> tasks = new LinkedList<>();
 
-		// need to synchronize on agents
-		synchronized (agents) {
+		for (final TaskLane lane : lanes.values()) {
+			lane.collectTasks(tasks);
+		}
 
-			// find next free agent (agents should be sorted by load, so one
-			// of the first should do..
-			for (Agent agent : agents) {
+		return tasks;
+	}
 
-				if (agent.assignTask(nextTask)) {
+	/**
+	 * Returns the agents that are currently processing tasks.
+	 * @return agents
+	 */
+	public Map<String, List<Agent>> getRunningAgents() {
 
-					// ok, task is assigned
-					logger.debug("Task assigned to agent {} ({})", agent.getName(), agent.hashCode());
+		final Map<String, List<Agent>> runningAgents = new LinkedHashMap<>();
 
-					return;
-				}
-			}
+		for (final Entry<String, TaskLane> entry : lanes.entrySet()) {
+			runningAgents.put(entry.getKey(), new ArrayList<>(entry.getValue().busyAgents));
 		}
 
-		if (agents.size() < maxAgents) {
+		return runningAgents;
+	}
 
-			// if we get here, task was not assigned to any agent, need to create a new one.
-			Agent agent = createAgent(nextTask);
+	@Override
+	public String getName() {
+		return AgentService.class.getSimpleName();
+	}
 
-			if ((agent != null) && agent.assignTask(nextTask)) {
+	@Override
+	public boolean isRunning() {
+		return (this.run);
+	}
 
-				agent.start();
+	@Override
+	public boolean isVital() {
+		return false;
+	}
 
-			} else {
+	@Override
+	public boolean waitAndRetry() {
+		return false;
+	}
+
+	// ----- interface Feature -----
+	@Override
+	public String getModuleName() {
+		return "agents";
+	}
+
+	// ----- private methods -----
+	private boolean acquire(final long timeout, final TimeUnit unit) {
 
-				// re-add task..
-				synchronized (taskQueue) {
-					taskQueue.add(nextTask);
+		final long deadline = System.currentTimeMillis() + unit.toMillis(timeout);
+
+		synchronized (capacityLock) {
+
+			while (pendingTasks.get() >= Settings.AgentQueueSize.getValue()) {
+
+				final long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0L) {
+
+					return false;
 				}
-			}
 
-		} else {
+				try {
+
+					capacityLock.wait(remaining);
 
-			logger.debug("Overall agents limit reached, re-queueing task");
+				} catch (InterruptedException iex) {
 
-			// re-add task..
-			synchronized (taskQueue) {
-				taskQueue.add(nextTask);
+					Thread.currentThread().interrupt();
+					return false;
+				}
 			}
+
+			pendingTasks.incrementAndGet();
 		}
+
+		return true;
 	}
 
-	/**
-	 * Creates a new agent for the given Task. Note that the agent must be
-	 * started manually after creation.
-	 *
-	 * @param forTask
-	 * @return a new agent for the given task
-	 */
-	private Agent createAgent(Task forTask) {
+	private void release(final int count) {
 
-		logger.debug("Creating new agent for task {}", forTask.getClass().getSimpleName());
+		synchronized (capacityLock) {
 
-		Agent agent = null;
+			pendingTasks.addAndGet(-count);
+			capacityLock.notifyAll();
+		}
+	}
 
-		try {
+	private TaskLane getLane(final Class taskClass) {
 
-			agent = lookupAgent(forTask);
+		TaskLane lane = lanes.get(taskClass.getName());
+		if (lane == null) {
 
-			if (agent != null) {
+			final Agent prototype = lookupAgent(taskClass);
+			if (prototype == null) {
 
-				// register us in agent..
-				agent.setAgentService(this);
+				return null;
 			}
 
-		} catch (Throwable t) {
-
-			t.printStackTrace();
+			lane = lanes.computeIfAbsent(taskClass.getName(), k -> new TaskLane(taskClass, prototype));
 		}
 
-		return (agent);
+		return lane;
 	}
 
-	private Agent lookupAgent(Task task) {
+	private Agent lookupAgent(final Class taskClass) {
 
 		// FIXME: superuser security context
-		Class taskClass  = task.getClass();
 		Agent agent      = null;
 		Class agentClass = agentClassCache.get(taskClass.getName());
 
@@ -271,61 +407,317 @@ public class AgentService extends Thread implements RunnableService {
 			try {
 				agent = (Agent) agentClass.newInstance();
 
-			} catch (Throwable ignore) {}
+				// register us in agent..
+				agent.setAgentService(this);
+
+			} catch (Throwable t) {
+
+				logger.warn("Unable to create agent {}: {}", agentClass.getName(), t.getMessage());
+			}
 		}
 
 		return (agent);
 	}
 
+	private static int getIntegerSetting(final String name, final String key, final int defaultValue) {
+
+		final Setting<?> setting = Settings.getSetting(name, key);
+		if (setting != null && setting.getValue() instanceof Integer) {
+
+			return (Integer)setting.getValue();
+		}
+
+		return defaultValue;
+	}
+
+	// ----- nested classes -----
 	/**
-	 * Returns the current queue of remaining tasks.
-	 * @return tasks
+	 * The queue and the workers of a single task type.
 	 */
-	public Collection<Task> getTaskQueue() {
-		return (taskQueue);
+	private class TaskLane {
+
+		private final PriorityQueue<QueuedTask> queue = new PriorityQueue<>();
+		private final Queue<Agent> idleAgents         = new ConcurrentLinkedQueue<>();
+		private final Set<Agent> busyAgents           = ConcurrentHashMap.newKeySet();
+		private final LongAdder submitted             = new LongAdder();
+		private final LongAdder completed             = new LongAdder();
+		private final LongAdder rejected              = new LongAdder();
+		private final LongAdder retried               = new LongAdder();
+		private final LongAdder batches               = new LongAdder();
+		private final LongAdder waitTime              = new LongAdder();
+		private final LongAdder executionTime         = new LongAdder();
+		private final AtomicLong maxWaitTime          = new AtomicLong(0L);
+		private Class taskClass                       = null;
+		private String name                           = null;
+		private int concurrency                       = 1;
+		private int priority                          = 0;
+		private int active                            = 0;
+
+		public TaskLane(final Class taskClass, final Agent prototype) {
+
+			this.taskClass   = taskClass;
+			this.name        = taskClass.getSimpleName();
+			this.concurrency = Math.max(1, getIntegerSetting(name, "concurrency", prototype.getMaxAgents()));
+			this.priority    = getIntegerSetting(name, "priority", 0);
+
+			idleAgents.add(prototype);
+		}
+
+		public void add(final Task task) {
+
+			synchronized (this) {
+
+				queue.add(new QueuedTask(task, sequence.incrementAndGet()));
+				submitted.increment();
+
+				if (active >= concurrency) {
+					return;
+				}
+
+				active++;
+			}
+
+			submitWorker();
+		}
+
+		/**
+		 * Returns the next batch of tasks, or an empty list if the queue is
+		 * empty, in which case the calling worker must stop.
+		 */
+		public List<QueuedTask> poll(final int batchSize) {
+
+			final List<QueuedTask> batch = new ArrayList<>(batchSize);
+
+			synchronized (this) {
+
+				while (batch.size() < batchSize && !queue.isEmpty()) {
+					batch.add(queue.poll());
+				}
+
+				if (batch.isEmpty()) {
+					active--;
+				}
+			}
+
+			return batch;
+		}
+
+		public synchronized void collectTasks(final List<Task> tasks) {
+
+			for (final QueuedTask queuedTask : queue) {
+				tasks.add(queuedTask.task);
+			}
+		}
+
+		public Map<String, Object> getStatistics() {
+
+			final Map<String, Object> stats = new LinkedHashMap<>();
+			final long completedCount       = completed.sum();
+			final long batchCount           = batches.sum();
+
+			synchronized (this) {
+
+				stats.put("queued", queue.size());
+				stats.put("active", active);
+			}
+
+			stats.put("concurrency",    concurrency);
+			stats.put("priority",       priority);
+			stats.put("submitted",      submitted.sum());
+			stats.put("completed",      completedCount);
+			stats.put("rejected",       rejected.sum());
+			stats.put("retried",        retried.sum());
+			stats.put("batches",        batchCount);
+			stats.put("averageWaitMs",  completedCount > 0 ? waitTime.sum() / completedCount : 0L);
+			stats.put("maxWaitMs",      maxWaitTime.get());
+			stats.put("averageBatchMs", batchCount > 0 ? executionTime.sum() / batchCount : 0L);
+
+			return stats;
+		}
+
+		public void shutdown() {
+
+			for (final Agent agent : idleAgents) {
+				agent.beforeShutdown();
+			}
+
+			idleAgents.clear();
+		}
+
+		private void submitWorker() {
+
+			try {
+
+				workers.execute(new LaneWorker(this));
+
+			} catch (Throwable t) {
+
+				// executor was shut down
+				synchronized (this) {
+					active--;
+				}
+			}
+		}
+
+		private Agent borrowAgent() {
+
+			Agent agent = idleAgents.poll();
+			if (agent == null) {
+
+				agent = lookupAgent(taskClass);
+			}
+
+			if (agent != null) {
+				busyAgents.add(agent);
+			}
+
+			return agent;
+		}
+
+		private void returnAgent(final Agent agent) {
+
+			busyAgents.remove(agent);
+			idleAgents.add(agent);
+		}
 	}
 
 	/**
-	 * Returns the current collection of running agents.
-	 * @return agents
+	 * Processes one batch of tasks of a task lane and resubmits itself as
+	 * long as there are tasks left, so that task types with a higher
+	 * priority can overtake in the worker queue.
 	 */
-	public Map<String, List<Agent>> getRunningAgents() {
-		return (runningAgents);
-	}
+	private class LaneWorker implements Runnable, Comparable<LaneWorker> {
+
+		private TaskLane lane = null;
+
+		public LaneWorker(final TaskLane lane) {
+			this.lane = lane;
+		}
+
+		@Override
+		public void run() {
 
-	private List<Agent> getRunningAgentsForTask(Class taskClass) {
+			final Agent agent = lane.borrowAgent();
 
-		List<Agent> agents = runningAgents.get(taskClass.getName());
+			if (agent == null) {
 
-		if (agents == null) {
+				// should not happen, the lane was created with an agent
+				final List<QueuedTask> dropped = lane.poll(Integer.MAX_VALUE);
+				if (!dropped.isEmpty()) {
 
-			agents = Collections.synchronizedList(new LinkedList<>());
+					logger.warn("No agent available for task {}, dropping {} tasks", lane.name, dropped.size());
 
-			// Hashtable is synchronized
-			runningAgents.put(taskClass.getName(), agents);
+					release(dropped.size());
+
+					// the next worker finds the lane empty and stops
+					lane.submitWorker();
+				}
+
+				return;
+			}
+
+			List<QueuedTask> batch = Collections.emptyList();
+			int rescheduled        = 0;
+
+			try {
+
+				final int batchSize = agent.createEnclosingTransaction() ? Math.max(1, Settings.AgentBatchSize.getValue()) : 1;
+
+				batch = lane.poll(batchSize);
+				if (batch.isEmpty()) {
+					return;
+				}
+
+				final List<Task> tasks = new ArrayList<>(batch.size());
+				final long now         = System.currentTimeMillis();
+
+				for (final QueuedTask queuedTask : batch) {
+
+					final long wait = now - queuedTask.queuedAt;
+
+					lane.waitTime.add(wait);
+					lane.maxWaitTime.accumulateAndGet(wait, Math::max);
+
+					tasks.add(queuedTask.task);
+				}
+
+				// only execute tasks if the service layer is ready
+				if (!Services.getInstance().isInitialized()) {
+
+					for (final Task task : tasks) {
+
+						scheduler.schedule(() -> lane.add(task), RETRY_DELAY, TimeUnit.MILLISECONDS);
+						rescheduled++;
+					}
+
+				} else {
+
+					final List<Task> retry = agent.execute(tasks);
+
+					lane.executionTime.add(System.currentTimeMillis() - now);
+					lane.batches.increment();
+
+					for (final Task task : tasks) {
+
+						if (retry.contains(task) && task.getRetryCount() < MAX_RETRIES) {
+
+							task.incrementRetryCount();
+							lane.retried.increment();
+
+							scheduler.schedule(() -> lane.add(task), RETRY_DELAY, TimeUnit.MILLISECONDS);
+							rescheduled++;
+
+						} else {
+
+							lane.completed.increment();
+						}
+					}
+				}
+
+			} catch (Throwable t) {
+
+				logger.error("Unexpected error while processing {} tasks, dropping {} tasks: {}", lane.name, batch.size() - rescheduled, t.getMessage());
+
+			} finally {
+
+				lane.returnAgent(agent);
+
+				// rescheduled tasks keep their place in the task queue
+				release(batch.size() - rescheduled);
+			}
+
+			// continue with the next batch, the worker stops when the lane is empty
+			lane.submitWorker();
 		}
 
-		return (agents);
+		@Override
+		public int compareTo(final LaneWorker other) {
+			return Integer.compare(other.lane.priority, lane.priority);
+		}
 	}
 
-	@Override
-	public boolean isRunning() {
-		return (this.run);
-	}
+	private static class QueuedTask implements Comparable<QueuedTask> {
 
-	@Override
-	public boolean isVital() {
-		return false;
-	}
+		private final long queuedAt = System.currentTimeMillis();
+		private Task task           = null;
+		private long sequence       = 0L;
 
-	@Override
-	public boolean waitAndRetry() {
-		return false;
-	}
+		public QueuedTask(final Task task, final long sequence) {
 
-	// ----- interface Feature -----
-	@Override
-	public String getModuleName() {
-		return "agents";
+			this.task     = task;
+			this.sequence = sequence;
+		}
+
+		@Override
+		public int compareTo(final QueuedTask other) {
+
+			final int result = Integer.compare(other.task.priority(), task.priority());
+			if (result == 0) {
+
+				return Long.compare(sequence, other.sequence);
+			}
+
+			return result;
+		}
 	}
 }
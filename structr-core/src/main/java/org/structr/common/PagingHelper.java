@@ -115,11 +115,17 @@ public class PagingHelper {
 
 		if (pageSize > 0 && pageSize < Integer.MAX_VALUE) {
 
-			int pageCount = getPageCount(result.getRawResultCount(), pageSize);
+			final Integer resultCount = result.getRawResultCount();
 
-			if (pageCount > 0) {
+			// the count of a streaming result is not known before it is written
+			if (resultCount != null) {
 
-				result.setPageCount(pageCount);
+				int pageCount = getPageCount(resultCount, pageSize);
+
+				if (pageCount > 0) {
+
+					result.setPageCount(pageCount);
+				}
 			}
 
 			result.setPage(page);
@@ -130,7 +136,7 @@ public class PagingHelper {
 		return result;
 	}
 
-	private static int getPageCount(int resultCount, int pageSize) {
+	public static int getPageCount(int resultCount, int pageSize) {
 
 		return (int) Math.rint(Math.ceil((double) resultCount / (double) pageSize));
 	}
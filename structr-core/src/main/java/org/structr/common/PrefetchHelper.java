@@ -0,0 +1,86 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.common;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.structr.api.DatabaseService;
+import org.structr.api.graph.Direction;
+import org.structr.api.graph.Node;
+import org.structr.core.GraphObject;
+import org.structr.core.app.StructrApp;
+import org.structr.core.graph.NodeInterface;
+import org.structr.core.property.PropertyKey;
+import org.structr.core.property.RelationProperty;
+
+/**
+ * Utility for loading related data for a whole list of objects at once.
+ */
+public class PrefetchHelper {
+
+	/**
+	 * Loads the relationships of all relationship properties in the given
+	 * view for all nodes in the given list with one query per property, so
+	 * that the properties can be resolved without a round-trip per node.
+	 *
+	 * @param objects
+	 * @param propertyView
+	 */
+	public static void prefetchRelationships(final Iterable<? extends GraphObject> objects, final String propertyView) {
+
+		final Map<Class, List<Node>> nodesByType = new LinkedHashMap<>();
+		int count                                = 0;
+
+		for (final GraphObject obj : objects) {
+
+			if (obj instanceof NodeInterface) {
+
+				nodesByType.computeIfAbsent(obj.getClass(), k -> new LinkedList<>()).add(((NodeInterface)obj).getNode());
+				count++;
+			}
+		}
+
+		// a single node doesn't benefit from prefetching
+		if (count < 2) {
+			return;
+		}
+
+		final DatabaseService db = StructrApp.getInstance().getDatabaseService();
+
+		for (final Map.Entry<Class, List<Node>> entry : nodesByType.entrySet()) {
+
+			final Set<PropertyKey> keys = StructrApp.getConfiguration().getPropertySet(entry.getKey(), propertyView);
+			final List<Node> nodes      = entry.getValue();
+
+			for (final PropertyKey key : keys) {
+
+				if (key instanceof RelationProperty) {
+
+					final RelationProperty property = (RelationProperty)key;
+					final Direction direction       = "in".equals(property.getDirectionKey()) ? Direction.INCOMING : Direction.OUTGOING;
+
+					db.prefetchRelationships(nodes, direction, property.getRelation());
+				}
+			}
+		}
+	}
+}
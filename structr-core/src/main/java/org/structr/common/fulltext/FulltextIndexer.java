@@ -18,6 +18,7 @@
  */
 package org.structr.common.fulltext;
 
+import java.util.Map;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObjectMap;
 
@@ -27,4 +28,15 @@ public interface FulltextIndexer {
 
 	void addToFulltextIndex(final Indexable indexable) throws FrameworkException;
 	GraphObjectMap getContextObject(final String searchTerm, final String text, final int contextLength);
+
+	/**
+	 * Searches the fulltext index and returns the UUIDs of the matching
+	 * objects with their score, best match first.
+	 *
+	 * @param query
+	 * @param maxResults
+	 *
+	 * @return an ordered map of UUID to score
+	 */
+	Map<String, Double> search(final String query, final int maxResults);
 }
@@ -36,6 +36,7 @@ public class Result<T extends GraphObject> {
 	private boolean isCollection      = false;
 	private boolean isPrimitiveArray  = false;
 	private boolean hasPartialContent = false;
+	private boolean isApproximate     = false;
 	private String propertyView       = null;
 	private List<T> results           = null;
 
@@ -43,6 +44,7 @@ public class Result<T extends GraphObject> {
 	private String queryTime          = null;
 	private String sortOrder          = null;
 	private String sortKey            = null;
+	private String nextCursor         = null;
 
 	private Integer resultCount       	= null;
 	private Integer pageCount         	= null;
@@ -125,6 +127,14 @@ public class Result<T extends GraphObject> {
 		this.sortKey = sortKey;
 	}
 
+	public String getNextCursor() {
+		return nextCursor;
+	}
+
+	public void setNextCursor(final String nextCursor) {
+		this.nextCursor = nextCursor;
+	}
+
 	public Integer getRawResultCount() {
 
 		if (resultCount != null) {
@@ -138,6 +148,20 @@ public class Result<T extends GraphObject> {
 		this.resultCount = resultCount;
 	}
 
+	/**
+	 * Returns whether the result count is a lower bound because counting
+	 * stopped at {@link org.structr.core.graph.Factory#RESULT_COUNT_ACCURATE_LIMIT}.
+	 *
+	 * @return whether the result count is approximate
+	 */
+	public boolean isResultCountApproximate() {
+		return isApproximate;
+	}
+
+	public void setResultCountApproximate(final boolean isApproximate) {
+		this.isApproximate = isApproximate;
+	}
+
 	public Integer getPageCount() {
 		return pageCount;
 	}
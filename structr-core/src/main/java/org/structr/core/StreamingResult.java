@@ -0,0 +1,200 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A result whose objects are instantiated on demand while it is being
+ * iterated, so that large results can be written in constant memory.
+ *
+ * The underlying query is executed when the iteration starts, i.e. in
+ * the transaction of the caller, so a streaming result can be created
+ * in one transaction and written in another. The overall result count
+ * and the next cursor are only known after the result has been iterated
+ * completely.
+ *
+ * Calling any of the list-based methods of {@link Result} materializes
+ * the result, so existing callers continue to work.
+ */
+public class StreamingResult<T extends GraphObject> extends Result<T> {
+
+	private Function<T, String> nextCursorFunction = null;
+	private Supplier<Iterator<T>> source           = null;
+	private List<T> materialized                   = null;
+	private Integer resultCount                    = null;
+	private boolean iterated                       = false;
+	private long sourceTime                        = 0L;
+
+	public StreamingResult() {
+		super(null, null, true, false);
+	}
+
+	public void setSource(final Supplier<Iterator<T>> source) {
+		this.source = source;
+	}
+
+	public void setNextCursorFunction(final Function<T, String> nextCursorFunction) {
+		this.nextCursorFunction = nextCursorFunction;
+	}
+
+	/**
+	 * Returns the objects of this result. The returned iterable can only
+	 * be iterated once unless the result has already been materialized.
+	 *
+	 * @return the objects of this result
+	 */
+	public Iterable<T> getIterable() {
+
+		if (materialized != null) {
+			return materialized;
+		}
+
+		if (iterated) {
+			throw new IllegalStateException("Streaming result can only be iterated once");
+		}
+
+		iterated = true;
+
+		return () -> new TimedIterator(source);
+	}
+
+	/**
+	 * Called by the source when the iteration has finished.
+	 *
+	 * @param resultCount the overall number of results
+	 * @param isApproximate whether the result count is only a lower bound
+	 * @param last the last object of the page, or null
+	 * @param pageIsFull whether the page has been filled completely
+	 */
+	public void finished(final int resultCount, final boolean isApproximate, final T last, final boolean pageIsFull) {
+
+		this.resultCount = resultCount;
+
+		setResultCountApproximate(isApproximate);
+
+		if (pageIsFull && last != null && nextCursorFunction != null) {
+			setNextCursor(nextCursorFunction.apply(last));
+		}
+	}
+
+	/**
+	 * Returns the time in nanoseconds that was spent executing the query
+	 * and instantiating the objects of this result while it was iterated.
+	 *
+	 * @return the time spent in the source
+	 */
+	public long getSourceTime() {
+		return sourceTime;
+	}
+
+	@Override
+	public String toString() {
+		return "StreamingResult(" + (materialized != null ? materialized.size() : "?") + ")";
+	}
+
+	@Override
+	public T get(final int i) {
+		return getResults().get(i);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return getResults().isEmpty();
+	}
+
+	@Override
+	public List<T> getResults() {
+
+		if (materialized == null) {
+
+			final List<T> list = new ArrayList<>();
+
+			for (final T obj : getIterable()) {
+				list.add(obj);
+			}
+
+			materialized = list;
+		}
+
+		return materialized;
+	}
+
+	@Override
+	public int size() {
+		return getResults().size();
+	}
+
+	/**
+	 * Returns the overall number of results, or null if the result
+	 * has not been iterated yet.
+	 *
+	 * @return the result count or null
+	 */
+	@Override
+	public Integer getRawResultCount() {
+		return resultCount;
+	}
+
+	@Override
+	public void setRawResultCount(final Integer resultCount) {
+		this.resultCount = resultCount;
+	}
+
+	// ----- nested classes -----
+	private class TimedIterator implements Iterator<T> {
+
+		private Iterator<T> iterator = null;
+
+		public TimedIterator(final Supplier<Iterator<T>> source) {
+
+			final long t0 = System.nanoTime();
+
+			this.iterator = source.get();
+
+			sourceTime += System.nanoTime() - t0;
+		}
+
+		@Override
+		public boolean hasNext() {
+
+			final long t0        = System.nanoTime();
+			final boolean result = iterator.hasNext();
+
+			sourceTime += System.nanoTime() - t0;
+
+			return result;
+		}
+
+		@Override
+		public T next() {
+
+			final long t0 = System.nanoTime();
+			final T next  = iterator.next();
+
+			sourceTime += System.nanoTime() - t0;
+
+			return next;
+		}
+	}
+}
@@ -20,6 +20,7 @@ package org.structr.core;
 
 import java.util.Collection;
 import java.util.Map;
+import java.util.Set;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.graph.ModificationEvent;
@@ -37,6 +38,15 @@ public interface StructrTransactionListener {
 	public void beforeCommit(final SecurityContext securityContext, final Collection<ModificationEvent> modificationEvents, final TransactionSource source) throws FrameworkException;
 	public void afterCommit(final SecurityContext securityContext, final Collection<ModificationEvent> modificationEvents, final TransactionSource source);
 
+	/**
+	 * Called after every top-level transaction has been closed, whether it
+	 * was committed or rolled back, with the IDs of all nodes that were
+	 * modified in the transaction, or null if they could not be determined.
+	 *
+	 * @param modifiedNodeIds the IDs of the modified nodes, or null
+	 */
+	default public void afterTransaction(final Set<Long> modifiedNodeIds) { };
+
 	default public void simpleBroadcast(final String messageName, final Map<String, Object> data) {
 		simpleBroadcast(messageName, data, null);
 	};
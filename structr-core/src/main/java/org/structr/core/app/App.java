@@ -75,7 +75,13 @@ public interface App extends Closeable {
 
 	public <T extends Command> T command(final Class<T> commandType);
 
-	public void processTasks(final Task... tasks);
+	/**
+	 * Hands the given tasks over to the agent service.
+	 *
+	 * @param tasks
+	 * @return false if at least one of the tasks was rejected because the task queue is full
+	 */
+	public boolean processTasks(final Task... tasks);
 	public <T extends Command & MaintenanceCommand> void maintenance(final Class<T> commandClass, final Map<String, Object> propertySet) throws FrameworkException;
 
 	public FulltextIndexer getFulltextIndexer(final Object... params);
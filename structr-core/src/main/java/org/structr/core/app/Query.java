@@ -41,6 +41,16 @@ public interface Query<T extends GraphObject> extends Iterable<T> {
 	public QueryContext getQueryContext();
 	public Query<T> isPing(final boolean isPing);
 
+	/**
+	 * Allows this query to return a result whose objects are instantiated
+	 * while the result is iterated, if the query can be paged by the
+	 * database.
+	 *
+	 * @param streamResults
+	 * @return this
+	 */
+	public Query<T> streamResults(final boolean streamResults);
+
 	public Result<T> getResult() throws FrameworkException;
 	public List<T> getAsList() throws FrameworkException;
 	public T getFirst() throws FrameworkException;
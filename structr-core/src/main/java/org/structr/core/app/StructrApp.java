@@ -342,16 +342,20 @@ public class StructrApp implements App {
 	}
 
 	@Override
-	public void processTasks(Task... tasks) {
+	public boolean processTasks(Task... tasks) {
 
 		final AgentService agentService = getService(AgentService.class);
+		boolean accepted                = true;
+
 		if(agentService != null) {
 
 			for(final Task task : tasks) {
 
-				agentService.processTask(task);
+				accepted &= agentService.processTask(task);
 			}
 		}
+
+		return accepted;
 	}
 
 	@Override
@@ -21,6 +21,8 @@ package org.structr.core.entity;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
@@ -51,6 +53,7 @@ import org.structr.api.graph.Node;
 import org.structr.api.graph.PropertyContainer;
 import org.structr.api.graph.Relationship;
 import org.structr.api.graph.RelationshipType;
+import org.structr.api.util.DependencyTrackingCache;
 import org.structr.api.util.FixedSizeCache;
 import org.structr.api.util.Iterables;
 import org.structr.bolt.wrapper.NodeWrapper;
@@ -104,9 +107,9 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 
 	private static final int permissionResolutionMaxLevel                                                 = Settings.ResolutionDepth.getValue();
 	private static final Logger logger                                                                    = LoggerFactory.getLogger(AbstractNode.class.getName());
-	private static final FixedSizeCache<String, Boolean> isGrantedResultCache                             = new FixedSizeCache<String, Boolean>(100000);
+	private static final DependencyTrackingCache<String, Boolean> isGrantedResultCache                    = new DependencyTrackingCache<>(100000);
+	private static final DependencyTrackingCache<String, Boolean> globalPermissionResolutionCache         = new DependencyTrackingCache<>(100000);
 	private static final FixedSizeCache<String, Object> relationshipTemplateInstanceCache                 = new FixedSizeCache<>(1000);
-	private static final Map<Long, Map<Long, PermissionResolutionResult>> globalPermissionResolutionCache = new HashMap<>();
 
 	public static final View defaultView = new View(AbstractNode.class, PropertyView.Public, id, type);
 
@@ -794,16 +797,21 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 		}
 
 		final String cacheKey = getUuid() + "." + permission.name() + "." + context.getCachedUserId();
-		final Boolean cached  = isGrantedResultCache.get(cacheKey);
+		final Boolean cached  = isGrantedResultCache.get(cacheKey, null);
 
 		if (cached != null && cached == true) {
 			return true;
 		}
 
-		final boolean doLog  = securityContext.hasParameter("logPermissionResolution");
-		final boolean result = isGranted(permission, accessingUser, new PermissionResolutionMask(), 0, new AlreadyTraversed(), true, doLog);
+		final long epoch                        = isGrantedResultCache.getEpoch();
+		final AlreadyTraversed alreadyTraversed = new AlreadyTraversed(globalPermissionResolutionCache.getEpoch());
+		final boolean doLog                     = securityContext.hasParameter("logPermissionResolution");
+		final boolean result                    = isGranted(permission, accessingUser, new PermissionResolutionMask(), 0, alreadyTraversed, true, doLog);
 
-		isGrantedResultCache.put(cacheKey, result);
+		// only positive results are used, see above
+		if (result && alreadyTraversed.isCacheable()) {
+			isGrantedResultCache.put(cacheKey, true, alreadyTraversed.getDependencies(), epoch);
+		}
 
 		return result;
 	}
@@ -816,6 +824,14 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 
 		final Map<String, Security> localIncomingSecurityRelationships = (Map<String, Security>) incomingSecurityRelationships != null ? incomingSecurityRelationships : mapSecurityRelationshipsMapped(getIncomingRelationshipsAsSuperUser(Security.class));
 
+		// the owner, security relationships and flags of this node and the
+		// accessing principal (or its parent) determine the result
+		alreadyTraversed.addDependency(getId());
+
+		if (accessingUser != null) {
+			alreadyTraversed.addDependency(accessingUser.getId());
+		}
+
 		if (level > 100) {
 			logger.warn("Aborting recursive permission resolution because of recursion level > 100, this is quite likely an infinite loop.");
 			return false;
@@ -876,6 +892,9 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 
 			if (StringUtils.isNotEmpty(customPermissionQuery)) {
 
+				// the query can depend on anything in the graph
+				alreadyTraversed.disableCaching();
+
 				final Map<String, Object> params = new HashMap<>();
 
 				params.put("principalUuid", accessingUser.getUuid());
@@ -917,14 +936,14 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 					final BFSInfo info = bfsNodes.poll();
 					if (info != null && info.level < permissionResolutionMaxLevel) {
 
-						final Boolean value = info.node.getPermissionResolutionResult(accessingUser.getId(), permission);
+						final Boolean value = info.node.getPermissionResolutionResult(accessingUser.getId(), permission, alreadyTraversed);
 						if (value != null) {
 
 							// returning immediately
 							if (Boolean.TRUE.equals(value)) {
 
 								// do backtracking
-								backtrack(info, accessingUser.getId(), permission, true, 0, doLog);
+								backtrack(info, accessingUser.getId(), permission, true, 0, alreadyTraversed, doLog);
 
 								return true;
 							}
@@ -934,7 +953,7 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 							if (info.node.hasEffectivePermissions(info, accessingUser, permission, mask, level, alreadyTraversed, bfsNodes, doLog)) {
 
 								// do backtracking
-								backtrack(info, accessingUser.getId(), permission, true, 0, doLog);
+								backtrack(info, accessingUser.getId(), permission, true, 0, alreadyTraversed, doLog);
 
 								return true;
 							}
@@ -944,7 +963,7 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 				} while (!bfsNodes.isEmpty());
 
 				// do backtracking
-				backtrack(root, accessingUser.getId(), permission, false, 0, doLog);
+				backtrack(root, accessingUser.getId(), permission, false, 0, alreadyTraversed, doLog);
 			}
 
 			// Last: recursively check possible parent principals
@@ -959,7 +978,7 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 		return false;
 	}
 
-	private void backtrack(final BFSInfo info, final long principalId, final Permission permission, final boolean value, final int level, final boolean doLog) {
+	private void backtrack(final BFSInfo info, final long principalId, final Permission permission, final boolean value, final int level, final AlreadyTraversed alreadyTraversed, final boolean doLog) {
 
 		if (doLog) {
 
@@ -978,12 +997,12 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 			System.out.print(info.node.getType() + " (" + info.node.getUuid() + ") --> ");
 		}
 
-		info.node.storePermissionResolutionResult(principalId, permission, value);
+		info.node.storePermissionResolutionResult(principalId, permission, value, alreadyTraversed);
 
 		// go to parent(s)
 		if (info.parent != null) {
 
-			backtrack(info.parent, principalId, permission, value, level+1, doLog);
+			backtrack(info.parent, principalId, permission, value, level+1, alreadyTraversed, doLog);
 		}
 
 		if (doLog && level == 0) {
@@ -994,6 +1013,9 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 
 	private boolean hasEffectivePermissions(final BFSInfo parent, final Principal principal, final Permission permission, final PermissionResolutionMask mask, final int level, final AlreadyTraversed alreadyTraversed, final Queue<BFSInfo> bfsNodes, final boolean doLog) {
 
+		// the propagating relationships of this node determine the result
+		alreadyTraversed.addDependency(getId());
+
 		// check nodes here to avoid circles in permission-propagating relationships
 		if (alreadyTraversed.contains("Node", dbNode.getId())) {
 			return false;
@@ -1029,7 +1051,7 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 
 							if (otherNode.isGranted(permission, principal, mask, level+1, alreadyTraversed, false, doLog)) {
 
-								otherNode.storePermissionResolutionResult(principal.getId(), permission, true);
+								otherNode.storePermissionResolutionResult(principal.getId(), permission, true, alreadyTraversed);
 
 								// break early
 								return true;
@@ -1170,69 +1192,27 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 		mask.handleProperties(rel.getDeltaProperties());
 	}
 
-	private Boolean getPermissionResolutionResult(final long principalId, final Permission permission) {
-
-		Map<Long, PermissionResolutionResult> permissionResolutionCache = globalPermissionResolutionCache.get(getId());
-		if (permissionResolutionCache == null) {
-
-			permissionResolutionCache = new HashMap<>();
-			globalPermissionResolutionCache.put(getId(), permissionResolutionCache);
-		}
+	private Boolean getPermissionResolutionResult(final long principalId, final Permission permission, final AlreadyTraversed alreadyTraversed) {
+		return globalPermissionResolutionCache.get(getPermissionResolutionKey(principalId, permission), alreadyTraversed.getDependencies());
+	}
 
-		PermissionResolutionResult result = permissionResolutionCache.get(principalId);
-		if (result != null) {
+	private void storePermissionResolutionResult(final long principalId, final Permission permission, final boolean value, final AlreadyTraversed alreadyTraversed) {
 
-			if (permission.equals(Permission.read)) {
-				return result.read;
-			}
+		if (alreadyTraversed.isCacheable()) {
 
-			if (permission.equals(Permission.write)) {
-				return result.write;
-			}
+			final String key      = getPermissionResolutionKey(principalId, permission);
+			final Boolean current = globalPermissionResolutionCache.get(key, null);
 
-			if (permission.equals(Permission.delete)) {
-				return result.delete;
-			}
+			// a positive result is never overwritten
+			if (!Boolean.TRUE.equals(current)) {
 
-			if (permission.equals(Permission.accessControl)) {
-				return result.accessControl;
+				globalPermissionResolutionCache.put(key, value, alreadyTraversed.getDependencies(), alreadyTraversed.getEpoch());
 			}
 		}
-
-		return null;
 	}
 
-	private void storePermissionResolutionResult(final long principalId, final Permission permission, final boolean value) {
-
-		Map<Long, PermissionResolutionResult> permissionResolutionCache = globalPermissionResolutionCache.get(getId());
-		if (permissionResolutionCache == null) {
-
-			permissionResolutionCache = new HashMap<>();
-			globalPermissionResolutionCache.put(getId(), permissionResolutionCache);
-		}
-
-		PermissionResolutionResult result = permissionResolutionCache.get(principalId);
-		if (result == null) {
-
-			result = new PermissionResolutionResult();
-			permissionResolutionCache.put(principalId, result);
-		}
-
-		if (permission.equals(Permission.read) && (result.read == null || result.read == false)) {
-			result.read = value;
-		}
-
-		if (permission.equals(Permission.write) && (result.write == null || result.write == false)) {
-			result.write = value;
-		}
-
-		if (permission.equals(Permission.delete) && (result.delete == null || result.delete == false)) {
-			result.delete = value;
-		}
-
-		if (permission.equals(Permission.accessControl) && (result.accessControl == null || result.accessControl == false)) {
-			result.accessControl = value;
-		}
+	private String getPermissionResolutionKey(final long principalId, final Permission permission) {
+		return getId() + "." + principalId + "." + permission.name();
 	}
 
 	private Security getSecurityRelationship(final Principal p, final Map<String, Security> securityRelationships) {
@@ -1274,12 +1254,12 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 
 	@Override
 	public void onModification(SecurityContext securityContext, ErrorBuffer errorBuffer, final ModificationQueue modificationQueue) throws FrameworkException {
-		clearCaches();
+		invalidateCachedPermissions(getId());
 	}
 
 	@Override
 	public void onDeletion(SecurityContext securityContext, ErrorBuffer errorBuffer, PropertyMap properties) throws FrameworkException {
-		clearCaches();
+		invalidateCachedPermissions(getId());
 	}
 
 	@Override
@@ -1296,22 +1276,22 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 
 	@Override
 	public void ownerModified(SecurityContext securityContext) {
-		clearCaches();
+		invalidateCachedPermissions(getId());
 	}
 
 	@Override
 	public void securityModified(SecurityContext securityContext) {
-		clearCaches();
+		invalidateCachedPermissions(getId());
 	}
 
 	@Override
 	public void locationModified(SecurityContext securityContext) {
-		clearCaches();
+		invalidateCachedPermissions(getId());
 	}
 
 	@Override
 	public void propagatedModification(SecurityContext securityContext) {
-		clearCaches();
+		invalidateCachedPermissions(getId());
 	}
 
 	@Override
@@ -1553,6 +1533,45 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 		isGrantedResultCache.clear();
 	}
 
+	/**
+	 * Removes all cached permission resolution results that depend on
+	 * one of the nodes with the given IDs.
+	 *
+	 * @param ids
+	 */
+	public static void invalidateCachedPermissions(final Long... ids) {
+		invalidateCachedPermissions(Arrays.asList(ids));
+	}
+
+	public static void invalidateCachedPermissions(final Collection<Long> ids) {
+		globalPermissionResolutionCache.invalidate(ids);
+		isGrantedResultCache.invalidate(ids);
+	}
+
+	public static Map<String, Object> getPermissionCacheStatistics() {
+
+		final Map<String, Object> data = new LinkedHashMap<>();
+
+		data.put("isGranted",            getCacheStatistics(isGrantedResultCache));
+		data.put("permissionResolution", getCacheStatistics(globalPermissionResolutionCache));
+
+		return data;
+	}
+
+	private static Map<String, Object> getCacheStatistics(final DependencyTrackingCache cache) {
+
+		final Map<String, Object> data = new LinkedHashMap<>();
+
+		data.put("size",          cache.size());
+		data.put("maxSize",       cache.getMaxSize());
+		data.put("hits",          cache.getHits());
+		data.put("misses",        cache.getMisses());
+		data.put("evictions",     cache.getEvictions());
+		data.put("invalidations", cache.getInvalidations());
+
+		return data;
+	}
+
 	public static <A extends NodeInterface, B extends NodeInterface, R extends Relation<A, B, ?, ?>> R getRelationshipForType(final Class<R> type) {
 
 		R instance = (R) relationshipTemplateInstanceCache.get(type.getName());
@@ -1786,7 +1805,7 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 			throw new FrameworkException(403, "Access control not permitted");
 		}
 
-		clearCaches();
+		invalidateCachedPermissions(getId(), principal.getId());
 
 		Security secRel = getSecurityRelationship(principal);
 		if (secRel == null) {
@@ -1827,7 +1846,7 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 			throw new FrameworkException(403, "Access control not permitted");
 		}
 
-		clearCaches();
+		invalidateCachedPermissions(getId(), principal.getId());
 
 		Security secRel = getSecurityRelationship(principal);
 		if (secRel != null) {
@@ -2116,6 +2135,13 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 	private static class AlreadyTraversed {
 
 		private Map<String, Set<Long>> sets = new LinkedHashMap<>();
+		private Set<Long> dependencies      = new HashSet<>();
+		private boolean cacheable           = true;
+		private long epoch                  = 0L;
+
+		public AlreadyTraversed(final long epoch) {
+			this.epoch = epoch;
+		}
 
 		public boolean contains(final String key, final Long id) {
 
@@ -2139,6 +2165,26 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 
 			return 0;
 		}
+
+		public void addDependency(final long id) {
+			dependencies.add(id);
+		}
+
+		public Set<Long> getDependencies() {
+			return dependencies;
+		}
+
+		public void disableCaching() {
+			this.cacheable = false;
+		}
+
+		public boolean isCacheable() {
+			return cacheable;
+		}
+
+		public long getEpoch() {
+			return epoch;
+		}
 	}
 
 	private static class BFSInfo {
@@ -2157,12 +2203,4 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 			}
 		}
 	}
-
-	private static class PermissionResolutionResult {
-
-		Boolean read          = false;
-		Boolean write         = false;
-		Boolean delete        = false;
-		Boolean accessControl = false;
-	}
 }
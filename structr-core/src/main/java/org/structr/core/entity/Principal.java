@@ -150,7 +150,7 @@ public interface Principal extends NodeInterface, AccessControllable {
 			.addParameter("arg0", PropertyKey.class.getName() + "<T>")
 			.addParameter("arg1", "T")
 			.addException(FrameworkException.class.getName())
-			.setSource("AbstractNode.clearCaches(); return super.setProperty(arg0, arg1);");
+			.setSource("AbstractNode.invalidateCachedPermissions(getId()); return super.setProperty(arg0, arg1);");
 
 		// create relationships
 		principal.relate(favoritable, "FAVORITE", Relation.Cardinality.ManyToMany, "favoriteUsers", "favorites");
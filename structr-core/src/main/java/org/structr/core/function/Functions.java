@@ -28,7 +28,10 @@ import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
 import org.apache.commons.lang3.StringUtils;
+import org.structr.api.config.Settings;
+import org.structr.api.util.SegmentedFixedSizeCache;
 import org.structr.common.error.FrameworkException;
 import org.structr.common.error.UnlicensedScriptException;
 import org.structr.core.GraphObject;
@@ -61,6 +64,11 @@ import org.structr.schema.action.Function;
 public class Functions {
 
 	private static final Map<String, Function<Object, Object>> functions = new LinkedHashMap<>();
+	private static final LongAdder parseCount                            = new LongAdder();
+	private static final LongAdder parseTime                             = new LongAdder();
+	private static final LongAdder evaluationCount                       = new LongAdder();
+	private static final LongAdder evaluationTime                        = new LongAdder();
+	private static volatile SegmentedFixedSizeCache<String, Expression> expressionCache = null;
 	public static final String NULL_STRING                               = "___NULL___";
 
 	public static void put(final boolean licensed, final int edition, final String name, final Function<Object, Object> function) {
@@ -89,6 +97,44 @@ public class Functions {
 
 	public static Object evaluate(final ActionContext actionContext, final GraphObject entity, final String expression) throws FrameworkException, UnlicensedScriptException {
 
+		final Expression root = getParsedExpression(expression);
+		final long t0         = System.nanoTime();
+
+		try {
+
+			return root.evaluate(actionContext, entity);
+
+		} finally {
+
+			evaluationCount.increment();
+			evaluationTime.add(System.nanoTime() - t0);
+		}
+	}
+
+	/**
+	 * Parses the given StructrScript expression into the expression cache
+	 * without evaluating it.
+	 *
+	 * @param expression the expression source
+	 *
+	 * @throws FrameworkException if the expression is invalid
+	 */
+	public static void precompile(final String expression) throws FrameworkException {
+		getParsedExpression(expression);
+	}
+
+	/**
+	 * Parses the given StructrScript expression into a tree of expressions
+	 * that can be evaluated repeatedly and concurrently.
+	 *
+	 * @param expression the expression source
+	 *
+	 * @return the root of the expression tree
+	 *
+	 * @throws FrameworkException if the expression is invalid
+	 */
+	public static Expression parse(final String expression) throws FrameworkException {
+
 		final String expressionWithoutNewlines = expression.replace('\n', ' ').replace('\r', ' ');
 		final StreamTokenizer tokenizer = new StreamTokenizer(new StringReader(expressionWithoutNewlines));
 		tokenizer.eolIsSignificant(true);
@@ -214,7 +260,25 @@ public class Functions {
 			throw new FrameworkException(422, "Invalid expression: mismatched closing bracket after " + lastToken);
 		}
 
-		return root.evaluate(actionContext, entity);
+		return root;
+	}
+
+	public static Map<String, Object> getStatistics() {
+
+		final SegmentedFixedSizeCache<String, Expression> cache = getExpressionCache();
+		final Map<String, Object> data                          = new LinkedHashMap<>();
+
+		data.put("cacheSize",      cache.size());
+		data.put("cacheMaxSize",   cache.getMaxSize());
+		data.put("cacheHits",      cache.getHits());
+		data.put("cacheMisses",    cache.getMisses());
+		data.put("cacheEvictions", cache.getEvictions());
+		data.put("parseCount",     parseCount.sum());
+		data.put("parseMillis",    parseTime.sum() / 1000000L);
+		data.put("evaluateCount",  evaluationCount.sum());
+		data.put("evaluateMillis", evaluationTime.sum() / 1000000L);
+
+		return data;
 	}
 
 	public static String cleanString(final Object input) {
@@ -257,6 +321,42 @@ public class Functions {
 	}
 
 	// ----- private methods -----
+	private static Expression getParsedExpression(final String expression) throws FrameworkException {
+
+		final SegmentedFixedSizeCache<String, Expression> cache = getExpressionCache();
+		Expression root                                         = cache.get(expression);
+
+		if (root == null) {
+
+			final long t0 = System.nanoTime();
+
+			root = parse(expression);
+
+			parseCount.increment();
+			parseTime.add(System.nanoTime() - t0);
+
+			// concurrent parsers of the same expression create equal trees, so the last one wins
+			cache.put(expression, root);
+		}
+
+		return root;
+	}
+
+	private static SegmentedFixedSizeCache<String, Expression> getExpressionCache() {
+
+		if (expressionCache == null) {
+
+			synchronized (Functions.class) {
+
+				if (expressionCache == null) {
+					expressionCache = new SegmentedFixedSizeCache<>(Math.max(1, Settings.ExpressionCacheSize.getValue()));
+				}
+			}
+		}
+
+		return expressionCache;
+	}
+
 	private static Expression checkReservedWords(final String word) throws FrameworkException {
 
 		if (word == null) {
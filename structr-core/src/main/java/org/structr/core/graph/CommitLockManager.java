@@ -0,0 +1,213 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Serializes the validation part of concurrent transactions that modify
+ * properties with uniqueness or validation constraints.
+ *
+ * Only the synchronization keys of constrained properties are locked, and
+ * locks are always acquired in the natural order of their keys, so there
+ * is no need for a global monitor to prevent deadlocks. The time spent
+ * waiting for each key is recorded in a histogram.
+ */
+public class CommitLockManager {
+
+	private static final long[] BUCKETS      = { 1, 10, 100, 1000, 10000 };
+	private final Map<String, KeyLock> locks = new ConcurrentHashMap<>();
+
+	/**
+	 * Acquires the locks for the given keys in ascending key order. If the
+	 * calling thread is interrupted, all locks acquired so far are released
+	 * before the exception is thrown.
+	 *
+	 * @param keys
+	 * @throws InterruptedException
+	 */
+	public void acquire(final Set<String> keys) throws InterruptedException {
+
+		if (keys != null && !keys.isEmpty()) {
+
+			final List<KeyLock> acquired = new ArrayList<>();
+
+			try {
+
+				for (final String key : sorted(keys)) {
+
+					final KeyLock lock = locks.computeIfAbsent(key, k -> new KeyLock());
+
+					// don't count a lock twice if it is already held by this thread
+					if (!lock.isHeldByCurrentThread()) {
+
+						lock.lockAndMeasure();
+						acquired.add(lock);
+					}
+				}
+
+			} catch (InterruptedException iex) {
+
+				for (final KeyLock lock : acquired) {
+					lock.unlock();
+				}
+
+				throw iex;
+			}
+		}
+	}
+
+	/**
+	 * Releases the locks for the given keys that are held by the calling
+	 * thread. Keys that were never locked are ignored.
+	 *
+	 * @param keys
+	 */
+	public void release(final Set<String> keys) {
+
+		if (keys != null && !keys.isEmpty()) {
+
+			for (final String key : keys) {
+
+				if (key != null) {
+
+					final KeyLock lock = locks.get(key);
+					if (lock != null && lock.isHeldByCurrentThread()) {
+
+						lock.unlock();
+					}
+				}
+			}
+		}
+	}
+
+	public Map<String, Object> getStatistics() {
+
+		final Map<String, Object> stats = new TreeMap<>();
+
+		for (final Map.Entry<String, KeyLock> entry : locks.entrySet()) {
+
+			stats.put(entry.getKey(), entry.getValue().getStatistics());
+		}
+
+		return stats;
+	}
+
+	// ----- private methods -----
+	private Set<String> sorted(final Set<String> keys) {
+
+		final Set<String> sorted = new TreeSet<>();
+
+		for (final String key : keys) {
+
+			if (key != null) {
+				sorted.add(key);
+			}
+		}
+
+		return sorted;
+	}
+
+	// ----- nested classes -----
+	private static class KeyLock extends ReentrantLock {
+
+		private final LongAdder[] histogram     = new LongAdder[BUCKETS.length + 1];
+		private final LongAdder acquisitions    = new LongAdder();
+		private final LongAdder contended       = new LongAdder();
+		private final LongAdder totalWaitMillis = new LongAdder();
+		private final LongAccumulator maxWait   = new LongAccumulator(Long::max, 0L);
+
+		public KeyLock() {
+
+			super(true);
+
+			for (int i=0; i<histogram.length; i++) {
+				histogram[i] = new LongAdder();
+			}
+		}
+
+		public void lockAndMeasure() throws InterruptedException {
+
+			if (tryLock()) {
+
+				acquisitions.increment();
+				histogram[0].increment();
+
+				return;
+			}
+
+			final long t0 = System.nanoTime();
+
+			lockInterruptibly();
+
+			final long waitMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0);
+
+			acquisitions.increment();
+			contended.increment();
+			totalWaitMillis.add(waitMillis);
+			maxWait.accumulate(waitMillis);
+
+			histogram[bucket(waitMillis)].increment();
+		}
+
+		public Map<String, Object> getStatistics() {
+
+			final Map<String, Object> stats = new LinkedHashMap<>();
+			final Map<String, Object> hist  = new LinkedHashMap<>();
+
+			for (int i=0; i<BUCKETS.length; i++) {
+				hist.put("<" + BUCKETS[i] + "ms", histogram[i].sum());
+			}
+
+			hist.put(">=" + BUCKETS[BUCKETS.length - 1] + "ms", histogram[BUCKETS.length].sum());
+
+			stats.put("acquisitions",    acquisitions.sum());
+			stats.put("contended",       contended.sum());
+			stats.put("totalWaitMillis", totalWaitMillis.sum());
+			stats.put("maxWaitMillis",   maxWait.get());
+			stats.put("queueLength",     getQueueLength());
+			stats.put("waitTime",        hist);
+
+			return stats;
+		}
+
+		private int bucket(final long waitMillis) {
+
+			for (int i=0; i<BUCKETS.length; i++) {
+
+				if (waitMillis < BUCKETS[i]) {
+					return i;
+				}
+			}
+
+			return BUCKETS.length;
+		}
+	}
+}
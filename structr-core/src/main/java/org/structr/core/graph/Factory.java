@@ -22,9 +22,11 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.NetworkException;
@@ -36,6 +38,7 @@ import org.structr.common.error.FrameworkException;
 import org.structr.core.Adapter;
 import org.structr.core.GraphObject;
 import org.structr.core.Result;
+import org.structr.core.StreamingResult;
 import org.structr.core.app.StructrApp;
 import org.structr.schema.SchemaHelper;
 
@@ -56,6 +59,7 @@ public abstract class Factory<S, T extends GraphObject> implements Adapter<S, T>
 	protected FactoryDefinition factoryDefinition = StructrApp.getConfiguration().getFactoryDefinition();
 	protected FactoryProfile factoryProfile       = null;
 	protected boolean disablePaging               = false;
+	protected boolean ignoreResultCount           = false;
 
 	public Factory(final SecurityContext securityContext) {
 
@@ -151,6 +155,32 @@ public abstract class Factory<S, T extends GraphObject> implements Adapter<S, T>
 
 	}
 
+	/**
+	 * Create a result that instantiates the structr nodes of the given
+	 * query on demand while it is being iterated. The query is executed
+	 * when the iteration starts, and only the objects of the requested
+	 * page are instantiated and returned.
+	 *
+	 * The overall count is determined after the requested page has been
+	 * returned, with the same security check as the objects of the page.
+	 * At most RESULT_COUNT_ACCURATE_LIMIT objects after the page are
+	 * checked, a larger count is reported as approximate.
+	 *
+	 * @param query
+	 * @return result
+	 */
+	public StreamingResult<T> instantiateLazily(final Supplier<QueryResult<S>> query) {
+
+		final StreamingResult<T> result = new StreamingResult<>();
+		final int pageSize              = factoryProfile.getPageSize();
+		final int page                  = factoryProfile.getPage();
+		final int offset                = pageSize == Integer.MAX_VALUE ? 0 : (page - 1) * pageSize;
+
+		result.setSource(() -> new PagingIterator(result, query.get(), offset, pageSize));
+
+		return result;
+	}
+
 	/**
 	 * Create structr nodes from all given underlying database nodes
 	 * No paging, but security check
@@ -192,6 +222,10 @@ public abstract class Factory<S, T extends GraphObject> implements Adapter<S, T>
 		this.disablePaging = true;
 	}
 
+	public void ignoreResultCount() {
+		this.ignoreResultCount = true;
+	}
+
 	protected Class<T> getClassForName(final String rawType) {
 		return SchemaHelper.getEntityClassForRawType(rawType);
 	}
@@ -212,7 +246,7 @@ public abstract class Factory<S, T extends GraphObject> implements Adapter<S, T>
 	protected Result page(final QueryResult<S> input, final int offset, final int pageSize) throws FrameworkException {
 
 		final SecurityContext securityContext = factoryProfile.getSecurityContext();
-		final boolean dontCheckCount          = securityContext.ignoreResultCount();
+		final boolean dontCheckCount          = ignoreResultCount || securityContext.ignoreResultCount();
 		final List<T> nodes                   = new ArrayList<>();
 		int overallCount                      = 0;
 		int position                          = 0;
@@ -250,6 +284,108 @@ public abstract class Factory<S, T extends GraphObject> implements Adapter<S, T>
 
 
 	// ----- nested classes -----
+	private class PagingIterator implements Iterator<T> {
+
+		private StreamingResult<T> result = null;
+		private QueryResult<S> input      = null;
+		private Iterator<S> source        = null;
+		private T next                    = null;
+		private T last                    = null;
+		private boolean finished          = false;
+		private int position              = 0;
+		private int offset                = 0;
+		private int pageSize              = 0;
+		private int count                 = 0;
+
+		public PagingIterator(final StreamingResult<T> result, final QueryResult<S> input, final int offset, final int pageSize) {
+
+			this.result   = result;
+			this.input    = input;
+			this.source   = input.iterator();
+			this.offset   = offset;
+			this.pageSize = pageSize;
+		}
+
+		@Override
+		public boolean hasNext() {
+
+			if (next != null) {
+				return true;
+			}
+
+			if (finished) {
+				return false;
+			}
+
+			while (count < pageSize && source.hasNext()) {
+
+				final T n = instantiate(source.next());
+				if (n != null) {
+
+					if (++position > offset) {
+
+						count++;
+						next = n;
+						last = n;
+
+						return true;
+					}
+				}
+			}
+
+			finish();
+
+			return false;
+		}
+
+		@Override
+		public T next() {
+
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			final T n = next;
+			next      = null;
+
+			return n;
+		}
+
+		private void finish() {
+
+			final SecurityContext securityContext = factoryProfile.getSecurityContext();
+			final boolean dontCheckCount          = ignoreResultCount || securityContext.ignoreResultCount();
+			boolean isApproximate                 = false;
+
+			finished = true;
+
+			try (final QueryResult<S> tmp = input) {
+
+				if (!dontCheckCount) {
+
+					int checked = 0;
+
+					// only readable objects are counted, so that the count does not
+					// reveal the number of invisible objects, up to the accurate limit
+					while (source.hasNext()) {
+
+						if (checked++ == RESULT_COUNT_ACCURATE_LIMIT) {
+
+							isApproximate = true;
+							break;
+						}
+
+						if (instantiate(source.next()) != null) {
+							position++;
+						}
+					}
+				}
+			}
+
+			result.finished(position, isApproximate, last, count == pageSize);
+		}
+	}
+
 	protected class FactoryProfile {
 
 		private boolean includeHidden           = true;
@@ -65,10 +65,10 @@ public class ModificationQueue {
 	private final Set<String> synchronizationKeys                                           = new TreeSet<>();
 
 	/**
-	 * Returns a set containing the different entity types of
-	 * nodes modified in this queue.
+	 * Returns the synchronization keys of all modified properties
+	 * in this queue that require synchronization.
 	 *
-	 * @return the types
+	 * @return the synchronization keys
 	 */
 	public Set<String> getSynchronizationKeys() {
 		return synchronizationKeys;
@@ -78,6 +78,52 @@ public class ModificationQueue {
 		return modifications.size();
 	}
 
+	/**
+	 * Returns the IDs of all nodes modified in this queue, including the
+	 * start and end nodes of modified relationships, or null if the nodes
+	 * of a relationship could not be determined.
+	 *
+	 * @return the node IDs or null
+	 */
+	public Set<Long> getModifiedNodeIds() {
+
+		final Set<Long> ids = new LinkedHashSet<>();
+
+		for (final GraphObjectModificationState state : modifications.values()) {
+
+			final GraphObject obj = state.getGraphObject();
+			if (state.isNode()) {
+
+				ids.add(obj.getId());
+
+			} else if (!state.isCreated() && !state.isDeleted()) {
+
+				// created and deleted relationships have already modified both nodes
+				try {
+
+					final RelationshipInterface rel = (RelationshipInterface)obj;
+					final NodeInterface sourceNode  = rel.getSourceNodeAsSuperUser();
+					final NodeInterface targetNode  = rel.getTargetNodeAsSuperUser();
+
+					if (sourceNode != null) {
+						ids.add(sourceNode.getId());
+					}
+
+					if (targetNode != null) {
+						ids.add(targetNode.getId());
+					}
+
+				} catch (Throwable t) {
+
+					logger.debug("Unable to determine nodes of modified relationship", t);
+					return null;
+				}
+			}
+		}
+
+		return ids;
+	}
+
 	public boolean doInnerCallbacks(final SecurityContext securityContext, final ErrorBuffer errorBuffer) throws FrameworkException {
 
 		long t0                  = System.currentTimeMillis();
@@ -0,0 +1,372 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.DatabaseService;
+import org.structr.api.NativeResult;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
+import org.structr.core.app.App;
+import org.structr.core.app.StructrApp;
+
+/**
+ * Imports the database entry of a sync export in bulk.
+ *
+ * The input is decoded on a separate thread and handed over in batches.
+ * Each batch is written in a single transaction, with one UNWIND statement
+ * per label set and relationship type. Relationship endpoints are resolved
+ * with a compact map of node UUIDs to database ids.
+ */
+class SyncBulkImporter {
+
+	private static final Logger logger          = LoggerFactory.getLogger(SyncBulkImporter.class.getName());
+	private static final List<Row> END          = new ArrayList<>();
+	private static final long REPORT_INTERVAL   = TimeUnit.SECONDS.toMillis(10);
+	private static final int QUEUE_SIZE         = 4;
+
+	private final BlockingQueue<List<Row>> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+	private final UuidIdMap ids                  = new UuidIdMap(1 << 16);
+	private final String uuidPropertyName        = GraphObject.id.dbName();
+	private final String typePropertyName        = NodeInterface.type.dbName();
+	private DatabaseService graphDb              = null;
+	private volatile Throwable decoderError      = null;
+	private volatile boolean cancelled           = false;
+	private boolean doValidation                 = true;
+	private int batchSize                        = 0;
+	private long nodeCount                       = 0L;
+	private long relCount                        = 0L;
+	private long skippedRelCount                 = 0L;
+
+	public SyncBulkImporter(final DatabaseService graphDb, final boolean doValidation, final int batchSize) {
+
+		this.graphDb      = graphDb;
+		this.doValidation = doValidation;
+		this.batchSize    = batchSize;
+	}
+
+	public void importDatabase(final InputStream inputStream) throws FrameworkException, IOException {
+
+		final Thread decoder = new Thread(() -> decode(inputStream), "SyncImportDecoder");
+		final App app        = StructrApp.getInstance();
+		final long t0        = System.currentTimeMillis();
+		long lastReport      = t0;
+		long lastNodeCount   = 0L;
+		long lastRelCount    = 0L;
+
+		decoder.setDaemon(true);
+		decoder.start();
+
+		try {
+
+			List<Row> batch = queue.take();
+
+			while (batch != END) {
+
+				try (final Tx tx = app.tx(doValidation)) {
+
+					write(batch);
+
+					tx.success();
+				}
+
+				final long now = System.currentTimeMillis();
+				if (now - lastReport >= REPORT_INTERVAL) {
+
+					final double seconds = (now - lastReport) / 1000.0;
+
+					logger.info("Imported {} nodes ({}/s) and {} rels ({}/s)", nodeCount, (long)((nodeCount - lastNodeCount) / seconds), relCount, (long)((relCount - lastRelCount) / seconds));
+
+					lastNodeCount = nodeCount;
+					lastRelCount  = relCount;
+					lastReport    = now;
+				}
+
+				batch = queue.take();
+			}
+
+		} catch (InterruptedException iex) {
+
+			Thread.currentThread().interrupt();
+			throw new FrameworkException(500, "Import was interrupted");
+
+		} finally {
+
+			// stop the decoder if writing failed
+			cancelled = true;
+			decoder.interrupt();
+
+			try { decoder.join(); } catch (InterruptedException iex) {}
+		}
+
+		if (decoderError != null) {
+
+			if (decoderError instanceof IOException) {
+				throw (IOException)decoderError;
+			}
+
+			throw new FrameworkException(500, "Unable to read import data: " + decoderError.getMessage());
+		}
+
+		final long time      = Math.max(1L, System.currentTimeMillis() - t0);
+		final double seconds = time / 1000.0;
+
+		if (skippedRelCount > 0) {
+			logger.warn("Skipped {} relationships with unknown start or end node", skippedRelCount);
+		}
+
+		logger.info("Imported {} nodes ({}/s) and {} rels ({}/s) in {} ms", nodeCount, (long)(nodeCount / seconds), relCount, (long)(relCount / seconds), time);
+	}
+
+	// ----- private methods -----
+	private void decode(final InputStream inputStream) {
+
+		final DataInputStream dis = new DataInputStream(new BufferedInputStream(inputStream, 65536));
+		List<Row> batch           = new ArrayList<>(batchSize);
+		Row currentRow            = null;
+		String currentKey         = null;
+
+		try {
+
+			while (true) {
+
+				try {
+
+					// store current position
+					dis.mark(4);
+
+					// read one byte
+					final byte objectType = dis.readByte();
+
+					// skip newlines
+					if (objectType == '\n') {
+						continue;
+					}
+
+					if (objectType == 'N' || objectType == 'R') {
+
+						if (batch.size() >= batchSize) {
+
+							put(batch);
+							batch = new ArrayList<>(batchSize);
+						}
+
+						currentRow = new Row();
+						currentKey = null;
+
+						if (objectType == 'R') {
+
+							currentRow.startId = (String)SyncCommand.deserialize(dis);
+							currentRow.endId   = (String)SyncCommand.deserialize(dis);
+							currentRow.relType = (String)SyncCommand.deserialize(dis);
+						}
+
+						batch.add(currentRow);
+
+					} else {
+
+						// reset if not at the beginning of a line
+						dis.reset();
+
+						if (currentKey == null) {
+
+							currentKey = (String)SyncCommand.deserialize(dis);
+
+						} else {
+
+							final Object obj = SyncCommand.deserialize(dis);
+							if (obj != null && currentRow != null) {
+
+								if (currentKey.length() != 0) {
+
+									currentRow.properties.put(currentKey, obj);
+
+								} else {
+
+									logger.error("Invalid property key for value {}, ignoring", obj);
+								}
+							}
+
+							currentKey = null;
+						}
+					}
+
+				} catch (EOFException eofex) {
+					break;
+				}
+			}
+
+			if (!batch.isEmpty()) {
+				put(batch);
+			}
+
+		} catch (InterruptedException iex) {
+
+			// import was cancelled
+			return;
+
+		} catch (Throwable t) {
+
+			decoderError = t;
+		}
+
+		try {
+			put(END);
+
+		} catch (InterruptedException iex) {}
+	}
+
+	private void put(final List<Row> batch) throws InterruptedException {
+
+		while (!cancelled) {
+
+			if (queue.offer(batch, 1, TimeUnit.SECONDS)) {
+				return;
+			}
+		}
+
+		throw new InterruptedException();
+	}
+
+	private void write(final List<Row> batch) {
+
+		final Map<String, List<Map<String, Object>>> nodes = new LinkedHashMap<>();
+		final Map<String, List<Row>> rels                  = new LinkedHashMap<>();
+
+		for (final Row row : batch) {
+
+			if (row.relType != null) {
+
+				rels.computeIfAbsent(row.relType, k -> new ArrayList<>()).add(row);
+
+			} else {
+
+				final Object type = row.properties.get(typePropertyName);
+
+				nodes.computeIfAbsent(type instanceof String ? (String)type : "", k -> new ArrayList<>()).add(row.properties);
+			}
+		}
+
+		// nodes first, so relationships can be created between nodes of the same batch
+		for (final Map.Entry<String, List<Map<String, Object>>> entry : nodes.entrySet()) {
+			createNodes(entry.getKey(), entry.getValue());
+		}
+
+		for (final Map.Entry<String, List<Row>> entry : rels.entrySet()) {
+			createRelationships(entry.getKey(), entry.getValue());
+		}
+	}
+
+	private void createNodes(final String type, final List<Map<String, Object>> rows) {
+
+		final StringBuilder buf              = new StringBuilder("UNWIND {rows} AS row CREATE (n");
+		final Map<String, Object> parameters = new HashMap<>();
+		final String tenantId                = graphDb.getTenantIdentifier();
+
+		if (tenantId != null) {
+			buf.append(":`").append(tenantId).append("`");
+		}
+
+		if (!type.isEmpty()) {
+			buf.append(":`").append(type).append("`");
+		}
+
+		buf.append(") SET n = row RETURN row.`").append(uuidPropertyName).append("` AS uuid, ID(n) AS id");
+
+		parameters.put("rows", rows);
+
+		try (final NativeResult result = graphDb.execute(buf.toString(), parameters)) {
+
+			while (result.hasNext()) {
+
+				final Map<String, Object> data = result.next();
+				final Object uuid              = data.get("uuid");
+
+				if (uuid instanceof String) {
+					ids.put((String)uuid, ((Number)data.get("id")).longValue());
+				}
+
+				nodeCount++;
+			}
+		}
+	}
+
+	private void createRelationships(final String relType, final List<Row> rows) {
+
+		final List<Map<String, Object>> data = new ArrayList<>(rows.size());
+		final Map<String, Object> parameters = new HashMap<>();
+
+		for (final Row row : rows) {
+
+			final long startNodeId = ids.get(row.startId);
+			final long endNodeId   = ids.get(row.endId);
+
+			if (startNodeId >= 0 && endNodeId >= 0) {
+
+				final Map<String, Object> map = new HashMap<>();
+
+				map.put("s", startNodeId);
+				map.put("e", endNodeId);
+				map.put("p", row.properties);
+
+				data.add(map);
+
+			} else {
+
+				logger.debug("Not creating relationship of type {}, start: {}, end: {}", relType, row.startId, row.endId);
+				skippedRelCount++;
+			}
+		}
+
+		if (!data.isEmpty()) {
+
+			parameters.put("rows", data);
+
+			try (final NativeResult result = graphDb.execute("UNWIND {rows} AS row MATCH (s), (e) WHERE ID(s) = row.s AND ID(e) = row.e CREATE (s)-[r:`" + relType + "`]->(e) SET r = row.p RETURN count(r) AS count", parameters)) {
+
+				if (result.hasNext()) {
+					relCount += ((Number)result.next().get("count")).longValue();
+				}
+			}
+		}
+	}
+
+	// ----- nested classes -----
+	private static class Row {
+
+		private final Map<String, Object> properties = new LinkedHashMap<>();
+		private String startId                       = null;
+		private String endId                         = null;
+		private String relType                       = null;
+	}
+}
@@ -79,6 +79,7 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 
 	private static final Logger logger                = LoggerFactory.getLogger(SyncCommand.class.getName());
 	private static final String STRUCTR_ZIP_DB_NAME   = "db";
+	private static final int BULK_BATCH_SIZE          = 10000;
 
 	private static final Map<Class, Byte> typeMap     = new HashMap<>();
 	private static final Map<Byte, Class> classMap    = new HashMap<>();
@@ -120,6 +121,7 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 		String validate         = (String)attributes.get("validate");
 		String query            = (String)attributes.get("query");
 		Long batchSize          = (Long)attributes.get("batchSize");
+		boolean bulk            = Boolean.valueOf(String.valueOf(attributes.get("bulk")));
 		boolean doValidation    = true;
 
 		// should we validate imported nodes?
@@ -150,7 +152,7 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 
 		} else if ("import".equals(mode)) {
 
-			importFromFile(graphDb, securityContext, fileName, doValidation, batchSize);
+			importFromFile(graphDb, securityContext, fileName, doValidation, batchSize, bulk);
 
 		} else {
 
@@ -312,10 +314,14 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 	}
 
 	public static void importFromFile(final DatabaseService graphDb, final SecurityContext securityContext, final String fileName, boolean doValidation, final Long batchSize) throws FrameworkException {
+		importFromFile(graphDb, securityContext, fileName, doValidation, batchSize, false);
+	}
+
+	public static void importFromFile(final DatabaseService graphDb, final SecurityContext securityContext, final String fileName, boolean doValidation, final Long batchSize, final boolean bulk) throws FrameworkException {
 
 		try (final InputStream fis = new FileInputStream(fileName)) {
 
-			importFromStream(graphDb, securityContext, fis, doValidation, batchSize);
+			importFromStream(graphDb, securityContext, fis, doValidation, batchSize, bulk);
 
 		} catch (Throwable t) {
 
@@ -326,6 +332,23 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 	}
 
 	public static void importFromStream(final DatabaseService graphDb, final SecurityContext securityContext, final InputStream inputStream, boolean doValidation, final Long batchSize) throws FrameworkException {
+		importFromStream(graphDb, securityContext, inputStream, doValidation, batchSize, false);
+	}
+
+	/**
+	 * Imports the given sync export. In bulk mode, nodes and relationships
+	 * are created with batched UNWIND statements while the input is decoded
+	 * on a separate thread.
+	 *
+	 * @param graphDb
+	 * @param securityContext
+	 * @param inputStream
+	 * @param doValidation
+	 * @param batchSize the number of objects per transaction
+	 * @param bulk
+	 * @throws FrameworkException
+	 */
+	public static void importFromStream(final DatabaseService graphDb, final SecurityContext securityContext, final InputStream inputStream, boolean doValidation, final Long batchSize, final boolean bulk) throws FrameworkException {
 
 		try (final ZipInputStream zis = new ZipInputStream(inputStream)) {
 
@@ -333,7 +356,15 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 
 			while (entry != null) {
 
-				if (STRUCTR_ZIP_DB_NAME.equals(entry.getName())) {
+				if (STRUCTR_ZIP_DB_NAME.equals(entry.getName()) && bulk) {
+
+					final double t0 = System.nanoTime();
+
+					new SyncBulkImporter(graphDb, doValidation, batchSize != null ? batchSize.intValue() : BULK_BATCH_SIZE).importDatabase(zis);
+
+					finishImport(securityContext, t0);
+
+				} else if (STRUCTR_ZIP_DB_NAME.equals(entry.getName())) {
 
 					importDatabase(graphDb, securityContext, zis, doValidation, batchSize);
 
@@ -798,6 +829,13 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 
 		} while (!finished);
 
+		finishImport(securityContext, t0);
+	}
+
+	private static void finishImport(final SecurityContext securityContext, final double t0) throws FrameworkException {
+
+		final App app = StructrApp.getInstance();
+
 		// build schema
 		try (final Tx tx = app.tx()) {
 
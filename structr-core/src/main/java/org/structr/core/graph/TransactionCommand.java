@@ -25,9 +25,12 @@ import java.util.Map;
 import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.ConstraintViolationException;
+import org.structr.api.DataFormatException;
 import org.structr.api.DatabaseService;
 import org.structr.api.NetworkException;
 import org.structr.api.NotInTransactionException;
+import org.structr.api.RetryException;
 import org.structr.api.graph.Node;
 import org.structr.api.graph.Relationship;
 import org.structr.common.error.DatabaseServiceNetworkException;
@@ -53,7 +56,7 @@ public class TransactionCommand extends NodeServiceCommand implements AutoClosea
 	private static final ThreadLocal<ErrorBuffer> buffers               = new ThreadLocal<>();
 	private static final ThreadLocal<TransactionCommand> currentCommand = new ThreadLocal<>();
 	private static final ThreadLocal<TransactionReference> transactions = new ThreadLocal<>();
-	private static final MultiSemaphore                    semaphore    = new MultiSemaphore();
+	private static final CommitLockManager                 commitLocks  = new CommitLockManager();
 
 	public TransactionCommand beginTx() throws FrameworkException {
 
@@ -109,15 +112,15 @@ public class TransactionCommand extends NodeServiceCommand implements AutoClosea
 				throw new FrameworkException(422, "Unable to commit transaction, validation failed", errorBuffer);
 			}
 
-			// 2. fetch all types of entities modified in this tx
+			// 2. fetch all constrained properties modified in this tx
 			Set<String> synchronizationKeys = modificationQueue.getSynchronizationKeys();
 
 			// we need to protect the validation and indexing part of every transaction
 			// from being entered multiple times in the presence of validators
-			// 3. acquire semaphores for each modified type
-			try { semaphore.acquire(synchronizationKeys); } catch (InterruptedException iex) { return; }
+			// 3. acquire locks for each constrained property, in key order
+			try { commitLocks.acquire(synchronizationKeys); } catch (InterruptedException iex) { return; }
 
-			// do validation under the protection of the semaphores for each type
+			// do validation under the protection of the locks for each property
 				if (doValidation && !modificationQueue.doValidation(securityContext, errorBuffer, doValidation)) {
 
 				tx.failure();
@@ -133,11 +136,31 @@ public class TransactionCommand extends NodeServiceCommand implements AutoClosea
 				throw new FrameworkException(422, "Unable to commit transaction, transaction post processing failed", errorBuffer);
 			}
 
+			// pipelined writes are completed here, so their errors must reach the caller
 			try {
 				tx.success();
 
-			} catch (Throwable t) {
-				logger.error("Unable to commit transaction", t);
+			} catch (DataFormatException dex) {
+
+				tx.failure();
+				throw new FrameworkException(422, dex.getMessage());
+
+			} catch (ConstraintViolationException cex) {
+
+				tx.failure();
+				throw new FrameworkException(422, cex.getMessage());
+
+			} catch (RetryException rex) {
+
+				tx.failure();
+				throw rex;
+
+			} catch (RuntimeException rex) {
+
+				logger.error("Unable to commit transaction", rex);
+
+				tx.failure();
+				throw rex;
 			}
 		}
 	}
@@ -154,6 +177,7 @@ public class TransactionCommand extends NodeServiceCommand implements AutoClosea
 				modificationQueue = queues.get();
 
 				final Set<String> synchronizationKeys = modificationQueue.getSynchronizationKeys();
+				final Set<Long> modifiedNodeIds       = modificationQueue.getModifiedNodeIds();
 
 				// cleanup
 				queues.remove();
@@ -166,8 +190,23 @@ public class TransactionCommand extends NodeServiceCommand implements AutoClosea
 
 				} finally {
 
-					// release semaphores as the transaction is now finished
-					semaphore.release(synchronizationKeys);	// careful: this can be null
+					// release locks as the transaction is now finished
+					commitLocks.release(synchronizationKeys);	// careful: this can be null
+
+					// invalidate cached permissions that depend on the modified nodes, also
+					// after a rollback because the transaction may have cached its own state
+					if (modifiedNodeIds != null) {
+
+						AbstractNode.invalidateCachedPermissions(modifiedNodeIds);
+
+					} else {
+
+						AbstractNode.clearCaches();
+					}
+
+					for (final StructrTransactionListener listener : listeners) {
+						listener.afterTransaction(modifiedNodeIds);
+					}
 				}
 
 			} else {
@@ -374,6 +413,10 @@ public class TransactionCommand extends NodeServiceCommand implements AutoClosea
 		return listeners;
 	}
 
+	public static Map<String, Object> getCommitLockStatistics() {
+		return commitLocks.getStatistics();
+	}
+
 	public static void simpleBroadcastGenericMessage (final Map<String, Object> data) {
 		simpleBroadcast("GENERIC_MESSAGE", data, null);
 	}
@@ -0,0 +1,212 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact map from node UUIDs to database ids, stored outside of the heap.
+ *
+ * UUIDs in the default format (32 lowercase hex characters) are stored as
+ * two longs in an open-addressing hash table in direct buffers, 24 bytes
+ * per entry. All other identifiers are stored in a regular map.
+ */
+class UuidIdMap {
+
+	private static final int ENTRY_SIZE         = 24;
+	private static final int CHUNK_BITS         = 20;
+	private static final int CHUNK_SIZE         = 1 << CHUNK_BITS;
+	private static final double LOAD_FACTOR     = 0.7;
+
+	private final Map<String, Long> other       = new HashMap<>();
+	private ByteBuffer[] chunks                 = null;
+	private long capacity                       = 0L;
+	private long size                           = 0L;
+
+	public UuidIdMap(final long expectedSize) {
+		allocate(Math.max(1024L, Long.highestOneBit((long)(expectedSize / LOAD_FACTOR)) << 1));
+	}
+
+	public void put(final String uuid, final long id) {
+
+		if (!isHex(uuid)) {
+
+			other.put(uuid, id);
+			return;
+		}
+
+		if (size + 1 > capacity * LOAD_FACTOR) {
+			resize();
+		}
+
+		if (insert(parse(uuid, 0), parse(uuid, 16), id)) {
+			size++;
+		}
+	}
+
+	/**
+	 * @return the id of the given UUID, or -1 if the UUID is unknown
+	 */
+	public long get(final String uuid) {
+
+		if (uuid == null) {
+			return -1L;
+		}
+
+		if (!isHex(uuid)) {
+
+			final Long id = other.get(uuid);
+			return id != null ? id : -1L;
+		}
+
+		final long high = parse(uuid, 0);
+		final long low  = parse(uuid, 16);
+
+		for (long slot = hash(high, low) & (capacity - 1); ; slot = (slot + 1) & (capacity - 1)) {
+
+			final ByteBuffer chunk = chunks[(int)(slot >>> CHUNK_BITS)];
+			final int offset       = (int)(slot & (CHUNK_SIZE - 1)) * ENTRY_SIZE;
+			final long value       = chunk.getLong(offset + 16);
+
+			if (value == 0L) {
+				return -1L;
+			}
+
+			if (chunk.getLong(offset) == high && chunk.getLong(offset + 8) == low) {
+				return value - 1;
+			}
+		}
+	}
+
+	public long size() {
+		return size + other.size();
+	}
+
+	// ----- private methods -----
+	private void allocate(final long newCapacity) {
+
+		final int chunkCount  = (int)Math.max(1L, newCapacity >>> CHUNK_BITS);
+		final int chunkLength = (int)Math.min(newCapacity, CHUNK_SIZE) * ENTRY_SIZE;
+
+		chunks   = new ByteBuffer[chunkCount];
+		capacity = newCapacity;
+
+		for (int i=0; i<chunkCount; i++) {
+			chunks[i] = ByteBuffer.allocateDirect(chunkLength);
+		}
+	}
+
+	private void resize() {
+
+		final ByteBuffer[] oldChunks = chunks;
+
+		allocate(capacity << 1);
+
+		for (final ByteBuffer chunk : oldChunks) {
+
+			for (int offset=0; offset<chunk.capacity(); offset += ENTRY_SIZE) {
+
+				final long value = chunk.getLong(offset + 16);
+				if (value != 0L) {
+
+					insert(chunk.getLong(offset), chunk.getLong(offset + 8), value - 1);
+				}
+			}
+		}
+	}
+
+	private boolean insert(final long high, final long low, final long id) {
+
+		for (long slot = hash(high, low) & (capacity - 1); ; slot = (slot + 1) & (capacity - 1)) {
+
+			final ByteBuffer chunk = chunks[(int)(slot >>> CHUNK_BITS)];
+			final int offset       = (int)(slot & (CHUNK_SIZE - 1)) * ENTRY_SIZE;
+			final long value       = chunk.getLong(offset + 16);
+
+			if (value == 0L) {
+
+				chunk.putLong(offset,      high);
+				chunk.putLong(offset + 8,  low);
+				chunk.putLong(offset + 16, id + 1);
+
+				return true;
+			}
+
+			if (chunk.getLong(offset) == high && chunk.getLong(offset + 8) == low) {
+
+				chunk.putLong(offset + 16, id + 1);
+
+				return false;
+			}
+		}
+	}
+
+	private static long hash(final long high, final long low) {
+
+		long h = high * 31 + low;
+
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+
+		return h;
+	}
+
+	private static boolean isHex(final String uuid) {
+
+		if (uuid.length() != 32) {
+			return false;
+		}
+
+		for (int i=0; i<32; i++) {
+
+			if (hexValue(uuid.charAt(i)) < 0) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static long parse(final String uuid, final int offset) {
+
+		long value = 0L;
+
+		for (int i=offset; i<offset + 16; i++) {
+			value = (value << 4) | hexValue(uuid.charAt(i));
+		}
+
+		return value;
+	}
+
+	private static int hexValue(final char c) {
+
+		if (c >= '0' && c <= '9') {
+			return c - '0';
+		}
+
+		if (c >= 'a' && c <= 'f') {
+			return c - 'a' + 10;
+		}
+
+		return -1;
+	}
+}
@@ -18,12 +18,23 @@
  */
 package org.structr.core.graph.search;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
 import org.apache.commons.lang3.StringUtils;
 import org.structr.api.search.EmptyQuery;
 import org.structr.api.search.Occurrence;
 import org.structr.core.GraphObject;
+import org.structr.core.property.ArrayProperty;
+import org.structr.core.property.BooleanProperty;
+import org.structr.core.property.DateProperty;
+import org.structr.core.property.DoubleProperty;
+import org.structr.core.property.EnumProperty;
+import org.structr.core.property.IntProperty;
+import org.structr.core.property.LongProperty;
 import org.structr.core.property.PropertyKey;
+import org.structr.core.property.StringProperty;
 
 /**
  *
@@ -31,6 +42,11 @@ import org.structr.core.property.PropertyKey;
  */
 public class EmptySearchAttribute<T> extends PropertySearchAttribute<T> {
 
+	// property types whose value is stored unmodified in the database
+	private static final Set<Class> STORED_PROPERTY_TYPES = new HashSet<>(Arrays.asList(new Class[] {
+		StringProperty.class, IntProperty.class, LongProperty.class, DoubleProperty.class, BooleanProperty.class, DateProperty.class, EnumProperty.class, ArrayProperty.class
+	}));
+
 	private boolean removeFromQuery = false;
 
 	public EmptySearchAttribute(PropertyKey<T> key, T value) {
@@ -101,6 +117,27 @@ public class EmptySearchAttribute<T> extends PropertySearchAttribute<T> {
 		return removeFromQuery;
 	}
 
+	/**
+	 * Indicates whether the database query generated for this search
+	 * attribute matches exactly the objects accepted by includeInResult,
+	 * so that the result can be sorted and paged by the database
+	 * without filtering it in memory.
+	 *
+	 * @return whether this search attribute is evaluated completely by the database
+	 */
+	public boolean isFilteredInDatabase() {
+		return !removeFromQuery && getValue() == null && Occurrence.REQUIRED.equals(getOccurrence()) && isStoredProperty();
+	}
+
+	// ----- protected methods -----
+	protected boolean isStoredProperty() {
+
+		final PropertyKey key = getKey();
+
+		return key != null && STORED_PROPERTY_TYPES.contains(key.getClass());
+	}
+
+	// ----- private methods -----
 	private boolean equal(T nodeValue, T searchValue) {
 
 		// easy, both values are null => equal
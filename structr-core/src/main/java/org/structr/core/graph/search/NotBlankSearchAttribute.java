@@ -43,6 +43,11 @@ public class NotBlankSearchAttribute<T> extends EmptySearchAttribute<T> {
 		return NotEmptyQuery.class;
 	}
 
+	@Override
+	public boolean isFilteredInDatabase() {
+		return !Occurrence.OPTIONAL.equals(getOccurrence()) && isStoredProperty();
+	}
+
 	@Override
 	public boolean includeInResult(GraphObject entity) {
 
@@ -22,6 +22,11 @@ import org.structr.api.search.RelationshipQuery;
 import org.structr.core.GraphObject;
 import org.structr.core.entity.AbstractRelationship;
 
+/**
+ * Restricts a relationship search to relationships whose start and end
+ * nodes are both visible to public users. The database query checks the
+ * visibility flag of both nodes, so the result can be paged by the database.
+ */
 public class RelationshipVisibilitySearchAttribute<T> extends SearchAttribute<T> {
 
 	@Override
@@ -29,6 +34,16 @@ public class RelationshipVisibilitySearchAttribute<T> extends SearchAttribute<T>
 		return ((AbstractRelationship)entity).getSourceNode() != null && ((AbstractRelationship)entity).getTargetNode() != null;
 	}
 
+	@Override
+	public String getName() {
+		return GraphObject.visibleToPublicUsers.dbName();
+	}
+
+	@Override
+	public Class getType() {
+		return Boolean.class;
+	}
+
 	@Override
 	public Class getQueryType() {
 		return RelationshipQuery.class;
@@ -34,6 +34,7 @@ import org.structr.api.QueryResult;
 import org.structr.api.graph.PropertyContainer;
 import org.structr.api.index.Index;
 import org.structr.api.search.Occurrence;
+import org.structr.api.search.PagingCursor;
 import org.structr.api.search.QueryContext;
 import org.structr.common.GraphObjectComparator;
 import org.structr.common.PagingHelper;
@@ -43,6 +44,7 @@ import org.structr.common.geo.GeoCodingResult;
 import org.structr.common.geo.GeoHelper;
 import org.structr.core.GraphObject;
 import org.structr.core.Result;
+import org.structr.core.StreamingResult;
 import org.structr.core.app.StructrApp;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.entity.AbstractRelationship;
@@ -95,6 +97,7 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 	private boolean includeHidden                = true;
 	private boolean sortDescending               = false;
 	private boolean doNotSort                    = false;
+	private boolean streamResults                = false;
 	private Class type                           = null;
 	private int pageSize                         = Integer.MAX_VALUE;
 	private int page                             = 1;
@@ -111,10 +114,24 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 			return Result.EMPTY_RESULT;
 		}
 
-		final Factory<S, T> factory  = getFactory(securityContext, includeHidden, publicOnly, pageSize, page);
+		// a comparator sorts the result in memory, in an order that does
+		// not match the position of a cursor in the database order
+		if (comparator != null && getQueryContext().getCursor() != null) {
+
+			logger.debug("Ignoring paging cursor for query sorted by comparator {}", comparator);
+			getQueryContext().cursor(null);
+		}
+
+		// a cursor replaces the page offset, the database resumes after it
+		final boolean hasCursor      = getQueryContext().getCursor() != null;
+		final Factory<S, T> factory  = getFactory(securityContext, includeHidden, publicOnly, pageSize, hasCursor ? 1 : page);
 		boolean hasGraphSources      = false;
 		boolean hasSpatialSource     = false;
 
+		if (hasCursor) {
+			factory.ignoreResultCount();
+		}
+
 		if (securityContext.getUser(false) == null && !isRelationshipSearch()) {
 
 			rootGroup.add(new PropertySearchAttribute(GraphObject.visibleToPublicUsers, true, Occurrence.REQUIRED, true));
@@ -134,7 +151,6 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 		// At this point, all search attributes are ready
 		final List<SourceSearchAttribute> sources    = new ArrayList<>();
 		boolean hasEmptySearchFields                 = false;
-		boolean hasRelationshipVisibilitySearch      = false;
 		Result intermediateResult                    = null;
 
 		// check for optional-only queries
@@ -160,7 +176,7 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 
 					}
 
-					if (item instanceof EmptySearchAttribute) {
+					if (item instanceof EmptySearchAttribute && !((EmptySearchAttribute)item).isFilteredInDatabase()) {
 						hasEmptySearchFields = true;
 					}
 				}
@@ -190,13 +206,9 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 				hasGraphSources = true;
 			}
 
-			if (attr instanceof EmptySearchAttribute) {
+			if (attr instanceof EmptySearchAttribute && !((EmptySearchAttribute)attr).isFilteredInDatabase()) {
 				hasEmptySearchFields = true;
 			}
-
-			if (attr instanceof RelationshipVisibilitySearchAttribute) {
-				hasRelationshipVisibilitySearch = true;
-			}
 		}
 
 		// only do "normal" query if no other sources are present
@@ -218,8 +230,20 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 			if (index != null) {
 
 				// paging needs to be done AFTER instantiating all nodes
-				if (hasEmptySearchFields || comparator != null) {
+				if (hasEmptySearchFields || hasGraphSources || comparator != null) {
+
 					factory.disablePaging();
+
+				} else if (streamResults && page > 0) {
+
+					// the query is executed when the result is written
+					final StreamingResult<T> result = factory.instantiateLazily(() -> index.query(getQueryContext(), rootGroup));
+
+					if (pageSize < Integer.MAX_VALUE) {
+						result.setNextCursorFunction(this::getNextCursor);
+					}
+
+					return result;
 				}
 
 				// do query
@@ -237,7 +261,9 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 			}
 		}
 
-		if (intermediateResult != null && (hasEmptySearchFields || hasGraphSources || hasSpatialSource || hasRelationshipVisibilitySearch)) {
+		// relationship visibility, distance and most empty searches are evaluated
+		// by the database, only the remaining attributes need to be filtered here
+		if (intermediateResult != null && (hasEmptySearchFields || hasGraphSources)) {
 
 			// sorted result set
 			final Set<GraphObject> intermediateResultSet = new LinkedHashSet<>(intermediateResult.getResults());
@@ -292,10 +318,25 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 		} else {
 
 			// no filtering
+			if (intermediateResult != null && pageSize < Integer.MAX_VALUE && intermediateResult.size() == pageSize) {
+
+				intermediateResult.setNextCursor(getNextCursor((T)intermediateResult.get(pageSize - 1)));
+			}
+
 			return intermediateResult;
 		}
 	}
 
+	private String getNextCursor(final T last) {
+
+		// the index sorts by the root group's sort key, which defaults to "name"
+		final PropertyContainer container = last.getPropertyContainer();
+		final String dbSortKey            = rootGroup.getSortKey();
+		final Object sortValue            = dbSortKey != null ? container.getProperty(dbSortKey) : null;
+
+		return new PagingCursor(container.getId(), sortValue).encode();
+	}
+
 	private Set<GraphObject> mergeSources(List<SourceSearchAttribute> sources) {
 
 		final Set<GraphObject> mergedResult = new LinkedHashSet<>();
@@ -845,6 +886,13 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 		return this;
 	}
 
+	@Override
+	public org.structr.core.app.Query<T> streamResults(final boolean streamResults) {
+
+		this.streamResults = streamResults;
+		return this;
+	}
+
 	// ----- private methods ----
 	private void assertPropertyIsIndexed(final PropertyKey key) {
 
@@ -26,8 +26,11 @@ import org.structr.core.GraphObject;
 import org.structr.schema.action.ActionContext;
 
 /**
+ * A node in the parse tree of a StructrScript expression.
  *
- *
+ * Parsed expressions are cached and evaluated concurrently, so subclasses
+ * must not store any state in their fields during evaluation. Use the
+ * {@link ActionContext} for that.
  */
 public abstract class Expression {
 
@@ -85,10 +88,10 @@ public abstract class Expression {
 		return parent != null && parent.isBatched();
 	}
 
-	public int getBatchSize() {
+	public int getBatchSize(final ActionContext ctx) {
 
 		if (parent != null) {
-			return parent.getBatchSize();
+			return parent.getBatchSize(ctx);
 		}
 
 		return -1;
@@ -0,0 +1,260 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.script;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Script;
+import org.structr.api.config.Settings;
+
+/**
+ * Lock-free cache for compiled JavaScript.
+ *
+ * Scripts are keyed by a 128 bit hash of their source instead of the
+ * source itself, so lookups neither compare nor retain multi-kilobyte
+ * strings, and the key of an embedded method body can be computed from
+ * the body without building the embedding first. Only one thread
+ * compiles a given source, concurrent callers wait for its result.
+ *
+ * When the cache grows beyond its maximum size, the least recently used
+ * tenth of the entries is evicted by whichever thread notices first.
+ */
+public class ScriptCache {
+
+	private static final Map<Key, Entry> scripts                         = new ConcurrentHashMap<>();
+	private static final Map<Key, CompletableFuture<Script>> compilations = new ConcurrentHashMap<>();
+	private static final AtomicBoolean evicting                           = new AtomicBoolean(false);
+	private static final LongAdder hits                                   = new LongAdder();
+	private static final LongAdder misses                                 = new LongAdder();
+	private static final LongAdder evictions                              = new LongAdder();
+	private static final LongAdder compileCount                           = new LongAdder();
+	private static final LongAdder compileTime                            = new LongAdder();
+
+	/**
+	 * Returns the compiled script for the given key, compiling the source
+	 * provided by the given supplier if the script is not cached yet.
+	 *
+	 * @param context the current context
+	 * @param key the key of the script
+	 * @param source supplies the source code, only called on a cache miss
+	 * @param sourceName the source name for error messages
+	 * @param lineNo the line number of the first line
+	 *
+	 * @return the compiled script
+	 */
+	public static Script getOrCompile(final Context context, final Key key, final Supplier<String> source, final String sourceName, final int lineNo) {
+
+		final Entry cached = scripts.get(key);
+		if (cached != null) {
+
+			hits.increment();
+			cached.lastAccess = System.nanoTime();
+
+			return cached.script;
+		}
+
+		misses.increment();
+
+		final CompletableFuture<Script> future  = new CompletableFuture<>();
+		final CompletableFuture<Script> pending = compilations.putIfAbsent(key, future);
+
+		if (pending != null) {
+
+			try {
+
+				return pending.join();
+
+			} catch (CompletionException cex) {
+
+				final Throwable cause = cex.getCause();
+				if (cause instanceof RuntimeException) {
+
+					throw (RuntimeException)cause;
+				}
+
+				throw cex;
+			}
+		}
+
+		try {
+
+			final long t0       = System.nanoTime();
+			final Script script = context.compileString(source.get(), sourceName, lineNo, null);
+
+			compileCount.increment();
+			compileTime.add(System.nanoTime() - t0);
+
+			scripts.put(key, new Entry(script));
+			future.complete(script);
+
+			evictIfNecessary();
+
+			return script;
+
+		} catch (RuntimeException rex) {
+
+			future.completeExceptionally(rex);
+			throw rex;
+
+		} finally {
+
+			compilations.remove(key);
+		}
+	}
+
+	public static boolean contains(final Key key) {
+		return scripts.containsKey(key);
+	}
+
+	public static void clear() {
+		scripts.clear();
+	}
+
+	public static int size() {
+		return scripts.size();
+	}
+
+	public static Map<String, Object> getStatistics() {
+
+		final Map<String, Object> data = new LinkedHashMap<>();
+
+		data.put("cacheSize",      scripts.size());
+		data.put("cacheMaxSize",   getMaxSize());
+		data.put("cacheHits",      hits.sum());
+		data.put("cacheMisses",    misses.sum());
+		data.put("cacheEvictions", evictions.sum());
+		data.put("compileCount",   compileCount.sum());
+		data.put("compileMillis",  compileTime.sum() / 1000000L);
+
+		return data;
+	}
+
+	/**
+	 * Creates the cache key for the given source.
+	 *
+	 * @param source the source code
+	 * @param embedded whether the source will be embedded in a function before it is compiled
+	 *
+	 * @return the key
+	 */
+	public static Key key(final String source, final boolean embedded) {
+
+		final int length = source.length();
+		long hash1       = 0xcbf29ce484222325L;
+		long hash2       = 0x9e3779b97f4a7c15L;
+
+		for (int i=0; i<length; i++) {
+
+			final char c = source.charAt(i);
+
+			// FNV-1a and a 64 bit polynomial hash, computed in one pass
+			hash1 = (hash1 ^ c) * 0x100000001b3L;
+			hash2 = (hash2 * 31L) + c;
+		}
+
+		return new Key(hash1, hash2 ^ (hash2 >>> 31), length, embedded);
+	}
+
+	// ----- private methods -----
+	private static int getMaxSize() {
+		return Math.max(1, Settings.ScriptCacheSize.getValue());
+	}
+
+	private static void evictIfNecessary() {
+
+		final int maxSize = getMaxSize();
+
+		if (scripts.size() > maxSize && evicting.compareAndSet(false, true)) {
+
+			try {
+
+				final List<Map.Entry<Key, Entry>> entries = new ArrayList<>(scripts.entrySet());
+				final int count                            = Math.max(scripts.size() - maxSize, maxSize / 10);
+
+				entries.sort(Comparator.comparingLong(e -> e.getValue().lastAccess));
+
+				for (int i=0; i<count && i<entries.size(); i++) {
+
+					if (scripts.remove(entries.get(i).getKey()) != null) {
+						evictions.increment();
+					}
+				}
+
+			} finally {
+
+				evicting.set(false);
+			}
+		}
+	}
+
+	// ----- nested classes -----
+	public static final class Key {
+
+		private final long hash1;
+		private final long hash2;
+		private final int length;
+		private final boolean embedded;
+
+		private Key(final long hash1, final long hash2, final int length, final boolean embedded) {
+
+			this.hash1    = hash1;
+			this.hash2    = hash2;
+			this.length   = length;
+			this.embedded = embedded;
+		}
+
+		@Override
+		public int hashCode() {
+			return (int)(hash1 ^ (hash1 >>> 32));
+		}
+
+		@Override
+		public boolean equals(final Object other) {
+
+			if (other instanceof Key) {
+
+				final Key key = (Key)other;
+
+				return key.hash1 == hash1 && key.hash2 == hash2 && key.length == length && key.embedded == embedded;
+			}
+
+			return false;
+		}
+	}
+
+	private static final class Entry {
+
+		private final Script script;
+		private volatile long lastAccess = System.nanoTime();
+
+		private Entry(final Script script) {
+			this.script = script;
+		}
+	}
+}
@@ -0,0 +1,205 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.script;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.app.App;
+import org.structr.core.app.StructrApp;
+import org.structr.core.entity.SchemaMethod;
+import org.structr.core.entity.SchemaProperty;
+import org.structr.core.graph.Tx;
+
+/**
+ * Precompiles the scripts of all schema methods and computed properties
+ * after the schema has been compiled, so that the first requests after a
+ * deployment do not have to wait for the compiler.
+ *
+ * JavaScript is compiled into the {@link ScriptCache}, StructrScript is
+ * parsed into the expression cache. The progress of the current or last
+ * run is available via {@link #getStatus()}.
+ */
+public class ScriptWarmup {
+
+	private static final Logger logger              = LoggerFactory.getLogger(ScriptWarmup.class.getName());
+	private static final AtomicBoolean running      = new AtomicBoolean(false);
+	private static final AtomicBoolean requested    = new AtomicBoolean(false);
+	private static final AtomicInteger total        = new AtomicInteger();
+	private static final AtomicInteger compiled     = new AtomicInteger();
+	private static final AtomicInteger failed       = new AtomicInteger();
+	private static volatile String state            = "idle";
+	private static volatile long startTime          = 0L;
+	private static volatile long endTime            = 0L;
+
+	/**
+	 * Starts a warm-up run in the background. If a run is already in
+	 * progress, another run is started when it is finished, because the
+	 * schema may have changed in the meantime.
+	 */
+	public static void start() {
+
+		requested.set(true);
+
+		if (running.compareAndSet(false, true)) {
+
+			final Thread worker = new Thread(ScriptWarmup::runRequested, "ScriptWarmup");
+
+			worker.setDaemon(true);
+			worker.start();
+		}
+	}
+
+	/**
+	 * Precompiles all schema scripts in the current thread.
+	 */
+	public static void run() {
+
+		startTime = System.currentTimeMillis();
+		endTime   = 0L;
+		state     = "collecting";
+
+		compiled.set(0);
+		failed.set(0);
+		total.set(0);
+
+		try {
+
+			final List<String[]> scripts = collectScripts();
+
+			total.set(scripts.size());
+			state = "compiling";
+
+			for (final String[] script : scripts) {
+
+				final String name   = script[0];
+				final String source = script[1];
+
+				try {
+
+					Scripting.precompile(source, name);
+					compiled.incrementAndGet();
+
+				} catch (Throwable t) {
+
+					// the error will be reported when the script is run
+					logger.debug("Unable to precompile {}: {}", name, t.getMessage());
+					failed.incrementAndGet();
+				}
+			}
+
+			state = "done";
+
+			logger.info("Precompiled {} scripts in {} ms, {} failed", compiled.get(), System.currentTimeMillis() - startTime, failed.get());
+
+		} catch (Throwable t) {
+
+			logger.warn("Unable to precompile schema scripts: {}", t.getMessage());
+			state = "failed";
+
+		} finally {
+
+			endTime = System.currentTimeMillis();
+		}
+	}
+
+	public static Map<String, Object> getStatus() {
+
+		final Map<String, Object> data = new LinkedHashMap<>();
+		final long end                 = endTime > 0L ? endTime : System.currentTimeMillis();
+
+		data.put("state",          state);
+		data.put("total",          total.get());
+		data.put("compiled",       compiled.get());
+		data.put("failed",         failed.get());
+		data.put("durationMillis", startTime > 0L ? end - startTime : 0L);
+
+		return data;
+	}
+
+	// ----- private methods -----
+	private static void runRequested() {
+
+		do {
+
+			try {
+
+				while (requested.getAndSet(false)) {
+					run();
+				}
+
+			} finally {
+
+				running.set(false);
+			}
+
+			// a run may have been requested after the loop has ended
+		} while (requested.get() && running.compareAndSet(false, true));
+	}
+
+	/**
+	 * Collects the names and expressions of all schema scripts, in the
+	 * same form in which they are evaluated at runtime.
+	 */
+	private static List<String[]> collectScripts() throws FrameworkException {
+
+		final List<String[]> scripts = new LinkedList<>();
+		final App app                = StructrApp.getInstance();
+
+		try (final Tx tx = app.tx()) {
+
+			for (final SchemaMethod method : app.nodeQuery(SchemaMethod.class).getAsList()) {
+
+				final String source = method.getProperty(SchemaMethod.source);
+				if (StringUtils.isNotBlank(source) && !"java".equals(method.getProperty(SchemaMethod.codeType))) {
+
+					// global methods are called with their untrimmed source, see Actions.callWithSecurityContext
+					final boolean isGlobal = method.getProperty(SchemaMethod.schemaNode) == null;
+
+					scripts.add(new String[] { method.getName(), "${" + (isGlobal ? source : source.trim()) + "}" });
+				}
+			}
+
+			for (final SchemaProperty property : app.nodeQuery(SchemaProperty.class).getAsList()) {
+
+				final String readFunction  = property.getReadFunction();
+				final String writeFunction = property.getWriteFunction();
+
+				if (StringUtils.isNotBlank(readFunction)) {
+					scripts.add(new String[] { "getProperty(" + property.getName() + ")", "${" + readFunction + "}" });
+				}
+
+				if (StringUtils.isNotBlank(writeFunction)) {
+					scripts.add(new String[] { "setProperty(" + property.getName() + ")", "${" + writeFunction + "}" });
+				}
+			}
+
+			tx.success();
+		}
+
+		return scripts;
+	}
+}
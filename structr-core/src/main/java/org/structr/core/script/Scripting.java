@@ -19,24 +19,23 @@
 package org.structr.core.script;
 
 import java.io.StringWriter;
-import java.util.Collections;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.script.*;
-import org.apache.commons.collections4.map.LRUMap;
 import org.apache.commons.lang3.StringUtils;
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.ContextFactory;
 import org.mozilla.javascript.Script;
 import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
 import org.mozilla.javascript.Undefined;
 import org.renjin.script.RenjinScriptEngine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.common.error.UnlicensedScriptException;
@@ -53,9 +52,11 @@ import org.structr.schema.parser.DatePropertyParser;
  */
 public class Scripting {
 
-	private static final Logger logger                       = LoggerFactory.getLogger(Scripting.class.getName());
-	private static final Pattern ScriptEngineExpression      = Pattern.compile("^\\$\\{(\\w+)\\{(.*)\\}\\}$", Pattern.DOTALL);
-	private static final Map<String, Script> compiledScripts = Collections.synchronizedMap(new LRUMap<>(10000));
+	private static final Logger logger                   = LoggerFactory.getLogger(Scripting.class.getName());
+	private static final Pattern ScriptEngineExpression  = Pattern.compile("^\\$\\{(\\w+)\\{(.*)\\}\\}$", Pattern.DOTALL);
+	private static final ThreadLocal<Context> contexts   = new ThreadLocal<>();
+	private static final ContextFactory contextFactory   = new ContextFactory();
+	private static volatile ScriptableObject sharedScope = null;
 
 	public static String replaceVariables(final ActionContext actionContext, final GraphObject entity, final Object rawValue) throws FrameworkException {
 
@@ -221,6 +222,63 @@ public class Scripting {
 		}
 	}
 
+	/**
+	 * Compiles the given script into the script cache (or the expression cache
+	 * for StructrScript) without evaluating it, using the same parsing
+	 * conventions as {@link #evaluate}. Other script engines are ignored.
+	 *
+	 * @param input the scripting input
+	 * @param methodName the name of the method for error logging
+	 *
+	 * @throws FrameworkException
+	 */
+	public static void precompile(final String input, final String methodName) throws FrameworkException {
+
+		final String expression = input.trim();
+		boolean isJavascript    = expression.startsWith("${{") && expression.endsWith("}}");
+		final int prefixOffset  = isJavascript ? 1 : 0;
+		String source           = expression.substring(2 + prefixOffset, expression.length() - (1 + prefixOffset));
+
+		if (source.length() <= 0) {
+			return;
+		}
+
+		if (!isJavascript) {
+
+			final Matcher matcher = ScriptEngineExpression.matcher(expression);
+			if (matcher.matches()) {
+
+				final String engine = matcher.group(1);
+
+				if (StringUtils.isNotBlank(engine) && !"JavaScript".equals(engine)) {
+					return;
+				}
+
+				isJavascript = true;
+				source       = matcher.group(2);
+			}
+		}
+
+		if (isJavascript) {
+
+			final Context scriptingContext = Scripting.setupJavascriptContext();
+			final String snippetSource     = source;
+
+			try {
+
+				ScriptCache.getOrCompile(scriptingContext, ScriptCache.key(snippetSource, true), () -> embedInFunction(null, snippetSource), methodName + " [precompiled], line ", 1);
+
+			} finally {
+
+				Scripting.destroyJavascriptContext();
+			}
+
+		} else {
+
+			Functions.precompile(source);
+		}
+	}
+
 	public static Object evaluateJavascript(final ActionContext actionContext, final GraphObject entity, final Snippet snippet) throws FrameworkException {
 
 		final String entityName        = entity != null ? entity.getProperty(AbstractNode.name) : null;
@@ -229,7 +287,7 @@ public class Scripting {
 
 		try {
 
-			final Scriptable scope = scriptingContext.initStandardObjects();
+			final Scriptable scope = Scripting.createJavascriptScope(scriptingContext);
 			final StructrScriptable scriptable = new StructrScriptable(actionContext, entity, scriptingContext);
 
 			scriptable.setParentScope(scope);
@@ -244,10 +302,11 @@ public class Scripting {
 			Script compiledScript = snippet.getCompiledScript();
 			if (compiledScript == null) {
 
-				final String sourceLocation     = snippet.getName() + " [" + entityDescription + "], line ";
-				final String embeddedSourceCode = embedInFunction(actionContext, snippet.getSource());
+				final String sourceLocation = snippet.getName() + " [" + entityDescription + "], line ";
+				final String source         = snippet.getSource();
 
-				compiledScript = compileOrGetCached(scriptingContext, embeddedSourceCode, sourceLocation, 1);
+				// the cache key is computed from the method body, so the embedding is only built for compilation
+				compiledScript = ScriptCache.getOrCompile(scriptingContext, ScriptCache.key(source, true), () -> embedInFunction(actionContext, source), sourceLocation, 1);
 			}
 
 			Object extractedValue = compiledScript.exec(scriptingContext, scope);
@@ -360,17 +419,54 @@ public class Scripting {
 
 	public static Context setupJavascriptContext() {
 
-		final Context scriptingContext = new ContextFactory().enterContext();
+		// contexts are reused by the thread that created them
+		Context scriptingContext = contexts.get();
+		if (scriptingContext != null) {
+
+			scriptingContext = contextFactory.enterContext(scriptingContext);
+
+		} else {
+
+			scriptingContext = contextFactory.enterContext();
+			contexts.set(scriptingContext);
+		}
 
 		// enable some optimizations..
 		scriptingContext.setLanguageVersion(Context.VERSION_ES6);
+		scriptingContext.setOptimizationLevel(Math.max(-1, Math.min(9, Settings.JavaScriptOptLevel.getValue())));
 		scriptingContext.setInstructionObserverThreshold(0);
 		scriptingContext.setGenerateObserverCount(false);
-		scriptingContext.setGeneratingDebug(true);
+		scriptingContext.setGeneratingDebug(Settings.JavaScriptDebugInfo.getValue());
 
 		return scriptingContext;
 	}
 
+	/**
+	 * Creates the top-level scope for a single script evaluation. In shared
+	 * scope mode, this is a thin scope on top of sealed standard objects that
+	 * are shared by all threads, so the standard objects do not need to be
+	 * initialized for every evaluation.
+	 *
+	 * @param context the current context
+	 *
+	 * @return the new scope
+	 */
+	public static Scriptable createJavascriptScope(final Context context) {
+
+		if (Settings.JavaScriptSharedScope.getValue()) {
+
+			final ScriptableObject shared = getSharedScope(context);
+			final Scriptable scope        = context.newObject(shared);
+
+			scope.setPrototype(shared);
+			scope.setParentScope(null);
+
+			return scope;
+		}
+
+		return context.initStandardObjects();
+	}
+
 	public static void destroyJavascriptContext() {
 		Context.exit();
 	}
@@ -388,18 +484,30 @@ public class Scripting {
 	}
 
 	public static Script compileOrGetCached(final Context context, final String source, final String sourceName, final int lineNo) {
+		return ScriptCache.getOrCompile(context, ScriptCache.key(source, false), () -> source, sourceName, lineNo);
+	}
 
-		synchronized (compiledScripts) {
+	private static ScriptableObject getSharedScope(final Context context) {
 
-			Script script = compiledScripts.get(source);
-			if (script == null) {
+		if (sharedScope == null) {
 
-				script = context.compileString(source, sourceName, lineNo, null);
-				compiledScripts.put(source, script);
-			}
+			synchronized (Scripting.class) {
+
+				if (sharedScope == null) {
+
+					final ScriptableObject scope = context.initStandardObjects(null, true);
+
+					// force lazily loaded objects to be initialized before the scope is sealed
+					context.evaluateString(scope, "RegExp; getClass; java; Packages; JavaAdapter;", "shared scope", 1, null);
 
-			return script;
+					scope.sealObject();
+
+					sharedScope = scope;
+				}
+			}
 		}
+
+		return sharedScope;
 	}
 
 	// this is only public to be testable :(
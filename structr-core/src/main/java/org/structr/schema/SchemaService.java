@@ -44,6 +44,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -69,6 +70,7 @@ import org.structr.core.graph.NodeInterface;
 import org.structr.core.graph.Tx;
 import org.structr.core.graph.search.SearchCommand;
 import org.structr.core.property.PropertyKey;
+import org.structr.core.script.ScriptWarmup;
 import org.structr.schema.compiler.BlacklistSchemaNodeWhenMissingPackage;
 import org.structr.schema.compiler.BlacklistUnlicensedTypes;
 import org.structr.schema.compiler.ExtendNotionPropertyWithUuid;
@@ -90,6 +92,7 @@ public class SchemaService implements Service {
 	private static final JsonSchema dynamicSchema                 = StructrSchema.newInstance(DynamicSchemaRootURI);
 	private static final AtomicBoolean compiling                  = new AtomicBoolean(false);
 	private static final AtomicBoolean updating                   = new AtomicBoolean(false);
+	private static final AtomicLong schemaVersion                 = new AtomicLong(0L);
 	private static final Set<String> blacklist                    = new LinkedHashSet<>();
 	private static GraphQLSchema graphQLSchema                    = null;
 
@@ -114,6 +117,16 @@ public class SchemaService implements Service {
 		return dynamicSchema;
 	}
 
+	/**
+	 * Returns a number that changes every time the schema was reloaded,
+	 * so that callers can invalidate data derived from types and views.
+	 *
+	 * @return the schema version
+	 */
+	public static long getSchemaVersion() {
+		return schemaVersion.get();
+	}
+
 	public static synchronized GraphQLSchema getGraphQLSchema() {
 		return graphQLSchema;
 	}
@@ -360,12 +373,20 @@ public class SchemaService implements Service {
 
 				logger.info("Schema build took a total of {} ms", System.currentTimeMillis() - t0);
 
+				// invalidate everything that was derived from the previous schema
+				schemaVersion.incrementAndGet();
+
 				// compiling done
 				compiling.set(false);
 
 			}
 		}
 
+		// compile scripts of the new schema ahead of their first use
+		if (success && !Services.isTesting()) {
+			ScriptWarmup.start();
+		}
+
 		return success;
 	}
 
@@ -63,6 +63,7 @@ public class ActionContext {
 	private boolean javaScriptContext              = false;
 	private ContextStore temporaryContextStore     = new ContextStore();
 	private boolean disableVerboseExceptionLogging = false;
+	private int batchSize                          = -1;
 
 	public ActionContext(final SecurityContext securityContext) {
 		this(securityContext, null);
@@ -108,6 +109,14 @@ public class ActionContext {
 		return this.disableVerboseExceptionLogging;
 	}
 
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public void setBatchSize(final int batchSize) {
+		this.batchSize = batchSize;
+	}
+
 	public Object getConstant(final String name) {
 		return this.temporaryContextStore.getConstant(name);
 	}
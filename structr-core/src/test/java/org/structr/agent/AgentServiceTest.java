@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.agent;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+import org.junit.Test;
+import org.structr.api.config.Settings;
+import org.structr.common.StructrTest;
+import org.structr.cron.CronTestTask;
+
+/**
+ *
+ */
+public class AgentServiceTest extends StructrTest {
+
+	@Test
+	public void testTasksAreProcessed() throws Exception {
+
+		final AgentService agentService = new AgentService();
+
+		agentService.startService();
+
+		try {
+
+			for (int i=0; i<50; i++) {
+				assertTrue("Task should be accepted", agentService.processTask(new CronTestTask("test", null, null)));
+			}
+
+			assertTrue("All tasks should be processed", waitForCompletion(agentService, 50));
+			assertEquals("No tasks should be pending", 0, agentService.getStatistics().get("pending"));
+			assertTrue("Task queue should be empty", agentService.getTaskQueue().isEmpty());
+
+		} finally {
+
+			agentService.stopService();
+		}
+	}
+
+	@Test
+	public void testFullQueueRejectsTasks() throws Exception {
+
+		final AgentService agentService = new AgentService();
+		final int queueSize             = Settings.AgentQueueSize.getValue();
+
+		Settings.AgentQueueSize.setValue(5);
+
+		agentService.startService();
+
+		try {
+
+			// delayed tasks occupy the queue until they are due
+			for (int i=0; i<5; i++) {
+				assertTrue("Task should be accepted", agentService.processTask(delayed(60000L)));
+			}
+
+			assertFalse("Task should be rejected when the queue is full", agentService.processTask(delayed(0L)));
+
+			final long start = System.currentTimeMillis();
+
+			assertFalse("Task should be rejected after the timeout", agentService.processTask(delayed(0L), 200, TimeUnit.MILLISECONDS));
+			assertTrue("Caller should wait for the timeout", System.currentTimeMillis() - start >= 200);
+
+			assertEquals("Invalid rejected task count", 2L, agentService.getStatistics().get("rejected"));
+
+		} finally {
+
+			agentService.stopService();
+
+			Settings.AgentQueueSize.setValue(queueSize);
+		}
+	}
+
+	// ----- private methods -----
+	private CronTestTask delayed(final long delay) {
+
+		final CronTestTask task = new CronTestTask("test", null, null);
+
+		task.setDelay(delay);
+
+		return task;
+	}
+
+	private boolean waitForCompletion(final AgentService agentService, final long count) throws InterruptedException {
+
+		for (int i=0; i<100; i++) {
+
+			final Map<String, Object> types = (Map<String, Object>)agentService.getStatistics().get("types");
+			final Map<String, Object> stats = (Map<String, Object>)types.get(CronTestTask.class.getSimpleName());
+
+			if (stats != null && count == (Long)stats.get("completed")) {
+				return true;
+			}
+
+			Thread.sleep(100);
+		}
+
+		return false;
+	}
+}
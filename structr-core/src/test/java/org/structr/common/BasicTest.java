@@ -38,8 +38,8 @@ import org.slf4j.LoggerFactory;
 import org.structr.api.NotFoundException;
 import org.structr.api.NotInTransactionException;
 import org.structr.api.graph.RelationshipType;
-import org.structr.api.util.FixedSizeCache;
 import org.structr.api.util.Iterables;
+import org.structr.api.util.SegmentedFixedSizeCache;
 import org.structr.bolt.wrapper.NodeWrapper;
 import org.structr.bolt.wrapper.RelationshipWrapper;
 import org.structr.common.error.FrameworkException;
@@ -2013,7 +2013,7 @@ public class BasicTest extends StructrTest {
 			System.out.println("Comparing relationships with cache...");
 			final List<RelationshipInterface> rels2 = app.cypher("MATCH ()-[r]-() RETURN DISTINCT r ORDER BY id(r)", Collections.EMPTY_MAP);
 
-			FixedSizeCache<Long, RelationshipWrapper> relCache = RelationshipWrapper.getCache();
+			SegmentedFixedSizeCache<Long, RelationshipWrapper> relCache = RelationshipWrapper.getCache();
 
 			for (final RelationshipInterface rel : rels2) {
 
@@ -2035,7 +2035,7 @@ public class BasicTest extends StructrTest {
 			System.out.println("Comparing nodes with cache...");
 			final List<NodeInterface> nodes = app.cypher("MATCH (n) RETURN DISTINCT n ORDER BY id(n)", Collections.EMPTY_MAP);
 
-			FixedSizeCache<Long, NodeWrapper> nodeCache = NodeWrapper.getCache();
+			SegmentedFixedSizeCache<Long, NodeWrapper> nodeCache = NodeWrapper.getCache();
 
 			for (final NodeInterface node : nodes) {
 
@@ -21,6 +21,7 @@ package org.structr.common;
 import java.util.*;
 import org.apache.commons.lang3.StringUtils;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import org.junit.Test;
@@ -28,6 +29,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.search.ComparisonQuery;
 import org.structr.api.search.Occurrence;
+import org.structr.api.search.PagingCursor;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
 import org.structr.core.Result;
@@ -1206,6 +1208,50 @@ public class SearchAndSortingTest extends StructrTest {
 
 	}
 
+	@Test
+	public void test04SearchByLocationAtBoundingBoxEdge() {
+
+		try {
+
+			final PropertyKey lat   = TestSeven.latitude;
+			final PropertyKey lon   = TestSeven.longitude;
+			final Class type        = TestSeven.class;
+			final PropertyMap east  = new PropertyMap();
+			final PropertyMap west  = new PropertyMap();
+
+			// just inside a 500 km radius around (60.0, 10.0), at the widest
+			// longitude extent of the circle, about 9.01 degrees from the center
+			east.put(lat, 60.30714d);
+			east.put(lon, 19.005d);
+			east.put(AbstractNode.name, "east");
+
+			west.put(lat, 60.30714d);
+			west.put(lon, 0.995d);
+			west.put(AbstractNode.name, "west");
+
+			createTestNode(type, east);
+			createTestNode(type, west);
+
+			try (final Tx tx = app.tx()) {
+
+				Result result = app.nodeQuery(type).location(60.0, 10.0, 500.0).includeHidden().getResult();
+
+				assertEquals("Points at the east/west edge of the search radius should be found", 2, result.size());
+
+				tx.success();
+			}
+
+		} catch (FrameworkException ex) {
+
+			logger.warn("", ex);
+
+			logger.error(ex.toString());
+			fail("Unexpected exception");
+
+		}
+
+	}
+
 	@Test
 	public void test05SpatialRollback() {
 
@@ -1958,6 +2004,131 @@ public class SearchAndSortingTest extends StructrTest {
 		}
 	}
 
+	@Test
+	public void test09CursorPaging() {
+
+		try {
+
+			final List<TestOne> nodes = createTestNodes(TestOne.class, 25);
+
+			try (final Tx tx = app.tx()) {
+
+				int i = 10;
+
+				for (final TestOne node : nodes) {
+
+					node.setProperty(AbstractNode.name, "TestOne-" + i);
+
+					// duplicate and null values to test the tiebreaker
+					if (i < 30) {
+						node.setProperty(TestOne.anInt, i % 4);
+					}
+
+					i++;
+				}
+
+				tx.success();
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				for (final PropertyKey sortKey : new PropertyKey[] { AbstractNode.name, TestOne.anInt, null }) {
+
+					for (final boolean sortDesc : new boolean[] { false, true }) {
+
+						final List<TestOne> expected = getSortedTestOnes(sortKey, sortDesc, 1000, null).getResults();
+						final List<TestOne> actual   = new LinkedList<>();
+						String cursor                = null;
+						int pageCount                = 0;
+
+						do {
+
+							final Result<TestOne> page = getSortedTestOnes(sortKey, sortDesc, 7, cursor);
+
+							actual.addAll(page.getResults());
+							cursor = page.getNextCursor();
+
+							assertTrue("Cursor paging does not terminate", ++pageCount < 10);
+
+						} while (cursor != null);
+
+						assertEquals("Invalid cursor paging result size", 25, actual.size());
+						assertEquals("Invalid cursor paging result for sort key " + sortKey + ", descending: " + sortDesc, expected, actual);
+					}
+				}
+
+				tx.success();
+			}
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+	}
+
+	@Test
+	public void test10CursorIsIgnoredForComparatorQueries() {
+
+		try {
+
+			final List<TestOne> nodes = createTestNodes(TestOne.class, 10);
+
+			try (final Tx tx = app.tx()) {
+
+				int i = 10;
+
+				for (final TestOne node : nodes) {
+					node.setProperty(AbstractNode.name, "TestOne-" + i++);
+				}
+
+				tx.success();
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				final Comparator<TestOne> comparator = (a, b) -> a.getName().compareTo(b.getName());
+				final String cursor                  = getSortedTestOnes(AbstractNode.name, false, 5, null).getNextCursor();
+
+				assertNotNull("Paged query should return a cursor", cursor);
+
+				final Query<TestOne> query = app.nodeQuery(TestOne.class).comparator(comparator).pageSize(5).page(1);
+
+				query.getQueryContext().cursor(PagingCursor.decode(cursor));
+
+				final List<TestOne> expected = app.nodeQuery(TestOne.class).comparator(comparator).pageSize(5).page(1).getAsList();
+				final List<TestOne> actual   = query.getAsList();
+
+				assertEquals("A cursor from the database order must not be applied to a comparator query", expected, actual);
+				assertEquals("Invalid comparator query result", "TestOne-10", actual.get(0).getName());
+
+				tx.success();
+			}
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+	}
+
+	private Result<TestOne> getSortedTestOnes(final PropertyKey sortKey, final boolean sortDesc, final int pageSize, final String cursor) throws FrameworkException {
+
+		final Query<TestOne> query = app.nodeQuery(TestOne.class).pageSize(pageSize).page(1);
+
+		if (sortKey != null) {
+
+			query.sort(sortKey).order(sortDesc);
+		}
+
+		if (cursor != null) {
+
+			query.getQueryContext().cursor(PagingCursor.decode(cursor));
+		}
+
+		return query.getResult();
+	}
+
 	@Test
 	public void testManyToManyReverseNodeSearch() {
 
@@ -2171,6 +2342,64 @@ public class SearchAndSortingTest extends StructrTest {
 		}
 	}
 
+	@Test
+	public void testBlankSearchWithPaging() {
+
+		try {
+
+			final List<TestOne> nodes = createTestNodes(TestOne.class, 20);
+
+			try (final Tx tx = app.tx()) {
+
+				int i = 10;
+
+				for (final TestOne node : nodes) {
+
+					node.setProperty(AbstractNode.name, "TestOne-" + i);
+
+					switch (i % 4) {
+
+						case 0: node.setProperty(TestOne.aString, "");      break;
+						case 1: node.setProperty(TestOne.aString, "  ");    break;
+						case 2: node.setProperty(TestOne.aString, "value"); break;
+					}
+
+					i++;
+				}
+
+				tx.success();
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				final List<TestOne> all = app.nodeQuery(TestOne.class).blank(TestOne.aString).sort(AbstractNode.name).getAsList();
+
+				assertEquals("Invalid blank search result size", 15, all.size());
+
+				for (final TestOne node : all) {
+					assertTrue("Invalid blank search result", StringUtils.isBlank(node.getProperty(TestOne.aString)));
+				}
+
+				final Result<TestOne> page = app.nodeQuery(TestOne.class).blank(TestOne.aString).sort(AbstractNode.name).page(2).pageSize(4).getResult();
+
+				assertEquals("Invalid blank search page", all.subList(4, 8), page.getResults());
+
+				final Result<TestOne> notBlank = app.nodeQuery(TestOne.class).notBlank(TestOne.aString).sort(AbstractNode.name).page(1).pageSize(2).getResult();
+
+				assertEquals("Invalid not blank search page size", 2, notBlank.size());
+				assertEquals("Invalid not blank search result", "TestOne-10", notBlank.get(0).getProperty(AbstractNode.name));
+				assertEquals("Invalid not blank search result", "TestOne-12", notBlank.get(1).getProperty(AbstractNode.name));
+
+				tx.success();
+			}
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+	}
+
 	// ----- private methods -----
 	private void testPaging(final Class type, final int pageSize, final int page, final int number, final int offset, final boolean includeHidden, final boolean publicOnly, final PropertyKey sortKey, final boolean sortDesc) throws FrameworkException {
 
@@ -19,6 +19,7 @@
 package org.structr.common;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
@@ -34,6 +35,7 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.config.Settings;
+import org.structr.bolt.BoltDatabaseService;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
@@ -377,6 +379,45 @@ public class SystemTest extends StructrTest {
 		}
 	}
 
+	@Test
+	public void testFailedPipelinedWriteIsReported() {
+
+		Settings.PipelinedWrites.setValue(true);
+
+		try {
+
+			try (final Tx tx = app.tx()) {
+
+				final TestOne testNode = createTestNode(TestOne.class);
+				testNode.setProperty(TestOne.aString, "pipelined");
+
+				// queue a write that fails on the server when the pipeline is completed
+				((BoltDatabaseService)app.getDatabaseService()).getCurrentTransaction().setAsync("UNWIND [0] AS x WITH x MATCH (n) WHERE ID(n) = x / x RETURN n", Collections.EMPTY_MAP);
+
+				tx.success();
+
+				fail("A failed pipelined write should make the commit fail");
+
+			} catch (FrameworkException | RuntimeException expected) { }
+
+			try (final Tx tx = app.tx()) {
+
+				assertEquals("Writes of a failed transaction should be rolled back", 0, app.nodeQuery(TestOne.class).getAsList().size());
+
+				tx.success();
+			}
+
+		} catch (FrameworkException ex) {
+
+			logger.warn("", ex);
+			fail("Unexpected exception");
+
+		} finally {
+
+			Settings.PipelinedWrites.setValue(false);
+		}
+	}
+
 	@Test
 	public void testConstraintsConcurrently() {
 
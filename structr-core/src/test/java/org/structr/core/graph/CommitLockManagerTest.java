@@ -0,0 +1,132 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ */
+public class CommitLockManagerTest {
+
+	@Test
+	public void testDisjointKeysDoNotBlock() throws InterruptedException {
+
+		final CommitLockManager manager = new CommitLockManager();
+		final Set<String> keys1         = set("File.name");
+		final Set<String> keys2         = set("User.eMail");
+		final CountDownLatch done       = new CountDownLatch(1);
+
+		manager.acquire(keys1);
+
+		final Thread other = new Thread(() -> {
+
+			try {
+
+				manager.acquire(keys2);
+				manager.release(keys2);
+
+				done.countDown();
+
+			} catch (InterruptedException iex) {}
+		});
+
+		other.start();
+
+		assertTrue("Disjoint keys must not block each other", done.await(10, TimeUnit.SECONDS));
+
+		manager.release(keys1);
+	}
+
+	@Test
+	public void testOpposingOrderDoesNotDeadlock() throws InterruptedException {
+
+		final CommitLockManager manager = new CommitLockManager();
+		final Set<String> keys1         = set("A.a", "B.b");
+		final Set<String> keys2         = set("B.b", "A.a");
+		final AtomicBoolean failed      = new AtomicBoolean(false);
+		final Thread[] threads          = new Thread[4];
+
+		for (int i=0; i<threads.length; i++) {
+
+			final Set<String> keys = (i % 2 == 0) ? keys1 : keys2;
+
+			threads[i] = new Thread(() -> {
+
+				try {
+
+					for (int j=0; j<1000; j++) {
+
+						manager.acquire(keys);
+						manager.release(keys);
+					}
+
+				} catch (InterruptedException iex) {
+					failed.set(true);
+				}
+			});
+
+			threads[i].start();
+		}
+
+		for (final Thread thread : threads) {
+
+			thread.join(TimeUnit.SECONDS.toMillis(30));
+			assertFalse("Lock acquisition must not deadlock", thread.isAlive());
+		}
+
+		assertFalse(failed.get());
+
+		final Map<String, Object> stats = (Map<String, Object>)manager.getStatistics().get("A.a");
+
+		assertEquals("Invalid number of lock acquisitions", 4000L, stats.get("acquisitions"));
+	}
+
+	@Test
+	public void testReleaseWithoutAcquire() throws InterruptedException {
+
+		final CommitLockManager manager = new CommitLockManager();
+		final Set<String> keys          = set("File.name");
+
+		// must not fail
+		manager.release(keys);
+		manager.release(null);
+
+		manager.acquire(keys);
+		manager.release(keys);
+		manager.release(keys);
+
+		assertEquals("Invalid number of lock acquisitions", 1L, ((Map<String, Object>)manager.getStatistics().get("File.name")).get("acquisitions"));
+	}
+
+	// ----- private methods -----
+	private Set<String> set(final String... keys) {
+		return new LinkedHashSet<>(Arrays.asList(keys));
+	}
+}
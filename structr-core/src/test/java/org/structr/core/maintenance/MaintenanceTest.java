@@ -26,6 +26,7 @@ import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -46,10 +47,12 @@ import org.structr.core.Result;
 import org.structr.core.entity.Group;
 import org.structr.core.entity.TestEleven;
 import org.structr.core.entity.TestOne;
+import org.structr.core.entity.TestSix;
 import org.structr.core.entity.TestTwo;
 import org.structr.core.graph.BulkCreateLabelsCommand;
 import org.structr.core.graph.BulkRebuildIndexCommand;
 import org.structr.core.graph.BulkSetNodePropertiesCommand;
+import org.structr.core.graph.NodeAttribute;
 import org.structr.core.graph.SyncCommand;
 import org.structr.core.graph.Tx;
 
@@ -168,6 +171,61 @@ public class MaintenanceTest extends StructrTest {
 		}
 	}
 
+	@Test
+	public void testSyncCommandBulkImport() {
+
+		try {
+			// create test nodes with relationships
+			final List<TestOne> testOnes = createTestNodes(TestOne.class, 100);
+
+			try (final Tx tx = app.tx()) {
+
+				for (int i=0; i<10; i++) {
+
+					createTestNode(TestSix.class, new NodeAttribute<>(TestSix.manyToManyTestOnes, testOnes.subList(i * 10, i * 10 + 5)));
+				}
+
+				tx.success();
+			}
+
+			// test export
+			app.command(SyncCommand.class).execute(toMap("mode", "export", "file", EXPORT_FILENAME));
+
+			final Path exportFile = Paths.get(EXPORT_FILENAME);
+
+ 			assertTrue("Export file doesn't exist!", Files.exists(exportFile));
+
+			cleanDatabase();
+
+			final Map<String, Object> attributes = toMap("mode", "import", "file", EXPORT_FILENAME, "batchSize", 7L);
+
+			attributes.put("bulk", "true");
+
+			// test import with batches that contain nodes and relationships
+			app.command(SyncCommand.class).execute(attributes);
+
+			try (final Tx tx = app.tx()) {
+
+				assertEquals(100, app.nodeQuery(TestOne.class).getResult().size());
+
+				final List<TestSix> testSixs = app.nodeQuery(TestSix.class).getAsList();
+
+				assertEquals(10, testSixs.size());
+
+				for (final TestSix testSix : testSixs) {
+					assertEquals("Invalid number of relationships after bulk import", 5, testSix.getProperty(TestSix.manyToManyTestOnes).size());
+				}
+			}
+
+			// clean-up after test
+			Files.delete(exportFile);
+
+		} catch (Exception ex) {
+			logger.warn("", ex);
+			fail("Unexpected exception.");
+		}
+	}
+
 	@Test
 	public void testSyncCommandInheritance() {
 
@@ -66,6 +66,7 @@ import org.structr.core.entity.TestThree;
 import org.structr.core.entity.TestTwo;
 import org.structr.core.function.DateFormatFunction;
 import org.structr.core.function.FindFunction;
+import org.structr.core.function.Functions;
 import org.structr.core.function.NumberFormatFunction;
 import org.structr.core.function.ParseDateFunction;
 import org.structr.core.function.RoundFunction;
@@ -2493,6 +2494,62 @@ public class ScriptingTest extends StructrTest {
 		}
 	}
 
+	@Test
+	public void testCachedExpressions() {
+
+		final String script = "${if(empty(this.name), 'unnamed', concat(this.name, '!'))}";
+
+		try (final Tx tx = app.tx()) {
+
+			final TestOne one       = app.create(TestOne.class, "one");
+			final TestOne two       = app.create(TestOne.class, "two");
+			final TestOne unnamed   = app.create(TestOne.class);
+			final ActionContext ctx = new ActionContext(securityContext, null);
+
+			assertEquals("Invalid StructrScript evaluation result", "one!",    Scripting.replaceVariables(ctx, one, script));
+
+			final Object parseCount = Functions.getStatistics().get("parseCount");
+
+			// the parsed expression must be reused for different entities
+			assertEquals("Invalid StructrScript evaluation result", "two!",    Scripting.replaceVariables(ctx, two, script));
+			assertEquals("Invalid StructrScript evaluation result", "unnamed", Scripting.replaceVariables(ctx, unnamed, script));
+			assertEquals("Invalid StructrScript evaluation result", "one!",    Scripting.replaceVariables(ctx, one, script));
+
+			assertEquals("Cached StructrScript expression should not be parsed again", parseCount, Functions.getStatistics().get("parseCount"));
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception.");
+		}
+	}
+
+	@Test
+	public void testJavascriptScopeIsolation() {
+
+		try (final Tx tx = app.tx()) {
+
+			final ActionContext ctx = new ActionContext(securityContext, null);
+
+			// global variables must not leak into subsequent evaluations
+			assertEquals("Invalid JavaScript evaluation result", "leaked",    Scripting.evaluate(ctx, null, "${{ leakedGlobal = 'leaked'; return leakedGlobal; }}", "test"));
+			assertEquals("Global variable leaked into the next evaluation", "undefined", Scripting.evaluate(ctx, null, "${{ return typeof leakedGlobal; }}", "test"));
+
+			// standard objects must still be available
+			assertEquals("Invalid JavaScript evaluation result", "a,b,c", Scripting.evaluate(ctx, null, "${{ return JSON.parse('[\"a\",\"b\",\"c\"]').join(); }}", "test"));
+			assertEquals("Invalid JavaScript evaluation result", "2018",  Scripting.evaluate(ctx, null, "${{ return new Date(Date.UTC(2018, 1, 1)).getUTCFullYear().toFixed(0); }}", "test"));
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception.");
+		}
+	}
+
 	@Test
 	public void testAfterCreateMethod() {
 
@@ -2611,4 +2668,70 @@ public class ScriptingTest extends StructrTest {
 			fail("Unexpected exception.");
 		}
 	}
+
+	@Test
+	public void testScriptWarmup() {
+
+		// the base schema may contain scripts as well
+		ScriptWarmup.run();
+
+		final Map<String, Object> initialStatus = ScriptWarmup.getStatus();
+		final int initialCompiled               = (Integer)initialStatus.get("compiled");
+		final int initialFailed                 = (Integer)initialStatus.get("failed");
+
+		try (final Tx tx = app.tx()) {
+
+			app.create(SchemaMethod.class,
+				new NodeAttribute<>(SchemaMethod.name,   "warmupJavaScript"),
+				new NodeAttribute<>(SchemaMethod.source, "{ return 'warm'; }")
+			);
+
+			app.create(SchemaMethod.class,
+				new NodeAttribute<>(SchemaMethod.name,   "warmupStructrScript"),
+				new NodeAttribute<>(SchemaMethod.source, "concat('warm', 'er')")
+			);
+
+			app.create(SchemaMethod.class,
+				new NodeAttribute<>(SchemaMethod.name,   "warmupBroken"),
+				new NodeAttribute<>(SchemaMethod.source, "{ return 'broken' +; }")
+			);
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception.");
+		}
+
+		ScriptCache.clear();
+		ScriptWarmup.run();
+
+		final Map<String, Object> status = ScriptWarmup.getStatus();
+
+		assertEquals("Invalid script warmup state",           "done",              status.get("state"));
+		assertEquals("Invalid number of precompiled scripts", initialCompiled + 2, status.get("compiled"));
+		assertEquals("Invalid number of failed scripts",      initialFailed + 1,   status.get("failed"));
+		assertTrue("Precompiled script should be cached",     ScriptCache.contains(ScriptCache.key(" return 'warm'; ", true)));
+
+		final Object compileCount = ScriptCache.getStatistics().get("compileCount");
+
+		try (final Tx tx = app.tx()) {
+
+			final ActionContext ctx = new ActionContext(securityContext, null);
+
+			assertEquals("Invalid global schema method result", "warm",   Scripting.evaluate(ctx, null, "${{ return Structr.call('warmupJavaScript'); }}", "test"));
+			assertEquals("Invalid global schema method result", "warmer", Scripting.evaluate(ctx, null, "${call('warmupStructrScript')}", "test"));
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception.");
+		}
+
+		// only the calling script must have been compiled, not the precompiled method
+		assertEquals("Precompiled script should not be compiled again", ((Long)compileCount) + 1L, ScriptCache.getStatistics().get("compileCount"));
+	}
 }
@@ -18,11 +18,14 @@
  */
 package org.structr.api;
 
+import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
+import org.structr.api.graph.Direction;
 import org.structr.api.graph.GraphProperties;
 import org.structr.api.graph.Node;
 import org.structr.api.graph.Relationship;
+import org.structr.api.graph.RelationshipType;
 import org.structr.api.index.Index;
 
 /**
@@ -56,11 +59,30 @@ public interface DatabaseService {
 	QueryResult<Relationship> getAllRelationships();
 	QueryResult<Relationship> getRelationshipsByType(final String type);
 
+	/**
+	 * Loads the relationships of the given direction and type for all
+	 * given nodes at once, so that subsequent calls to getRelationships()
+	 * on these nodes can be answered from the node's relationship cache.
+	 *
+	 * @param nodes the nodes to load the relationships for
+	 * @param direction the direction
+	 * @param relationshipType the relationship type, or null for all types
+	 */
+	void prefetchRelationships(final Collection<Node> nodes, final Direction direction, final RelationshipType relationshipType);
+
 	GraphProperties getGlobalProperties();
 
 	String getTenantIdentifier();
 	String getInternalTimestamp();
 
+	/**
+	 * Returns runtime statistics of this database service, e.g. cache
+	 * hit rates and statement counts, grouped by category.
+	 *
+	 * @return a map of statistics
+	 */
+	Map<String, Object> getStatistics();
+
 	// ----- index -----
 	Index<Node> nodeIndex();
 	Index<Relationship> relationshipIndex();
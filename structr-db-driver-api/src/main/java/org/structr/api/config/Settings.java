@@ -67,10 +67,13 @@ public class Settings {
 	public static final Setting<String> SnapshotsPath         = new StringSetting(generalGroup,   "Paths",       "snapshot.path",              "snapshots" + File.separator, "IMPORTANT: Path is relative to base.path");
 	public static final Setting<String> LayoutsPath           = new StringSetting(generalGroup,   "Paths",       "layouts.path",               "layouts" + File.separator, "IMPORTANT: Path is relative to base.path");
 	public static final Setting<String> WebDataPath           = new StringSetting(generalGroup,   "Paths",       "data.webapp.path",           "webapp-data" + File.separator, "IMPORTANT: Path is relative to base.path");
+	public static final Setting<String> FulltextIndexPath     = new StringSetting(generalGroup,   "Paths",       "fulltext.index.path",        "fulltext" + File.separator, "IMPORTANT: Path is relative to base.path");
+	public static final Setting<String> LogEventsPath         = new StringSetting(generalGroup,   "Paths",       "logevents.path",             "logevents" + File.separator, "IMPORTANT: Path is relative to base.path");
 	public static final Setting<Boolean> LogSchemaOutput      = new BooleanSetting(generalGroup,  "Logging",     "NodeExtender.log",           false);
 	public static final Setting<Boolean> RequestLogging       = new BooleanSetting(generalGroup,  "Logging",     "log.requests",               false);
 	public static final Setting<String> LogPrefix             = new StringSetting(generalGroup,   "Logging",     "log.prefix",                 "structr");
 	public static final Setting<String> LogName               = new StringSetting(generalGroup,   "Logging",     "log.name",                   "structr-yyyy_mm_dd.request.log");
+	public static final Setting<Boolean> LogEventStore        = new BooleanSetting(generalGroup,  "Logging",     "logevents.store.enabled",    false, "Stores events of log_event() and the log resource in append-only segment files instead of LogEvent nodes. log_event() then returns the stored event as a map instead of a LogEvent node. Existing LogEvent nodes are only visible in the log resource after they have been moved into the store with POST /log?migrate=true.");
 	public static final Setting<String> Configuration         = new StringSetting(generalGroup,   "hidden",      "configuration.provider",     "org.structr.module.JarConfigurationProvider");
 	public static final StringSetting Services                = new StringSetting(generalGroup,   "Services",    "configured.services",        "NodeService AgentService CronService SchemaService LogService HttpService");
 	public static final Setting<Integer> ServicesStartTimeout = new IntegerSetting(generalGroup,  "Services",    "services.start.timeout",     30);
@@ -97,9 +100,11 @@ public class Settings {
 	public static final Setting<Boolean> GzipCompression      = new BooleanSetting(serverGroup, "HTTP Settings", "HttpService.gzip.enabled",        true);
 	public static final Setting<Boolean> ForceHttps           = new BooleanSetting(serverGroup, "HTTP Settings", "HttpService.force.https",         false);
 	public static final Setting<Boolean> Async                = new BooleanSetting(serverGroup, "HTTP Settings", "HttpService.async",               true);
+	public static final Setting<Integer> AsyncBufferSize      = new IntegerSetting(serverGroup, "HTTP Settings", "HttpService.async.buffer.size",   1048576, "Maximum number of bytes of an asynchronously rendered page that are buffered for the client. Rendering pauses until the client has received the buffered output");
 	public static final Setting<Boolean> JsonIndentation      = new BooleanSetting(serverGroup, "HTTP Settings", "json.indentation",                true);
 	public static final Setting<Boolean> HtmlIndentation      = new BooleanSetting(serverGroup, "HTTP Settings", "html.indentation",                true);
 	public static final Setting<Boolean> WsIndentation        = new BooleanSetting(serverGroup, "HTTP Settings", "ws.indentation",                  true);
+	public static final Setting<Integer> WsSendQueueSize      = new IntegerSetting(serverGroup, "HTTP Settings", "ws.send.queue.size",              1000, "Maximum number of broadcast messages queued for a single websocket client. The oldest messages are dropped when a client cannot keep up");
 	public static final Setting<Integer> SessionTimeout       = new IntegerSetting(serverGroup, "HTTP Settings", "application.session.timeout",     1800);
 
 	public static final Setting<String> AccessControlMaxAge           = new StringSetting(serverGroup, "CORS Settings", "access.control.max.age",           "3600");
@@ -125,6 +130,7 @@ public class Settings {
 	public static final Setting<Integer> NodeCacheSize          = new IntegerSetting(databaseGroup, "Caching",             "database.cache.node.size",         100000);
 	public static final Setting<Integer> UuidCacheSize          = new IntegerSetting(databaseGroup, "Caching",             "database.cache.uuid.size",         100000);
 	public static final Setting<Integer> QueryCacheSize         = new IntegerSetting(databaseGroup, "Caching",             "database.cache.query.size",        1000);
+	public static final Setting<Boolean> PipelinedWrites        = new BooleanSetting(databaseGroup, "Performance",         "database.pipelined.writes",        false, "Sends property and label updates to the database without waiting for each result. Pending writes are completed before the next read and at commit time");
 	public static final Setting<Boolean> CypherDebugLogging     = new BooleanSetting(databaseGroup, "Debugging",           "log.cypher.debug",                 false, "Turns on debug logging for the generated Cypher queries");
 	public static final Setting<Boolean> CypherDebugLoggingPing = new BooleanSetting(databaseGroup, "Debugging",           "log.cypher.debug.ping",            false, "Turns on debug logging for the generated Cypher queries of the websocket PING command. Can only be used in conjunction with log.cypher.debug");
 	public static final Setting<Boolean> SyncDebugging          = new BooleanSetting(databaseGroup, "Sync debugging",      "sync.debug",                       false);
@@ -138,7 +144,9 @@ public class Settings {
 	public static final Setting<Integer> IndexingLimit            = new IntegerSetting(applicationGroup, "Filesystem",   "application.filesystem.indexing.limit",       50000);
 	public static final Setting<Integer> IndexingMinLength        = new IntegerSetting(applicationGroup, "Filesystem",   "application.filesystem.indexing.minlength",   3);
 	public static final Setting<Integer> IndexingMaxLength        = new IntegerSetting(applicationGroup, "Filesystem",   "application.filesystem.indexing.maxlength",   30);
+	public static final Setting<Boolean> IndexingWordNodes        = new BooleanSetting(applicationGroup, "Filesystem",   "application.filesystem.indexing.wordnodes",   false, "Additionally store indexed words as IndexedWord nodes in the database (legacy fulltext index).");
 	public static final Setting<Boolean> FollowSymlinks           = new BooleanSetting(applicationGroup, "Filesystem",   "application.filesystem.mount.followSymlinks", true);
+	public static final Setting<Boolean> ThumbnailsAsync          = new BooleanSetting(applicationGroup, "Filesystem",   "application.thumbnails.async",                true, "Renders missing thumbnails in a background pool when they are requested over HTTP and delivers the original image until the thumbnail is ready. Thumbnails of uploaded images are rendered right after the upload.");
 	public static final Setting<String> DefaultUploadFolder       = new StringSetting(applicationGroup,  "Filesystem",   "application.uploads.folder",                  "");
 	public static final Setting<String> HttpProxyUrl              = new StringSetting(applicationGroup,  "Proxy",        "application.proxy.http.url",                  "");
 	public static final Setting<String> HttpProxyUser             = new StringSetting(applicationGroup,  "Proxy",        "application.proxy.http.username",             "");
@@ -146,6 +154,12 @@ public class Settings {
 	public static final Setting<Boolean> SchemAutoMigration       = new BooleanSetting(applicationGroup, "Schema",       "application.schema.automigration",            false);
 	public static final Setting<Boolean> AllowUnknownPropertyKeys = new BooleanSetting(applicationGroup, "Schema",       "application.schema.allowUnknownKeys",         false, "Enables get() and set() built-in functions to use property keys that are not defined in the schema.");
 	public static final Setting<Boolean> logMissingLocalizations  = new BooleanSetting(applicationGroup, "Localization", "application.localization.logMissing",         false, "Turns on logging for requested but non-existing localizations.");
+	public static final Setting<Integer> ExpressionCacheSize      = new IntegerSetting(applicationGroup, "Scripting",    "application.scripting.expression.cache.size", 10000, "Maximum number of parsed StructrScript expressions that are kept in memory.");
+	public static final Setting<Integer> ScriptCacheSize          = new IntegerSetting(applicationGroup, "Scripting",    "application.scripting.script.cache.size",     10000, "Maximum number of compiled JavaScript scripts that are kept in memory.");
+	public static final Setting<Boolean> JavaScriptSharedScope    = new BooleanSetting(applicationGroup, "Scripting",    "application.scripting.js.sharedscope",        true, "Evaluates JavaScript in a thin scope on top of sealed standard objects that are shared by all threads, instead of initializing the standard objects for every evaluation. Scripts can not modify the built-in objects in this mode.");
+	public static final Setting<Integer> JavaScriptOptLevel       = new IntegerSetting(applicationGroup, "Scripting",    "application.scripting.js.optimizationlevel",  0, "Rhino optimization level, from -1 (interpreted) to 9. Levels above 0 only take effect when debug information is disabled.");
+	public static final Setting<Boolean> JavaScriptDebugInfo      = new BooleanSetting(applicationGroup, "Scripting",    "application.scripting.js.debuginfo",          true, "Generates debug information for compiled JavaScript.");
+	public static final Setting<Boolean> RenderCacheEnabled       = new BooleanSetting(applicationGroup, "Rendering",    "application.rendering.cache.enabled",         true, "Caches the rendered output of static DOM subtrees, i.e. subtrees without data bindings, conditions or script expressions that are visible to everyone. Cached output is discarded when a node of the subtree changes.");
 
 	// mail settings
 	public static final Setting<String> SmtpHost              = new StringSetting(smtpGroup,  "SMTP Settings", "smtp.host",         "localhost");
@@ -160,6 +174,8 @@ public class Settings {
 	public static final Setting<String> ForeignTypeName               = new StringSetting(advancedGroup,  "hidden", "foreign.type.key",               "");
 	public static final Setting<Boolean> JsonRedundancyReduction      = new BooleanSetting(advancedGroup, "JSON",   "json.redundancyReduction",       true);
 	public static final Setting<Integer> JsonParallelizationThreshold = new IntegerSetting(advancedGroup, "JSON",   "json.parallelization.threshold", 100);
+	public static final Setting<Integer> JsonParallelism              = new IntegerSetting(advancedGroup, "JSON",   "json.parallelization.threads",   4, "Maximum number of threads that serialize a single response in parallel. Only used when parallel JSON output is requested.");
+	public static final Setting<Boolean> JsonSerializationPlans       = new BooleanSetting(advancedGroup, "JSON",   "json.serialization.plans",       true, "Use precompiled per-type property lists when writing JSON output.");
 	public static final Setting<Boolean> JsonLenient                  = new BooleanSetting(advancedGroup, "JSON",   "json.lenient",                   false);
 	public static final Setting<Boolean> ForceArrays                  = new BooleanSetting(advancedGroup, "JSON",   "json.output.forceArrays",        false);
 
@@ -170,6 +186,10 @@ public class Settings {
 	public static final Setting<Boolean> InheritanceDetection    = new BooleanSetting(advancedGroup, "hidden",      "importer.inheritancedetection", true);
 	public static final Setting<Boolean> CmisEnabled             = new BooleanSetting(advancedGroup, "hidden",      "cmis.enabled",                  false);
 
+	public static final Setting<Integer> AgentThreads            = new IntegerSetting(advancedGroup, "Agents",      "agent.threads",                 4,     "Number of worker threads that process agent tasks. The concurrency of a single task type can be limited with <TaskName>.concurrency, its priority set with <TaskName>.priority.");
+	public static final Setting<Integer> AgentQueueSize          = new IntegerSetting(advancedGroup, "Agents",      "agent.queue.size",              10000, "Maximum number of pending agent tasks, new tasks are rejected when the queue is full.");
+	public static final Setting<Integer> AgentBatchSize          = new IntegerSetting(advancedGroup, "Agents",      "agent.batch.size",              20,    "Maximum number of tasks of the same type that are processed in a single transaction.");
+
 	// servlets
 	public static final Setting<String> Servlets              = new StringSetting(servletsGroup,  "General", "HttpService.servlets",             "JsonRestServlet HtmlServlet WebSocketServlet CsvServlet UploadServlet ProxyServlet GraphQLServlet");
 
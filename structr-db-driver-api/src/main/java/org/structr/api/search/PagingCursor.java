@@ -0,0 +1,131 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.api.search;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position of a keyset (cursor) based pagination, consisting of the
+ * sort value and the internal ID of the last object of a page. The
+ * cursor can be serialized into an opaque string so that it can be
+ * handed out to clients and used to request the following page.
+ */
+public class PagingCursor {
+
+	private Object sortValue = null;
+	private long id          = -1L;
+
+	public PagingCursor(final long id, final Object sortValue) {
+
+		this.sortValue = sortValue;
+		this.id        = id;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public Object getSortValue() {
+		return sortValue;
+	}
+
+	@Override
+	public String toString() {
+		return encode();
+	}
+
+	/**
+	 * Serializes this cursor into an opaque, URL-safe string.
+	 *
+	 * @return the encoded cursor
+	 */
+	public String encode() {
+
+		final StringBuilder buf = new StringBuilder();
+
+		buf.append(id);
+		buf.append(":");
+
+		if (sortValue == null) {
+
+			buf.append("n");
+
+		} else if (sortValue instanceof Boolean) {
+
+			buf.append("b");
+			buf.append(sortValue);
+
+		} else if (sortValue instanceof Double || sortValue instanceof Float) {
+
+			buf.append("d");
+			buf.append(sortValue);
+
+		} else if (sortValue instanceof Number) {
+
+			buf.append("l");
+			buf.append(((Number)sortValue).longValue());
+
+		} else {
+
+			buf.append("s");
+			buf.append(sortValue.toString());
+		}
+
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(buf.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Parses a cursor that was created by {@link #encode()}.
+	 *
+	 * @param source the encoded cursor
+	 * @return the cursor
+	 *
+	 * @throws IllegalArgumentException if the source is not a valid cursor
+	 */
+	public static PagingCursor decode(final String source) {
+
+		try {
+
+			final String decoded = new String(Base64.getUrlDecoder().decode(source), StandardCharsets.UTF_8);
+			final int pos        = decoded.indexOf(":");
+
+			if (pos > 0 && pos < decoded.length() - 1) {
+
+				final long id      = Long.parseLong(decoded.substring(0, pos));
+				final char type    = decoded.charAt(pos + 1);
+				final String value = decoded.substring(pos + 2);
+
+				switch (type) {
+
+					case 'n': return new PagingCursor(id, null);
+					case 'b': return new PagingCursor(id, Boolean.valueOf(value));
+					case 'd': return new PagingCursor(id, Double.valueOf(value));
+					case 'l': return new PagingCursor(id, Long.valueOf(value));
+					case 's': return new PagingCursor(id, value);
+				}
+			}
+
+		} catch (IllegalArgumentException ex) {
+			// fall through
+		}
+
+		throw new IllegalArgumentException("Invalid cursor " + source);
+	}
+}
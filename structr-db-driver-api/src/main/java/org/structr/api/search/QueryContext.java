@@ -23,6 +23,7 @@ package org.structr.api.search;
  */
 public class QueryContext {
 
+	private PagingCursor cursor = null;
 	private boolean sliced = false;
 	private int skip = -1;
 	private int limit = -1;
@@ -53,6 +54,24 @@ public class QueryContext {
 		return limit;
 	}
 
+	/**
+	 * Restricts the query to the objects that follow the given cursor
+	 * position in the sort order of the query.
+	 *
+	 * @param cursor the position of the last object of the previous page
+	 * @return this
+	 */
+	public QueryContext cursor(final PagingCursor cursor) {
+
+		this.cursor = cursor;
+
+		return this;
+	}
+
+	public PagingCursor getCursor() {
+		return cursor;
+	}
+
 	public QueryContext isPing(final boolean isPing) {
 		this.isPing = isPing;
 		return this;
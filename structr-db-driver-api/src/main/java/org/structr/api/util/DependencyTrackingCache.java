@@ -0,0 +1,280 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.api.util;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, thread-safe cache whose entries record the IDs of the
+ * database entities they were computed from, so that modifications
+ * can invalidate exactly the entries that depend on them instead of
+ * the whole cache.
+ *
+ * Every invalidation advances an epoch and records it as the version of
+ * the invalidated IDs. Values are only stored if none of their own
+ * dependencies was invalidated since the caller obtained the epoch
+ * before starting its computation, so a value that was computed from
+ * data that has been modified in the meantime is never cached, while
+ * modifications of unrelated data do not prevent caching.
+ *
+ * @param <K>
+ * @param <V>
+ */
+public class DependencyTrackingCache<K, V> {
+
+	private final ConcurrentHashMap<Long, Set<Entry>> dependents = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<Long, Long> versions         = new ConcurrentHashMap<>();
+	private final AtomicLong epoch                               = new AtomicLong();
+	private final LongAdder invalidations                        = new LongAdder();
+	private SegmentedFixedSizeCache<K, Entry> entries            = null;
+	private volatile long minVersion                             = 0L;
+	private int maxVersions                                      = 0;
+
+	public DependencyTrackingCache(final int maxSize) {
+
+		this.entries     = new SegmentedFixedSizeCache<>(maxSize);
+		this.maxVersions = maxSize;
+	}
+
+	/**
+	 * Returns the current epoch, to be passed to {@link #put} when the
+	 * computation of the value that is to be cached has finished.
+	 *
+	 * @return the current epoch
+	 */
+	public long getEpoch() {
+		return epoch.get();
+	}
+
+	/**
+	 * Returns the value for the given key, or null. If the value exists
+	 * and the given set is not null, the dependencies of the value are
+	 * added to the set, so that values derived from it can be cached
+	 * with the correct dependencies.
+	 *
+	 * @param key
+	 * @param dependencies the set to collect the dependencies in, or null
+	 *
+	 * @return the value or null
+	 */
+	public V get(final K key, final Set<Long> dependencies) {
+
+		final Entry entry = entries.get(key);
+		if (entry != null) {
+
+			if (dependencies != null) {
+
+				for (final long id : entry.dependencies) {
+					dependencies.add(id);
+				}
+			}
+
+			return entry.value;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Stores the given value with the given dependencies, unless one of
+	 * the dependencies was invalidated since the given epoch.
+	 *
+	 * @param key
+	 * @param value
+	 * @param dependencies
+	 * @param startEpoch the epoch obtained before the value was computed
+	 *
+	 * @return whether the value was stored
+	 */
+	public boolean put(final K key, final V value, final Set<Long> dependencies, final long startEpoch) {
+
+		final Entry entry = new Entry(key, value, dependencies);
+
+		if (isModifiedSince(entry, startEpoch)) {
+			return false;
+		}
+
+		// register the dependencies first so that a concurrent invalidation
+		// either sees them or has already advanced their versions
+		for (final long id : entry.dependencies) {
+
+			dependents.compute(id, (k, set) -> {
+
+				final Set<Entry> dependentEntries = set != null ? set : ConcurrentHashMap.newKeySet();
+
+				dependentEntries.add(entry);
+
+				return dependentEntries;
+			});
+		}
+
+		final Entry previous = entries.put(key, entry);
+		if (previous != null) {
+			previous.unregister();
+		}
+
+		if (isModifiedSince(entry, startEpoch)) {
+
+			remove(key);
+			return false;
+		}
+
+		return true;
+	}
+
+	public void remove(final K key) {
+
+		final Entry entry = entries.remove(key);
+		if (entry != null) {
+
+			entry.unregister();
+		}
+	}
+
+	/**
+	 * Removes all entries that depend on one of the given IDs.
+	 *
+	 * @param ids
+	 */
+	public void invalidate(final Collection<Long> ids) {
+
+		if (ids.isEmpty()) {
+			return;
+		}
+
+		final long version = epoch.incrementAndGet();
+
+		// keep the number of versions bounded, all IDs without a
+		// version are treated as modified at the minimum version
+		if (versions.size() > maxVersions) {
+
+			minVersion = version;
+			versions.clear();
+		}
+
+		for (final Long id : ids) {
+			versions.merge(id, version, Math::max);
+		}
+
+		for (final Long id : ids) {
+
+			final Set<Entry> dependentEntries = dependents.remove(id);
+			if (dependentEntries != null) {
+
+				for (final Entry entry : dependentEntries) {
+
+					remove(entry.key);
+					invalidations.increment();
+				}
+			}
+		}
+	}
+
+	public void clear() {
+
+		minVersion = epoch.incrementAndGet();
+
+		versions.clear();
+		entries.clear();
+		dependents.clear();
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public int getMaxSize() {
+		return entries.getMaxSize();
+	}
+
+	public long getHits() {
+		return entries.getHits();
+	}
+
+	public long getMisses() {
+		return entries.getMisses();
+	}
+
+	public long getEvictions() {
+		return entries.getEvictions();
+	}
+
+	public long getInvalidations() {
+		return invalidations.sum();
+	}
+
+	// ----- private methods -----
+	private boolean isModifiedSince(final Entry entry, final long startEpoch) {
+
+		for (final long id : entry.dependencies) {
+
+			final Long version = versions.get(id);
+			if (version != null && version > startEpoch) {
+
+				return true;
+			}
+		}
+
+		// read after the versions because it is set before they are cleared
+		return minVersion > startEpoch;
+	}
+
+	// ----- nested classes -----
+	private class Entry implements Cachable {
+
+		private K key               = null;
+		private V value             = null;
+		private long[] dependencies = null;
+
+		public Entry(final K key, final V value, final Set<Long> dependencies) {
+
+			this.key          = key;
+			this.value        = value;
+			this.dependencies = new long[dependencies.size()];
+
+			int i = 0;
+
+			for (final Long id : dependencies) {
+				this.dependencies[i++] = id;
+			}
+		}
+
+		@Override
+		public void onRemoveFromCache() {
+			unregister();
+		}
+
+		public void unregister() {
+
+			for (final long id : dependencies) {
+
+				dependents.computeIfPresent(id, (k, set) -> {
+
+					set.remove(this);
+
+					return set.isEmpty() ? null : set;
+				});
+			}
+		}
+	}
+}
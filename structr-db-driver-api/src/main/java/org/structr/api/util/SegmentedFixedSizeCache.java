@@ -0,0 +1,309 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.api.util;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import org.apache.commons.collections4.map.LRUMap;
+
+/**
+ * A concurrent variant of {@link FixedSizeCache} that splits its capacity
+ * into a power-of-two number of independently locked LRU segments, so
+ * that lookups for different keys do not contend for a single monitor.
+ *
+ * Eviction is LRU per segment, and evicted values that implement
+ * {@link Cachable} are notified via {@link Cachable#onRemoveFromCache()},
+ * just like in {@link FixedSizeCache}. Small caches use a single segment
+ * and therefore behave exactly like a global LRU cache.
+ *
+ * @param <K>
+ * @param <V>
+ */
+public class SegmentedFixedSizeCache<K, V> {
+
+	private static final int MIN_SEGMENT_SIZE = 1024;
+
+	private final LongAdder hits      = new LongAdder();
+	private final LongAdder misses    = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private Segment<K, V>[] segments  = null;
+	private int maxSize               = 0;
+	private int mask                  = 0;
+
+	public SegmentedFixedSizeCache(final int maxSize) {
+		this(maxSize, Runtime.getRuntime().availableProcessors() * 4);
+	}
+
+	public SegmentedFixedSizeCache(final int maxSize, final int concurrencyLevel) {
+
+		int segmentCount = 1;
+
+		// only split the cache if each segment keeps a reasonable size
+		while (segmentCount < concurrencyLevel && (segmentCount << 1) * MIN_SEGMENT_SIZE <= maxSize) {
+			segmentCount <<= 1;
+		}
+
+		final int segmentSize = Math.max(1, (maxSize + segmentCount - 1) / segmentCount);
+
+		this.segments = new Segment[segmentCount];
+		this.mask     = segmentCount - 1;
+		this.maxSize  = maxSize;
+
+		for (int i=0; i<segmentCount; i++) {
+			segments[i] = new Segment<>(segmentSize, evictions);
+		}
+	}
+
+	public V put(final K key, final V value) {
+
+		final Segment<K, V> segment = segmentFor(key);
+
+		synchronized (segment) {
+			return segment.map.put(key, value);
+		}
+	}
+
+	public V get(final K key) {
+
+		final Segment<K, V> segment = segmentFor(key);
+		final V value;
+
+		synchronized (segment) {
+			value = segment.map.get(key);
+		}
+
+		if (value != null) {
+
+			hits.increment();
+
+		} else {
+
+			misses.increment();
+		}
+
+		return value;
+	}
+
+	/**
+	 * Returns the cached value for the given key if it exists and is
+	 * accepted by the given predicate. Values that are not accepted
+	 * count as a miss.
+	 *
+	 * @param key
+	 * @param isValid
+	 *
+	 * @return the cached value, or null
+	 */
+	public V get(final K key, final Predicate<V> isValid) {
+
+		final Segment<K, V> segment = segmentFor(key);
+		V value;
+
+		synchronized (segment) {
+			value = segment.map.get(key);
+		}
+
+		if (value != null && isValid.test(value)) {
+
+			hits.increment();
+
+		} else {
+
+			misses.increment();
+			value = null;
+		}
+
+		return value;
+	}
+
+	/**
+	 * Returns the cached value for the given key if it exists and is
+	 * accepted by the given predicate, or creates, stores and returns
+	 * a new value using the given factory. The whole operation is atomic
+	 * with respect to the segment the key belongs to, so the factory
+	 * should not do any expensive work.
+	 *
+	 * @param key
+	 * @param isValid
+	 * @param factory
+	 *
+	 * @return the cached or newly created value
+	 */
+	public V getOrCreate(final K key, final Predicate<V> isValid, final Function<K, V> factory) {
+		return getOrCreate(key, isValid, factory, true);
+	}
+
+	/**
+	 * Like {@link #getOrCreate(Object, Predicate, Function)}, but allows
+	 * callers that have already looked up the key using
+	 * {@link #get(Object, Predicate)} to skip the statistics, so that a
+	 * single miss is not counted twice.
+	 *
+	 * @param key
+	 * @param isValid
+	 * @param factory
+	 * @param countLookup whether to count this lookup as a hit or miss
+	 *
+	 * @return the cached or newly created value
+	 */
+	public V getOrCreate(final K key, final Predicate<V> isValid, final Function<K, V> factory, final boolean countLookup) {
+
+		final Segment<K, V> segment = segmentFor(key);
+
+		synchronized (segment) {
+
+			V value = segment.map.get(key);
+			if (value != null && isValid.test(value)) {
+
+				if (countLookup) {
+					hits.increment();
+				}
+
+			} else {
+
+				if (countLookup) {
+					misses.increment();
+				}
+
+				value = factory.apply(key);
+				segment.map.put(key, value);
+			}
+
+			return value;
+		}
+	}
+
+	public void removeAll(final Collection<K> keys) {
+
+		for (final K key : keys) {
+			remove(key);
+		}
+	}
+
+	public V remove(final K key) {
+
+		final Segment<K, V> segment = segmentFor(key);
+
+		synchronized (segment) {
+			return segment.map.remove(key);
+		}
+	}
+
+	public void clear() {
+
+		for (final Segment<K, V> segment : segments) {
+
+			synchronized (segment) {
+				segment.map.clear();
+			}
+		}
+	}
+
+	public int size() {
+
+		int size = 0;
+
+		for (final Segment<K, V> segment : segments) {
+
+			synchronized (segment) {
+				size += segment.map.size();
+			}
+		}
+
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public int getSegmentCount() {
+		return segments.length;
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	public void resetStatistics() {
+
+		hits.reset();
+		misses.reset();
+		evictions.reset();
+	}
+
+	// ----- private methods -----
+	private Segment<K, V> segmentFor(final K key) {
+
+		// spread the hash code so that sequential IDs are distributed evenly
+		final int h = key.hashCode();
+
+		return segments[(h ^ (h >>> 16)) & mask];
+	}
+
+	// ----- nested classes -----
+	private static class Segment<K, V> {
+
+		private InvalidatingLRUMap<K, V> map = null;
+
+		public Segment(final int maxSize, final LongAdder evictions) {
+			this.map = new InvalidatingLRUMap<>(maxSize, evictions);
+		}
+	}
+
+	private static class InvalidatingLRUMap<K, V> extends LRUMap<K, V> {
+
+		private LongAdder evictions = null;
+
+		public InvalidatingLRUMap(final int maxSize, final LongAdder evictions) {
+
+			super(maxSize, true);
+
+			this.evictions = evictions;
+		}
+
+		@Override
+		protected boolean removeLRU(final LinkEntry<K, V> entry) {
+
+			final V value = entry.getValue();
+			if (value != null && value instanceof Cachable) {
+
+				((Cachable)value).onRemoveFromCache();
+			}
+
+			evictions.increment();
+
+			return true;
+		}
+	}
+}
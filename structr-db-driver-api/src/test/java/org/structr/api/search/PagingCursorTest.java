@@ -0,0 +1,65 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.api.search;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PagingCursorTest {
+
+	@Test
+	public void testEncodeDecode() {
+
+		assertRoundtrip(new PagingCursor(17L, null));
+		assertRoundtrip(new PagingCursor(18L, "name with : and ünïcödé"));
+		assertRoundtrip(new PagingCursor(19L, 123456789012L));
+		assertRoundtrip(new PagingCursor(20L, 3.5));
+		assertRoundtrip(new PagingCursor(21L, true));
+	}
+
+	@Test
+	public void testIntegerValuesAreDecodedAsLong() {
+
+		final PagingCursor cursor = PagingCursor.decode(new PagingCursor(1L, 42).encode());
+
+		Assert.assertEquals("Invalid cursor sort value", 42L, cursor.getSortValue());
+	}
+
+	@Test
+	public void testInvalidCursor() {
+
+		for (final String invalid : new String[] { "", "abc", "%%%", "MTIz" }) {
+
+			try {
+
+				PagingCursor.decode(invalid);
+				Assert.fail("Invalid cursor " + invalid + " should not be accepted");
+
+			} catch (IllegalArgumentException expected) {}
+		}
+	}
+
+	private void assertRoundtrip(final PagingCursor source) {
+
+		final PagingCursor decoded = PagingCursor.decode(source.encode());
+
+		Assert.assertEquals("Invalid cursor ID",         source.getId(),        decoded.getId());
+		Assert.assertEquals("Invalid cursor sort value", source.getSortValue(), decoded.getSortValue());
+	}
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.api.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DependencyTrackingCacheTest {
+
+	@Test
+	public void testInvalidationRemovesDependentEntriesOnly() {
+
+		final DependencyTrackingCache<String, Boolean> test = new DependencyTrackingCache<>(100);
+		final long epoch                                    = test.getEpoch();
+
+		Assert.assertTrue("Value should be stored", test.put("a", true, set(1L, 2L), epoch));
+		Assert.assertTrue("Value should be stored", test.put("b", true, set(2L, 3L), epoch));
+		Assert.assertTrue("Value should be stored", test.put("c", true, set(4L),     epoch));
+
+		test.invalidate(Arrays.asList(2L));
+
+		Assert.assertNull("Dependent entry was not invalidated",  test.get("a", null));
+		Assert.assertNull("Dependent entry was not invalidated",  test.get("b", null));
+		Assert.assertEquals("Independent entry was invalidated",  Boolean.TRUE, test.get("c", null));
+		Assert.assertEquals("Invalid invalidation count",         2, test.getInvalidations());
+
+		// invalidating an ID without dependents does not change anything
+		test.invalidate(Arrays.asList(1L, 3L, 5L));
+
+		Assert.assertEquals("Independent entry was invalidated",  Boolean.TRUE, test.get("c", null));
+		Assert.assertEquals("Invalid cache size", 1, test.size());
+	}
+
+	@Test
+	public void testStaleValuesAreNotStored() {
+
+		final DependencyTrackingCache<String, Boolean> test = new DependencyTrackingCache<>(100);
+		final long epoch                                    = test.getEpoch();
+
+		// simulate a modification that is committed while a value is computed
+		test.invalidate(Arrays.asList(1L));
+
+		Assert.assertFalse("Stale value was stored", test.put("a", true, set(1L, 2L), epoch));
+		Assert.assertNull("Stale value was stored", test.get("a", null));
+
+		Assert.assertTrue("Value should be stored", test.put("a", true, set(1L, 2L), test.getEpoch()));
+		Assert.assertEquals("Invalid cache contents", Boolean.TRUE, test.get("a", null));
+	}
+
+	@Test
+	public void testUnrelatedModificationsDoNotPreventCaching() {
+
+		final DependencyTrackingCache<String, Boolean> test = new DependencyTrackingCache<>(100);
+		final long epoch                                    = test.getEpoch();
+
+		// modifications of other entities are committed while a value is computed
+		test.invalidate(Arrays.asList(1L));
+		test.invalidate(Arrays.asList(3L, 4L));
+
+		Assert.assertTrue("Value should be stored", test.put("a", true, set(2L), epoch));
+		Assert.assertEquals("Invalid cache contents", Boolean.TRUE, test.get("a", null));
+
+		// more modified IDs than the cache tracks make all older computations stale
+		for (long i=100; i<300; i++) {
+			test.invalidate(Arrays.asList(i));
+		}
+
+		Assert.assertFalse("Value computed before dropped versions was stored", test.put("b", true, set(5L), epoch));
+	}
+
+	@Test
+	public void testDependenciesAreCollectedOnGet() {
+
+		final DependencyTrackingCache<String, Boolean> test = new DependencyTrackingCache<>(100);
+		final Set<Long> dependencies                        = new HashSet<>();
+
+		test.put("a", false, set(1L, 2L), test.getEpoch());
+
+		Assert.assertEquals("Invalid cache contents", Boolean.FALSE, test.get("a", dependencies));
+		Assert.assertEquals("Dependencies were not collected", set(1L, 2L), dependencies);
+
+		// replacing an entry must not keep the old dependencies
+		test.put("a", true, set(3L), test.getEpoch());
+		test.invalidate(Arrays.asList(1L));
+
+		Assert.assertEquals("Replaced entry was invalidated by old dependency", Boolean.TRUE, test.get("a", null));
+
+		test.invalidate(Arrays.asList(3L));
+
+		Assert.assertNull("Replaced entry was not invalidated", test.get("a", null));
+	}
+
+	@Test
+	public void testCacheIsBounded() {
+
+		final DependencyTrackingCache<String, Boolean> test = new DependencyTrackingCache<>(10);
+
+		for (long i=0; i<100; i++) {
+			test.put("key" + i, true, set(i, 1000L), test.getEpoch());
+		}
+
+		Assert.assertEquals("DependencyTrackingCache exceeds its maximum size", 10, test.size());
+		Assert.assertEquals("Invalid eviction count", 90, test.getEvictions());
+
+		test.invalidate(Collections.singleton(1000L));
+
+		Assert.assertEquals("Invalid cache size", 0, test.size());
+		Assert.assertEquals("Evicted entries should not be invalidated", 10, test.getInvalidations());
+	}
+
+	// ----- private methods -----
+	private Set<Long> set(final Long... ids) {
+		return new HashSet<>(Arrays.asList(ids));
+	}
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.api.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SegmentedFixedSizeCacheTest {
+
+	@Test
+	public void testSingleSegmentBehavesLikeLRUCache() {
+
+		final SegmentedFixedSizeCache<Long, Long> test = new SegmentedFixedSizeCache<>(10);
+
+		Assert.assertEquals("Small caches should use a single segment", 1, test.getSegmentCount());
+
+		for (int i=0; i<100; i++) {
+
+			final Long value = Long.valueOf(i);
+			test.put(value, value);
+		}
+
+		Assert.assertEquals("Invalid SegmentedFixedSizeCache size", 10, test.size());
+		Assert.assertEquals("Invalid eviction count", 90, test.getEvictions());
+
+		for (int i=0; i<90; i++) {
+			Assert.assertNull("Invalid SegmentedFixedSizeCache contents", test.get(Long.valueOf(i)));
+		}
+
+		for (int i=90; i<100; i++) {
+
+			final Long value = Long.valueOf(i);
+			Assert.assertEquals("Invalid SegmentedFixedSizeCache contents", test.get(value), value);
+		}
+
+		Assert.assertEquals("Invalid hit count",  10, test.getHits());
+		Assert.assertEquals("Invalid miss count", 90, test.getMisses());
+	}
+
+	@Test
+	public void testSegmentedCacheRespectsMaximumSize() {
+
+		final SegmentedFixedSizeCache<Long, Long> test = new SegmentedFixedSizeCache<>(100000, 16);
+
+		Assert.assertEquals("Invalid segment count", 16, test.getSegmentCount());
+
+		for (long i=0; i<500000; i++) {
+			test.put(i, i);
+		}
+
+		Assert.assertTrue("SegmentedFixedSizeCache exceeds its maximum size", test.size() <= test.getMaxSize());
+		Assert.assertEquals("Invalid eviction count", 500000 - test.size(), test.getEvictions());
+
+		// the most recent entries must still be present
+		for (long i=499000; i<500000; i++) {
+			Assert.assertEquals("Invalid SegmentedFixedSizeCache contents", Long.valueOf(i), test.get(i));
+		}
+	}
+
+	@Test
+	public void testEvictionCallback() {
+
+		final SegmentedFixedSizeCache<Integer, TestCachable> test = new SegmentedFixedSizeCache<>(2);
+		final TestCachable first                                  = new TestCachable();
+
+		test.put(1, first);
+		test.put(2, new TestCachable());
+		test.put(3, new TestCachable());
+
+		Assert.assertTrue("Evicted values must be notified", first.removed);
+	}
+
+	@Test
+	public void testMissIsCountedOnce() {
+
+		final SegmentedFixedSizeCache<Integer, TestCachable> test = new SegmentedFixedSizeCache<>(10);
+		final TestCachable stale                                  = new TestCachable();
+
+		stale.removed = true;
+		test.put(1, stale);
+
+		// an invalid value is a miss, and storing the new value afterwards is not counted again
+		Assert.assertNull("Invalid values must not be returned", test.get(1, v -> !v.removed));
+		Assert.assertNotSame("Invalid values must be replaced", stale, test.getOrCreate(1, v -> !v.removed, key -> new TestCachable(), false));
+
+		Assert.assertEquals("Invalid hit count",  0, test.getHits());
+		Assert.assertEquals("Invalid miss count", 1, test.getMisses());
+
+		Assert.assertNotNull("Valid values must be returned", test.get(1, v -> !v.removed));
+		Assert.assertEquals("Invalid hit count",  1, test.getHits());
+	}
+
+	@Test
+	public void testConcurrentGetOrCreate() throws InterruptedException {
+
+		final SegmentedFixedSizeCache<Integer, TestCachable> test = new SegmentedFixedSizeCache<>(100000);
+		final ExecutorService executor                            = Executors.newFixedThreadPool(8);
+		final AtomicInteger created                               = new AtomicInteger();
+
+		for (int t=0; t<8; t++) {
+
+			executor.submit(() -> {
+
+				for (int i=0; i<10000; i++) {
+
+					test.getOrCreate(i, v -> !v.removed, key -> {
+						created.incrementAndGet();
+						return new TestCachable();
+					});
+				}
+			});
+		}
+
+		executor.shutdown();
+		executor.awaitTermination(1, TimeUnit.MINUTES);
+
+		Assert.assertEquals("Each key must be created exactly once", 10000, created.get());
+		Assert.assertEquals("Invalid SegmentedFixedSizeCache size", 10000, test.size());
+	}
+
+	// ----- nested classes -----
+	private static class TestCachable implements Cachable {
+
+		private volatile boolean removed = false;
+
+		@Override
+		public void onRemoveFromCache() {
+			removed = true;
+		}
+	}
+}
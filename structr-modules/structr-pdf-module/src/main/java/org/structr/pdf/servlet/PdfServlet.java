@@ -47,7 +47,6 @@ import java.util.Arrays;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -123,6 +122,10 @@ public class PdfServlet extends HtmlServlet {
 		final ServletOutputStream out = async.getResponse().getOutputStream();
 		final AtomicBoolean finished = new AtomicBoolean(false);
 		final DOMNode rootNode = rootElement;
+		final StringRenderBuffer pageBuffer = new StringRenderBuffer();
+
+		// the PDF is created from the complete page, so the output is collected in memory
+		renderContext.setBuffer(pageBuffer);
 
 		response.setContentType("application/pdf");
 		response.setHeader("Content-Disposition","attachment;filename=\"FileName.pdf\"");
@@ -166,39 +169,24 @@ public class PdfServlet extends HtmlServlet {
 
 				try {
 
-					final Queue<String> queue = renderContext.getBuffer().getQueue();
-					String pageContent = "";
 					while (out.isReady()) {
 
-						String buffer = null;
-
-						synchronized (queue) {
-							buffer = queue.poll();
-						}
-
-						if (buffer != null) {
-
-							pageContent += buffer;
+						if (finished.get()) {
 
-						} else {
+							// TODO: implement parameters for wkhtmltopdf in settings
 
-							if (finished.get()) {
+							Pdf pdf = new Pdf();
+							pdf.addPageFromString(pageBuffer.getBuffer().toString());
 
-								// TODO: implement parameters for wkhtmltopdf in settings
+							out.write(pdf.getPDF());
 
-								Pdf pdf = new Pdf();
-								pdf.addPageFromString(pageContent);
+							async.complete();
 
-								out.write(pdf.getPDF());
-
-								async.complete();
-
-								// prevent this block from being called again
-								break;
-							}
-
-							Thread.sleep(1);
+							// prevent this block from being called again
+							break;
 						}
+
+						Thread.sleep(1);
 					}
 
 
@@ -18,9 +18,19 @@
  */
 package org.structr.text;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.agent.AgentService;
+import org.structr.api.config.Settings;
 import org.structr.api.service.LicenseManager;
 import org.structr.common.error.FrameworkException;
 import org.structr.common.fulltext.FulltextIndexer;
@@ -29,23 +39,123 @@ import org.structr.core.GraphObjectMap;
 import org.structr.core.app.StructrApp;
 import org.structr.core.entity.AbstractSchemaNode;
 import org.structr.core.property.GenericProperty;
+import org.structr.core.function.Functions;
 import org.structr.module.StructrModule;
 import org.structr.schema.action.Actions;
+import org.structr.text.function.FulltextSearchFunction;
+import org.structr.text.index.InvertedIndex;
 
 /**
  *
  */
 public class FulltextIndexerModule implements FulltextIndexer, StructrModule {
 
+	private static final Logger logger              = LoggerFactory.getLogger(FulltextIndexerModule.class.getName());
 	private static final GenericProperty contextKey = new GenericProperty("context");
+	private static InvertedIndex index              = null;
+	private static boolean shutdownHookRegistered   = false;
 
 	@Override
 	public void onLoad(final LicenseManager licenseManager) {
+
+		final boolean communityEdition = licenseManager == null || licenseManager.isEdition(LicenseManager.Community);
+
+		Functions.put(communityEdition, LicenseManager.Community, "fulltext_search", new FulltextSearchFunction());
 	}
 
 	@Override
 	public void addToFulltextIndex(final Indexable node) throws FrameworkException {
-		StructrApp.getInstance(node.getSecurityContext()).processTasks(new FulltextIndexingTask(node.getUuid()));
+
+		final AgentService agentService = StructrApp.getInstance(node.getSecurityContext()).getService(AgentService.class);
+		if (agentService != null && agentService.isRunning()) {
+
+			// fail instead of losing the task, without blocking the caller's transaction
+			if (!agentService.processTask(new FulltextIndexingTask(node.getUuid()))) {
+
+				throw new FrameworkException(503, "Unable to add " + node.getUuid() + " to the fulltext index, agent task queue is full");
+			}
+		}
+	}
+
+	@Override
+	public Map<String, Double> search(final String query, final int maxResults) {
+
+		if (StringUtils.isBlank(query)) {
+			return new LinkedHashMap<>();
+		}
+
+		// the tokenizer is not closed because language detection is not needed for queries
+		final FulltextTokenizer tokenizer = new FulltextTokenizer();
+
+		try {
+
+			final List<String> terms = new ArrayList<>();
+
+			tokenizer.write(query);
+			tokenizer.flush();
+
+			for (final String word : tokenizer.getWords()) {
+				terms.add(StringUtils.strip(word, "\"\'"));
+			}
+
+			return getIndex().search(terms, maxResults);
+
+		} catch (IOException ioex) {
+
+			logger.warn("Unable to search fulltext index: {}", ioex.getMessage());
+		}
+
+		return new LinkedHashMap<>();
+	}
+
+	/**
+	 * Removes the document with the given UUID from the fulltext index.
+	 *
+	 * @param uuid
+	 */
+	public void removeFromIndex(final String uuid) {
+
+		try {
+
+			getIndex().deleteDocument(uuid);
+
+		} catch (IOException ioex) {
+
+			logger.warn("Unable to remove {} from fulltext index: {}", uuid, ioex.getMessage());
+		}
+	}
+
+	/**
+	 * Returns the inverted index in the configured directory. The index is
+	 * reopened when the configured path changes.
+	 *
+	 * @return the index
+	 *
+	 * @throws IOException
+	 */
+	public static synchronized InvertedIndex getIndex() throws IOException {
+
+		final File directory = new File(Settings.getFullSettingPath(Settings.FulltextIndexPath));
+
+		if (index != null && !index.getDirectory().getAbsoluteFile().equals(directory.getAbsoluteFile())) {
+
+			index.close();
+			index = null;
+		}
+
+		if (index == null) {
+
+			if (!shutdownHookRegistered) {
+
+				// closes whichever index is open at shutdown
+				Runtime.getRuntime().addShutdownHook(new Thread(FulltextIndexerModule::closeIndex, "FulltextIndexShutdown"));
+				shutdownHookRegistered = true;
+			}
+
+			index = InvertedIndex.open(directory);
+		}
+
+		return index;
 	}
 
 	@Override
@@ -220,6 +330,15 @@ public class FulltextIndexerModule implements FulltextIndexer, StructrModule {
 	}
 
 	//~--- private methods --------------------------------------------------------
+	private static synchronized void closeIndex() {
+
+		if (index != null) {
+
+			index.close();
+			index = null;
+		}
+	}
+
 	private static int flushWordBuffer(final StringBuilder lineBuffer, final StringBuilder wordBuffer, final boolean prepend) {
 
 		int wordCount = 0;
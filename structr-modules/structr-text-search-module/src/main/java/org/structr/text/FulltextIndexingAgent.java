@@ -128,11 +128,6 @@ public class FulltextIndexingAgent extends Agent<String> {
 		return FulltextIndexingTask.class;
 	}
 
-	@Override
-	protected boolean canHandleMore() {
-		return true;
-	}
-
 	// ----- private methods -----
 	private boolean doIndexing(final App app, final Indexable indexable) {
 
@@ -178,9 +173,6 @@ public class FulltextIndexingAgent extends Agent<String> {
 							// save raw extracted text
 							indexable.setProperty(StructrApp.key(File.class, "extractedContent"), tokenizer.getRawText());
 
-							// tokenize name
-							tokenizer.write(getName());
-
 							// tokenize owner name
 							final Principal _owner = indexable.getOwnerNode();
 							if (_owner != null) {
@@ -213,37 +205,44 @@ public class FulltextIndexingAgent extends Agent<String> {
 
 								// strip quotes
 								final String word = StringUtils.strip(wordIterator.next(), "\"\'");
-								if (!stopWords.contains(word)) {
+								if (stopWords == null || !stopWords.contains(word)) {
 
 									add(indexedWords, word);
 								}
 							}
 
-							final List<String> topWords       = getFrequencySortedTopWords(indexedWords);
-							final List<IndexedWord> wordNodes = new LinkedList<>();
+							// store term frequencies in the inverted index
+							FulltextIndexerModule.getIndex().addDocument(indexable.getUuid(), indexedWords);
 
-							try {
+							// legacy index: store indexed words as nodes
+							if (Settings.IndexingWordNodes.getValue()) {
 
-								// create words first
-								for (final String word : topWords) {
+								final List<String> topWords       = getFrequencySortedTopWords(indexedWords);
+								final List<IndexedWord> wordNodes = new LinkedList<>();
 
-									IndexedWord wordNode = app.nodeQuery(IndexedWord.class).andName(word).getFirst();
-									if (wordNode == null) {
+								try {
 
-										wordNode = app.create(IndexedWord.class, word);
-									}
+									// create words first
+									for (final String word : topWords) {
 
-									wordNodes.add(wordNode);
-								}
+										IndexedWord wordNode = app.nodeQuery(IndexedWord.class).andName(word).getFirst();
+										if (wordNode == null) {
+
+											wordNode = app.create(IndexedWord.class, word);
+										}
 
-								// store indexed words
-								indexable.setProperty(StructrApp.key(File.class, "words"), wordNodes);
+										wordNodes.add(wordNode);
+									}
 
-							} catch (Throwable t) {
+									// store indexed words
+									indexable.setProperty(StructrApp.key(File.class, "words"), wordNodes);
 
-								logger.info("Unable to store fulltext indexing result for {}, retrying after 1000ms..", fileName);
+								} catch (Throwable t) {
 
-								return false;
+									logger.info("Unable to store fulltext indexing result for {}, retrying after 1000ms..", fileName);
+
+									return false;
+								}
 							}
 						}
 					}
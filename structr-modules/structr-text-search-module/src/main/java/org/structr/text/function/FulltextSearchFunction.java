@@ -0,0 +1,91 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.text.function;
+
+import java.util.LinkedList;
+import java.util.List;
+import org.structr.common.error.FrameworkException;
+import org.structr.common.fulltext.FulltextIndexer;
+import org.structr.common.fulltext.Indexable;
+import org.structr.core.GraphObject;
+import org.structr.core.app.App;
+import org.structr.core.app.StructrApp;
+import org.structr.schema.action.ActionContext;
+import org.structr.schema.action.Function;
+import org.structr.text.FulltextIndexerModule;
+
+public class FulltextSearchFunction extends Function<Object, Object> {
+
+	public static final String ERROR_MESSAGE    = "Usage: ${fulltext_search(query[, maxResults])}. Example: ${fulltext_search('structr graph', 10)}";
+	public static final String ERROR_MESSAGE_JS = "Usage: ${{Structr.fulltext_search(query[, maxResults])}}. Example: ${{Structr.fulltext_search('structr graph', 10)}}";
+
+	private static final int DEFAULT_MAX_RESULTS = 100;
+
+	@Override
+	public Object apply(final ActionContext ctx, final Object caller, final Object[] sources) throws FrameworkException {
+
+		try {
+
+			assertArrayHasMinLengthAndMaxLengthAndAllElementsNotNull(sources, 1, 2);
+
+			final Integer limit            = sources.length > 1 ? parseInt(sources[1]) : null;
+			final int maxResults           = limit != null ? limit : DEFAULT_MAX_RESULTS;
+			final String query             = sources[0].toString();
+			final App app                  = StructrApp.getInstance(ctx.getSecurityContext());
+			final FulltextIndexer indexer  = app.getFulltextIndexer();
+			final List<GraphObject> result = new LinkedList<>();
+
+			for (final String uuid : indexer.search(query, maxResults).keySet()) {
+
+				final GraphObject hit = app.get(Indexable.class, uuid);
+				if (hit instanceof Indexable) {
+
+					result.add(hit);
+
+				} else if (indexer instanceof FulltextIndexerModule && StructrApp.getInstance().getNodeById(uuid) == null) {
+
+					// the node was deleted, remove it from the index
+					((FulltextIndexerModule)indexer).removeFromIndex(uuid);
+				}
+			}
+
+			return result;
+
+		} catch (IllegalArgumentException e) {
+
+			logParameterError(caller, sources, ctx.isJavaScriptContext());
+			return usage(ctx.isJavaScriptContext());
+		}
+	}
+
+	@Override
+	public String usage(final boolean inJavaScriptContext) {
+		return (inJavaScriptContext ? ERROR_MESSAGE_JS : ERROR_MESSAGE);
+	}
+
+	@Override
+	public String shortDescription() {
+		return "Returns the objects that best match the given query from the fulltext index, best match first.";
+	}
+
+	@Override
+	public String getName() {
+		return "fulltext_search()";
+	}
+}
@@ -0,0 +1,625 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.text.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A file-backed inverted index with BM25 ranking.
+ *
+ * New documents are collected in an in-memory buffer which is flushed to
+ * an immutable segment when it is full or when no writes happened for a
+ * short time. Segments are merged in the background once there are too
+ * many of them. The list of active segments is stored in a manifest file
+ * that is replaced atomically, so an interrupted flush or merge leaves
+ * the previous state of the index intact.
+ */
+public class InvertedIndex {
+
+	private static final Logger logger       = LoggerFactory.getLogger(InvertedIndex.class.getName());
+	private static final String MANIFEST     = "segments";
+	private static final int MAX_BUFFERED    = 1000;
+	private static final int MERGE_THRESHOLD = 10;
+	private static final long FLUSH_DELAY    = 1000L;
+	private static final double K1           = 1.2;
+	private static final double B            = 0.75;
+
+	private final ReentrantReadWriteLock lock                 = new ReentrantReadWriteLock();
+	private final Object mergeLock                            = new Object();
+	private final Map<String, Map<String, Integer>> buffer    = new LinkedHashMap<>();
+	private final Map<String, Segment> documents              = new HashMap<>();
+	private final List<Segment> segments                      = new ArrayList<>();
+	private Thread maintenanceThread                          = null;
+	private File directory                                    = null;
+	private long bufferedLength                               = 0L;
+	private long lastWrite                                    = 0L;
+	private int nextSegment                                   = 0;
+	private boolean pendingDeletions                          = false;
+	private volatile boolean merging                          = false;
+	private volatile boolean closed                           = false;
+
+	private InvertedIndex(final File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Opens the index in the given directory, creating it if necessary.
+	 *
+	 * @param directory
+	 * @return the index
+	 *
+	 * @throws IOException
+	 */
+	public static InvertedIndex open(final File directory) throws IOException {
+
+		final InvertedIndex index = new InvertedIndex(directory);
+
+		index.load();
+		index.startMaintenance();
+
+		return index;
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Adds the given document to the index, replacing any previous
+	 * version of the document with the same id.
+	 *
+	 * @param id
+	 * @param termFrequencies
+	 *
+	 * @throws IOException
+	 */
+	public void addDocument(final String id, final Map<String, Integer> termFrequencies) throws IOException {
+
+		final Map<String, Integer> copy = new HashMap<>();
+		int length                      = 0;
+
+		for (final Entry<String, Integer> entry : termFrequencies.entrySet()) {
+
+			final Integer frequency = entry.getValue();
+			if (frequency != null && frequency > 0) {
+
+				copy.put(entry.getKey(), frequency);
+				length += frequency;
+			}
+		}
+
+		lock.writeLock().lock();
+		try {
+
+			removeDocument(id);
+
+			if (!copy.isEmpty()) {
+
+				buffer.put(id, copy);
+				bufferedLength += length;
+			}
+
+			lastWrite = System.currentTimeMillis();
+
+			if (buffer.size() >= MAX_BUFFERED) {
+				flush();
+			}
+
+		} finally {
+
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void deleteDocument(final String id) {
+
+		lock.writeLock().lock();
+		try {
+
+			removeDocument(id);
+
+			lastWrite = System.currentTimeMillis();
+
+		} finally {
+
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the ids of the documents that best match the given terms,
+	 * ranked by their BM25 score.
+	 *
+	 * @param terms
+	 * @param maxResults
+	 *
+	 * @return a map of document id to score, in descending score order
+	 */
+	public Map<String, Double> search(final Collection<String> terms, final int maxResults) {
+
+		final Map<String, Double> scores = new HashMap<>();
+
+		lock.readLock().lock();
+		try {
+
+			long documentCount = buffer.size();
+			long totalLength   = bufferedLength;
+
+			for (final Segment segment : segments) {
+
+				documentCount += segment.getLiveDocumentCount();
+				totalLength   += segment.getLiveLength();
+			}
+
+			if (documentCount == 0) {
+				return new LinkedHashMap<>();
+			}
+
+			final double averageLength = Math.max(1.0, (double)totalLength / (double)documentCount);
+
+			for (final String term : new LinkedHashSet<>(terms)) {
+
+				final List<String> ids      = new ArrayList<>();
+				final List<Integer> tfs     = new ArrayList<>();
+				final List<Integer> lengths = new ArrayList<>();
+
+				for (final Segment segment : segments) {
+
+					final int termIndex = segment.findTerm(term);
+					if (termIndex >= 0) {
+
+						final int count = segment.getDocumentFrequency(termIndex);
+
+						for (int p=0; p<count; p++) {
+
+							final int document = segment.getPostingDocument(termIndex, p);
+							if (!segment.isDeleted(document)) {
+
+								ids.add(segment.getId(document));
+								tfs.add(segment.getPostingFrequency(termIndex, p));
+								lengths.add(segment.getLength(document));
+							}
+						}
+					}
+				}
+
+				for (final Entry<String, Map<String, Integer>> entry : buffer.entrySet()) {
+
+					final Integer frequency = entry.getValue().get(term);
+					if (frequency != null) {
+
+						ids.add(entry.getKey());
+						tfs.add(frequency);
+						lengths.add(getLength(entry.getValue()));
+					}
+				}
+
+				final int df     = ids.size();
+				final double idf = Math.log(1.0 + (documentCount - df + 0.5) / (df + 0.5));
+
+				for (int i=0; i<df; i++) {
+
+					final double tf    = tfs.get(i);
+					final double norm  = K1 * (1.0 - B + B * lengths.get(i) / averageLength);
+					final double score = idf * (tf * (K1 + 1.0)) / (tf + norm);
+
+					scores.merge(ids.get(i), score, Double::sum);
+				}
+			}
+
+		} finally {
+
+			lock.readLock().unlock();
+		}
+
+		// select the best results
+		final PriorityQueue<Entry<String, Double>> queue = new PriorityQueue<>((a, b) -> Double.compare(a.getValue(), b.getValue()));
+		final int limit                                  = maxResults > 0 ? maxResults : Integer.MAX_VALUE;
+
+		for (final Entry<String, Double> entry : scores.entrySet()) {
+
+			queue.add(entry);
+
+			if (queue.size() > limit) {
+				queue.poll();
+			}
+		}
+
+		final List<Entry<String, Double>> ranked = new ArrayList<>(queue);
+		final Map<String, Double> result         = new LinkedHashMap<>();
+
+		ranked.sort((a, b) -> Double.compare(b.getValue(), a.getValue()));
+
+		for (final Entry<String, Double> entry : ranked) {
+			result.put(entry.getKey(), entry.getValue());
+		}
+
+		return result;
+	}
+
+	public int getDocumentCount() {
+
+		lock.readLock().lock();
+		try {
+
+			return documents.size() + buffer.size();
+
+		} finally {
+
+			lock.readLock().unlock();
+		}
+	}
+
+	public int getSegmentCount() {
+
+		lock.readLock().lock();
+		try {
+
+			return segments.size();
+
+		} finally {
+
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Writes all buffered documents and deletions to disk.
+	 *
+	 * @throws IOException
+	 */
+	public void commit() throws IOException {
+
+		lock.writeLock().lock();
+		try {
+
+			flush();
+
+		} finally {
+
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Merges all segments of this index into a single segment. Writes that
+	 * happen while the merge is running are not blocked, deletions of
+	 * documents in the merged segments are carried over. Concurrent merges
+	 * are serialized.
+	 *
+	 * @throws IOException
+	 */
+	public void merge() throws IOException {
+
+		synchronized (mergeLock) {
+
+			final List<Segment> sources  = new ArrayList<>();
+			final List<BitSet> snapshots = new ArrayList<>();
+			String name                  = null;
+
+			lock.writeLock().lock();
+			try {
+
+				if (segments.size() < 2) {
+					return;
+				}
+
+				for (final Segment segment : segments) {
+
+					sources.add(segment);
+					snapshots.add(segment.getDeletedDocuments());
+				}
+
+				name    = getNextSegmentName();
+				merging = true;
+
+			} finally {
+
+				lock.writeLock().unlock();
+			}
+
+			try {
+
+				final int[][] documentMaps = SegmentWriter.merge(directory, name, sources, snapshots);
+				final Segment merged       = Segment.open(directory, name);
+
+				lock.writeLock().lock();
+				try {
+
+					// carry over deletions that happened during the merge
+					for (int i=0; i<sources.size(); i++) {
+
+						final BitSet current = sources.get(i).getDeletedDocuments();
+						final int[] map      = documentMaps[i];
+
+						current.andNot(snapshots.get(i));
+
+						for (int doc = current.nextSetBit(0); doc >= 0; doc = current.nextSetBit(doc + 1)) {
+
+							if (map[doc] >= 0) {
+								merged.delete(map[doc]);
+							}
+						}
+					}
+
+					for (int doc=0; doc<merged.getDocumentCount(); doc++) {
+
+						if (!merged.isDeleted(doc)) {
+							documents.put(merged.getId(doc), merged);
+						}
+					}
+
+					segments.removeAll(sources);
+					segments.add(0, merged);
+
+					merged.writeDeletions();
+					writeManifest();
+
+					for (final Segment source : sources) {
+						source.deleteFiles();
+					}
+
+				} finally {
+
+					lock.writeLock().unlock();
+				}
+
+			} finally {
+
+				merging = false;
+			}
+		}
+	}
+
+	/**
+	 * Stops the background maintenance and writes all pending changes.
+	 */
+	public void close() {
+
+		closed = true;
+
+		if (maintenanceThread != null) {
+
+			maintenanceThread.interrupt();
+
+			try { maintenanceThread.join(5000L); } catch (InterruptedException ignore) {}
+		}
+
+		try {
+
+			commit();
+
+		} catch (IOException ioex) {
+			logger.warn("Unable to write fulltext index in {}: {}", directory.getAbsolutePath(), ioex.getMessage());
+		}
+	}
+
+	// ----- private methods -----
+	private void removeDocument(final String id) {
+
+		final Map<String, Integer> previous = buffer.remove(id);
+		if (previous != null) {
+
+			bufferedLength -= getLength(previous);
+		}
+
+		final Segment segment = documents.remove(id);
+		if (segment != null && segment.delete(id)) {
+
+			pendingDeletions = true;
+		}
+	}
+
+	/**
+	 * Must be called with the write lock held.
+	 */
+	private void flush() throws IOException {
+
+		if (!buffer.isEmpty()) {
+
+			final String name = getNextSegmentName();
+
+			SegmentWriter.write(directory, name, buffer);
+
+			final Segment segment = Segment.open(directory, name);
+
+			for (final String id : buffer.keySet()) {
+				documents.put(id, segment);
+			}
+
+			segments.add(segment);
+			buffer.clear();
+
+			bufferedLength   = 0L;
+			pendingDeletions = true;
+		}
+
+		if (pendingDeletions) {
+
+			for (final Segment segment : segments) {
+				segment.writeDeletions();
+			}
+
+			writeManifest();
+
+			pendingDeletions = false;
+		}
+	}
+
+	private void load() throws IOException {
+
+		directory.mkdirs();
+
+		final File manifest      = new File(directory, MANIFEST);
+		final Set<String> active = new HashSet<>();
+
+		active.add(MANIFEST);
+
+		if (manifest.exists()) {
+
+			final List<String> lines = Files.readAllLines(manifest.toPath(), StandardCharsets.UTF_8);
+			if (!lines.isEmpty()) {
+
+				nextSegment = Integer.parseInt(lines.get(0).trim());
+
+				for (final String name : lines.subList(1, lines.size())) {
+
+					if (!name.trim().isEmpty()) {
+
+						final Segment segment = Segment.open(directory, name.trim());
+
+						for (int doc=0; doc<segment.getDocumentCount(); doc++) {
+
+							if (!segment.isDeleted(doc)) {
+								documents.put(segment.getId(doc), segment);
+							}
+						}
+
+						segments.add(segment);
+
+						active.add(segment.getName() + Segment.SEGMENT_SUFFIX);
+						active.add(segment.getName() + Segment.DELETIONS_SUFFIX);
+					}
+				}
+			}
+		}
+
+		// remove leftovers of interrupted flushes and merges
+		final File[] files = directory.listFiles();
+		if (files != null) {
+
+			for (final File file : files) {
+
+				if (!active.contains(file.getName())) {
+					file.delete();
+				}
+			}
+		}
+	}
+
+	private void writeManifest() throws IOException {
+
+		final List<String> lines = new ArrayList<>();
+		final File tmp           = new File(directory, MANIFEST + ".tmp");
+
+		lines.add(Integer.toString(nextSegment));
+
+		for (final Segment segment : segments) {
+			lines.add(segment.getName());
+		}
+
+		Files.write(tmp.toPath(), lines, StandardCharsets.UTF_8);
+		Files.move(tmp.toPath(), new File(directory, MANIFEST).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private String getNextSegmentName() {
+		return "_" + Integer.toString(nextSegment++, Character.MAX_RADIX);
+	}
+
+	private int getLength(final Map<String, Integer> termFrequencies) {
+
+		int length = 0;
+
+		for (final Integer frequency : termFrequencies.values()) {
+			length += frequency;
+		}
+
+		return length;
+	}
+
+	private void startMaintenance() {
+
+		maintenanceThread = new Thread(() -> {
+
+			while (!closed) {
+
+				try {
+
+					Thread.sleep(250L);
+
+					if (needsFlush()) {
+						commit();
+					}
+
+					if (needsMerge()) {
+						merge();
+					}
+
+				} catch (InterruptedException iex) {
+
+					// closing
+					break;
+
+				} catch (Throwable t) {
+
+					logger.warn("Error in fulltext index maintenance: {}", t.getMessage());
+				}
+			}
+
+		}, "FulltextIndexMaintenance");
+
+		maintenanceThread.setDaemon(true);
+		maintenanceThread.start();
+	}
+
+	private boolean needsFlush() {
+
+		lock.readLock().lock();
+		try {
+
+			return (!buffer.isEmpty() || pendingDeletions) && System.currentTimeMillis() - lastWrite >= FLUSH_DELAY;
+
+		} finally {
+
+			lock.readLock().unlock();
+		}
+	}
+
+	private boolean needsMerge() {
+
+		lock.readLock().lock();
+		try {
+
+			return !merging && segments.size() > MERGE_THRESHOLD;
+
+		} finally {
+
+			lock.readLock().unlock();
+		}
+	}
+}
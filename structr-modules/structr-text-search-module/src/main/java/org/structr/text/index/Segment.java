@@ -0,0 +1,270 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.text.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An immutable, memory-mapped segment of the inverted index.
+ *
+ * Document ids, document lengths and the term dictionary are held on the
+ * heap, the postings are read directly from the mapped segment file. The
+ * only mutable part of a segment is the set of deleted documents, which
+ * is stored in a separate file.
+ */
+public class Segment {
+
+	public static final String SEGMENT_SUFFIX   = ".seg";
+	public static final String DELETIONS_SUFFIX = ".del";
+	public static final int MAGIC               = 0x53545849;
+	public static final int VERSION             = 1;
+
+	private final Map<String, Integer> documentNumbers = new HashMap<>();
+	private MappedByteBuffer data                      = null;
+	private BitSet deleted                             = null;
+	private String name                                = null;
+	private File directory                             = null;
+	private String[] ids                               = null;
+	private int[] lengths                              = null;
+	private String[] terms                             = null;
+	private int[] documentFrequencies                  = null;
+	private long[] offsets                             = null;
+	private long liveLength                            = 0L;
+	private int deletedCount                           = 0;
+	private boolean dirty                              = false;
+
+	private Segment(final File directory, final String name) {
+
+		this.directory = directory;
+		this.name      = name;
+	}
+
+	public static Segment open(final File directory, final String name) throws IOException {
+
+		final Segment segment = new Segment(directory, name);
+
+		segment.load();
+
+		return segment;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getDocumentCount() {
+		return ids.length;
+	}
+
+	public int getLiveDocumentCount() {
+		return ids.length - deletedCount;
+	}
+
+	public long getLiveLength() {
+		return liveLength;
+	}
+
+	public String getId(final int document) {
+		return ids[document];
+	}
+
+	public int getLength(final int document) {
+		return lengths[document];
+	}
+
+	public boolean isDeleted(final int document) {
+		return deleted.get(document);
+	}
+
+	public BitSet getDeletedDocuments() {
+		return (BitSet)deleted.clone();
+	}
+
+	public int getTermCount() {
+		return terms.length;
+	}
+
+	public String getTerm(final int termIndex) {
+		return terms[termIndex];
+	}
+
+	public int getDocumentFrequency(final int termIndex) {
+		return documentFrequencies[termIndex];
+	}
+
+	/**
+	 * Returns the index of the given term in the dictionary, or a negative
+	 * value if the term does not exist in this segment.
+	 *
+	 * @param term
+	 * @return the term index
+	 */
+	public int findTerm(final String term) {
+		return Arrays.binarySearch(terms, term);
+	}
+
+	public int getPostingDocument(final int termIndex, final int posting) {
+		return data.getInt((int)(offsets[termIndex] + posting * 8L));
+	}
+
+	public int getPostingFrequency(final int termIndex, final int posting) {
+		return data.getInt((int)(offsets[termIndex] + posting * 8L + 4L));
+	}
+
+	public boolean delete(final String id) {
+
+		final Integer document = documentNumbers.get(id);
+		if (document != null) {
+
+			return delete(document);
+		}
+
+		return false;
+	}
+
+	public boolean delete(final int document) {
+
+		if (!deleted.get(document)) {
+
+			deleted.set(document);
+
+			liveLength -= lengths[document];
+			deletedCount++;
+			dirty = true;
+
+			return true;
+		}
+
+		return false;
+	}
+
+	public void writeDeletions() throws IOException {
+
+		if (dirty) {
+
+			final File tmp = new File(directory, name + DELETIONS_SUFFIX + ".tmp");
+
+			Files.write(tmp.toPath(), deleted.toByteArray());
+			Files.move(tmp.toPath(), new File(directory, name + DELETIONS_SUFFIX).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+			dirty = false;
+		}
+	}
+
+	public void deleteFiles() {
+
+		new File(directory, name + SEGMENT_SUFFIX).delete();
+		new File(directory, name + DELETIONS_SUFFIX).delete();
+	}
+
+	// ----- private methods -----
+	private void load() throws IOException {
+
+		final File file = new File(directory, name + SEGMENT_SUFFIX);
+
+		try (final RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+
+			final FileChannel channel = raf.getChannel();
+			final long size           = channel.size();
+
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("Segment " + name + " is too large.");
+			}
+
+			data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		}
+
+		final ByteBuffer buffer = data.duplicate();
+
+		if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+			throw new IOException("Invalid segment file " + file.getAbsolutePath());
+		}
+
+		// documents
+		final int documentCount = buffer.getInt();
+
+		ids     = new String[documentCount];
+		lengths = new int[documentCount];
+
+		for (int i=0; i<documentCount; i++) {
+
+			ids[i]     = readString(buffer);
+			lengths[i] = buffer.getInt();
+
+			documentNumbers.put(ids[i], i);
+		}
+
+		// dictionary, located via the footer
+		buffer.position((int)data.getLong(data.limit() - 8));
+
+		final int termCount = buffer.getInt();
+
+		terms               = new String[termCount];
+		documentFrequencies = new int[termCount];
+		offsets             = new long[termCount];
+
+		for (int i=0; i<termCount; i++) {
+
+			terms[i]               = readString(buffer);
+			documentFrequencies[i] = buffer.getInt();
+			offsets[i]             = buffer.getLong();
+		}
+
+		// deletions
+		final File deletionsFile = new File(directory, name + DELETIONS_SUFFIX);
+		if (deletionsFile.exists()) {
+
+			deleted = BitSet.valueOf(Files.readAllBytes(deletionsFile.toPath()));
+
+		} else {
+
+			deleted = new BitSet(documentCount);
+		}
+
+		deletedCount = deleted.cardinality();
+
+		for (int i=0; i<documentCount; i++) {
+
+			if (!deleted.get(i)) {
+				liveLength += lengths[i];
+			}
+		}
+	}
+
+	private static String readString(final ByteBuffer buffer) {
+
+		final byte[] bytes = new byte[buffer.getInt()];
+
+		buffer.get(bytes);
+
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
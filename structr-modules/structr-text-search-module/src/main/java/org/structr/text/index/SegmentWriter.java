@@ -0,0 +1,353 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.text.index;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * Writes segment files, either from buffered documents or by merging
+ * existing segments.
+ *
+ * Segment file layout: magic and version, the document table (id and
+ * length of each document), the postings as (document, frequency) pairs
+ * grouped by term, the sorted term dictionary with document frequency and
+ * postings offset of each term, and the offset of the dictionary as the
+ * last eight bytes.
+ */
+public class SegmentWriter implements AutoCloseable {
+
+	private DataOutputStream out = null;
+	private long position        = 0L;
+	private File tmpFile         = null;
+	private File file            = null;
+	private boolean complete     = false;
+
+	private SegmentWriter(final File directory, final String name) throws IOException {
+
+		this.file    = new File(directory, name + Segment.SEGMENT_SUFFIX);
+		this.tmpFile = new File(directory, name + Segment.SEGMENT_SUFFIX + ".tmp");
+		this.out     = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile), 65536));
+
+		writeInt(Segment.MAGIC);
+		writeInt(Segment.VERSION);
+	}
+
+	/**
+	 * Writes a new segment that contains the given documents.
+	 *
+	 * @param directory
+	 * @param name
+	 * @param documents map of document id to term frequencies
+	 *
+	 * @throws IOException
+	 */
+	public static void write(final File directory, final String name, final Map<String, Map<String, Integer>> documents) throws IOException {
+
+		final Map<String, List<int[]>> postings = new TreeMap<>();
+
+		try (final SegmentWriter writer = new SegmentWriter(directory, name)) {
+
+			writer.writeInt(documents.size());
+
+			int document = 0;
+
+			for (final Entry<String, Map<String, Integer>> entry : documents.entrySet()) {
+
+				int length = 0;
+
+				for (final Entry<String, Integer> term : entry.getValue().entrySet()) {
+
+					postings.computeIfAbsent(term.getKey(), k -> new ArrayList<>()).add(new int[] { document, term.getValue() });
+					length += term.getValue();
+				}
+
+				writer.writeString(entry.getKey());
+				writer.writeInt(length);
+
+				document++;
+			}
+
+			final List<String> terms = new ArrayList<>(postings.size());
+			final int[] frequencies  = new int[postings.size()];
+			final long[] offsets     = new long[postings.size()];
+			int index                = 0;
+
+			for (final Entry<String, List<int[]>> entry : postings.entrySet()) {
+
+				terms.add(entry.getKey());
+				frequencies[index] = entry.getValue().size();
+				offsets[index]     = writer.position;
+
+				for (final int[] posting : entry.getValue()) {
+
+					writer.writeInt(posting[0]);
+					writer.writeInt(posting[1]);
+				}
+
+				index++;
+			}
+
+			writer.writeDictionary(terms, frequencies, offsets);
+		}
+	}
+
+	/**
+	 * Merges the live documents of the given segments into a new segment.
+	 * Documents that are set in the given deletion snapshots are skipped.
+	 *
+	 * @param directory
+	 * @param name
+	 * @param sources
+	 * @param deletions
+	 *
+	 * @return the new document numbers per source segment, -1 for skipped documents
+	 *
+	 * @throws IOException
+	 */
+	public static int[][] merge(final File directory, final String name, final List<Segment> sources, final List<BitSet> deletions) throws IOException {
+
+		final int[][] documentMaps = new int[sources.size()][];
+
+		try (final SegmentWriter writer = new SegmentWriter(directory, name)) {
+
+			int documentCount = 0;
+
+			for (int i=0; i<sources.size(); i++) {
+
+				final Segment source = sources.get(i);
+				final BitSet deleted = deletions.get(i);
+				final int[] map      = new int[source.getDocumentCount()];
+
+				Arrays.fill(map, -1);
+
+				for (int doc=0; doc<map.length; doc++) {
+
+					if (!deleted.get(doc)) {
+						map[doc] = documentCount++;
+					}
+				}
+
+				documentMaps[i] = map;
+			}
+
+			// document table in the order of the new document numbers
+			writer.writeInt(documentCount);
+
+			for (int i=0; i<sources.size(); i++) {
+
+				final Segment source = sources.get(i);
+				final int[] map      = documentMaps[i];
+
+				for (int doc=0; doc<map.length; doc++) {
+
+					if (map[doc] >= 0) {
+
+						writer.writeString(source.getId(doc));
+						writer.writeInt(source.getLength(doc));
+					}
+				}
+			}
+
+			// k-way merge of the sorted term dictionaries
+			final PriorityQueue<TermCursor> queue = new PriorityQueue<>();
+			final List<String> terms              = new ArrayList<>();
+			final List<Integer> frequencies       = new ArrayList<>();
+			final List<Long> offsets              = new ArrayList<>();
+
+			for (int i=0; i<sources.size(); i++) {
+
+				final TermCursor cursor = new TermCursor(i, sources.get(i));
+				if (cursor.hasTerm()) {
+
+					queue.add(cursor);
+				}
+			}
+
+			while (!queue.isEmpty()) {
+
+				final String term              = queue.peek().getTerm();
+				final List<TermCursor> cursors = new ArrayList<>();
+				final long offset              = writer.position;
+				int documentFrequency          = 0;
+
+				while (!queue.isEmpty() && queue.peek().getTerm().equals(term)) {
+					cursors.add(queue.poll());
+				}
+
+				// cursors are in segment order, so postings stay sorted by document number
+				cursors.sort((a, b) -> Integer.compare(a.source, b.source));
+
+				for (final TermCursor cursor : cursors) {
+
+					final Segment segment = cursor.segment;
+					final int[] map       = documentMaps[cursor.source];
+					final int termIndex   = cursor.termIndex;
+					final int count       = segment.getDocumentFrequency(termIndex);
+
+					for (int p=0; p<count; p++) {
+
+						final int document = map[segment.getPostingDocument(termIndex, p)];
+						if (document >= 0) {
+
+							writer.writeInt(document);
+							writer.writeInt(segment.getPostingFrequency(termIndex, p));
+
+							documentFrequency++;
+						}
+					}
+
+					cursor.next();
+
+					if (cursor.hasTerm()) {
+						queue.add(cursor);
+					}
+				}
+
+				if (documentFrequency > 0) {
+
+					terms.add(term);
+					frequencies.add(documentFrequency);
+					offsets.add(offset);
+				}
+			}
+
+			final int[] frequencyArray = new int[frequencies.size()];
+			final long[] offsetArray   = new long[offsets.size()];
+
+			for (int i=0; i<frequencyArray.length; i++) {
+
+				frequencyArray[i] = frequencies.get(i);
+				offsetArray[i]    = offsets.get(i);
+			}
+
+			writer.writeDictionary(terms, frequencyArray, offsetArray);
+		}
+
+		return documentMaps;
+	}
+
+	@Override
+	public void close() throws IOException {
+
+		out.close();
+
+		if (!complete) {
+
+			// incomplete segments are never moved into place
+			tmpFile.delete();
+			return;
+		}
+
+		if (!tmpFile.renameTo(file)) {
+			throw new IOException("Unable to create segment file " + file.getAbsolutePath());
+		}
+	}
+
+	// ----- private methods -----
+	private void writeDictionary(final List<String> terms, final int[] frequencies, final long[] offsets) throws IOException {
+
+		final long dictionaryOffset = position;
+
+		writeInt(terms.size());
+
+		for (int i=0; i<terms.size(); i++) {
+
+			writeString(terms.get(i));
+			writeInt(frequencies[i]);
+			writeLong(offsets[i]);
+		}
+
+		writeLong(dictionaryOffset);
+
+		complete = true;
+	}
+
+	private void writeInt(final int value) throws IOException {
+
+		out.writeInt(value);
+		position += 4;
+	}
+
+	private void writeLong(final long value) throws IOException {
+
+		out.writeLong(value);
+		position += 8;
+	}
+
+	private void writeString(final String value) throws IOException {
+
+		final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+		writeInt(bytes.length);
+
+		out.write(bytes);
+		position += bytes.length;
+	}
+
+	// ----- nested classes -----
+	private static class TermCursor implements Comparable<TermCursor> {
+
+		private Segment segment = null;
+		private int termIndex   = 0;
+		private int source      = 0;
+
+		public TermCursor(final int source, final Segment segment) {
+
+			this.segment = segment;
+			this.source  = source;
+		}
+
+		public boolean hasTerm() {
+			return termIndex < segment.getTermCount();
+		}
+
+		public String getTerm() {
+			return segment.getTerm(termIndex);
+		}
+
+		public void next() {
+			termIndex++;
+		}
+
+		@Override
+		public int compareTo(final TermCursor other) {
+
+			final int result = getTerm().compareTo(other.getTerm());
+			if (result == 0) {
+
+				return Integer.compare(source, other.source);
+			}
+
+			return result;
+		}
+	}
+}
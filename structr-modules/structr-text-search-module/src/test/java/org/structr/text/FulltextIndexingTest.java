@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 import org.junit.Assert;
@@ -33,6 +34,8 @@ import org.structr.core.GraphObject;
 import org.structr.core.app.StructrApp;
 import org.structr.core.graph.Tx;
 import org.structr.core.property.PropertyKey;
+import org.structr.core.script.Scripting;
+import org.structr.schema.action.ActionContext;
 import org.structr.web.common.FileHelper;
 import org.structr.web.entity.File;
 
@@ -126,6 +129,46 @@ public class FulltextIndexingTest extends TextSearchModuleTest {
 		}
 	}
 
+	@Test
+	public void testODTFulltextSearch() {
+
+		String uuid = null;
+
+		try (final Tx tx = app.tx()) {
+
+			try( final InputStream is = FulltextIndexingTest.class.getResourceAsStream("/test/test.odt")) {
+				uuid = FileHelper.createFile(securityContext, is, "", File.class, "test.odt").getUuid();
+			}
+
+			tx.success();
+
+		} catch (FrameworkException|IOException fex) {
+			fail("Unexpected exception.");
+		}
+
+		delay();
+
+		try (final Tx tx = app.tx()) {
+
+			// the index may contain documents of previous tests that are removed lazily
+			final Map<String, Double> result = app.getFulltextIndexer().search("Lorem ipsum", 10);
+
+			Assert.assertTrue("Invalid fulltext search result", result.containsKey(uuid));
+
+			final List<GraphObject> nodes = (List<GraphObject>)Scripting.evaluate(new ActionContext(securityContext), null, "${fulltext_search('lorem')}", "test");
+
+			Assert.assertEquals("Invalid fulltext_search() result size", 1, nodes.size());
+			Assert.assertEquals("Invalid fulltext_search() result", uuid, nodes.get(0).getUuid());
+
+			Assert.assertTrue("Fulltext search should not return results for unknown words", app.getFulltextIndexer().search("nonexistingword", 10).isEmpty());
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fail("Unexpected exception.");
+		}
+	}
+
 	@Test
 	public void testODT() {
 
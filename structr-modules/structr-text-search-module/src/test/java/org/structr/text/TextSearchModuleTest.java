@@ -175,6 +175,9 @@ public class TextSearchModuleTest {
 		Settings.DatabasePath.setValue(basePath + "/db");
 		Settings.FilesPath.setValue(basePath + "/files");
 
+		// the tests check the indexed words of the legacy index as well
+		Settings.IndexingWordNodes.setValue(true);
+
 		Settings.RelationshipCacheSize.setValue(1000);
 		Settings.NodeCacheSize.setValue(1000);
 
@@ -0,0 +1,197 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.text.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Assert;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the file-backed inverted index, no database needed.
+ */
+public class InvertedIndexTest {
+
+	private File directory = null;
+
+	@Before
+	public void createDirectory() throws IOException {
+		directory = Files.createTempDirectory("structr-fulltext-test").toFile();
+	}
+
+	@After
+	public void removeDirectory() throws IOException {
+
+		Files.walk(directory.toPath()).sorted(Comparator.reverseOrder()).map(java.nio.file.Path::toFile).forEach(File::delete);
+	}
+
+	@Test
+	public void testRanking() {
+
+		try {
+
+			final InvertedIndex index = InvertedIndex.open(directory);
+
+			index.addDocument("a", terms("graph", 1, "database", 1, "structr", 1));
+			index.addDocument("b", terms("graph", 5, "structr", 1));
+			index.addDocument("c", terms("document", 2, "structr", 1));
+
+			// buffered documents are searchable
+			Assert.assertEquals("Invalid search result", Arrays.asList("b", "a"), ids(index.search(Arrays.asList("graph"), 10)));
+
+			index.commit();
+
+			Assert.assertEquals("Invalid search result", Arrays.asList("b", "a"), ids(index.search(Arrays.asList("graph"), 10)));
+			Assert.assertEquals("Invalid search result", Arrays.asList("a"),      ids(index.search(Arrays.asList("database"), 10)));
+			Assert.assertEquals("Invalid search result size", 3,                  index.search(Arrays.asList("structr"), 10).size());
+			Assert.assertEquals("Invalid search result size", 2,                  index.search(Arrays.asList("structr"), 2).size());
+			Assert.assertTrue("Invalid search result",                            index.search(Arrays.asList("unknown"), 10).isEmpty());
+
+			// a rare term weighs more than a common one
+			Assert.assertEquals("Invalid search result", "a", ids(index.search(Arrays.asList("structr", "database"), 10)).get(0));
+
+			index.close();
+
+		} catch (IOException ioex) {
+			fail("Unexpected exception.");
+		}
+	}
+
+	@Test
+	public void testReplaceAndDelete() {
+
+		try {
+
+			final InvertedIndex index = InvertedIndex.open(directory);
+
+			index.addDocument("a", terms("apple", 1));
+			index.addDocument("b", terms("apple", 1, "banana", 1));
+			index.commit();
+
+			// replace a committed document
+			index.addDocument("a", terms("cherry", 1));
+
+			Assert.assertEquals("Invalid search result", Arrays.asList("b"), ids(index.search(Arrays.asList("apple"), 10)));
+			Assert.assertEquals("Invalid search result", Arrays.asList("a"), ids(index.search(Arrays.asList("cherry"), 10)));
+
+			index.commit();
+			index.deleteDocument("b");
+
+			Assert.assertTrue("Invalid search result", index.search(Arrays.asList("apple"), 10).isEmpty());
+			Assert.assertEquals("Invalid document count", 1, index.getDocumentCount());
+
+			index.close();
+
+		} catch (IOException ioex) {
+			fail("Unexpected exception.");
+		}
+	}
+
+	@Test
+	public void testPersistence() {
+
+		try {
+
+			final InvertedIndex index = InvertedIndex.open(directory);
+
+			index.addDocument("a", terms("apple", 1));
+			index.addDocument("b", terms("banana", 1));
+			index.commit();
+			index.deleteDocument("a");
+			index.addDocument("c", terms("banana", 2));
+			index.close();
+
+			final InvertedIndex reopened = InvertedIndex.open(directory);
+
+			Assert.assertEquals("Invalid document count", 2, reopened.getDocumentCount());
+			Assert.assertTrue("Invalid search result", reopened.search(Arrays.asList("apple"), 10).isEmpty());
+			Assert.assertEquals("Invalid search result", Arrays.asList("c", "b"), ids(reopened.search(Arrays.asList("banana"), 10)));
+
+			reopened.close();
+
+		} catch (IOException ioex) {
+			fail("Unexpected exception.");
+		}
+	}
+
+	@Test
+	public void testMerge() {
+
+		try {
+
+			final InvertedIndex index = InvertedIndex.open(directory);
+
+			for (int i=0; i<20; i++) {
+
+				index.addDocument("doc" + i, terms("common", 1, "term" + i, 1));
+				index.commit();
+			}
+
+			index.deleteDocument("doc3");
+			index.addDocument("doc4", terms("replaced", 1));
+			index.merge();
+
+			Assert.assertEquals("Invalid segment count", 1, index.getSegmentCount());
+			Assert.assertEquals("Invalid document count", 19, index.getDocumentCount());
+			Assert.assertEquals("Invalid search result size", 18, index.search(Arrays.asList("common"), 100).size());
+			Assert.assertTrue("Invalid search result", index.search(Arrays.asList("term3"), 10).isEmpty());
+			Assert.assertTrue("Invalid search result", index.search(Arrays.asList("term4"), 10).isEmpty());
+			Assert.assertEquals("Invalid search result", Arrays.asList("doc4"),  ids(index.search(Arrays.asList("replaced"), 10)));
+			Assert.assertEquals("Invalid search result", Arrays.asList("doc17"), ids(index.search(Arrays.asList("term17"), 10)));
+
+			index.close();
+
+			final InvertedIndex reopened = InvertedIndex.open(directory);
+
+			Assert.assertEquals("Invalid document count", 19, reopened.getDocumentCount());
+			Assert.assertEquals("Invalid search result size", 18, reopened.search(Arrays.asList("common"), 100).size());
+
+			reopened.close();
+
+		} catch (IOException ioex) {
+			fail("Unexpected exception.");
+		}
+	}
+
+	// ----- private methods -----
+	private Map<String, Integer> terms(final Object... termsAndFrequencies) {
+
+		final Map<String, Integer> terms = new HashMap<>();
+
+		for (int i=0; i<termsAndFrequencies.length; i+=2) {
+			terms.put((String)termsAndFrequencies[i], (Integer)termsAndFrequencies[i+1]);
+		}
+
+		return terms;
+	}
+
+	private List<String> ids(final Map<String, Double> result) {
+		return new ArrayList<>(result.keySet());
+	}
+}
@@ -24,15 +24,18 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.Writer;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import org.apache.commons.lang.StringUtils;
 import org.neo4j.driver.v1.AuthTokens;
 import org.neo4j.driver.v1.Config;
@@ -55,6 +58,7 @@ import org.structr.api.NotInTransactionException;
 import org.structr.api.QueryResult;
 import org.structr.api.Transaction;
 import org.structr.api.config.Settings;
+import org.structr.api.graph.Direction;
 import org.structr.api.graph.GraphProperties;
 import org.structr.api.graph.Label;
 import org.structr.api.graph.Node;
@@ -62,6 +66,7 @@ import org.structr.api.graph.Relationship;
 import org.structr.api.graph.RelationshipType;
 import org.structr.api.index.Index;
 import org.structr.api.util.QueryUtils;
+import org.structr.api.util.SegmentedFixedSizeCache;
 import org.structr.bolt.index.CypherNodeIndex;
 import org.structr.bolt.index.CypherRelationshipIndex;
 import org.structr.bolt.index.NodeResultStream;
@@ -82,7 +87,10 @@ public class BoltDatabaseService implements DatabaseService, GraphProperties {
 	private static final Map<String, Label> labelCache                = new ConcurrentHashMap<>();
 	private static final ThreadLocal<SessionTransaction> sessions     = new ThreadLocal<>();
 	private static final long nanoEpoch                               = System.nanoTime();
+	private final LongAdder pipelinedStatements                       = new LongAdder();
+	private final LongAdder pipelineFlushes                           = new LongAdder();
 	private Properties globalGraphProperties                          = null;
+	private StatementCache statementCache                             = new StatementCache(null);
 	private CypherRelationshipIndex relationshipIndex                 = null;
 	private CypherNodeIndex nodeIndex                                 = null;
 	private GraphDatabaseService graphDb                              = null;
@@ -102,6 +110,8 @@ public class BoltDatabaseService implements DatabaseService, GraphProperties {
 			this.tenantId = null;
 		}
 
+		this.statementCache = new StatementCache(tenantId);
+
 		final BoltConnector bolt = new BoltConnector("0");
 		databaseUrl              = Settings.ConnectionUrl.getValue();
 		final String username    = Settings.ConnectionUser.getValue();
@@ -180,6 +190,7 @@ public class BoltDatabaseService implements DatabaseService, GraphProperties {
 
 		RelationshipWrapper.clearCache();
 		NodeWrapper.clearCache();
+		statementCache.clear();
 
 		driver.close();
 		graphDb.shutdown();
@@ -256,29 +267,14 @@ public class BoltDatabaseService implements DatabaseService, GraphProperties {
 	@Override
 	public Relationship getRelationshipById(final long id) {
 
-		final StringBuilder buf       = new StringBuilder();
 		final SessionTransaction tx   = getCurrentTransaction();
 		final Map<String, Object> map = new HashMap<>();
+		final String tenant           = statementCache.getTenantLabel();
+		final String statement        = statementCache.get("getRelationshipById", () -> "MATCH (" + tenant + ")-[r]->(" + tenant + ") WHERE ID(r) = {id} RETURN r");
 
 		map.put("id", id);
 
-		buf.append("MATCH (");
-
-		if (tenantId != null) {
-			buf.append(":");
-			buf.append(tenantId);
-		}
-
-		buf.append(")-[r]->(");
-
-		if (tenantId != null) {
-			buf.append(":");
-			buf.append(tenantId);
-		}
-
-		buf.append(") WHERE ID(r) = {id} RETURN r");
-
-		final org.neo4j.driver.v1.types.Relationship rel = tx.getRelationship(buf.toString(), map);
+		final org.neo4j.driver.v1.types.Relationship rel = tx.getRelationship(statement, map);
 
 		return RelationshipWrapper.newInstance(this, rel);
 
@@ -287,18 +283,10 @@ public class BoltDatabaseService implements DatabaseService, GraphProperties {
 	@Override
 	public QueryResult<Node> getAllNodes() {
 
-		final StringBuilder buf = new StringBuilder();
+		final String tenant    = statementCache.getTenantLabel();
+		final String statement = statementCache.get("getAllNodes", () -> "MATCH (n" + tenant + ")");
 
-		buf.append("MATCH (n");
-
-		if (tenantId != null) {
-			buf.append(":");
-			buf.append(tenantId);
-		}
-
-		buf.append(") RETURN n");
-
-		return QueryUtils.map(new NodeNodeMapper(this), new NodeResultStream(this, new SimpleCypherQuery(buf.toString())));
+		return QueryUtils.map(new NodeNodeMapper(this), new NodeResultStream(this, new SimpleCypherQuery(statement, null, "n")));
 	}
 
 	@Override
@@ -308,20 +296,10 @@ public class BoltDatabaseService implements DatabaseService, GraphProperties {
 			return getAllNodes();
 		}
 
-		final StringBuilder buf = new StringBuilder();
-
-		buf.append("MATCH (n");
-
-		if (tenantId != null) {
-			buf.append(":");
-			buf.append(tenantId);
-		}
-
-		buf.append(":");
-		buf.append(type);
-		buf.append(") RETURN n");
+		final String tenant    = statementCache.getTenantLabel();
+		final String statement = statementCache.get("getNodesByLabel", type, () -> "MATCH (n" + tenant + ":" + type + ")");
 
-		return QueryUtils.map(new NodeNodeMapper(this), new NodeResultStream(this, new SimpleCypherQuery(buf.toString())));
+		return QueryUtils.map(new NodeNodeMapper(this), new NodeResultStream(this, new SimpleCypherQuery(statement, null, "n")));
 	}
 
 	@Override
@@ -331,18 +309,9 @@ public class BoltDatabaseService implements DatabaseService, GraphProperties {
 			return getAllNodes();
 		}
 
-		final StringBuilder buf = new StringBuilder();
-
-		buf.append("MATCH (n");
-
-		if (tenantId != null) {
-			buf.append(":");
-			buf.append(tenantId);
-		}
-
-		buf.append(") WHERE n.type = {type} RETURN n");
-
-		final SimpleCypherQuery query = new SimpleCypherQuery(buf.toString());
+		final String tenant           = statementCache.getTenantLabel();
+		final String statement        = statementCache.get("getNodesByTypeProperty", () -> "MATCH (n" + tenant + ")");
+		final SimpleCypherQuery query = new SimpleCypherQuery(statement, "n.type = {type}", "n");
 
 		query.getParameters().put("type", type);
 
@@ -353,25 +322,10 @@ public class BoltDatabaseService implements DatabaseService, GraphProperties {
 	@Override
 	public QueryResult<Relationship> getAllRelationships() {
 
-		final StringBuilder buf = new StringBuilder();
-
-		buf.append("MATCH (");
-
-		if (tenantId != null) {
-			buf.append(":");
-			buf.append(tenantId);
-		}
-
-		buf.append(")-[r]->(");
-
-		if (tenantId != null) {
-			buf.append(":");
-			buf.append(tenantId);
-		}
-
-		buf.append(") RETURN r");
+		final String tenant    = statementCache.getTenantLabel();
+		final String statement = statementCache.get("getAllRelationships", () -> "MATCH (" + tenant + ")-[r]->(" + tenant + ")");
 
-		return QueryUtils.map(new RelationshipRelationshipMapper(this), new RelationshipResultStream(this, new SimpleCypherQuery(buf.toString())));
+		return QueryUtils.map(new RelationshipRelationshipMapper(this), new RelationshipResultStream(this, new SimpleCypherQuery(statement, null, "r")));
 	}
 
 	@Override
@@ -381,27 +335,15 @@ public class BoltDatabaseService implements DatabaseService, GraphProperties {
 			return getAllRelationships();
 		}
 
-		final StringBuilder buf = new StringBuilder();
-
-		buf.append("MATCH (");
-
-		if (tenantId != null) {
-			buf.append(":");
-			buf.append(tenantId);
-		}
-
-		buf.append(")-[r:");
-		buf.append(type);
-		buf.append("]->(");
-
-		if (tenantId != null) {
-			buf.append(":");
-			buf.append(tenantId);
-		}
+		final String tenant    = statementCache.getTenantLabel();
+		final String statement = statementCache.get("getRelationshipsByType", type, () -> "MATCH (" + tenant + ")-[r:" + type + "]->(" + tenant + ")");
 
-		buf.append(") RETURN r");
+		return QueryUtils.map(new RelationshipRelationshipMapper(this), new RelationshipResultStream(this, new SimpleCypherQuery(statement, null, "r")));
+	}
 
-		return QueryUtils.map(new RelationshipRelationshipMapper(this), new RelationshipResultStream(this, new SimpleCypherQuery(buf.toString())));
+	@Override
+	public void prefetchRelationships(final Collection<Node> nodes, final Direction direction, final RelationshipType relationshipType) {
+		NodeWrapper.prefetchRelationships(this, nodes, direction, relationshipType);
 	}
 
 	@Override
@@ -660,6 +602,33 @@ public class BoltDatabaseService implements DatabaseService, GraphProperties {
 		return tenantId;
 	}
 
+	@Override
+	public Map<String, Object> getStatistics() {
+
+		final Map<String, Object> stats = new LinkedHashMap<>();
+
+		stats.put("statements",        statementCache.getStatistics());
+		stats.put("nodeCache",         getCacheStatistics(NodeWrapper.getCache()));
+		stats.put("relationshipCache", getCacheStatistics(RelationshipWrapper.getCache()));
+		stats.put("pipeline",          getPipelineStatistics());
+
+		return stats;
+	}
+
+	public StatementCache getStatementCache() {
+		return statementCache;
+	}
+
+	public boolean usePipelinedWrites() {
+		return Settings.PipelinedWrites.getValue();
+	}
+
+	public void pipelineStatistics(final int statements, final int flushes) {
+
+		pipelinedStatements.add(statements);
+		pipelineFlushes.add(flushes);
+	}
+
 	@Override
 	public String getInternalTimestamp() {
 
@@ -733,6 +702,33 @@ public class BoltDatabaseService implements DatabaseService, GraphProperties {
 		return globalGraphProperties;
 	}
 
+	private Map<String, Object> getPipelineStatistics() {
+
+		final Map<String, Object> stats = new LinkedHashMap<>();
+
+		stats.put("enabled",             usePipelinedWrites());
+		stats.put("pipelinedStatements", pipelinedStatements.sum());
+		stats.put("flushes",             pipelineFlushes.sum());
+
+		return stats;
+	}
+
+	private Map<String, Object> getCacheStatistics(final SegmentedFixedSizeCache cache) {
+
+		final Map<String, Object> stats = new LinkedHashMap<>();
+
+		if (cache != null) {
+
+			stats.put("size",      cache.size());
+			stats.put("maxSize",   cache.getMaxSize());
+			stats.put("hits",      cache.getHits());
+			stats.put("misses",    cache.getMisses());
+			stats.put("evictions", cache.getEvictions());
+		}
+
+		return stats;
+	}
+
 	// ----- nested classes -----
 	private static class LabelImpl implements Label {
 
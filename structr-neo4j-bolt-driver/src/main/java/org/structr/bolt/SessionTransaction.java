@@ -18,16 +18,21 @@
  */
 package org.structr.bolt;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 import org.apache.commons.lang.StringUtils;
 import org.neo4j.driver.v1.Record;
 import org.neo4j.driver.v1.Session;
 import org.neo4j.driver.v1.StatementResult;
+import org.neo4j.driver.v1.StatementResultCursor;
 import org.neo4j.driver.v1.Transaction;
 import org.neo4j.driver.v1.Value;
 import org.neo4j.driver.v1.Values;
@@ -36,6 +41,7 @@ import org.neo4j.driver.v1.exceptions.DatabaseException;
 import org.neo4j.driver.v1.exceptions.NoSuchRecordException;
 import org.neo4j.driver.v1.exceptions.ServiceUnavailableException;
 import org.neo4j.driver.v1.exceptions.TransientException;
+import org.neo4j.driver.v1.summary.ResultSummary;
 import org.neo4j.driver.v1.types.Entity;
 import org.neo4j.driver.v1.types.Node;
 import org.neo4j.driver.v1.types.Relationship;
@@ -61,31 +67,45 @@ import org.structr.bolt.wrapper.StatementResultWrapper;
  */
 public class SessionTransaction implements org.structr.api.Transaction {
 
-	private final Set<EntityWrapper> modifiedEntities = new HashSet<>();
-	private final Set<Long> deletedNodes              = new HashSet<>();
-	private final Set<Long> deletedRels               = new HashSet<>();
-	private BoltDatabaseService db                    = null;
-	private Session session                           = null;
-	private Transaction tx                            = null;
-	private boolean closed                            = false;
-	private boolean success                           = false;
-	private boolean isPing                            = false;
+	private static final int MAX_PIPELINE_SIZE = 500;
+
+	private final List<CompletableFuture<ResultSummary>> pipeline = new ArrayList<>();
+	private final Set<EntityWrapper> modifiedEntities             = new HashSet<>();
+	private final Set<Long> deletedNodes                          = new HashSet<>();
+	private final Set<Long> deletedRels                           = new HashSet<>();
+	private BoltDatabaseService db                                = null;
+	private Session session                                       = null;
+	private Transaction tx                                        = null;
+	private boolean pipelinedWrites                               = false;
+	private boolean closed                                        = false;
+	private boolean success                                       = false;
+	private boolean isPing                                        = false;
+	private int pipelinedStatements                               = 0;
+	private int pipelineFlushes                                   = 0;
 
 	public SessionTransaction(final BoltDatabaseService db, final Session session) {
 
-		this.session = session;
-		this.tx      = session.beginTransaction();
-		this.db      = db;
+		this.session         = session;
+		this.tx              = session.beginTransaction();
+		this.db              = db;
+		this.pipelinedWrites = db.usePipelinedWrites();
 	}
 
 	@Override
 	public void failure() {
+
+		// pending writes will be rolled back anyway
+		pipeline.clear();
+
 		tx.failure();
 	}
 
 	@Override
 	public void success() {
 
+		// pending writes must succeed before the transaction can be committed
+		flush();
+
 		tx.success();
 
 		// transaction must be marked successfull explicitly
@@ -95,6 +115,29 @@ public class SessionTransaction implements org.structr.api.Transaction {
 	@Override
 	public void close() {
 
+		RuntimeException pipelineError = null;
+
+		if (success) {
+
+			try {
+
+				// execute writes that were queued after success() was called
+				flush();
+
+			} catch (RuntimeException rex) {
+
+				// a failed write must roll back the whole transaction
+				pipelineError = rex;
+				success       = false;
+
+				tx.failure();
+			}
+
+		} else {
+
+			pipeline.clear();
+		}
+
 		if (!success) {
 
 			// We need to invalidate all existing references because we cannot
@@ -147,6 +190,12 @@ public class SessionTransaction implements org.structr.api.Transaction {
 			if (session.isOpen()) {
 				session.close();
 			}
+
+			db.pipelineStatistics(pipelinedStatements, pipelineFlushes);
+		}
+
+		if (pipelineError != null) {
+			throw pipelineError;
 		}
 	}
 
@@ -184,7 +233,7 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 		try {
 
-			return tx.run(statement, map).next().get(0).asBoolean();
+			return runStatement(statement, map).next().get(0).asBoolean();
 
 		} catch (TransientException tex) {
 			closed = true;
@@ -224,7 +273,7 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 		try {
 
-			return tx.run(statement, map).next().get(0).asLong();
+			return runStatement(statement, map).next().get(0).asLong();
 
 		} catch (TransientException tex) {
 			closed = true;
@@ -244,7 +293,7 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 		try {
 
-			final StatementResult result = tx.run(statement, map);
+			final StatementResult result = runStatement(statement, map);
 			if (result.hasNext()) {
 
 				return result.next().get(0).asObject();
@@ -270,7 +319,7 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 		try {
 
-			return tx.run(statement, map).next().get(0).asEntity();
+			return runStatement(statement, map).next().get(0).asEntity();
 
 		} catch (TransientException tex) {
 			closed = true;
@@ -290,7 +339,7 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 		try {
 
-			return tx.run(statement, map).next().get(0).asNode();
+			return runStatement(statement, map).next().get(0).asNode();
 
 		} catch (TransientException tex) {
 			closed = true;
@@ -310,7 +359,7 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 		try {
 
-			return tx.run(statement, map).next().get(0).asRelationship();
+			return runStatement(statement, map).next().get(0).asRelationship();
 
 		} catch (TransientException tex) {
 			closed = true;
@@ -330,7 +379,7 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 		try {
 
-			return QueryUtils.map(new RecordNodeMapper(), new StatementIterable(tx.run(statement, map)));
+			return QueryUtils.map(new RecordNodeMapper(), new StatementIterable(runStatement(statement, map)));
 
 		} catch (TransientException tex) {
 			closed = true;
@@ -350,7 +399,7 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 		try {
 
-			return QueryUtils.map(new RecordRelationshipMapper(), new StatementIterable(tx.run(statement, map)));
+			return QueryUtils.map(new RecordRelationshipMapper(), new StatementIterable(runStatement(statement, map)));
 
 		} catch (TransientException tex) {
 			closed = true;
@@ -370,7 +419,27 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 		try {
 
-			return QueryUtils.map(new RecordNodeIdMapper(), new StatementIterable(tx.run(statement, map)));
+			return QueryUtils.map(new RecordNodeIdMapper(), new StatementIterable(runStatement(statement, map)));
+
+		} catch (TransientException tex) {
+			closed = true;
+			throw new RetryException(tex);
+		} catch (NoSuchRecordException nex) {
+			throw new NotFoundException(nex);
+		} catch (ServiceUnavailableException ex) {
+			throw new NetworkException(ex.getMessage(), ex);
+		} finally {
+			logQuery(statement, map, t0);
+		}
+	}
+
+	public QueryResult<Record> getRecords(final String statement, final Map<String, Object> map) {
+
+		final long t0 = System.currentTimeMillis();
+
+		try {
+
+			return new StatementIterable(runStatement(statement, map));
 
 		} catch (TransientException tex) {
 			closed = true;
@@ -390,7 +459,7 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 		try {
 
-			final StatementResult result = tx.run(statement, map);
+			final StatementResult result = runStatement(statement, map);
 			final Record record = result.next();
 			final Value value = record.get(0);
 
@@ -425,7 +494,7 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 		try {
 
-			return new StatementResultWrapper(db, tx.run(statement, map));
+			return new StatementResultWrapper(db, runStatement(statement, map));
 
 		} catch (TransientException tex) {
 			closed = true;
@@ -443,13 +512,90 @@ public class SessionTransaction implements org.structr.api.Transaction {
 		}
 	}
 
+	/**
+	 * Executes the given write statement without waiting for its result if
+	 * pipelined writes are enabled. Pending statements are sent to the
+	 * database immediately and their results are collected before the next
+	 * blocking statement or at commit time, so that the network round-trips
+	 * of consecutive writes overlap.
+	 *
+	 * @param statement
+	 * @param map
+	 */
+	public void setAsync(final String statement, final Map<String, Object> map) {
+
+		if (!pipelinedWrites) {
+
+			set(statement, map);
+			return;
+		}
+
+		final long t0 = System.currentTimeMillis();
+
+		try {
+
+			db.getStatementCache().executed(statement);
+
+			pipeline.add(tx.runAsync(statement, map).thenCompose(StatementResultCursor::consumeAsync).toCompletableFuture());
+			pipelinedStatements++;
+
+		} finally {
+			logQuery(statement, map, t0);
+		}
+
+		if (pipeline.size() >= MAX_PIPELINE_SIZE) {
+			flush();
+		}
+	}
+
+	/**
+	 * Waits for all pipelined statements of this transaction to complete
+	 * and rethrows the first error that occurred.
+	 */
+	public void flush() {
+
+		if (pipeline.isEmpty()) {
+			return;
+		}
+
+		final List<CompletableFuture<ResultSummary>> pending = new ArrayList<>(pipeline);
+
+		pipeline.clear();
+		pipelineFlushes++;
+
+		for (final CompletableFuture<ResultSummary> future : pending) {
+
+			try {
+
+				future.get();
+
+			} catch (InterruptedException iex) {
+
+				Thread.currentThread().interrupt();
+				throw new RetryException(iex);
+
+			} catch (ExecutionException eex) {
+
+				throw translatePipelineException(eex.getCause());
+			}
+		}
+	}
+
+	public int getPipelinedStatementCount() {
+		return pipelinedStatements;
+	}
+
+	public int getPipelineFlushCount() {
+		return pipelineFlushes;
+	}
+
 	public void set(final String statement, final Map<String, Object> map) {
 
 		final long t0 = System.currentTimeMillis();
 
 		try {
 
-			tx.run(statement, map).consume();
+			runStatement(statement, map).consume();
 
 		} catch (TransientException tex) {
 			closed = true;
@@ -542,6 +688,47 @@ public class SessionTransaction implements org.structr.api.Transaction {
 		throw dex;
 	}
 
+	// ----- private methods -----
+	private StatementResult runStatement(final String statement, final Map<String, Object> map) {
+
+		// reads must see the results of all pending writes
+		flush();
+
+		db.getStatementCache().executed(statement);
+
+		return tx.run(statement, map);
+	}
+
+	private RuntimeException translatePipelineException(final Throwable t) {
+
+		if (t instanceof CompletionException && t.getCause() != null) {
+			return translatePipelineException(t.getCause());
+		}
+
+		if (t instanceof TransientException) {
+			closed = true;
+			return new RetryException((TransientException)t);
+		}
+
+		if (t instanceof ServiceUnavailableException) {
+			return new NetworkException(t.getMessage(), t);
+		}
+
+		if (t instanceof DatabaseException) {
+			return SessionTransaction.translateDatabaseException((DatabaseException)t);
+		}
+
+		if (t instanceof ClientException) {
+			return SessionTransaction.translateClientException((ClientException)t);
+		}
+
+		if (t instanceof RuntimeException) {
+			return (RuntimeException)t;
+		}
+
+		return new RuntimeException(t);
+	}
+
 	// ----- nested classes -----
 	private class StatementIterable implements QueryResult<Record> {
 
@@ -0,0 +1,183 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.bolt;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import org.structr.api.graph.Direction;
+
+/**
+ * Cache for the fixed Cypher statements that the wrappers and indexes
+ * issue over and over again. Templates are keyed by operation, direction,
+ * type and tenant and are built only once, so that every call for the same
+ * key yields the identical, parameterized statement string.
+ *
+ * The cache also keeps track of the statement texts that are sent to the
+ * database, so that the statement cardinality and the share of executions
+ * that can reuse a cached execution plan can be monitored.
+ */
+public class StatementCache {
+
+	private static final int MAX_TRACKED_STATEMENTS = 10000;
+
+	private final Map<TemplateKey, String> templates = new ConcurrentHashMap<>();
+	private final Map<String, LongAdder> statements  = new ConcurrentHashMap<>();
+	private final LongAdder templateHits             = new LongAdder();
+	private final LongAdder templateMisses           = new LongAdder();
+	private final LongAdder executions               = new LongAdder();
+	private final LongAdder repeatedExecutions       = new LongAdder();
+	private final LongAdder untrackedExecutions      = new LongAdder();
+	private String tenantIdentifier                  = null;
+	private String tenantLabel                       = null;
+
+	public StatementCache(final String tenantIdentifier) {
+
+		this.tenantIdentifier = tenantIdentifier;
+		this.tenantLabel      = tenantIdentifier != null ? ":" + tenantIdentifier : "";
+	}
+
+	/**
+	 * Returns the label fragment for the current tenant, i.e. ":tenant"
+	 * or an empty string if no tenant identifier is configured.
+	 *
+	 * @return the tenant label fragment
+	 */
+	public String getTenantLabel() {
+		return tenantLabel;
+	}
+
+	public String get(final String operation, final Supplier<String> source) {
+		return get(operation, null, null, source);
+	}
+
+	public String get(final String operation, final Object type, final Supplier<String> source) {
+		return get(operation, null, type, source);
+	}
+
+	public String get(final String operation, final Direction direction, final Object type, final Supplier<String> source) {
+
+		final TemplateKey key = new TemplateKey(operation, direction, type, tenantIdentifier);
+		final String existing = templates.get(key);
+
+		if (existing != null) {
+
+			templateHits.increment();
+			return existing;
+		}
+
+		templateMisses.increment();
+
+		return templates.computeIfAbsent(key, k -> source.get());
+	}
+
+	/**
+	 * Registers the execution of the given statement text.
+	 *
+	 * @param statement
+	 */
+	public void executed(final String statement) {
+
+		executions.increment();
+
+		final LongAdder counter = statements.get(statement);
+		if (counter != null) {
+
+			repeatedExecutions.increment();
+			counter.increment();
+
+		} else if (statements.size() < MAX_TRACKED_STATEMENTS) {
+
+			statements.computeIfAbsent(statement, k -> new LongAdder()).increment();
+
+		} else {
+
+			untrackedExecutions.increment();
+		}
+	}
+
+	public Map<String, Object> getStatistics() {
+
+		final Map<String, Object> stats = new LinkedHashMap<>();
+		final long total                = executions.sum();
+		final long repeated             = repeatedExecutions.sum();
+
+		stats.put("templates",              templates.size());
+		stats.put("templateHits",           templateHits.sum());
+		stats.put("templateMisses",         templateMisses.sum());
+		stats.put("executions",             total);
+		stats.put("distinctStatements",     statements.size());
+		stats.put("untrackedExecutions",    untrackedExecutions.sum());
+		stats.put("planCacheFriendlyRatio", total > 0 ? (double)repeated / (double)total : 0.0);
+
+		return stats;
+	}
+
+	public void clear() {
+
+		templates.clear();
+		statements.clear();
+
+		templateHits.reset();
+		templateMisses.reset();
+		executions.reset();
+		repeatedExecutions.reset();
+		untrackedExecutions.reset();
+	}
+
+	// ----- nested classes -----
+	private static final class TemplateKey {
+
+		private final String operation;
+		private final Direction direction;
+		private final Object type;
+		private final String tenant;
+		private final int hashCode;
+
+		public TemplateKey(final String operation, final Direction direction, final Object type, final String tenant) {
+
+			this.operation = operation;
+			this.direction = direction;
+			this.type      = type;
+			this.tenant    = tenant;
+			this.hashCode  = Objects.hash(operation, direction, type, tenant);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(final Object other) {
+
+			if (other instanceof TemplateKey) {
+
+				final TemplateKey key = (TemplateKey)other;
+
+				return Objects.equals(operation, key.operation) && direction == key.direction && Objects.equals(type, key.type) && Objects.equals(tenant, key.tenant);
+			}
+
+			return false;
+		}
+	}
+}
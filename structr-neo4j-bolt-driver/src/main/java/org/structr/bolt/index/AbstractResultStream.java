@@ -18,9 +18,12 @@
  */
 package org.structr.bolt.index;
 
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import org.structr.api.QueryResult;
+import org.structr.api.search.PagingCursor;
 import org.structr.bolt.BoltDatabaseService;
 
 /**
@@ -33,6 +36,7 @@ public abstract class AbstractResultStream<T> implements QueryResult<T> {
 	private BoltDatabaseService db  = null;
 
 	protected abstract QueryResult<T> fetchData(final BoltDatabaseService db, final String statement, final Map<String, Object> data);
+	protected abstract PagingCursor getPosition(final T item, final String sortKey);
 
 	public AbstractResultStream(final BoltDatabaseService db, final PageableQuery query) {
 
@@ -53,52 +57,119 @@ public abstract class AbstractResultStream<T> implements QueryResult<T> {
 
 		return new Iterator<T>() {
 
-			private int remaining = 0;
+			private long[] returned = null;
+			private long[] skipped  = null;
+			private int count       = 0;
+			private int remaining   = 0;
+			private boolean record  = false;
+			private T last          = null;
+			private T next          = null;
 
 			@Override
 			public boolean hasNext() {
 
-				if (current == null || !current.hasNext()) {
+				while (next == null) {
 
-					// close previous result
-					if (result != null) {
-						result.close();
-					}
-
-					// fetch more?
-					if (remaining == 0) {
+					if (current == null || !current.hasNext()) {
 
-						// reset count
-						remaining = query.pageSize();
+						// a batch that is not full is the last one
+						if (remaining > 0 || !fetch()) {
+							return false;
+						}
+					}
 
-						final String statement            = query.getStatement();
-						final Map<String, Object> params  = query.getParameters();
+					final T item = current.next();
 
-						result = fetchData(db, statement, params);
-						if (result != null) {
+					remaining--;
+					last = item;
 
-							current = result.iterator();
+					if (record) {
 
-							// advance page
-							query.nextPage();
+						add(getPosition(item, null).getId());
 
-							// does the next result have elements?
-							if (!current.hasNext()) {
+					} else if (skipped != null && Arrays.binarySearch(skipped, getPosition(item, null).getId()) >= 0) {
 
-								// no more elements
-								return false;
-							}
-						}
+						// already returned before the query started over
+						continue;
 					}
+
+					next = item;
 				}
 
-				return current != null && current.hasNext();
+				return true;
 			}
 
 			@Override
 			public T next() {
-				remaining--;
-				return current.next();
+
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+
+				final T item = next;
+				next = null;
+
+				return item;
+			}
+
+			private boolean fetch() {
+
+				// close previous result
+				if (result != null) {
+					result.close();
+				}
+
+				// reset count
+				remaining = query.pageSize();
+
+				// allow keyset paging to resume after the last object
+				if (last != null) {
+
+					if (record) {
+
+						// the query starts over in a stable order, the
+						// objects of the first batch must not be repeated
+						skipped  = Arrays.copyOf(returned, count);
+						returned = null;
+
+						Arrays.sort(skipped);
+					}
+
+					query.continueAfter(getPosition(last, query.getSortKey()));
+				}
+
+				record = query.startsOverWhenContinued();
+
+				final String statement            = query.getStatement();
+				final Map<String, Object> params  = query.getParameters();
+
+				result = fetchData(db, statement, params);
+				if (result != null) {
+
+					current = result.iterator();
+
+					// advance page
+					query.nextPage();
+
+					// does the next result have elements?
+					return current.hasNext();
+				}
+
+				return false;
+			}
+
+			private void add(final long id) {
+
+				if (returned == null) {
+
+					returned = new long[16];
+
+				} else if (count == returned.length) {
+
+					returned = Arrays.copyOf(returned, Math.min(count * 2, query.pageSize()));
+				}
+
+				returned[count++] = id;
 			}
 		};
 	}
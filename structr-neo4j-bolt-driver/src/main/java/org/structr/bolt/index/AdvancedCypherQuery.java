@@ -25,6 +25,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import org.structr.api.search.PagingCursor;
 import org.structr.api.search.QueryContext;
 import org.structr.api.search.SortType;
 
@@ -37,10 +38,12 @@ public class AdvancedCypherQuery implements PageableQuery {
 	private final Map<String, Object> parameters    = new HashMap<>();
 	private final List<String> typeLabels           = new LinkedList<>();
 	private final StringBuilder buffer              = new StringBuilder();
+	private PagingCursor position                   = null;
 	private String sourceTypeLabel                  = null;
 	private String targetTypeLabel                  = null;
 	private AbstractCypherIndex<?> index            = null;
 	private boolean sortDescending                  = false;
+	private boolean ordered                         = false;
 	private SortType sortType                       = null;
 	private String sortKey                          = null;
 	private int page                                = 0;
@@ -68,6 +71,29 @@ public class AdvancedCypherQuery implements PageableQuery {
 		page++;
 	}
 
+	@Override
+	public void continueAfter(final PagingCursor position) {
+
+		if (useKeysetPaging()) {
+
+			if (isOrdered()) {
+
+				this.position = position;
+
+			} else {
+
+				// the previous batch was not ordered, so the
+				// query starts over in a stable order
+				this.ordered = true;
+			}
+		}
+	}
+
+	@Override
+	public boolean startsOverWhenContinued() {
+		return useKeysetPaging() && !isOrdered();
+	}
+
 	@Override
 	public int pageSize() {
 		return this.pageSize;
@@ -81,8 +107,11 @@ public class AdvancedCypherQuery implements PageableQuery {
 	@Override
 	public String getStatement() {
 
-		final StringBuilder buf = new StringBuilder();
-		final int typeCount     = typeLabels.size();
+		final StringBuilder buf    = new StringBuilder();
+		final String whereClause   = getWhereClause();
+		final boolean keysetPaging = isOrdered();
+		final String idExpression  = index.getIdExpression(this);
+		final int typeCount        = typeLabels.size();
 
 		switch (typeCount) {
 
@@ -90,9 +119,9 @@ public class AdvancedCypherQuery implements PageableQuery {
 
 				buf.append(index.getQueryPrefix(null, sourceTypeLabel, targetTypeLabel));
 
-				if (buffer.length() > 0) {
+				if (whereClause != null) {
 					buf.append(" WHERE ");
-					buf.append(buffer);
+					buf.append(whereClause);
 				}
 
 				buf.append(index.getQuerySuffix(this));
@@ -102,9 +131,9 @@ public class AdvancedCypherQuery implements PageableQuery {
 
 				buf.append(index.getQueryPrefix(typeLabels.get(0), sourceTypeLabel, targetTypeLabel));
 
-				if (buffer.length() > 0) {
+				if (whereClause != null) {
 					buf.append(" WHERE ");
-					buf.append(buffer);
+					buf.append(whereClause);
 				}
 
 				buf.append(index.getQuerySuffix(this));
@@ -117,9 +146,9 @@ public class AdvancedCypherQuery implements PageableQuery {
 
 					buf.append(index.getQueryPrefix(it.next(), sourceTypeLabel, targetTypeLabel));
 
-					if (buffer.length() > 0) {
+					if (whereClause != null) {
 						buf.append(" WHERE ");
-						buf.append(buffer);
+						buf.append(whereClause);
 					}
 
 					buf.append(index.getQuerySuffix(this));
@@ -157,6 +186,18 @@ public class AdvancedCypherQuery implements PageableQuery {
 			if (sortDescending) {
 				buf.append(" DESC");
 			}
+
+			if (keysetPaging) {
+
+				// stable tiebreaker for objects with identical sort values
+				buf.append(", ");
+				buf.append(idExpression);
+			}
+
+		} else if (keysetPaging) {
+
+			buf.append(" ORDER BY ");
+			buf.append(idExpression);
 		}
 
 		if (queryContext.isSliced()) {
@@ -166,6 +207,13 @@ public class AdvancedCypherQuery implements PageableQuery {
 			buf.append(" LIMIT ");
 			buf.append(queryContext.getLimit());
 
+		} else if (keysetPaging) {
+
+			// keyset paging resumes after the last object of the previous
+			// page, so the database does not need to skip anything
+			buf.append(" LIMIT ");
+			buf.append(pageSize);
+
 		} else {
 
 			buf.append(" SKIP ");
@@ -180,6 +228,20 @@ public class AdvancedCypherQuery implements PageableQuery {
 
 	@Override
 	public Map<String, Object> getParameters() {
+
+		final PagingCursor cursor = getCurrentPosition();
+		if (cursor != null) {
+
+			// keyset parameters are kept separately so they don't
+			// influence the semantic hash code of this query
+			final Map<String, Object> map = new HashMap<>(parameters);
+
+			map.put("keysetId",    cursor.getId());
+			map.put("keysetValue", getKeysetValue(cursor));
+
+			return map;
+		}
+
 		return parameters;
 	}
 
@@ -366,7 +428,129 @@ public class AdvancedCypherQuery implements PageableQuery {
 		return alreadyLoaded.contains(semanticHashCode(true));
 	}
 
+	/**
+	 * Indicates whether this query pages through its results by resuming
+	 * after the sort value and ID of the last object of the previous page
+	 * instead of skipping all previous results. This applies to the
+	 * internal batches of unpaged queries as well, but only once the
+	 * iteration goes beyond the first batch, see {@link #isOrdered()}.
+	 * UNION queries cannot be sorted as a whole, so they still use SKIP
+	 * and LIMIT.
+	 *
+	 * @return whether keyset paging is used
+	 */
+	public boolean useKeysetPaging() {
+		return !queryContext.isSliced() && typeLabels.size() <= 1;
+	}
+
+	/**
+	 * Indicates whether the objects are ordered by their ID, or by their
+	 * sort value and ID, so that a batch can resume after the last object
+	 * of the previous one. Most queries never need more than one batch,
+	 * so the first batch is not ordered by ID unless the query continues
+	 * after a cursor.
+	 *
+	 * @return whether the statement orders the objects for keyset paging
+	 */
+	public boolean isOrdered() {
+		return useKeysetPaging() && (ordered || queryContext.getCursor() != null);
+	}
+
 	// ----- private methods -----
+	private PagingCursor getCurrentPosition() {
+
+		if (position != null) {
+			return position;
+		}
+
+		return queryContext.getCursor();
+	}
+
+	private String getWhereClause() {
+
+		final PagingCursor cursor = getCurrentPosition();
+		if (cursor != null) {
+
+			final String keysetCondition = getKeysetCondition(cursor);
+
+			if (buffer.length() > 0) {
+
+				return "(" + buffer.toString() + ") AND " + keysetCondition;
+			}
+
+			return keysetCondition;
+		}
+
+		if (buffer.length() > 0) {
+			return buffer.toString();
+		}
+
+		return null;
+	}
+
+	private String getKeysetCondition(final PagingCursor cursor) {
+
+		if (sortKey == null) {
+			return "id(n) > {keysetId}";
+		}
+
+		final boolean numeric   = !SortType.Default.equals(sortType);
+		final String expression = numeric ? "COALESCE(n.`" + sortKey + "`, -1)" : "n.`" + sortKey + "`";
+		final StringBuilder buf = new StringBuilder();
+
+		if (numeric || cursor.getSortValue() != null) {
+
+			buf.append("(");
+			buf.append(expression);
+			buf.append(sortDescending ? " < " : " > ");
+			buf.append("{keysetValue} OR (");
+			buf.append(expression);
+			buf.append(" = {keysetValue} AND id(n) > {keysetId})");
+
+			// null values are sorted last in ascending order
+			if (!numeric && !sortDescending) {
+
+				buf.append(" OR ");
+				buf.append(expression);
+				buf.append(" IS NULL");
+			}
+
+			buf.append(")");
+
+		} else {
+
+			// the previous page ended in the null values, which are
+			// sorted last in ascending and first in descending order
+			buf.append("((");
+			buf.append(expression);
+			buf.append(" IS NULL AND id(n) > {keysetId})");
+
+			if (sortDescending) {
+
+				buf.append(" OR ");
+				buf.append(expression);
+				buf.append(" IS NOT NULL");
+			}
+
+			buf.append(")");
+		}
+
+		return buf.toString();
+	}
+
+	private Object getKeysetValue(final PagingCursor cursor) {
+
+		final Object value = cursor.getSortValue();
+
+		if (value == null && sortKey != null && !SortType.Default.equals(sortType)) {
+
+			// must match the COALESCE in the ORDER BY clause
+			return -1L;
+		}
+
+		return value;
+	}
+
 	private int semanticHashCode(final boolean includeParameters) {
 
 		int hashCode = 3427;
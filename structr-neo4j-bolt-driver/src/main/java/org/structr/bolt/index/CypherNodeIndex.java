@@ -46,48 +46,63 @@ public class CypherNodeIndex extends AbstractCypherIndex<Node> {
 	@Override
 	public String getQueryPrefix(final String typeLabel, final String sourceTypeLabel, final String targetTypeLabel) {
 
-		final StringBuilder buf = new StringBuilder("MATCH (n:NodeInterface");
+		return db.getStatementCache().get("nodeIndexPrefix", typeLabel, () -> {
 
-		if (tenantIdentifier != null) {
+			final StringBuilder buf = new StringBuilder("MATCH (n:NodeInterface");
 
-			buf.append(":");
-			buf.append(tenantIdentifier);
-		}
+			if (tenantIdentifier != null) {
 
-		if (typeLabel != null) {
+				buf.append(":");
+				buf.append(tenantIdentifier);
+			}
 
-			buf.append(":");
-			buf.append(typeLabel);
-		}
+			if (typeLabel != null) {
 
-		buf.append(")");
+				buf.append(":");
+				buf.append(typeLabel);
+			}
 
-		return buf.toString();
+			buf.append(")");
+
+			return buf.toString();
+		});
 	}
 
 	@Override
 	public String getQuerySuffix(final PageableQuery query) {
 
-		final StringBuilder buf = new StringBuilder();
-		final String sortKey    = query.getSortKey();
+		final String sortKey  = query.getSortKey();
+		final boolean idsOnly = query.idsOnly();
 
-		if (query.idsOnly()) {
+		return db.getStatementCache().get(idsOnly ? "nodeIndexIdSuffix" : "nodeIndexSuffix", sortKey, () -> {
 
-			buf.append(" RETURN DISTINCT id(n)");
+			final StringBuilder buf = new StringBuilder();
 
-		} else {
+			if (idsOnly) {
 
-			buf.append(" RETURN DISTINCT n");
-		}
+				buf.append(" RETURN DISTINCT id(n) AS nodeId");
 
-		if (sortKey != null) {
+			} else {
 
-			buf.append(", n.`");
-			buf.append(sortKey);
-			buf.append("` AS sortKey");
-		}
+				buf.append(" RETURN DISTINCT n");
+			}
+
+			if (sortKey != null) {
+
+				buf.append(", n.`");
+				buf.append(sortKey);
+				buf.append("` AS sortKey");
+			}
+
+			return buf.toString();
+		});
+	}
+
+	@Override
+	public String getIdExpression(final PageableQuery query) {
 
-		return buf.toString();
+		// ORDER BY after RETURN DISTINCT can only refer to the returned columns
+		return query.idsOnly() ? "nodeId" : "id(n)";
 	}
 
 	@Override
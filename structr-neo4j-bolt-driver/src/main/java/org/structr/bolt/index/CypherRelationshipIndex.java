@@ -18,6 +18,7 @@
  */
 package org.structr.bolt.index;
 
+import java.util.Arrays;
 import org.structr.api.QueryResult;
 import org.structr.api.graph.Relationship;
 import org.structr.api.util.QueryUtils;
@@ -36,61 +37,74 @@ public class CypherRelationshipIndex extends AbstractCypherIndex<Relationship> {
 	@Override
 	public String getQueryPrefix(final String typeLabel, final String sourceTypeLabel, final String targetTypeLabel) {
 
-		final StringBuilder buf       = new StringBuilder();
 		final String tenantIdentifier = db.getTenantIdentifier();
 
-		buf.append("MATCH (");
+		return db.getStatementCache().get("relationshipIndexPrefix", Arrays.asList(typeLabel, sourceTypeLabel, targetTypeLabel), () -> {
 
-		if (tenantIdentifier != null) {
-			buf.append(":");
-			buf.append(tenantIdentifier);
-		}
+			final StringBuilder buf = new StringBuilder();
 
-		if (sourceTypeLabel != null) {
-			buf.append(":");
-			buf.append(sourceTypeLabel);
-		}
+			buf.append("MATCH (");
 
-		buf.append(")-[n");
+			if (tenantIdentifier != null) {
+				buf.append(":");
+				buf.append(tenantIdentifier);
+			}
 
-		if (typeLabel != null) {
-			buf.append(":");
-			buf.append(typeLabel);
-		}
+			if (sourceTypeLabel != null) {
+				buf.append(":");
+				buf.append(sourceTypeLabel);
+			}
 
-		buf.append("]->(");
+			buf.append(")-[n");
 
-		if (tenantIdentifier != null) {
-			buf.append(":");
-			buf.append(tenantIdentifier);
-		}
+			if (typeLabel != null) {
+				buf.append(":");
+				buf.append(typeLabel);
+			}
 
-		if (targetTypeLabel != null) {
-			buf.append(":");
-			buf.append(targetTypeLabel);
-		}
+			buf.append("]->(");
 
-		buf.append(")");
+			if (tenantIdentifier != null) {
+				buf.append(":");
+				buf.append(tenantIdentifier);
+			}
 
-		return buf.toString();
+			if (targetTypeLabel != null) {
+				buf.append(":");
+				buf.append(targetTypeLabel);
+			}
+
+			buf.append(")");
+
+			return buf.toString();
+		});
 	}
 
 	@Override
 	public String getQuerySuffix(final PageableQuery query) {
 
-		final StringBuilder buf = new StringBuilder();
-		final String sortKey    = query.getSortKey();
+		final String sortKey = query.getSortKey();
+
+		return db.getStatementCache().get("relationshipIndexSuffix", sortKey, () -> {
+
+			final StringBuilder buf = new StringBuilder();
 
-		buf.append(" RETURN DISTINCT n");
+			buf.append(" RETURN DISTINCT n");
 
-		if (sortKey != null) {
+			if (sortKey != null) {
 
-			buf.append(", n.`");
-			buf.append(sortKey);
-			buf.append("` AS sortKey");
-		}
+				buf.append(", n.`");
+				buf.append(sortKey);
+				buf.append("` AS sortKey");
+			}
 
-		return buf.toString();
+			return buf.toString();
+		});
+	}
+
+	@Override
+	public String getIdExpression(final PageableQuery query) {
+		return "id(n)";
 	}
 
 	@Override
@@ -20,6 +20,7 @@ package org.structr.bolt.index;
 
 import java.util.Map;
 import org.structr.api.QueryResult;
+import org.structr.api.search.PagingCursor;
 import org.structr.bolt.BoltDatabaseService;
 import org.structr.bolt.SessionTransaction;
 import org.structr.bolt.mapper.NodeId;
@@ -39,4 +40,9 @@ public class NodeIdResultStream extends AbstractResultStream<NodeId> {
 		tx.setIsPing(getQuery().getQueryContext().isPing());
 		return tx.getNodeIds(statement, data);
 	}
+
+	@Override
+	protected PagingCursor getPosition(final NodeId item, final String sortKey) {
+		return new PagingCursor(item.getNode(), item.getSortValue());
+	}
 }
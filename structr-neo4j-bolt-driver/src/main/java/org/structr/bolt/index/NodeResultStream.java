@@ -21,6 +21,7 @@ package org.structr.bolt.index;
 import java.util.Map;
 import org.neo4j.driver.v1.types.Node;
 import org.structr.api.QueryResult;
+import org.structr.api.search.PagingCursor;
 import org.structr.bolt.BoltDatabaseService;
 import org.structr.bolt.SessionTransaction;
 
@@ -39,4 +40,9 @@ public class NodeResultStream extends AbstractResultStream<Node> {
 		tx.setIsPing(getQuery().getQueryContext().isPing());
 		return tx.getNodes(statement, data);
 	}
+
+	@Override
+	protected PagingCursor getPosition(final Node item, final String sortKey) {
+		return new PagingCursor(item.id(), sortKey != null ? item.get(sortKey).asObject() : null);
+	}
 }
@@ -19,12 +19,15 @@
 package org.structr.bolt.index;
 
 import java.util.Map;
+import org.structr.api.search.PagingCursor;
 import org.structr.api.search.QueryContext;
 
 public interface PageableQuery {
 
 	int pageSize();
 	void nextPage();
+	void continueAfter(final PagingCursor position);
+	boolean startsOverWhenContinued();
 	String getSortKey();
 	String getStatement();
 	Map<String, Object> getParameters();
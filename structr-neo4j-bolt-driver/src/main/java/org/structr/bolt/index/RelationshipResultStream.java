@@ -21,6 +21,7 @@ package org.structr.bolt.index;
 import java.util.Map;
 import org.neo4j.driver.v1.types.Relationship;
 import org.structr.api.QueryResult;
+import org.structr.api.search.PagingCursor;
 import org.structr.bolt.BoltDatabaseService;
 import org.structr.bolt.SessionTransaction;
 
@@ -37,5 +38,9 @@ public class RelationshipResultStream extends AbstractResultStream<Relationship>
 		final SessionTransaction tx = db.getCurrentTransaction();
 		return tx.getRelationships(statement, data);
 	}
-}
 
+	@Override
+	protected PagingCursor getPosition(final Relationship item, final String sortKey) {
+		return new PagingCursor(item.id(), sortKey != null ? item.get(sortKey).asObject() : null);
+	}
+}
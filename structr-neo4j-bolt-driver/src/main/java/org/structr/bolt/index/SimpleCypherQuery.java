@@ -20,6 +20,7 @@ package org.structr.bolt.index;
 
 import java.util.LinkedHashMap;
 import java.util.Map;
+import org.structr.api.search.PagingCursor;
 import org.structr.api.search.QueryContext;
 
 /**
@@ -28,7 +29,10 @@ import org.structr.api.search.QueryContext;
 public class SimpleCypherQuery implements PageableQuery {
 
 	private final Map<String, Object> params = new LinkedHashMap<>();
+	private PagingCursor position            = null;
+	private String identifier                = null;
 	private String base                      = null;
+	private String where                     = null;
 	private int pageSize                     = 0;
 	private int page                         = 0;
 	private QueryContext queryContext        = new QueryContext();
@@ -39,11 +43,43 @@ public class SimpleCypherQuery implements PageableQuery {
 		this.base     = base;
 	}
 
+	/**
+	 * Creates a query that returns the given identifier of the MATCH
+	 * clause in batches ordered by ID, each batch resumes after the ID
+	 * of the last object of the previous batch, so the database does not
+	 * need to skip all previous results.
+	 *
+	 * @param match the MATCH clause
+	 * @param where an optional condition, or null
+	 * @param identifier the identifier to return
+	 */
+	public SimpleCypherQuery(final String match, final String where, final String identifier) {
+
+		this.pageSize   = 10000;
+		this.base       = match;
+		this.where      = where;
+		this.identifier = identifier;
+	}
+
 	@Override
 	public void nextPage() {
 		page++;
 	}
 
+	@Override
+	public void continueAfter(final PagingCursor position) {
+
+		// arbitrary statements cannot be extended with a keyset condition
+		if (identifier != null) {
+			this.position = position;
+		}
+	}
+
+	@Override
+	public boolean startsOverWhenContinued() {
+		return false;
+	}
+
 	@Override
 	public int pageSize() {
 		return this.pageSize;
@@ -59,8 +95,41 @@ public class SimpleCypherQuery implements PageableQuery {
 
 		final StringBuilder buf = new StringBuilder(base);
 
-		buf.append(" SKIP ");
-		buf.append(page * pageSize);
+		if (identifier != null) {
+
+			if (where != null || position != null) {
+
+				buf.append(" WHERE ");
+			}
+
+			if (where != null) {
+
+				buf.append(where);
+
+				if (position != null) {
+					buf.append(" AND ");
+				}
+			}
+
+			if (position != null) {
+
+				buf.append("id(");
+				buf.append(identifier);
+				buf.append(") > {keysetId}");
+			}
+
+			buf.append(" RETURN ");
+			buf.append(identifier);
+			buf.append(" ORDER BY id(");
+			buf.append(identifier);
+			buf.append(")");
+
+		} else {
+
+			buf.append(" SKIP ");
+			buf.append(page * pageSize);
+		}
+
 		buf.append(" LIMIT ");
 		buf.append(pageSize);
 
@@ -69,6 +138,17 @@ public class SimpleCypherQuery implements PageableQuery {
 
 	@Override
 	public Map<String, Object> getParameters() {
+
+		if (position != null) {
+
+			// the keyset parameter is not part of the parameters of the query
+			final Map<String, Object> map = new LinkedHashMap<>(params);
+
+			map.put("keysetId", position.getId());
+
+			return map;
+		}
+
 		return params;
 	}
 
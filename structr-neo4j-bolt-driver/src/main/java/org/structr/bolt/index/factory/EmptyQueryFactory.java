@@ -28,8 +28,19 @@ public class EmptyQueryFactory extends AbstractQueryFactory {
 
 		checkOccur(query, predicate.getOccurrence(), isFirst);
 
-		// not empty query is simple
-		query.addSimpleParameter(predicate.getName(), "is", null);
+		if (String.class.equals(predicate.getType())) {
+
+			// blank strings are considered empty as well
+			query.beginGroup();
+			query.addSimpleParameter(predicate.getName(), "is", null);
+			query.or();
+			query.addSimpleParameter("trim(n.`" + predicate.getName() + "`)", "=", "", false);
+			query.endGroup();
+
+		} else {
+
+			query.addSimpleParameter(predicate.getName(), "is", null);
+		}
 
 		return true;
 	}
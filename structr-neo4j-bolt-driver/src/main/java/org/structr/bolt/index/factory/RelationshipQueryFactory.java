@@ -25,6 +25,16 @@ public class RelationshipQueryFactory extends AbstractQueryFactory {
 
 	@Override
 	public boolean createQuery(final QueryFactory parent, final QueryPredicate predicate, final AdvancedCypherQuery query, final boolean isFirst) {
+
+		checkOccur(query, predicate.getOccurrence(), isFirst);
+
+		// both nodes of the relationship must be visible
+		query.beginGroup();
+		query.addSimpleParameter("startNode(n).`" + predicate.getName() + "`", "=", true, false);
+		query.and();
+		query.addSimpleParameter("endNode(n).`" + predicate.getName() + "`", "=", true, false);
+		query.endGroup();
+
 		return true;
 	}
 }
@@ -27,25 +27,32 @@ import org.structr.bolt.index.AdvancedCypherQuery;
  */
 public class SpatialQueryFactory extends AbstractQueryFactory {
 
+	private static final double KILOMETERS_PER_DEGREE = 111.195;
+
 	@Override
 	public boolean createQuery(final QueryFactory parent, final QueryPredicate predicate, final AdvancedCypherQuery query, final boolean isFirst) {
 
 		if (predicate instanceof SpatialQuery) {
 
-			checkOccur(query, predicate.getOccurrence(), isFirst);
-
 			final SpatialQuery spatial = (SpatialQuery)predicate;
 			final StringBuilder buf    = new StringBuilder();
 			final Double[] coords      = spatial.getCoords();
+			final Double distance      = spatial.getDistance();
 
-			if (coords == null || coords.length != 2)  {
+			if (coords == null || coords.length != 2 || coords[0] == null || coords[1] == null || distance == null)  {
 				return false;
 			}
 
+			checkOccur(query, predicate.getOccurrence(), isFirst);
+
+			final double latitude   = coords[0];
+			final double longitude  = coords[1];
+			final double latDelta   = distance / KILOMETERS_PER_DEGREE;
+
 			buf.append("distance(point({latitude:");
-			buf.append(coords[0]);
+			buf.append(latitude);
 			buf.append(",longitude:");
-			buf.append(coords[1]);
+			buf.append(longitude);
 			buf.append("}), point({latitude: n.latitude, longitude: n.longitude}))");
 
 			// do not include nodes that have no lat/lon properties
@@ -53,8 +60,32 @@ public class SpatialQueryFactory extends AbstractQueryFactory {
 			query.addSimpleParameter("latitude", "IS NOT", null);
 			query.and();
 			query.addSimpleParameter("longitude", "IS NOT", null);
+
+			// bounding box around the search circle, allows the
+			// database to use range lookups on indexed coordinates
+			query.and();
+			query.addParameters("latitude", ">=", latitude - latDelta, "<=", latitude + latDelta);
+
+			// the longitude range is the widest extent of the search circle,
+			// which is reached north or south of the center's parallel
+			final double ratio = Math.sin(Math.toRadians(latDelta)) / Math.cos(Math.toRadians(latitude));
+
+			// skip longitude range if the circle contains a pole
+			if (Math.abs(latitude) + latDelta < 90.0 && ratio < 1.0) {
+
+				final double lonDelta = Math.toDegrees(Math.asin(ratio));
+
+				// skip longitude range if the box crosses the antimeridian
+				if (longitude - lonDelta >= -180.0 && longitude + lonDelta <= 180.0) {
+
+					query.and();
+					query.addParameters("longitude", ">=", longitude - lonDelta, "<=", longitude + lonDelta);
+				}
+			}
+
+			// exact great-circle distance for the remaining candidates
 			query.and();
-			query.addSimpleParameter(buf.toString(), "<", spatial.getDistance() * 1000.0, false); // distance is in kilometers
+			query.addSimpleParameter(buf.toString(), "<", distance * 1000.0, false); // distance is in kilometers
 			query.endGroup();
 
 			return true;
@@ -62,5 +93,4 @@ public class SpatialQueryFactory extends AbstractQueryFactory {
 
 		return false;
 	}
-
 }
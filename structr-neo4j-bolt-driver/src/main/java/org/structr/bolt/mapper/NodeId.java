@@ -29,14 +29,24 @@ import org.neo4j.driver.v1.types.Path;
 public class NodeId {
 
 	private List<Path> paths = null;
+	private Object sortValue = null;
 	private long nodeId      = -1L;
 
 	public NodeId(final Record record) {
 
 		this.nodeId = record.get(0).asLong();
+
+		// sorted queries return the sort key in the second column
+		if (record.size() > 1) {
+			this.sortValue = record.get(1).asObject();
+		}
 	}
 
 	public long getNode() {
 		return this.nodeId;
 	}
+
+	public Object getSortValue() {
+		return this.sortValue;
+	}
 }
@@ -26,6 +26,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import org.neo4j.driver.v1.exceptions.NoSuchRecordException;
 import org.neo4j.driver.v1.types.Entity;
 import org.slf4j.Logger;
@@ -133,13 +134,13 @@ public abstract class EntityWrapper<T extends Entity> implements PropertyContain
 		if (needsUpdate(key, value)) {
 
 			final Map<String, Object> map = new HashMap<>();
-			final String query            = getQueryPrefix() + " WHERE ID(n) = {id} SET n.`" + key + "` = {value}";
+			final String query            = getStatement(isNode() ? "setNodeProperty" : "setRelationshipProperty", key, () -> getQueryPrefix() + " WHERE ID(n) = {id} SET n.`" + key + "` = {value}");
 
 			map.put("id", id);
 			map.put("value", value);
 
 			// update entity handle
-			tx.set(query, map);
+			tx.setAsync(query, map);
 
 			// update data
 			update(key, value);
@@ -162,14 +163,14 @@ public abstract class EntityWrapper<T extends Entity> implements PropertyContain
 
 			final Map<String, Object> map = new HashMap<>();
 			final SessionTransaction tx   = db.getCurrentTransaction();
-			final String query            = getQueryPrefix() + " WHERE ID(n) = {id} SET n += {properties}";
+			final String query            = getStatement(isNode() ? "setNodeProperties" : "setRelationshipProperties", null, () -> getQueryPrefix() + " WHERE ID(n) = {id} SET n += {properties}");
 
 			// overwrite a potential "id" property
 			map.put("id", id);
 			map.put("properties", values);
 
 			// execute query
-			tx.set(query, map);
+			tx.setAsync(query, map);
 
 			// update data
 			update(values);
@@ -185,12 +186,12 @@ public abstract class EntityWrapper<T extends Entity> implements PropertyContain
 
 		final SessionTransaction tx   = db.getCurrentTransaction();
 		final Map<String, Object> map = new HashMap<>();
-		final String query            = getQueryPrefix() + " WHERE ID(n) = {id} SET n.`" + key + "` = Null";
+		final String query            = getStatement(isNode() ? "removeNodeProperty" : "removeRelationshipProperty", key, () -> getQueryPrefix() + " WHERE ID(n) = {id} SET n.`" + key + "` = Null");
 
 		map.put("id", id);
 
 		// execute query
-		tx.set(query, map);
+		tx.setAsync(query, map);
 
 		// remove key from data
 		data.remove(key);
@@ -213,21 +214,11 @@ public abstract class EntityWrapper<T extends Entity> implements PropertyContain
 
 		final SessionTransaction tx   = db.getCurrentTransaction();
 		final Map<String, Object> map = new HashMap<>();
-		final StringBuilder buf       = new StringBuilder();
+		final String query            = getStatement(isNode() ? "deleteNode" : "deleteRelationship", deleteRelationships, () -> getQueryPrefix() + " WHERE ID(n) = {id}" + (deleteRelationships ? " DETACH" : "") + " DELETE n");
 
 		map.put("id", id);
 
-		buf.append(getQueryPrefix());
-		buf.append(" WHERE ID(n) = {id}");
-
-		if (deleteRelationships) {
-
-			buf.append(" DETACH");
-		}
-
-		buf.append(" DELETE n");
-
-		tx.set(buf.toString(), map);
+		tx.set(query, map);
 		setModified();
 
 		stale = true;
@@ -251,6 +242,10 @@ public abstract class EntityWrapper<T extends Entity> implements PropertyContain
 	}
 
 	// ----- protected methods -----
+	protected String getStatement(final String operation, final Object type, final Supplier<String> source) {
+		return db.getStatementCache().get(operation, type, source);
+	}
+
 	protected synchronized void assertNotStale() {
 
 		if (stale) {
@@ -271,7 +266,7 @@ public abstract class EntityWrapper<T extends Entity> implements PropertyContain
 			try {
 
 				// update data
-				update(tx.getEntity(getQueryPrefix() + " WHERE ID(n) = {id} RETURN n", map).asMap());
+				update(tx.getEntity(getStatement(isNode() ? "getNode" : "getRelationship", null, () -> getQueryPrefix() + " WHERE ID(n) = {id} RETURN n"), map).asMap());
 
 			} catch (NoSuchRecordException nex) {
 				throw new NotFoundException(nex);
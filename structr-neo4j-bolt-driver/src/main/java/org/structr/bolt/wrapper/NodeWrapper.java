@@ -18,6 +18,9 @@
  */
 package org.structr.bolt.wrapper;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -26,6 +29,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import org.neo4j.driver.v1.Record;
 import org.structr.api.NotFoundException;
 import org.structr.api.QueryResult;
 import org.structr.api.graph.Direction;
@@ -33,10 +37,11 @@ import org.structr.api.graph.Label;
 import org.structr.api.graph.Node;
 import org.structr.api.graph.Relationship;
 import org.structr.api.graph.RelationshipType;
-import org.structr.api.util.FixedSizeCache;
 import org.structr.api.util.Iterables;
+import org.structr.api.util.SegmentedFixedSizeCache;
 import org.structr.bolt.BoltDatabaseService;
 import org.structr.bolt.SessionTransaction;
+import org.structr.bolt.StatementCache;
 import org.structr.bolt.mapper.RelationshipRelationshipMapper;
 
 /**
@@ -44,8 +49,10 @@ import org.structr.bolt.mapper.RelationshipRelationshipMapper;
  */
 public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> implements Node {
 
+	private static final int PREFETCH_BATCH_SIZE                                = 1000;
+
 	private final Map<String, Map<String, Set<Relationship>>> relationshipCache = new HashMap<>();
-	private static FixedSizeCache<Long, NodeWrapper> nodeCache                  = null;
+	private static SegmentedFixedSizeCache<Long, NodeWrapper> nodeCache         = null;
 	private boolean dontUseCache                                                = false;
 
 	private NodeWrapper(final BoltDatabaseService db, final org.neo4j.driver.v1.types.Node node) {
@@ -53,19 +60,16 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 	}
 
 	public static void initialize(final int cacheSize) {
-		nodeCache = new FixedSizeCache<>(cacheSize);
+		nodeCache = new SegmentedFixedSizeCache<>(cacheSize);
 	}
 
 	@Override
 	protected String getQueryPrefix() {
 
-		final String tenantIdentifier = db.getTenantIdentifier();
-		if (tenantIdentifier != null) {
-
-			return "MATCH (n:" + tenantIdentifier + ")";
-		}
+		final StatementCache statements = db.getStatementCache();
+		final String tenant             = statements.getTenantLabel();
 
-		return "MATCH (n)";
+		return statements.get("nodePrefix", () -> "MATCH (n" + tenant + ")");
 	}
 
 	@Override
@@ -97,39 +101,21 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 
 		dontUseCache = true;
 
-		final SessionTransaction tx   = db.getCurrentTransaction();
-		final Map<String, Object> map = new HashMap<>();
-		final NodeWrapper otherNode   = (NodeWrapper)endNode;
-		final String tenantIdentifier = db.getTenantIdentifier();
-		final StringBuilder buf       = new StringBuilder();
+		final SessionTransaction tx     = db.getCurrentTransaction();
+		final Map<String, Object> map   = new HashMap<>();
+		final NodeWrapper otherNode     = (NodeWrapper)endNode;
+		final StatementCache statements = db.getStatementCache();
+		final String tenant             = statements.getTenantLabel();
+		final String type               = relationshipType.name();
+		final String statement          = statements.get("createRelationship", Direction.OUTGOING, type, () ->
+			"MATCH (n" + tenant + "), (m" + tenant + ") WHERE ID(n) = {id1} AND ID(m) = {id2} MERGE (n)-[r:" + type + "]->(m) SET r += {relProperties} RETURN r"
+		);
 
 		map.put("id1", id);
 		map.put("id2", endNode.getId());
 		map.put("relProperties", properties);
 
-		buf.append("MATCH (n");
-
-		if (tenantIdentifier != null) {
-
-			buf.append(":");
-			buf.append(tenantIdentifier);
-		}
-
-		buf.append("), (m");
-
-		if (tenantIdentifier != null) {
-
-			buf.append(":");
-			buf.append(tenantIdentifier);
-		}
-
-		buf.append(") WHERE ID(n) = {id1} AND ID(m) = {id2} ");
-		buf.append("MERGE (n)-[r:");
-		buf.append(relationshipType.name());
-		buf.append("]->(m)");
-		buf.append(" SET r += {relProperties} RETURN r");
-
-		final org.neo4j.driver.v1.types.Relationship rel = tx.getRelationship(buf.toString(), map);
+		final org.neo4j.driver.v1.types.Relationship rel = tx.getRelationship(statement, map);
 
 		setModified();
 		otherNode.setModified();
@@ -150,13 +136,15 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 
 		assertNotStale();
 
-		final SessionTransaction tx   = db.getCurrentTransaction();
-		final Map<String, Object> map = new HashMap<>();
-		final String tenantIdentifier = db.getTenantIdentifier();
+		final SessionTransaction tx     = db.getCurrentTransaction();
+		final Map<String, Object> map   = new HashMap<>();
+		final StatementCache statements = db.getStatementCache();
+		final String tenant             = statements.getTenantLabel();
+		final String name               = label.name();
 
 		map.put("id", id);
 
-		tx.set("MATCH (n" + (tenantIdentifier != null ? ":" + tenantIdentifier : "") + ") WHERE ID(n) = {id} SET n :" + label.name(), map);
+		tx.setAsync(statements.get("addLabel", name, () -> "MATCH (n" + tenant + ") WHERE ID(n) = {id} SET n :" + name), map);
 
 		setModified();
 	}
@@ -166,13 +154,15 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 
 		assertNotStale();
 
-		final SessionTransaction tx   = db.getCurrentTransaction();
-		final Map<String, Object> map = new HashMap<>();
-		final String tenantIdentifier = db.getTenantIdentifier();
+		final SessionTransaction tx     = db.getCurrentTransaction();
+		final Map<String, Object> map   = new HashMap<>();
+		final StatementCache statements = db.getStatementCache();
+		final String tenant             = statements.getTenantLabel();
+		final String name               = label.name();
 
 		map.put("id", id);
 
-		tx.set("MATCH (n" + (tenantIdentifier != null ? ":" + tenantIdentifier : "") + ") WHERE ID(n) = {id} REMOVE n:" + label.name(), map);
+		tx.setAsync(statements.get("removeLabel", name, () -> "MATCH (n" + tenant + ") WHERE ID(n) = {id} REMOVE n:" + name), map);
 		setModified();
 	}
 
@@ -181,15 +171,16 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 
 		assertNotStale();
 
-		final SessionTransaction tx   = db.getCurrentTransaction();
-		final Map<String, Object> map = new HashMap<>();
-		final List<Label> result      = new LinkedList<>();
-		final String tenantIdentifier = db.getTenantIdentifier();
+		final SessionTransaction tx     = db.getCurrentTransaction();
+		final Map<String, Object> map   = new HashMap<>();
+		final List<Label> result        = new LinkedList<>();
+		final StatementCache statements = db.getStatementCache();
+		final String tenant             = statements.getTenantLabel();
 
 		map.put("id", id);
 
 		// execute query
-		for (final String label : tx.getStrings("MATCH (n" + (tenantIdentifier != null ? ":" + tenantIdentifier : "") + ") WHERE ID(n) = {id} RETURN LABELS(n)", map)) {
+		for (final String label : tx.getStrings(statements.get("getLabels", () -> "MATCH (n" + tenant + ") WHERE ID(n) = {id} RETURN LABELS(n)"), map)) {
 			result.add(db.forName(Label.class, label));
 		}
 
@@ -203,7 +194,9 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 
 		final SessionTransaction tx      = db.getCurrentTransaction();
 		final Map<String, Object> params = new LinkedHashMap<>();
-		final String tenantIdentifier    = db.getTenantIdentifier();
+		final StatementCache statements  = db.getStatementCache();
+		final String tenant              = statements.getTenantLabel();
+		final String name                = type.name();
 
 		params.put("id1", getId());
 		params.put("id2", targetNode.getId());
@@ -212,12 +205,8 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 
 			// try to fetch existing relationship by node ID(s)
 			// FIXME: this call can be very slow when lots of relationships exist
-			tx.getLong(
-				"MATCH (n" +
-				(tenantIdentifier != null ? ":" + tenantIdentifier : "") +
-				")-[r:" + type.name() +
-				"]->(m" + (tenantIdentifier != null ? ":" + tenantIdentifier : "") +
-				") WHERE id(n) = {id1} AND id(m) = {id2} RETURN id(r)",
+			tx.getLong(statements.get("hasRelationshipTo", Direction.OUTGOING, name, () ->
+				"MATCH (n" + tenant + ")-[r:" + name + "]->(m" + tenant + ") WHERE id(n) = {id1} AND id(m) = {id2} RETURN id(r)"),
 				params
 			);
 
@@ -242,11 +231,10 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 		if (list == null || dontUseCache) {
 
 			final Map<String, Object> map = new HashMap<>();
-			final String tenantIdentifier = db.getTenantIdentifier();
 
 			map.put("id", id);
 
-			list = toSet(Iterables.map(mapper, tx.getRelationships("MATCH (n" + (tenantIdentifier != null ? ":" + tenantIdentifier : "") + ")-[r]-() WHERE ID(n) = {id} RETURN DISTINCT r", map)));
+			list = toSet(Iterables.map(mapper, tx.getRelationships(getRelationshipsStatement(Direction.BOTH, null), map)));
 
 			// store in cache
 			setRelationshipCache(null, null, list);
@@ -267,7 +255,6 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 		if (list == null || dontUseCache) {
 
 			final Map<String, Object> map = new HashMap<>();
-			final String tenantIdentifier = db.getTenantIdentifier();
 
 			map.put("id", id);
 
@@ -277,11 +264,8 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 					return getRelationships();
 
 				case OUTGOING:
-					list = toSet(Iterables.map(mapper, tx.getRelationships("MATCH (n" + (tenantIdentifier != null ? ":" + tenantIdentifier : "") + ")-[r]->() WHERE ID(n) = {id} RETURN DISTINCT r", map)));
-					break;
-
 				case INCOMING:
-					list = toSet(Iterables.map(mapper, tx.getRelationships("MATCH (n" + (tenantIdentifier != null ? ":" + tenantIdentifier : "") + ")<-[r]-() WHERE ID(n) = {id} RETURN DISTINCT r", map)));
+					list = toSet(Iterables.map(mapper, tx.getRelationships(getRelationshipsStatement(direction, null), map)));
 					break;
 			}
 
@@ -304,24 +288,10 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 		if (list == null || dontUseCache) {
 
 			final Map<String, Object> map = new HashMap<>();
-			final String tenantIdentifier = db.getTenantIdentifier();
 
 			map.put("id", id);
 
-			switch (direction) {
-
-				case BOTH:
-					list = toSet(Iterables.map(mapper, tx.getRelationships("MATCH (n" + (tenantIdentifier != null ? ":" + tenantIdentifier : "") + ")-[r:" + relationshipType.name() + "]-(o WHERE ID(n) = {id} RETURN DISTINCT r", map)));
-					break;
-
-				case OUTGOING:
-					list = toSet(Iterables.map(mapper, tx.getRelationships("MATCH (n" + (tenantIdentifier != null ? ":" + tenantIdentifier : "") + ")-[r:" + relationshipType.name() + "]->() WHERE ID(n) = {id} RETURN DISTINCT r", map)));
-					break;
-
-				case INCOMING:
-					list = toSet(Iterables.map(mapper, tx.getRelationships("MATCH (n" + (tenantIdentifier != null ? ":" + tenantIdentifier : "") + ")<-[r:" + relationshipType.name() + "]-() WHERE ID(n) = {id} RETURN DISTINCT r", map)));
-					break;
-			}
+			list = toSet(Iterables.map(mapper, tx.getRelationships(getRelationshipsStatement(direction, relationshipType.name()), map)));
 
 			setRelationshipCache(direction, relationshipType, list);
 		}
@@ -374,70 +344,137 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 	}
 
 	// ----- public static methods -----
-	public static FixedSizeCache<Long, NodeWrapper> getCache() {
+	public static SegmentedFixedSizeCache<Long, NodeWrapper> getCache() {
 		return nodeCache;
 	}
 
 	public static void expunge(final Set<Long> toRemove) {
-
-		synchronized (nodeCache) {
-
-			nodeCache.removeAll(toRemove);
-		}
+		nodeCache.removeAll(toRemove);
 	}
 
 	public static void clearCache() {
+		nodeCache.clear();
+	}
 
-		synchronized (nodeCache) {
+	/**
+	 * Loads the relationships of the given direction and type for all given
+	 * nodes with a single query per batch and stores them in the relationship
+	 * cache of each node, so that subsequent calls to getRelationships() for
+	 * these nodes don't need a database round-trip.
+	 *
+	 * @param db
+	 * @param nodes
+	 * @param direction
+	 * @param relationshipType the relationship type or null for all types
+	 */
+	public static void prefetchRelationships(final BoltDatabaseService db, final Collection<Node> nodes, final Direction direction, final RelationshipType relationshipType) {
 
-			nodeCache.clear();
-		}
-	}
+		// getRelationships(BOTH) without type is cached under the wildcard key
+		final Direction cacheDirection        = Direction.BOTH.equals(direction) && relationshipType == null ? null : direction;
+		final String type                     = relationshipType != null ? relationshipType.name() : null;
+		final Map<Long, NodeWrapper> wrappers = new LinkedHashMap<>();
 
-	public static NodeWrapper newInstance(final BoltDatabaseService db, final org.neo4j.driver.v1.types.Node node) {
+		for (final Node node : nodes) {
+
+			if (node instanceof NodeWrapper) {
 
-		synchronized (nodeCache) {
+				final NodeWrapper wrapper = (NodeWrapper)node;
 
-			NodeWrapper wrapper = nodeCache.get(node.id());
-			if (wrapper == null || wrapper.stale) {
+				if (!wrapper.stale && !wrapper.dontUseCache && wrapper.getRelationshipCache(cacheDirection, relationshipType) == null) {
 
-				wrapper = new NodeWrapper(db, node);
-				nodeCache.put(node.id(), wrapper);
+					wrappers.put(wrapper.getId(), wrapper);
+				}
 			}
+		}
 
-			return wrapper;
+		if (wrappers.isEmpty()) {
+			return;
 		}
-	}
 
-	public static NodeWrapper newInstance(final BoltDatabaseService db, final long id) {
+		final StatementCache statements = db.getStatementCache();
+		final String tenant             = statements.getTenantLabel();
+		final String statement          = statements.get("prefetchRelationships", direction, type, () -> {
+
+			final String rel = type != null ? "[r:" + type + "]" : "[r]";
+
+			switch (direction) {
+
+				case OUTGOING:
+					return "UNWIND {ids} AS id MATCH (n" + tenant + ")-" + rel + "->() WHERE ID(n) = id RETURN id, collect(DISTINCT r)";
 
-		synchronized (nodeCache) {
+				case INCOMING:
+					return "UNWIND {ids} AS id MATCH (n" + tenant + ")<-" + rel + "-() WHERE ID(n) = id RETURN id, collect(DISTINCT r)";
 
-			NodeWrapper wrapper = nodeCache.get(id);
-			if (wrapper == null || wrapper.stale) {
+				default:
+					return "UNWIND {ids} AS id MATCH (n" + tenant + ")-" + rel + "-() WHERE ID(n) = id RETURN id, collect(DISTINCT r)";
+			}
+		});
 
-				final SessionTransaction tx   = db.getCurrentTransaction();
-				final Map<String, Object> map = new HashMap<>();
+		final SessionTransaction tx = db.getCurrentTransaction();
+		final List<Long> ids        = new ArrayList<>(wrappers.keySet());
 
-				map.put("id", id);
+		for (int i=0; i<ids.size(); i+=PREFETCH_BATCH_SIZE) {
 
-				final QueryResult<org.neo4j.driver.v1.types.Node> result = tx.getNodes("MATCH (n) WHERE ID(n) = {id} RETURN DISTINCT n", map);
-				final Iterator<org.neo4j.driver.v1.types.Node> iterator  = result.iterator();
+			final List<Long> batch                        = ids.subList(i, Math.min(ids.size(), i + PREFETCH_BATCH_SIZE));
+			final Map<Long, List<Relationship>> adjacency = new HashMap<>();
+			final Map<String, Object> map                 = new HashMap<>();
 
-				if (iterator.hasNext()) {
+			map.put("ids", batch);
 
-					wrapper = NodeWrapper.newInstance(db, iterator.next());
+			for (final Record record : tx.getRecords(statement, map)) {
 
-					nodeCache.put(id, wrapper);
+				final List<Relationship> list = new LinkedList<>();
 
-				} else {
+				for (final Object rel : record.get(1).asList()) {
 
-					throw new NotFoundException("Node with ID " + id + " not found.");
+					list.add(RelationshipWrapper.newInstance(db, (org.neo4j.driver.v1.types.Relationship)rel));
 				}
+
+				adjacency.put(record.get(0).asLong(), list);
+			}
+
+			// nodes without a result row have no matching relationships
+			for (final Long id : batch) {
+
+				final NodeWrapper wrapper     = wrappers.get(id);
+				final List<Relationship> list = adjacency.get(id);
+
+				wrapper.setRelationshipCache(cacheDirection, relationshipType, wrapper.toSet(list != null ? list : Collections.emptyList()));
 			}
+		}
+	}
+
+	public static NodeWrapper newInstance(final BoltDatabaseService db, final org.neo4j.driver.v1.types.Node node) {
+		return nodeCache.getOrCreate(node.id(), wrapper -> !wrapper.stale, id -> new NodeWrapper(db, node));
+	}
+
+	public static NodeWrapper newInstance(final BoltDatabaseService db, final long id) {
+
+		final NodeWrapper wrapper = nodeCache.get(id, cached -> !cached.stale);
+		if (wrapper != null) {
 
 			return wrapper;
 		}
+
+		// fetch node outside of the cache lock, concurrent lookups
+		// for the same ID are resolved when the wrapper is stored
+		final SessionTransaction tx   = db.getCurrentTransaction();
+		final Map<String, Object> map = new HashMap<>();
+
+		map.put("id", id);
+
+		final QueryResult<org.neo4j.driver.v1.types.Node> result = tx.getNodes("MATCH (n) WHERE ID(n) = {id} RETURN DISTINCT n", map);
+		final Iterator<org.neo4j.driver.v1.types.Node> iterator  = result.iterator();
+
+		if (iterator.hasNext()) {
+
+			final org.neo4j.driver.v1.types.Node node = iterator.next();
+
+			// the miss was already counted above
+			return nodeCache.getOrCreate(id, cached -> !cached.stale, key -> new NodeWrapper(db, node), false);
+		}
+
+		throw new NotFoundException("Node with ID " + id + " not found.");
 	}
 
 	// ----- protected methods -----
@@ -447,6 +484,29 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 	}
 
 	// ----- private methods -----
+	private String getRelationshipsStatement(final Direction direction, final String type) {
+
+		final StatementCache statements = db.getStatementCache();
+		final String tenant             = statements.getTenantLabel();
+
+		return statements.get("getRelationships", direction, type, () -> {
+
+			final String rel = type != null ? "[r:" + type + "]" : "[r]";
+
+			switch (direction) {
+
+				case OUTGOING:
+					return "MATCH (n" + tenant + ")-" + rel + "->() WHERE ID(n) = {id} RETURN DISTINCT r";
+
+				case INCOMING:
+					return "MATCH (n" + tenant + ")<-" + rel + "-() WHERE ID(n) = {id} RETURN DISTINCT r";
+
+				default:
+					return "MATCH (n" + tenant + ")-" + rel + "-() WHERE ID(n) = {id} RETURN DISTINCT r";
+			}
+		});
+	}
+
 	private Map<String, Set<Relationship>> getCache(final Direction direction) {
 
 		final String directionKey            = direction != null ? direction.name() : "*";
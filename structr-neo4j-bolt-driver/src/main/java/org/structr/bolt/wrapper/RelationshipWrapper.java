@@ -25,16 +25,17 @@ import org.structr.api.graph.Direction;
 import org.structr.api.graph.Node;
 import org.structr.api.graph.Relationship;
 import org.structr.api.graph.RelationshipType;
-import org.structr.api.util.FixedSizeCache;
+import org.structr.api.util.SegmentedFixedSizeCache;
 import org.structr.bolt.BoltDatabaseService;
 import org.structr.bolt.SessionTransaction;
+import org.structr.bolt.StatementCache;
 
 /**
  *
  */
 public class RelationshipWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Relationship> implements Relationship {
 
-	private static FixedSizeCache<Long, RelationshipWrapper> relationshipCache = null;
+	private static SegmentedFixedSizeCache<Long, RelationshipWrapper> relationshipCache = null;
 
 	private long sourceNodeId = -1L;
 	private long targetNodeId = -1L;
@@ -50,19 +51,16 @@ public class RelationshipWrapper extends EntityWrapper<org.neo4j.driver.v1.types
 	}
 
 	public static void initialize(final int cacheSize) {
-		relationshipCache = new FixedSizeCache<>(cacheSize);
+		relationshipCache = new SegmentedFixedSizeCache<>(cacheSize);
 	}
 
 	@Override
 	protected String getQueryPrefix() {
 
-		final String tenantIdentifier = db.getTenantIdentifier();
-		if (tenantIdentifier != null) {
+		final StatementCache statements = db.getStatementCache();
+		final String tenant             = statements.getTenantLabel();
 
-			return "MATCH (s:" + tenantIdentifier + ")-[n]->(t:" + tenantIdentifier + ")";
-		}
-
-		return "MATCH (s)-[n]->(t)";
+		return statements.get("relationshipPrefix", () -> "MATCH (s" + tenant + ")-[n]->(t" + tenant + ")");
 	}
 
 	@Override
@@ -94,11 +92,7 @@ public class RelationshipWrapper extends EntityWrapper<org.neo4j.driver.v1.types
 	}
 
 	public static void expunge(final Set<Long> toRemove) {
-
-		synchronized (relationshipCache) {
-
-			relationshipCache.removeAll(toRemove);
-		}
+		relationshipCache.removeAll(toRemove);
 	}
 
 	@Override
@@ -181,7 +175,7 @@ public class RelationshipWrapper extends EntityWrapper<org.neo4j.driver.v1.types
 	}
 
 	// ----- public static methods -----
-	public static FixedSizeCache<Long, RelationshipWrapper> getCache() {
+	public static SegmentedFixedSizeCache<Long, RelationshipWrapper> getCache() {
 		return relationshipCache;
 	}
 
@@ -190,55 +184,29 @@ public class RelationshipWrapper extends EntityWrapper<org.neo4j.driver.v1.types
 	}
 
 	public static RelationshipWrapper newInstance(final BoltDatabaseService db, final org.neo4j.driver.v1.types.Relationship relationship) {
-
-		synchronized (relationshipCache) {
-
-			RelationshipWrapper wrapper = relationshipCache.get(relationship.id());
-			if (wrapper == null || wrapper.stale) {
-
-				wrapper = new RelationshipWrapper(db, relationship);
-				relationshipCache.put(relationship.id(), wrapper);
-			}
-
-			return wrapper;
-		}
+		return relationshipCache.getOrCreate(relationship.id(), wrapper -> !wrapper.stale, id -> new RelationshipWrapper(db, relationship));
 	}
 
 	public static RelationshipWrapper newInstance(final BoltDatabaseService db, final long id) {
 
-		synchronized (relationshipCache) {
-
-			RelationshipWrapper wrapper = relationshipCache.get(id);
-			if (wrapper == null || wrapper.stale) {
-
-				final SessionTransaction tx   = db.getCurrentTransaction();
-				final Map<String, Object> map = new HashMap<>();
-				final StringBuilder buf       = new StringBuilder();
-				final String tenantIdentifier = db.getTenantIdentifier();
-
-				map.put("id", id);
-
-				buf.append("MATCH (");
+		final RelationshipWrapper wrapper = relationshipCache.get(id, cached -> !cached.stale);
+		if (wrapper != null) {
 
-				if (tenantIdentifier != null) {
-					buf.append(":");
-					buf.append(tenantIdentifier);
-				}
-
-				buf.append(")-[n]-(");
+			return wrapper;
+		}
 
-				if (tenantIdentifier != null) {
-					buf.append(":");
-					buf.append(tenantIdentifier);
-				}
+		// fetch relationship outside of the cache lock, concurrent lookups
+		// for the same ID are resolved when the wrapper is stored
+		final SessionTransaction tx     = db.getCurrentTransaction();
+		final Map<String, Object> map   = new HashMap<>();
+		final StatementCache statements = db.getStatementCache();
+		final String tenant             = statements.getTenantLabel();
 
-				buf.append(") WHERE ID(n) = {id} RETURN n");
+		map.put("id", id);
 
-				wrapper = new RelationshipWrapper(db, tx.getRelationship(buf.toString(), map));
-					relationshipCache.put(id, wrapper);
-				}
+		final org.neo4j.driver.v1.types.Relationship relationship = tx.getRelationship(statements.get("getRelationshipById", Direction.BOTH, null, () -> "MATCH (" + tenant + ")-[n]-(" + tenant + ") WHERE ID(n) = {id} RETURN n"), map);
 
-			return wrapper;
-		}
+		// the miss was already counted above
+		return relationshipCache.getOrCreate(id, cached -> !cached.stale, key -> new RelationshipWrapper(db, relationship), false);
 	}
 }
@@ -0,0 +1,98 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.bolt;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.structr.api.search.PagingCursor;
+import org.structr.api.search.QueryContext;
+import org.structr.api.search.SortType;
+import org.structr.bolt.index.AdvancedCypherQuery;
+import org.structr.bolt.index.CypherNodeIndex;
+
+public class AdvancedCypherQueryTest {
+
+	@Test
+	public void testKeysetOrderingOnlyForMultipleBatches() {
+
+		AdvancedCypherQuery.flushCaches();
+
+		final AdvancedCypherQuery query = createQuery();
+
+		Assert.assertEquals("First batch should not be ordered", "MATCH (n:NodeInterface:Test) RETURN DISTINCT n SKIP 0 LIMIT 100000", query.getStatement());
+		Assert.assertTrue("Query should start over when it is continued", query.startsOverWhenContinued());
+
+		query.nextPage();
+		query.continueAfter(new PagingCursor(123L, null));
+
+		Assert.assertEquals("Query should start over in ID order", "MATCH (n:NodeInterface:Test) RETURN DISTINCT n ORDER BY id(n) LIMIT 100000", query.getStatement());
+		Assert.assertFalse("Ordered query should not start over again", query.startsOverWhenContinued());
+
+		query.nextPage();
+		query.continueAfter(new PagingCursor(456L, null));
+
+		Assert.assertEquals("Query should resume after the last object", "MATCH (n:NodeInterface:Test) WHERE id(n) > {keysetId} RETURN DISTINCT n ORDER BY id(n) LIMIT 100000", query.getStatement());
+		Assert.assertEquals("Invalid keyset parameter", 456L, query.getParameters().get("keysetId"));
+	}
+
+	@Test
+	public void testKeysetOrderingForDistinctIds() {
+
+		AdvancedCypherQuery.flushCaches();
+
+		// an unrestricted query for the same type makes the following query fetch IDs only
+		final AdvancedCypherQuery unrestricted = createQuery();
+
+		unrestricted.nextPage();
+		unrestricted.nextPage();
+		unrestricted.nextPage();
+
+		final AdvancedCypherQuery query = createQuery();
+
+		query.addSimpleParameter("name", "=", "test");
+		query.sort(SortType.Default, "name", false);
+
+		Assert.assertTrue("Query should fetch IDs only", query.idsOnly());
+		Assert.assertEquals("First batch should not be ordered by ID", "MATCH (n:NodeInterface:Test) WHERE n.`name` = {param0} RETURN DISTINCT id(n) AS nodeId, n.`name` AS sortKey ORDER BY sortKey SKIP 0 LIMIT 100000", query.getStatement());
+
+		query.nextPage();
+		query.continueAfter(new PagingCursor(123L, "a"));
+
+		query.nextPage();
+		query.continueAfter(new PagingCursor(456L, "b"));
+
+		final String statement = query.getStatement();
+		final String orderBy   = statement.substring(statement.indexOf(" ORDER BY "));
+
+		// ORDER BY after RETURN DISTINCT may only use the returned columns
+		Assert.assertTrue("Query should return distinct IDs", statement.contains(" RETURN DISTINCT id(n) AS nodeId, n.`name` AS sortKey"));
+		Assert.assertEquals("ID order should use the returned column", " ORDER BY sortKey, nodeId LIMIT 100000", orderBy);
+		Assert.assertEquals("Invalid keyset parameter", "b", query.getParameters().get("keysetValue"));
+	}
+
+	// ----- private methods -----
+	private AdvancedCypherQuery createQuery() {
+
+		final AdvancedCypherQuery query = new AdvancedCypherQuery(new QueryContext(), new CypherNodeIndex(new BoltDatabaseService()));
+
+		query.typeLabel("Test");
+
+		return query;
+	}
+}
@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import org.junit.Assert;
 import static org.junit.Assert.fail;
 import org.junit.Test;
@@ -29,6 +30,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.Transaction;
 import org.structr.api.config.Settings;
+import org.structr.api.graph.Direction;
+import org.structr.api.graph.Label;
 import org.structr.api.graph.Node;
 import org.structr.api.graph.Relationship;
 import org.structr.api.graph.RelationshipType;
@@ -168,4 +171,184 @@ public class NodeWrapperTest {
 		s.shutdown();
 	}
 
+	@Test
+	public void testRelationshipsByDirectionAndType() {
+
+		try {
+
+			Settings.DatabasePath.setValue(Files.createTempDirectory("structr-test").toFile().getAbsolutePath());
+			Settings.ConnectionUrl.setValue(Settings.TestingConnectionUrl.getValue());
+
+		} catch (IOException ioex) {
+			logger.warn("", ioex);
+		}
+
+		final BoltDatabaseService s = new BoltDatabaseService();
+		s.initialize();
+
+		try (final Transaction tx = s.beginTx()) {
+
+			final RelationshipType type = s.forName(RelationshipType.class, "TEST");
+			final Node node1            = s.createNode(Collections.EMPTY_SET, Collections.EMPTY_MAP);
+			final Node node2            = s.createNode(Collections.EMPTY_SET, Collections.EMPTY_MAP);
+
+			node1.createRelationshipTo(node2, type);
+
+			tx.success();
+		}
+
+		try (final Transaction tx = s.beginTx()) {
+
+			final RelationshipType type = s.forName(RelationshipType.class, "TEST");
+
+			for (final Node node : s.getAllNodes()) {
+
+				Assert.assertEquals("Invalid getRelationships result", 1, Iterables.count(node.getRelationships(Direction.BOTH, type)));
+			}
+
+			tx.success();
+		}
+
+		// prefetch relationships for all nodes and check that no further queries are needed
+		try (final Transaction tx = s.beginTx()) {
+
+			final RelationshipType type = s.forName(RelationshipType.class, "TEST");
+			final List<Node> nodes      = Iterables.toList(s.getAllNodes());
+
+			s.prefetchRelationships(nodes, Direction.OUTGOING, type);
+			s.prefetchRelationships(nodes, Direction.INCOMING, type);
+
+			final Map<String, Object> before = (Map<String, Object>)s.getStatistics().get("statements");
+
+			for (final Node node : nodes) {
+
+				Assert.assertEquals("Invalid prefetched relationships", 1, Iterables.count(node.getRelationships(Direction.OUTGOING, type)) + Iterables.count(node.getRelationships(Direction.INCOMING, type)));
+			}
+
+			final Map<String, Object> after = (Map<String, Object>)s.getStatistics().get("statements");
+
+			Assert.assertEquals("Prefetched relationships should be served from the cache", before.get("executions"), after.get("executions"));
+
+			tx.success();
+		}
+
+		final Map<String, Object> statements = (Map<String, Object>)s.getStatistics().get("statements");
+
+		Assert.assertTrue("Statement templates should be reused", (Long)statements.get("templateHits") > 0L);
+
+		s.shutdown();
+	}
+
+	@Test
+	public void testPipelinedWrites() {
+
+		try {
+
+			Settings.DatabasePath.setValue(Files.createTempDirectory("structr-test").toFile().getAbsolutePath());
+			Settings.ConnectionUrl.setValue(Settings.TestingConnectionUrl.getValue());
+			Settings.PipelinedWrites.setValue(true);
+
+		} catch (IOException ioex) {
+			logger.warn("", ioex);
+		}
+
+		final BoltDatabaseService s = new BoltDatabaseService();
+		s.initialize();
+
+		try {
+
+			final Label label = s.forName(Label.class, "PipelineTest");
+
+			// queued writes must be visible to subsequent reads in the same transaction
+			try (final Transaction tx = s.beginTx()) {
+
+				for (int i=0; i<10; i++) {
+
+					final Node node = s.createNode(Collections.EMPTY_SET, Collections.EMPTY_MAP);
+
+					node.setProperty("name", "node" + i);
+					node.addLabel(label);
+				}
+
+				Assert.assertEquals("Pipelined writes should be flushed before a read", 10, Iterables.count(s.getNodesByLabel("PipelineTest")));
+
+				tx.success();
+			}
+
+			// queued writes of a failed transaction must be rolled back
+			try (final Transaction tx = s.beginTx()) {
+
+				final Node node = s.createNode(Collections.EMPTY_SET, Collections.EMPTY_MAP);
+
+				node.addLabel(label);
+			}
+
+			try (final Transaction tx = s.beginTx()) {
+
+				Assert.assertEquals("Pipelined writes should be rolled back with the transaction", 10, Iterables.count(s.getNodesByLabel("PipelineTest")));
+
+				tx.success();
+			}
+
+			final Map<String, Object> pipeline = (Map<String, Object>)s.getStatistics().get("pipeline");
+
+			Assert.assertTrue("Writes should be pipelined", (Long)pipeline.get("pipelinedStatements") >= 20L);
+			Assert.assertTrue("Pipeline should be flushed",  (Long)pipeline.get("flushes") > 0L);
+
+		} finally {
+
+			Settings.PipelinedWrites.setValue(false);
+			s.shutdown();
+		}
+	}
+
+	@Test
+	public void testFailedPipelinedWrite() {
+
+		try {
+
+			Settings.DatabasePath.setValue(Files.createTempDirectory("structr-test").toFile().getAbsolutePath());
+			Settings.ConnectionUrl.setValue(Settings.TestingConnectionUrl.getValue());
+			Settings.PipelinedWrites.setValue(true);
+
+		} catch (IOException ioex) {
+			logger.warn("", ioex);
+		}
+
+		final BoltDatabaseService s = new BoltDatabaseService();
+		s.initialize();
+
+		try {
+
+			final Label label = s.forName(Label.class, "FailedPipelineTest");
+
+			// a pipelined write that fails on the server must make the commit fail
+			try (final Transaction tx = s.beginTx()) {
+
+				final Node node = s.createNode(Collections.EMPTY_SET, Collections.EMPTY_MAP);
+
+				node.addLabel(label);
+
+				s.getCurrentTransaction().setAsync("UNWIND [0] AS x WITH x MATCH (n) WHERE ID(n) = x / x RETURN n", Collections.EMPTY_MAP);
+
+				tx.success();
+
+				fail("A failed pipelined write should be reported by success()");
+
+			} catch (RuntimeException expected) {
+			}
+
+			try (final Transaction tx = s.beginTx()) {
+
+				Assert.assertEquals("Writes of a failed transaction should be rolled back", 0, Iterables.count(s.getNodesByLabel("FailedPipelineTest")));
+
+				tx.success();
+			}
+
+		} finally {
+
+			Settings.PipelinedWrites.setValue(false);
+			s.shutdown();
+		}
+	}
 }
@@ -0,0 +1,73 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.bolt;
+
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+import org.structr.api.graph.Direction;
+
+public class StatementCacheTest {
+
+	@Test
+	public void testTemplateReuse() {
+
+		final StatementCache cache = new StatementCache("Tenant");
+		final String tenant        = cache.getTenantLabel();
+
+		final String first  = cache.get("getRelationships", Direction.OUTGOING, "TEST", () -> new String("MATCH (n" + tenant + ")-[r:TEST]->() RETURN r"));
+		final String second = cache.get("getRelationships", Direction.OUTGOING, "TEST", () -> new String("MATCH (n" + tenant + ")-[r:TEST]->() RETURN r"));
+		final String third  = cache.get("getRelationships", Direction.INCOMING, "TEST", () -> new String("MATCH (n" + tenant + ")<-[r:TEST]-() RETURN r"));
+
+		Assert.assertEquals("Invalid tenant label", ":Tenant", tenant);
+		Assert.assertEquals("Invalid statement", "MATCH (n:Tenant)-[r:TEST]->() RETURN r", first);
+		Assert.assertSame("Statement template should be reused", first, second);
+		Assert.assertNotEquals("Different directions should yield different statements", first, third);
+
+		final Map<String, Object> stats = cache.getStatistics();
+
+		Assert.assertEquals("Invalid number of templates", 2, stats.get("templates"));
+		Assert.assertEquals("Invalid number of template hits", 1L, stats.get("templateHits"));
+	}
+
+	@Test
+	public void testStatementCardinality() {
+
+		final StatementCache cache = new StatementCache(null);
+
+		Assert.assertEquals("Invalid tenant label", "", cache.getTenantLabel());
+
+		for (int i=0; i<8; i++) {
+			cache.executed("MATCH (n) WHERE ID(n) = {id} RETURN n");
+		}
+
+		cache.executed("MATCH (n) WHERE ID(n) = 1 RETURN n");
+		cache.executed("MATCH (n) WHERE ID(n) = 2 RETURN n");
+
+		final Map<String, Object> stats = cache.getStatistics();
+
+		Assert.assertEquals("Invalid number of executions", 10L, stats.get("executions"));
+		Assert.assertEquals("Invalid number of distinct statements", 3, stats.get("distinctStatements"));
+		Assert.assertEquals("Invalid plan cache ratio", 0.7, (Double)stats.get("planCacheFriendlyRatio"), 0.0001);
+
+		cache.clear();
+
+		Assert.assertEquals("Invalid number of executions", 0L, cache.getStatistics().get("executions"));
+	}
+}
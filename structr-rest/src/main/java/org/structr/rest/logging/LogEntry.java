@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest.logging;
+
+import java.util.Date;
+import org.structr.core.GraphObjectMap;
+import org.structr.rest.logging.entity.LogEvent;
+
+/**
+ * A single log event, independent of where it is stored.
+ */
+public class LogEntry {
+
+	private final long timestamp;
+	private final String action;
+	private final String subject;
+	private final String object;
+	private final String message;
+
+	public LogEntry(final long timestamp, final String action, final String subject, final String object, final String message) {
+
+		this.timestamp = timestamp;
+		this.action    = action;
+		this.subject   = subject;
+		this.object    = object;
+		this.message   = message;
+	}
+
+	public static LogEntry fromEvent(final LogEvent event) {
+		return new LogEntry(event.getTimestamp(), event.getAction(), event.getSubjectId(), event.getObjectId(), event.getMessage());
+	}
+
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public String getAction() {
+		return action;
+	}
+
+	public String getSubjectId() {
+		return subject;
+	}
+
+	public String getObjectId() {
+		return object;
+	}
+
+	public String getMessage() {
+		return message;
+	}
+
+	public GraphObjectMap toGraphObjectMap() {
+
+		final GraphObjectMap map = new GraphObjectMap();
+
+		map.put(LogEvent.actionProperty,    action);
+		map.put(LogEvent.messageProperty,   message);
+		map.put(LogEvent.timestampProperty, new Date(timestamp));
+		map.put(LogEvent.subjectProperty,   subject);
+		map.put(LogEvent.objectProperty,    object);
+
+		return map;
+	}
+}
@@ -0,0 +1,1012 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest.logging;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
+import org.structr.common.error.FrameworkException;
+
+/**
+ * Append-only, time-partitioned store for log events.
+ *
+ * Events are stored in one segment per day (UTC). A segment consists of a
+ * data file with the events, a dictionary file that maps the subjects,
+ * objects and actions of the segment to integer ids, and a meta file with
+ * the minimum and maximum timestamp, the number of events and the number
+ * of events per action and hour. The hourly rollups are updated on every
+ * append, so overviews and histograms over long periods can be answered
+ * without reading a single event.
+ *
+ * Queries skip all segments whose time range does not overlap the query,
+ * or whose dictionaries do not contain the requested subject, object or
+ * action. The dictionaries and rollups of a limited number of recently
+ * used segments are kept in memory.
+ */
+public class LogEventStore {
+
+	private static final Logger logger               = LoggerFactory.getLogger(LogEventStore.class.getName());
+	private static final DateTimeFormatter DayFormat = DateTimeFormatter.BASIC_ISO_DATE;
+	private static final String DATA_SUFFIX          = ".data";
+	private static final String DICT_SUFFIX          = ".dict";
+	private static final String META_SUFFIX          = ".meta";
+	private static final String MIGRATION_MARK       = "migration.mark";
+	private static final long HOUR                   = TimeUnit.HOURS.toMillis(1);
+	private static final long DAY                    = TimeUnit.DAYS.toMillis(1);
+	private static final long META_INTERVAL          = TimeUnit.SECONDS.toMillis(5);
+	private static final int MAX_OPEN_SEGMENTS       = 4;
+	private static final int MAX_LOADED_SEGMENTS     = 64;
+	private static final int RECORD_HEADER           = 24;
+	private static final int ANY                     = -2;
+	private static final int NONE                    = -1;
+	private static final int SUBJECT                 = 0;
+	private static final int OBJECT                  = 1;
+	private static final int ACTION                  = 2;
+	private static final LongAdder appended          = new LongAdder();
+	private static final LongAdder queries           = new LongAdder();
+	private static final LongAdder rollupQueries     = new LongAdder();
+	private static final LongAdder segmentsScanned   = new LongAdder();
+	private static final LongAdder segmentsSkipped   = new LongAdder();
+	private static final LongAdder eventsScanned     = new LongAdder();
+	private static LogEventStore instance            = null;
+	private static boolean shutdownHook              = false;
+
+	private final Map<Segment, Boolean> openSegments   = new LinkedHashMap<>(16, 0.75f, true);
+	private final Map<Segment, Boolean> loadedSegments = new LinkedHashMap<>(16, 0.75f, true);
+	private final TreeMap<Long, Segment> segments      = new TreeMap<>();
+	private Path directory                             = null;
+
+	public LogEventStore(final Path directory) throws IOException {
+
+		this.directory = directory;
+
+		Files.createDirectories(directory);
+
+		try (final DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + DATA_SUFFIX)) {
+
+			for (final Path path : stream) {
+
+				final String name = path.getFileName().toString();
+
+				try {
+
+					final long day = LocalDate.parse(name.substring(0, name.length() - DATA_SUFFIX.length()), DayFormat).toEpochDay();
+
+					segments.put(day, new Segment(day));
+
+				} catch (DateTimeParseException dtpex) {
+					logger.warn("Ignoring unknown file {} in log event store", path);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the store in the directory configured in logevents.path.
+	 *
+	 * @return the store
+	 * @throws FrameworkException
+	 */
+	public static synchronized LogEventStore getInstance() throws FrameworkException {
+
+		final Path path = Paths.get(Settings.getFullSettingPath(Settings.LogEventsPath));
+
+		if (instance == null || !instance.directory.equals(path)) {
+
+			if (instance != null) {
+				instance.close();
+			}
+
+			try {
+
+				instance = new LogEventStore(path);
+
+			} catch (IOException ioex) {
+				throw new FrameworkException(500, "Unable to open log event store in " + path + ": " + ioex.getMessage());
+			}
+
+			if (!shutdownHook) {
+
+				Runtime.getRuntime().addShutdownHook(new Thread(LogEventStore::closeInstance, "LogEventStoreShutdown"));
+				shutdownHook = true;
+			}
+		}
+
+		return instance;
+	}
+
+	public static Map<String, Object> getStatistics() {
+
+		final Map<String, Object> data = new LinkedHashMap<>();
+		final LogEventStore store      = instance;
+
+		data.put("appended",        appended.sum());
+		data.put("queries",         queries.sum());
+		data.put("rollupQueries",   rollupQueries.sum());
+		data.put("segmentsScanned", segmentsScanned.sum());
+		data.put("segmentsSkipped", segmentsSkipped.sum());
+		data.put("eventsScanned",   eventsScanned.sum());
+		data.put("segments",        store != null ? store.getSegmentCount() : 0);
+
+		return data;
+	}
+
+	public LogEntry append(final String action, final String message, final String subject, final String object) throws IOException {
+
+		final LogEntry entry = new LogEntry(System.currentTimeMillis(), action, subject, object, message);
+
+		append(Collections.singletonList(entry));
+
+		return entry;
+	}
+
+	public synchronized void append(final Iterable<LogEntry> entries) throws IOException {
+
+		final Set<Segment> modified = new LinkedHashSet<>();
+
+		for (final LogEntry entry : entries) {
+
+			final long day  = Math.floorDiv(entry.getTimestamp(), DAY);
+			Segment segment = segments.get(day);
+
+			if (segment == null) {
+
+				segment = new Segment(day);
+				segments.put(day, segment);
+			}
+
+			openSegment(segment).append(entry);
+			modified.add(segment);
+
+			appended.increment();
+		}
+
+		for (final Segment segment : modified) {
+			segment.flush(false);
+		}
+	}
+
+	/**
+	 * Passes all events that match the given parameters to the given
+	 * consumer, in the order of their segments. Null values match any
+	 * subject, object or action.
+	 *
+	 * @param subject
+	 * @param object
+	 * @param action
+	 * @param from the first timestamp (inclusive)
+	 * @param to the last timestamp (inclusive)
+	 * @param consumer
+	 * @throws IOException
+	 */
+	public void query(final String subject, final String object, final String action, final long from, final long to, final Consumer<LogEntry> consumer) throws IOException {
+
+		final List<Scan> scans = new LinkedList<>();
+
+		queries.increment();
+
+		synchronized (this) {
+
+			for (final Segment segment : getSegments(from, to)) {
+
+				loadSegment(segment);
+
+				final int subjectId = segment.lookup(SUBJECT, subject);
+				final int objectId  = segment.lookup(OBJECT, object);
+				final int actionId  = segment.lookup(ACTION, action);
+
+				if (segment.count == 0 || segment.maxTimestamp < from || segment.minTimestamp > to || subjectId == NONE || objectId == NONE || actionId == NONE) {
+
+					segmentsSkipped.increment();
+					continue;
+				}
+
+				// make appended events visible to the scan
+				segment.flush(false);
+
+				scans.add(new Scan(segment, segment.length, subjectId, objectId, actionId));
+			}
+		}
+
+		for (final Scan scan : scans) {
+
+			segmentsScanned.increment();
+			scan.run(from, to, consumer);
+		}
+	}
+
+	/**
+	 * Returns the number of events per action, with hourly precision.
+	 *
+	 * @param from
+	 * @param to
+	 * @return the number of events per action
+	 * @throws IOException
+	 */
+	public synchronized Map<String, Long> countActions(final long from, final long to) throws IOException {
+
+		final Map<String, Long> counts = new TreeMap<>();
+
+		rollupQueries.increment();
+
+		for (final Segment segment : getSegments(from, to)) {
+
+			loadSegment(segment);
+
+			for (final Entry<String, long[]> entry : segment.rollups.entrySet()) {
+
+				final long[] hours = entry.getValue();
+				long sum           = 0L;
+
+				for (int i=0; i<hours.length; i++) {
+
+					if (containsHour(segment.day, i, from, to)) {
+						sum += hours[i];
+					}
+				}
+
+				if (sum > 0) {
+					counts.merge(entry.getKey(), sum, Long::sum);
+				}
+			}
+		}
+
+		return counts;
+	}
+
+	/**
+	 * Returns the number of events of the given action per hour, with the
+	 * start of the hour as key. Hours without events are omitted. Hours
+	 * that are only partially covered by the given range are counted from
+	 * the events, all others from the rollups.
+	 *
+	 * @param action the action, must not be null
+	 * @param from
+	 * @param to
+	 * @return the number of events per hour
+	 * @throws IOException
+	 */
+	public TreeMap<Long, Long> countPerHour(final String action, final long from, final long to) throws IOException {
+
+		final TreeMap<Long, Long> counts = getHourlyRollups(action, from, to);
+		final Set<Long> boundaries       = new LinkedHashSet<>();
+
+		// open ranges have no partially covered hours
+		if (from <= to && from != Long.MIN_VALUE) {
+			boundaries.add(Math.floorDiv(from, HOUR) * HOUR);
+		}
+
+		if (from <= to && to != Long.MAX_VALUE) {
+			boundaries.add(Math.floorDiv(to, HOUR) * HOUR);
+		}
+
+		for (final long hour : boundaries) {
+
+			final long start = Math.max(from, hour);
+			final long end   = Math.min(to, hour + (HOUR - 1));
+
+			if (start != hour || end != hour + (HOUR - 1)) {
+
+				final LongAdder count = new LongAdder();
+
+				query(null, null, action, start, end, e -> count.increment());
+
+				counts.remove(hour);
+
+				if (count.sum() > 0) {
+					counts.put(hour, count.sum());
+				}
+			}
+		}
+
+		return counts;
+	}
+
+	public synchronized long getFirstTimestamp() throws IOException {
+
+		for (final Segment segment : segments.values()) {
+
+			loadSegment(segment);
+
+			if (segment.count > 0) {
+				return segment.minTimestamp;
+			}
+		}
+
+		return 0L;
+	}
+
+	public synchronized long getLastTimestamp() throws IOException {
+
+		for (final Segment segment : segments.descendingMap().values()) {
+
+			loadSegment(segment);
+
+			if (segment.count > 0) {
+				return segment.maxTimestamp;
+			}
+		}
+
+		return 0L;
+	}
+
+	public synchronized int getSegmentCount() {
+		return segments.size();
+	}
+
+	/**
+	 * Returns the ID of the last LogEvent node that was moved into this
+	 * store by an unfinished migration, or null.
+	 *
+	 * @return the migration mark or null
+	 * @throws IOException
+	 */
+	public synchronized String getMigrationMark() throws IOException {
+
+		final Path path = directory.resolve(MIGRATION_MARK);
+		if (Files.exists(path)) {
+
+			return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Appends the given entries of migrated LogEvent nodes and stores the
+	 * ID of the last node as the migration mark, so that a migration that
+	 * failed after this call does not append the entries again.
+	 *
+	 * @param entries
+	 * @param mark the ID of the last migrated node
+	 * @throws IOException
+	 */
+	public synchronized void appendMigrated(final Iterable<LogEntry> entries, final String mark) throws IOException {
+
+		final Path path = directory.resolve(MIGRATION_MARK);
+		final Path tmp  = directory.resolve(MIGRATION_MARK + ".tmp");
+
+		append(entries);
+
+		Files.write(tmp, mark.getBytes(StandardCharsets.UTF_8));
+		Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Removes the migration mark after all LogEvent nodes were migrated.
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void finishMigration() throws IOException {
+		Files.deleteIfExists(directory.resolve(MIGRATION_MARK));
+	}
+
+	public synchronized void close() {
+
+		for (final Segment segment : openSegments.keySet()) {
+
+			try {
+				segment.close();
+
+			} catch (IOException ioex) {
+				logger.warn("Unable to close log event segment {}: {}", segment.getName(), ioex.getMessage());
+			}
+		}
+
+		openSegments.clear();
+	}
+
+	// ----- private methods -----
+	private synchronized TreeMap<Long, Long> getHourlyRollups(final String action, final long from, final long to) throws IOException {
+
+		final TreeMap<Long, Long> counts = new TreeMap<>();
+
+		rollupQueries.increment();
+
+		for (final Segment segment : getSegments(from, to)) {
+
+			loadSegment(segment);
+
+			final long[] hours = segment.rollups.get(rollupKey(action));
+			if (hours != null) {
+
+				for (int i=0; i<hours.length; i++) {
+
+					if (hours[i] > 0 && containsHour(segment.day, i, from, to)) {
+						counts.put(segment.day * DAY + i * HOUR, hours[i]);
+					}
+				}
+			}
+		}
+
+		return counts;
+	}
+
+	private static synchronized void closeInstance() {
+
+		if (instance != null) {
+			instance.close();
+		}
+	}
+
+	private List<Segment> getSegments(final long from, final long to) {
+
+		if (from > to) {
+			return Collections.emptyList();
+		}
+
+		return new ArrayList<>(segments.subMap(Math.floorDiv(from, DAY), true, Math.floorDiv(to, DAY), true).values());
+	}
+
+	private Segment openSegment(final Segment segment) throws IOException {
+
+		if (openSegments.put(segment, Boolean.TRUE) == null) {
+
+			loadSegment(segment);
+			segment.open();
+
+			// keep only a few segments open for writing
+			if (openSegments.size() > MAX_OPEN_SEGMENTS) {
+
+				final Iterator<Segment> iterator = openSegments.keySet().iterator();
+				final Segment eldest             = iterator.next();
+
+				iterator.remove();
+				eldest.close();
+			}
+		}
+
+		return segment;
+	}
+
+	private Segment loadSegment(final Segment segment) throws IOException {
+
+		segment.load();
+
+		// keep the dictionaries and rollups of a limited number of segments in memory
+		if (loadedSegments.put(segment, Boolean.TRUE) == null && loadedSegments.size() > MAX_LOADED_SEGMENTS) {
+
+			final Iterator<Segment> iterator = loadedSegments.keySet().iterator();
+
+			while (loadedSegments.size() > MAX_LOADED_SEGMENTS && iterator.hasNext()) {
+
+				final Segment eldest = iterator.next();
+
+				// segments that are open for writing keep their dictionaries
+				if (!openSegments.containsKey(eldest)) {
+
+					iterator.remove();
+					eldest.unload();
+				}
+			}
+		}
+
+		return segment;
+	}
+
+	private static boolean containsHour(final long day, final int hour, final long from, final long to) {
+
+		final long start = day * DAY + hour * HOUR;
+
+		return start + HOUR > from && start <= to;
+	}
+
+	private static String rollupKey(final String action) {
+		return action != null ? action : "null";
+	}
+
+	private static void writeString(final DataOutputStream out, final String value) throws IOException {
+
+		if (value != null) {
+
+			final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+			out.writeInt(bytes.length);
+			out.write(bytes);
+
+		} else {
+
+			out.writeInt(-1);
+		}
+	}
+
+	private static String readString(final DataInputStream in) throws IOException {
+
+		final int length = in.readInt();
+		if (length >= 0) {
+
+			final byte[] bytes = new byte[length];
+
+			in.readFully(bytes);
+
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		return null;
+	}
+
+	private static void skipFully(final DataInputStream in, final int count) throws IOException {
+
+		int remaining = count;
+
+		while (remaining > 0) {
+
+			final int skipped = in.skipBytes(remaining);
+			if (skipped <= 0) {
+				throw new EOFException();
+			}
+
+			remaining -= skipped;
+		}
+	}
+
+	// ----- nested classes -----
+	private class Segment {
+
+		private final List<Map<String, Integer>> ids  = new ArrayList<>();
+		private final List<List<String>> values       = new ArrayList<>();
+		private final Map<String, long[]> rollups     = new HashMap<>();
+		private DataOutputStream dataOut              = null;
+		private DataOutputStream dictOut              = null;
+		private boolean loaded                        = false;
+		private boolean dirty                         = false;
+		private long lastMetaWrite                    = 0L;
+		private long minTimestamp                     = Long.MAX_VALUE;
+		private long maxTimestamp                     = Long.MIN_VALUE;
+		private long length                           = 0L;
+		private long count                            = 0L;
+		private long day                              = 0L;
+
+		public Segment(final long day) {
+
+			this.day = day;
+
+			for (int i=0; i<3; i++) {
+
+				ids.add(new HashMap<>());
+				values.add(new ArrayList<>());
+			}
+		}
+
+		public String getName() {
+			return LocalDate.ofEpochDay(day).format(DayFormat);
+		}
+
+		public void load() throws IOException {
+
+			if (loaded) {
+				return;
+			}
+
+			readDictionaries();
+
+			final Path data = getPath(DATA_SUFFIX);
+			final long size = Files.exists(data) ? Files.size(data) : 0L;
+
+			// rebuild the meta data if the segment was not closed properly
+			if (!readMeta(size)) {
+
+				rebuild(size);
+				writeMeta();
+			}
+
+			loaded = true;
+		}
+
+		public void open() throws IOException {
+
+			load();
+
+			dictOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(getPath(DICT_SUFFIX), StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+			dataOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(getPath(DATA_SUFFIX), StandardOpenOption.CREATE, StandardOpenOption.APPEND), 65536));
+		}
+
+		public void append(final LogEntry entry) throws IOException {
+
+			final String message = entry.getMessage();
+			final byte[] bytes   = message != null ? message.getBytes(StandardCharsets.UTF_8) : null;
+			final long timestamp = entry.getTimestamp();
+			final int subject    = getOrCreateId(SUBJECT, entry.getSubjectId());
+			final int object     = getOrCreateId(OBJECT,  entry.getObjectId());
+			final int action     = getOrCreateId(ACTION,  entry.getAction());
+
+			dataOut.writeLong(timestamp);
+			dataOut.writeInt(subject);
+			dataOut.writeInt(object);
+			dataOut.writeInt(action);
+			dataOut.writeInt(bytes != null ? bytes.length : -1);
+
+			if (bytes != null) {
+				dataOut.write(bytes);
+			}
+
+			length += RECORD_HEADER + (bytes != null ? bytes.length : 0);
+
+			count(timestamp, entry.getAction());
+		}
+
+		public void flush(final boolean writeMeta) throws IOException {
+
+			if (dictOut != null) {
+
+				// dictionary entries must be on disk before the events that use them
+				dictOut.flush();
+				dataOut.flush();
+			}
+
+			if (dirty && (writeMeta || System.currentTimeMillis() - lastMetaWrite > META_INTERVAL)) {
+				writeMeta();
+			}
+		}
+
+		public void close() throws IOException {
+
+			flush(true);
+
+			if (dictOut != null) {
+
+				dictOut.close();
+				dataOut.close();
+
+				dictOut = null;
+				dataOut = null;
+			}
+		}
+
+		/**
+		 * Releases the dictionaries and rollups of this segment. Running
+		 * scans keep the dictionaries they started with.
+		 */
+		public synchronized void unload() {
+
+			for (int i=0; i<3; i++) {
+
+				ids.set(i, new HashMap<>());
+				values.set(i, new ArrayList<>());
+			}
+
+			rollups.clear();
+
+			loaded = false;
+		}
+
+		public int lookup(final int kind, final String value) {
+
+			if (value == null) {
+				return ANY;
+			}
+
+			final Integer id = ids.get(kind).get(value);
+
+			return id != null ? id : NONE;
+		}
+
+		public synchronized String getValue(final int kind, final int id) {
+			return getValue(values, kind, id);
+		}
+
+		public synchronized List<List<String>> getDictionary() {
+			return new ArrayList<>(values);
+		}
+
+		public synchronized String getValue(final List<List<String>> dictionary, final int kind, final int id) {
+			return id >= 0 ? dictionary.get(kind).get(id) : null;
+		}
+
+		// ----- private methods -----
+		private Path getPath(final String suffix) {
+			return directory.resolve(getName() + suffix);
+		}
+
+		private synchronized int getOrCreateId(final int kind, final String value) throws IOException {
+
+			if (value == null) {
+				return -1;
+			}
+
+			Integer id = ids.get(kind).get(value);
+			if (id == null) {
+
+				id = values.get(kind).size();
+
+				ids.get(kind).put(value, id);
+				values.get(kind).add(value);
+
+				dictOut.writeByte(kind);
+				dictOut.writeInt(id);
+				writeString(dictOut, value);
+			}
+
+			return id;
+		}
+
+		private void count(final long timestamp, final String action) {
+
+			final String key = rollupKey(action);
+			long[] hours     = rollups.get(key);
+
+			if (hours == null) {
+
+				hours = new long[24];
+				rollups.put(key, hours);
+			}
+
+			hours[(int)((timestamp - day * DAY) / HOUR)]++;
+
+			minTimestamp = Math.min(minTimestamp, timestamp);
+			maxTimestamp = Math.max(maxTimestamp, timestamp);
+			dirty        = true;
+
+			count++;
+		}
+
+		private void readDictionaries() throws IOException {
+
+			final Path path = getPath(DICT_SUFFIX);
+			long valid      = 0L;
+
+			if (!Files.exists(path)) {
+				return;
+			}
+
+			try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+
+				while (true) {
+
+					final int kind     = in.readByte();
+					final int id       = in.readInt();
+					final String value = readString(in);
+
+					if (kind < SUBJECT || kind > ACTION || id != values.get(kind).size() || value == null) {
+						throw new IOException("Invalid dictionary entry in " + path);
+					}
+
+					ids.get(kind).put(value, id);
+					values.get(kind).add(value);
+
+					valid += 9 + value.getBytes(StandardCharsets.UTF_8).length;
+				}
+
+			} catch (EOFException eof) {
+				// end of file
+			}
+
+			truncate(path, valid);
+		}
+
+		private boolean readMeta(final long size) throws IOException {
+
+			final Path path = getPath(META_SUFFIX);
+			if (!Files.exists(path)) {
+				return false;
+			}
+
+			try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+
+				if (in.readLong() != size) {
+					return false;
+				}
+
+				length       = size;
+				count        = in.readLong();
+				minTimestamp = in.readLong();
+				maxTimestamp = in.readLong();
+
+				final int actions = in.readInt();
+				for (int i=0; i<actions; i++) {
+
+					final String key   = readString(in);
+					final long[] hours = new long[24];
+
+					for (int j=0; j<hours.length; j++) {
+						hours[j] = in.readLong();
+					}
+
+					rollups.put(key, hours);
+				}
+
+				return true;
+
+			} catch (EOFException eof) {
+
+				rollups.clear();
+				return false;
+			}
+		}
+
+		private void writeMeta() throws IOException {
+
+			final Path path = getPath(META_SUFFIX);
+			final Path tmp  = getPath(META_SUFFIX + ".tmp");
+
+			try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+
+				out.writeLong(length);
+				out.writeLong(count);
+				out.writeLong(minTimestamp);
+				out.writeLong(maxTimestamp);
+				out.writeInt(rollups.size());
+
+				for (final Entry<String, long[]> entry : rollups.entrySet()) {
+
+					writeString(out, entry.getKey());
+
+					for (final long value : entry.getValue()) {
+						out.writeLong(value);
+					}
+				}
+			}
+
+			Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+			lastMetaWrite = System.currentTimeMillis();
+			dirty         = false;
+		}
+
+		private void rebuild(final long size) throws IOException {
+
+			final Path path = getPath(DATA_SUFFIX);
+
+			rollups.clear();
+
+			minTimestamp = Long.MAX_VALUE;
+			maxTimestamp = Long.MIN_VALUE;
+			length       = 0L;
+			count        = 0L;
+
+			if (size > 0) {
+
+				logger.info("Rebuilding meta data of log event segment {}", getName());
+
+				try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 65536))) {
+
+					while (length < size) {
+
+						final long timestamp = in.readLong();
+						in.readInt();
+						in.readInt();
+						final int action     = in.readInt();
+						final int messageLength = in.readInt();
+
+						if (messageLength > 0) {
+							skipFully(in, messageLength);
+						}
+
+						count(timestamp, getValue(ACTION, action));
+
+						length += RECORD_HEADER + Math.max(0, messageLength);
+					}
+
+				} catch (EOFException eof) {
+					logger.warn("Removing incomplete event at the end of log event segment {}", getName());
+				}
+
+				truncate(path, length);
+			}
+		}
+
+		private void truncate(final Path path, final long size) throws IOException {
+
+			if (Files.size(path) > size) {
+
+				try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+					channel.truncate(size);
+				}
+			}
+		}
+	}
+
+	private class Scan {
+
+		private List<List<String>> dictionary = null;
+		private Segment segment               = null;
+		private long length                   = 0L;
+		private int subject                   = ANY;
+		private int object                    = ANY;
+		private int action                    = ANY;
+
+		public Scan(final Segment segment, final long length, final int subject, final int object, final int action) {
+
+			this.dictionary = segment.getDictionary();
+			this.segment    = segment;
+			this.length     = length;
+			this.subject    = subject;
+			this.object     = object;
+			this.action     = action;
+		}
+
+		public void run(final long from, final long to, final Consumer<LogEntry> consumer) throws IOException {
+
+			try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment.getPath(DATA_SUFFIX)), 65536))) {
+
+				long position = 0L;
+
+				// events appended after the start of the query are ignored
+				while (position < length) {
+
+					final long timestamp    = in.readLong();
+					final int eventSubject  = in.readInt();
+					final int eventObject   = in.readInt();
+					final int eventAction   = in.readInt();
+					final int messageLength = in.readInt();
+
+					position += RECORD_HEADER + Math.max(0, messageLength);
+
+					eventsScanned.increment();
+
+					if (timestamp >= from && timestamp <= to && matches(subject, eventSubject) && matches(object, eventObject) && matches(action, eventAction)) {
+
+						String message = null;
+
+						if (messageLength >= 0) {
+
+							final byte[] bytes = new byte[messageLength];
+
+							in.readFully(bytes);
+
+							message = new String(bytes, StandardCharsets.UTF_8);
+						}
+
+						consumer.accept(new LogEntry(timestamp, segment.getValue(dictionary, ACTION, eventAction), segment.getValue(dictionary, SUBJECT, eventSubject), segment.getValue(dictionary, OBJECT, eventObject), message));
+
+					} else if (messageLength > 0) {
+
+						skipFully(in, messageLength);
+					}
+				}
+			}
+		}
+
+		private boolean matches(final int expected, final int actual) {
+			return expected == ANY || expected == actual;
+		}
+	}
+}
@@ -57,6 +57,7 @@ import org.structr.core.GraphObject;
 import org.structr.core.GraphObjectMap;
 import org.structr.core.Result;
 import org.structr.core.app.App;
+import org.structr.core.app.Query;
 import org.structr.core.app.StructrApp;
 import org.structr.core.graph.Tx;
 import org.structr.core.property.GenericProperty;
@@ -68,6 +69,8 @@ import org.structr.core.property.PropertyMap;
 import org.structr.core.property.StringProperty;
 import org.structr.rest.RestMethodResult;
 import org.structr.rest.exception.IllegalMethodException;
+import org.structr.rest.logging.LogEntry;
+import org.structr.rest.logging.LogEventStore;
 import org.structr.rest.logging.entity.LogEvent;
 
 /**
@@ -151,39 +154,30 @@ public class LogResource extends Resource {
 
 			if (StringUtils.isNotEmpty(subjectId) && StringUtils.isNotEmpty(objectId)) {
 
-				processData(logState, StructrApp.getInstance(securityContext)
-					.nodeQuery(LogEvent.class)
-					.and(LogEvent.subjectProperty, subjectId)
-					.and(LogEvent.objectProperty, objectId)
-					.and(LogEvent.actionProperty, logState.logAction)
-					.andRange(LogEvent.timestampProperty, new Date(logState.beginTimestamp()), new Date(logState.endTimestamp()))
-					.getAsList()
-				);
+				processData(logState, subjectId, objectId, logState.logAction, true);
 
 			} else if (StringUtils.isNotEmpty(subjectId) && StringUtils.isEmpty(objectId)) {
 
-				processData(logState, StructrApp.getInstance(securityContext)
-					.nodeQuery(LogEvent.class)
-					.and(LogEvent.subjectProperty, subjectId)
-					.and(LogEvent.actionProperty, logState.logAction)
-					.andRange(LogEvent.timestampProperty, new Date(logState.beginTimestamp()), new Date(logState.endTimestamp()))
-					.getAsList()
-				);
+				processData(logState, subjectId, null, logState.logAction, true);
 
 			} else if (StringUtils.isEmpty(subjectId) && StringUtils.isNotEmpty(objectId)) {
 
 				logState.inverse(true);
 
-				processData(logState, StructrApp.getInstance(securityContext)
-					.nodeQuery(LogEvent.class)
-					.and(LogEvent.objectProperty, objectId)
-					.and(LogEvent.actionProperty, logState.logAction)
-					.andRange(LogEvent.timestampProperty, new Date(logState.beginTimestamp()), new Date(logState.endTimestamp()))
-					.getAsList()
-				);
+				processData(logState, null, objectId, logState.logAction, true);
 
 			} else if (logState.doActionQuery()) {
 
+				// aggregated counts of a single action can be answered from the rollups of the store
+				if (Settings.LogEventStore.getValue() && logState.canUseRollups()) {
+
+					final Result result = aggregateRollups(logState);
+					if (result != null) {
+
+						return result;
+					}
+				}
+
 				processData(logState);
 
 			} else {
@@ -191,10 +185,14 @@ public class LogResource extends Resource {
 				// create overview of existing logs
 				logState.overview(true);
 
-				processData(logState, StructrApp.getInstance(securityContext)
-					.nodeQuery(LogEvent.class)
-					.getAsList()
-				);
+				if (Settings.LogEventStore.getValue()) {
+
+					overview(logState);
+
+				} else {
+
+					processData(logState, null, null, null, false);
+				}
 			}
 
 			if (logState.overview()) {
@@ -251,6 +249,19 @@ public class LogResource extends Resource {
 				return new RestMethodResult(200);
 			}
 
+			// move existing LogEvent nodes into the log event store
+			if ("true".equals(request.getParameter("migrate"))) {
+
+				// LogEvent nodes are only read while the store is disabled
+				if (!Settings.LogEventStore.getValue()) {
+					throw new FrameworkException(409, "Unable to migrate log events, " + Settings.LogEventStore.getKey() + " is disabled");
+				}
+
+				migrate();
+
+				return new RestMethodResult(200);
+			}
+
 			final String subjectId = (String) propertySet.get(subjectProperty.jsonName());
 			final String objectId  = (String) propertySet.get(objectProperty.jsonName());
 			final String action    = (String) propertySet.get(actionProperty.jsonName());
@@ -258,6 +269,20 @@ public class LogResource extends Resource {
 
 			if (subjectId != null && objectId != null && action != null) {
 
+				if (Settings.LogEventStore.getValue()) {
+
+					final RestMethodResult result = new RestMethodResult(201);
+
+					try {
+						result.addContent(LogEventStore.getInstance().append(action, message, subjectId, objectId).toGraphObjectMap());
+
+					} catch (IOException ioex) {
+						throw new FrameworkException(500, "Unable to store log event: " + ioex.getMessage());
+					}
+
+					return result;
+				}
+
 				final App app  = StructrApp.getInstance(securityContext);
 				LogEvent event = null;
 
@@ -373,12 +398,7 @@ public class LogResource extends Resource {
 		if (state.doCorrelate()) {
 
 			// get the basic correlation set (pds_click in the test case)
-			final List<LogEvent> correlationResult = StructrApp.getInstance(securityContext)
-				.nodeQuery(LogEvent.class)
-				.and(LogEvent.actionProperty, state.correlationAction)
-				.getAsList();
-
-			for (final LogEvent entry : correlationResult) {
+			for (final LogEntry entry : query(null, null, state.correlationAction, Long.MIN_VALUE, Long.MAX_VALUE, true)) {
 
 				final String pathSubjectId = state.inverse() ? entry.getObjectId() : entry.getSubjectId();
 				final String pathObjectId  = state.inverse() ? entry.getSubjectId() : entry.getObjectId();
@@ -402,68 +422,204 @@ public class LogResource extends Resource {
 
 		logger.debug("No. of correlations: {}", state.getCorrelations().entrySet().size());
 
-		final List<LogEvent> result = StructrApp.getInstance(securityContext).nodeQuery(LogEvent.class)
-			.and(LogEvent.actionProperty, state.logAction)
-			.andRange(LogEvent.timestampProperty, new Date(state.beginTimestamp()), new Date(state.endTimestamp()))
-			.getAsList();
-
-		processData(state, result);
+		processData(state, null, null, state.logAction, true);
 	}
 
-	private void processData(final LogState state, final Iterable<LogEvent> result) throws FrameworkException {
+	private void processData(final LogState state, final String subjectId, final String objectId, final String action, final boolean filter) throws FrameworkException {
 
-		int count = 0;
+		final long from = state.range != null ? state.range.start : Long.MIN_VALUE;
+		final long to   = state.range != null ? state.range.end   : Long.MAX_VALUE;
 
-		for (final LogEvent event : result) {
+		if (Settings.LogEventStore.getValue()) {
 
-			if ((++count % 100000) == 0) {
-				System.out.println(count);
+			try {
+
+				// stream the events, the store can be much larger than the heap
+				LogEventStore.getInstance().query(subjectId, objectId, action, from, to, entry -> processEntry(state, entry));
+
+			} catch (IOException ioex) {
+				throw new FrameworkException(500, "Unable to read log events: " + ioex.getMessage());
 			}
 
-			final String pathSubjectId = state.inverse() ? event.getObjectId() : event.getSubjectId();
-			final String pathObjectId  = state.inverse() ? event.getSubjectId() : event.getObjectId();
-			final long timestamp       = event.getTimestamp();
-			final String entryAction   = event.getAction();
-			final String entryMessage  = event.getMessage();
+		} else {
 
-			// determine first timestamp
-			if (timestamp <= state.beginTimestamp()) {
-				state.beginTimestamp(timestamp);
+			for (final LogEntry entry : query(subjectId, objectId, action, from, to, filter)) {
+				processEntry(state, entry);
 			}
+		}
+	}
+
+	/**
+	 * Returns the log entries with the given subject, object and action in
+	 * the given time range, from the log event store if it is enabled or
+	 * from the LogEvent nodes otherwise. For LogEvent nodes, action and
+	 * time range are only applied if filter is true.
+	 */
+	private List<LogEntry> query(final String subjectId, final String objectId, final String action, final long from, final long to, final boolean filter) throws FrameworkException {
 
-			// determine last timestamp
-			if (timestamp >= state.endTimestamp()) {
-				state.endTimestamp(timestamp);
+		final List<LogEntry> entries = new LinkedList<>();
+
+		if (Settings.LogEventStore.getValue()) {
+
+			try {
+				LogEventStore.getInstance().query(subjectId, objectId, action, from, to, entries::add);
+
+			} catch (IOException ioex) {
+				throw new FrameworkException(500, "Unable to read log events: " + ioex.getMessage());
 			}
 
-			if (state.overview()) {
+			return entries;
+		}
 
-				if (entryAction != null) {
+		final Query<LogEvent> query = StructrApp.getInstance(securityContext).nodeQuery(LogEvent.class);
 
-					state.countAction(entryAction);
+		if (subjectId != null) {
+			query.and(LogEvent.subjectProperty, subjectId);
+		}
 
-				} else {
+		if (objectId != null) {
+			query.and(LogEvent.objectProperty, objectId);
+		}
 
-					state.countAction("null");
-				}
+		if (filter) {
+
+			query.and(LogEvent.actionProperty, action);
+
+			if (from != Long.MIN_VALUE || to != Long.MAX_VALUE) {
+				query.andRange(LogEvent.timestampProperty, new Date(from), new Date(to));
+			}
+		}
+
+		for (final LogEvent event : query.getAsList()) {
+			entries.add(LogEntry.fromEvent(event));
+		}
+
+		return entries;
+	}
+
+	private void processEntry(final LogState state, final LogEntry entry) {
+
+		final String pathSubjectId = state.inverse() ? entry.getObjectId() : entry.getSubjectId();
+		final String pathObjectId  = state.inverse() ? entry.getSubjectId() : entry.getObjectId();
+		final long timestamp       = entry.getTimestamp();
+		final String entryAction   = entry.getAction();
+		final String entryMessage  = entry.getMessage();
+
+		// determine first timestamp
+		if (timestamp <= state.beginTimestamp()) {
+			state.beginTimestamp(timestamp);
+		}
+
+		// determine last timestamp
+		if (timestamp >= state.endTimestamp()) {
+			state.endTimestamp(timestamp);
+		}
+
+		if (state.overview()) {
+
+			if (entryAction != null) {
+
+				state.countAction(entryAction);
 
 			} else {
 
-				// passes filter? action present or matching?
-				if (state.passesFilter(entryMessage) && state.correlates(pathSubjectId, pathObjectId, entryMessage)) {
+				state.countAction("null");
+			}
 
-					final Map<String, Object> map = new HashMap<>();
+		} else {
 
-					map.put(subjectProperty.jsonName(), pathSubjectId);
-					map.put(objectProperty.jsonName(), pathObjectId);
-					map.put(actionProperty.jsonName(), entryAction);
-					map.put(timestampProperty.jsonName(), timestamp);
-					map.put(messageProperty.jsonName(), entryMessage);
+			// passes filter? action present or matching?
+			if (state.passesFilter(entryMessage) && state.correlates(pathSubjectId, pathObjectId, entryMessage)) {
 
-					state.addEntry(map);
-				}
+				final Map<String, Object> map = new HashMap<>();
+
+				map.put(subjectProperty.jsonName(), pathSubjectId);
+				map.put(objectProperty.jsonName(), pathObjectId);
+				map.put(actionProperty.jsonName(), entryAction);
+				map.put(timestampProperty.jsonName(), timestamp);
+				map.put(messageProperty.jsonName(), entryMessage);
+
+				state.addEntry(map);
+			}
+		}
+	}
+
+	private void overview(final LogState state) throws FrameworkException {
+
+		try {
+
+			final LogEventStore store = LogEventStore.getInstance();
+
+			for (final Entry<String, Long> entry : store.countActions(Long.MIN_VALUE, Long.MAX_VALUE).entrySet()) {
+				state.countAction(entry.getKey(), entry.getValue().intValue());
 			}
+
+			if (state.actionCount() > 0) {
+
+				state.beginTimestamp(store.getFirstTimestamp());
+				state.endTimestamp(store.getLastTimestamp());
+			}
+
+		} catch (IOException ioex) {
+			throw new FrameworkException(500, "Unable to read log events: " + ioex.getMessage());
+		}
+	}
+
+	/**
+	 * Moves all LogEvent nodes into the log event store, in the order of
+	 * their IDs. The ID of the last migrated node is stored with each
+	 * batch, so a batch whose nodes could not be deleted is not appended
+	 * again when the migration is repeated.
+	 */
+	private void migrate() throws FrameworkException {
+
+		final App app = StructrApp.getInstance(securityContext);
+		int total     = 0;
+		int count     = 0;
+
+		try {
+
+			final LogEventStore store = LogEventStore.getInstance();
+			final String mark         = store.getMigrationMark();
+
+			do {
+
+				try (final Tx tx = app.tx()) {
+
+					final List<LogEvent> events  = app.nodeQuery(LogEvent.class).sort(GraphObject.id).pageSize(1000).page(1).getAsList();
+					final List<LogEntry> entries = new LinkedList<>();
+
+					for (final LogEvent event : events) {
+
+						// skip events that were appended by a failed migration
+						if (mark == null || event.getUuid().compareTo(mark) > 0) {
+							entries.add(LogEntry.fromEvent(event));
+						}
+					}
+
+					if (!entries.isEmpty()) {
+						store.appendMigrated(entries, events.get(events.size() - 1).getUuid());
+					}
+
+					for (final LogEvent event : events) {
+						app.delete(event);
+					}
+
+					tx.success();
+
+					count  = events.size();
+					total += count;
+				}
+
+			} while (count > 0);
+
+			store.finishMigration();
+
+		} catch (IOException ioex) {
+			throw new FrameworkException(500, "Unable to store log events: " + ioex.getMessage());
 		}
+
+		logger.info("Moved {} LogEvent nodes into the log event store", total);
 	}
 
 	private int storeLogEntry(final Path path) throws IOException, FrameworkException {
@@ -477,6 +633,8 @@ public class LogResource extends Resource {
 			final String subjectId = fileName.substring(0, 32);
 			final String objectId  = fileName.substring(32, 64);
 
+			final List<LogEntry> entries = new LinkedList<>();
+
 			for (final String line : Files.readAllLines(path, Charset.forName("utf-8"))) {
 
 				final int pos1               = line.indexOf(",", 14);
@@ -489,6 +647,14 @@ public class LogResource extends Resource {
 				final String action          = part1;
 				final String message         = part2;
 
+				count++;
+
+				if (Settings.LogEventStore.getValue()) {
+
+					entries.add(new LogEntry(timestamp, action, subjectId, objectId, message));
+					continue;
+				}
+
 				final PropertyMap properties = new PropertyMap();
 
 				properties.put(LogEvent.messageProperty,             message);
@@ -500,8 +666,10 @@ public class LogResource extends Resource {
 				properties.put(LogEvent.visibleToAuthenticatedUsers, true);
 
 				app.create(LogEvent.class, properties);
+			}
 
-				count++;
+			if (!entries.isEmpty()) {
+				LogEventStore.getInstance().append(entries);
 			}
 
 		} else {
@@ -533,64 +701,72 @@ public class LogResource extends Resource {
 		// sort entries before aggregation
 		state.sortEntries();
 
-		final long startTimestamp                         = state.beginTimestamp();
-		final long endTimestamp                           = state.endTimestamp();
-		final GraphObjectMap result                       = new GraphObjectMap();
-		final long interval                               = findInterval(state.aggregate());
-		final long start                                  = alignDateOnFormat(state.aggregate(), startTimestamp);
-		final TreeMap<Long, Map<String, Object>> countMap = toAggregatedCountMap(state);
-		final Set<String> countProperties                 = getCountProperties(countMap);
+		final String dateFormat = state.aggregate();
 
-		for (long current = start; current <= endTimestamp; current += interval) {
+		return intervals(alignDateOnFormat(dateFormat, state.beginTimestamp()), state.endTimestamp(), findInterval(dateFormat), toAggregatedCountMap(state));
+	}
 
-			final Map<Long, Map<String, Object>> counts = countMap.subMap(current, true, current + interval, false);
-			final GraphObjectMap sum = new GraphObjectMap();
+	private Result histogram(final LogState state) throws FrameworkException {
 
-			// initialize interval sums with 0 (so each
-			// interval contains all keys regardless of
-			// whether there are actual values or not)
-			for (final String key : countProperties) {
-				sum.put(new IntProperty(key), 0);
-			}
+		// sort entries before creating the histogram
+		state.sortEntries();
 
-			// evaluate counts
-			for (final Map<String, Object> count : counts.values()) {
+		final String dateFormat = state.aggregate();
 
-				for (final String key : countProperties) {
+		return intervals(alignDateOnFormat(dateFormat, state.beginTimestamp()), state.endTimestamp(), findInterval(dateFormat), toHistogramCountMap(state));
+	}
 
-					final IntProperty prop = new IntProperty(key);
-					Integer sumValue = sum.get(prop);
-					if (sumValue == null) {
-						sumValue = 0;
-					}
+	/**
+	 * Aggregates the number of events of a single action from the hourly
+	 * rollups of the log event store. Returns null if the aggregation
+	 * intervals are not aligned with hours.
+	 */
+	private Result aggregateRollups(final LogState state) throws FrameworkException {
 
-					Integer entryValue = (Integer) count.get(key);
-					if (entryValue == null) {
-						entryValue = 0;
-					}
+		final String dateFormat = state.aggregate();
+		final long interval     = findInterval(dateFormat);
+		final long hour         = TimeUnit.HOURS.toMillis(1);
 
-					sum.put(prop, sumValue + entryValue);
-				}
+		if (interval % hour != 0) {
+			return null;
+		}
+
+		try {
+
+			final TreeMap<Long, Map<String, Object>> countMap = new TreeMap<>();
+			final long from                                   = state.range != null ? state.range.start : Long.MIN_VALUE;
+			final long to                                     = state.range != null ? state.range.end   : Long.MAX_VALUE;
+
+			for (final Entry<Long, Long> entry : LogEventStore.getInstance().countPerHour(state.logAction, from, to).entrySet()) {
+
+				final Map<String, Object> obj = new LinkedHashMap<>();
+
+				obj.put(totalProperty.jsonName(), entry.getValue().intValue());
+				countMap.put(entry.getKey(), obj);
 			}
 
-			result.put(new GenericProperty(Long.toString(current)), sum);
-		}
+			if (countMap.isEmpty()) {
+				return new Result(new GraphObjectMap(), false);
+			}
 
-		return new Result(result, false);
-	}
+			final long start = alignDateOnFormat(dateFormat, state.range != null ? from : countMap.firstKey());
+			final long end   = state.range != null ? to : countMap.lastKey();
 
-	private Result histogram(final LogState state) throws FrameworkException {
+			// intervals that do not start at a full hour cannot be built from hourly counts
+			if (start % hour != 0) {
+				return null;
+			}
 
-		// sort entries before creating the histogram
-		state.sortEntries();
+			return intervals(start, end, interval, countMap);
 
-		final String dateFormat = state.aggregate();
-		final long startTimestamp = state.beginTimestamp();
-		final long endTimestamp = state.endTimestamp();
-		final GraphObjectMap result = new GraphObjectMap();
-		final long interval = findInterval(dateFormat);
-		final long start = alignDateOnFormat(dateFormat, startTimestamp);
-		final TreeMap<Long, Map<String, Object>> countMap = toHistogramCountMap(state);
+		} catch (IOException ioex) {
+			throw new FrameworkException(500, "Unable to read log events: " + ioex.getMessage());
+		}
+	}
+
+	private Result intervals(final long start, final long endTimestamp, final long interval, final TreeMap<Long, Map<String, Object>> countMap) {
+
+		final GraphObjectMap result       = new GraphObjectMap();
 		final Set<String> countProperties = getCountProperties(countMap);
 
 		for (long current = start; current <= endTimestamp; current += interval) {
@@ -842,7 +1018,7 @@ public class LogResource extends Resource {
 
 		private final Map<String, Pattern> aggregationPatterns       = new HashMap<>();
 		private final List<Map<String, Object>> entries              = new LinkedList<>();
-		private final Map<String, LinkedList<LogEvent>> correlations = new ConcurrentHashMap<>();
+		private final Map<String, LinkedList<LogEntry>> correlations = new ConcurrentHashMap<>();
 		private final Map<String, Integer> actions                   = new HashMap<>();
 		private long beginTimestamp                                  = Long.MAX_VALUE;
 		private long endTimestamp                                    = 0L;
@@ -902,11 +1078,11 @@ public class LogResource extends Resource {
 			entries.add(entry);
 		}
 
-		public void addCorrelationEntry(final String key, final LogEvent event) {
+		public void addCorrelationEntry(final String key, final LogEntry event) {
 
 			logger.debug("No. of correllation entry lists: {}, adding action: {} {}", new Object[]{correlations.keySet().size(), key, event.getMessage()});
 
-			LinkedList<LogEvent> existingEventList = correlations.get(key);
+			LinkedList<LogEntry> existingEventList = correlations.get(key);
 
 			if (existingEventList == null) {
 				existingEventList = new LinkedList<>();
@@ -917,7 +1093,7 @@ public class LogResource extends Resource {
 			correlations.put(key, existingEventList);
 		}
 
-		public Map<String, LinkedList<LogEvent>> getCorrelations() {
+		public Map<String, LinkedList<LogEntry>> getCorrelations() {
 			return correlations;
 		}
 
@@ -944,6 +1120,13 @@ public class LogResource extends Resource {
 			this.actionCount++;
 		}
 
+		public void countAction(final String action, final int count) {
+
+			actions.merge(action, count, Integer::sum);
+
+			this.actionCount += count;
+		}
+
 		public int actionCount() {
 			return actionCount;
 		}
@@ -1029,7 +1212,7 @@ public class LogResource extends Resource {
 				return true;
 			}
 
-			LinkedList<LogEvent> correlationEntries;
+			LinkedList<LogEntry> correlationEntries;
 
 			if (correlationOp != null && correlationPattern != null) {
 
@@ -1051,7 +1234,7 @@ public class LogResource extends Resource {
 
 							if (correlationEntries != null) {
 
-								for (LogEvent correlationEntry : correlationEntries) {
+								for (LogEntry correlationEntry : correlationEntries) {
 
 									if (correlationEntry.getSubjectId().equals(pathSubjectId)) {
 
@@ -1071,7 +1254,7 @@ public class LogResource extends Resource {
 
 							if (correlationEntries != null) {
 
-								for (LogEvent correlationEntry : correlationEntries) {
+								for (LogEntry correlationEntry : correlationEntries) {
 
 									if (correlationEntry.getObjectId().equals(pathObjectId)) {
 
@@ -1136,6 +1319,10 @@ public class LogResource extends Resource {
 			return StringUtils.isNotBlank(logAction);
 		}
 
+		public boolean canUseRollups() {
+			return doAggregate() && StringUtils.isBlank(histogram) && aggregationPatterns.isEmpty() && filters == null && multiplier == null && !doCorrelate;
+		}
+
 		public boolean includeFile(final File file) {
 			return range == null || range.contains(file.lastModified());
 		}
@@ -0,0 +1,132 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest.resource;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
+import org.structr.agent.AgentService;
+import org.structr.api.DatabaseService;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObjectMap;
+import org.structr.core.Result;
+import org.structr.core.app.StructrApp;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.function.Functions;
+import org.structr.core.graph.TransactionCommand;
+import org.structr.core.property.GenericProperty;
+import org.structr.core.property.PropertyKey;
+import org.structr.core.script.ScriptCache;
+import org.structr.core.script.ScriptWarmup;
+import org.structr.rest.RestMethodResult;
+import org.structr.rest.exception.IllegalMethodException;
+import org.structr.rest.exception.IllegalPathException;
+import org.structr.rest.exception.NotAllowedException;
+import org.structr.rest.logging.LogEventStore;
+
+/**
+ * Exposes runtime statistics of the database layer, e.g. cache hit rates,
+ * Cypher statement cardinality and commit lock wait times, and of the agent
+ * task queues.
+ */
+public class MetricsResource extends Resource {
+
+	public enum UriPart {
+		_metrics
+	}
+
+	@Override
+	public boolean checkAndConfigure(String part, SecurityContext securityContext, HttpServletRequest request) throws FrameworkException {
+
+		this.securityContext = securityContext;
+
+		return (UriPart._metrics.name().equals(part));
+	}
+
+	@Override
+	public Result doGet(PropertyKey sortKey, boolean sortDescending, int pageSize, int page) throws FrameworkException {
+
+		// Admins only
+		if (!securityContext.isSuperUser()) {
+
+			throw new NotAllowedException("Use of the metrics endpoint is restricted to admin users");
+		}
+
+		final List<GraphObjectMap> resultList = new LinkedList<>();
+		final GraphObjectMap info             = new GraphObjectMap();
+		final DatabaseService db              = StructrApp.getInstance(securityContext).getDatabaseService();
+
+		if (db != null) {
+
+			for (final Map.Entry<String, Object> entry : db.getStatistics().entrySet()) {
+
+				info.setProperty(new GenericProperty(entry.getKey()), entry.getValue());
+			}
+		}
+
+		info.setProperty(new GenericProperty("commitLocks"), TransactionCommand.getCommitLockStatistics());
+		info.setProperty(new GenericProperty("permissionCaches"), AbstractNode.getPermissionCacheStatistics());
+		info.setProperty(new GenericProperty("expressions"), Functions.getStatistics());
+		info.setProperty(new GenericProperty("scripts"), ScriptCache.getStatistics());
+		info.setProperty(new GenericProperty("scriptWarmup"), ScriptWarmup.getStatus());
+		info.setProperty(new GenericProperty("logEvents"), LogEventStore.getStatistics());
+
+		final AgentService agentService = StructrApp.getInstance(securityContext).getService(AgentService.class);
+		if (agentService != null) {
+
+			info.setProperty(new GenericProperty("agents"), agentService.getStatistics());
+		}
+
+		resultList.add(info);
+
+		return new Result(resultList, resultList.size(), false, false);
+	}
+
+	@Override
+	public RestMethodResult doPost(Map<String, Object> propertySet) throws FrameworkException {
+		throw new IllegalMethodException("POST not allowed on " + getResourceSignature());
+	}
+
+	@Override
+	public Resource tryCombineWith(Resource next) throws FrameworkException {
+		throw new IllegalPathException(getResourceSignature() + " has no subresources");
+	}
+
+	@Override
+	public String getUriPart() {
+		return getResourceSignature();
+	}
+
+	@Override
+	public Class getEntityClass() {
+		return null;
+	}
+
+	@Override
+	public String getResourceSignature() {
+		return UriPart._metrics.name();
+	}
+
+	@Override
+	public boolean isCollectionResource() throws FrameworkException {
+		return false;
+	}
+}
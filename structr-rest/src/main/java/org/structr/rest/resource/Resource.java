@@ -28,6 +28,7 @@ import javax.servlet.http.HttpServletResponse;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.search.PagingCursor;
 import org.structr.common.CaseHelper;
 import org.structr.common.GraphObjectComparator;
 import org.structr.common.Permission;
@@ -193,6 +194,16 @@ public abstract class Resource {
 	public void postProcessResultSet(final Result result) {
 	}
 
+	/**
+	 * Allows this resource to return a result whose objects are
+	 * instantiated while the result is written. This is only called
+	 * for the resource of the request, not for nested resources.
+	 *
+	 * @param streamResults
+	 */
+	public void streamResults(final boolean streamResults) {
+	}
+
 	public boolean isPrimitiveArray() {
 		return false;
 	}
@@ -369,6 +380,25 @@ public abstract class Resource {
 		}
 	}
 
+	protected void extractCursor(final HttpServletRequest request, final Query query) throws FrameworkException {
+
+		if (request != null) {
+
+			final String cursor = request.getParameter(JsonRestServlet.REQUEST_PARAMETER_CURSOR);
+			if (cursor != null) {
+
+				try {
+
+					query.getQueryContext().cursor(PagingCursor.decode(cursor));
+
+				} catch (IllegalArgumentException iex) {
+
+					throw new FrameworkException(422, iex.getMessage());
+				}
+			}
+		}
+	}
+
 	protected static int parseInteger(final Object source) {
 
 		try {
@@ -18,6 +18,7 @@
  */
 package org.structr.rest.resource;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -33,6 +34,7 @@ import org.structr.common.SecurityContext;
 import org.structr.common.error.EmptyPropertyToken;
 import org.structr.common.error.ErrorBuffer;
 import org.structr.common.error.FrameworkException;
+import org.structr.common.fulltext.Indexable;
 import org.structr.core.GraphObject;
 import org.structr.core.Result;
 import org.structr.core.app.App;
@@ -41,6 +43,7 @@ import org.structr.core.app.StructrApp;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.entity.AbstractRelationship;
 import org.structr.core.entity.Relation;
+import org.structr.core.graph.Factory;
 import org.structr.core.graph.NodeInterface;
 import org.structr.core.graph.RelationshipInterface;
 import org.structr.core.graph.Tx;
@@ -54,6 +57,7 @@ import org.structr.core.property.PropertyMap;
 import org.structr.rest.RestMethodResult;
 import org.structr.rest.exception.IllegalPathException;
 import org.structr.rest.exception.NotFoundException;
+import org.structr.rest.servlet.JsonRestServlet;
 import org.structr.schema.SchemaHelper;
 
 /**
@@ -73,6 +77,7 @@ public class TypeResource extends SortableResource {
 	protected HttpServletRequest request                       = null;
 	protected Query query                                      = null;
 	protected boolean isNode                                   = true;
+	protected boolean streamResults                            = false;
 
 	@Override
 	public boolean checkAndConfigure(String part, SecurityContext securityContext, HttpServletRequest request) throws FrameworkException {
@@ -128,6 +133,13 @@ public class TypeResource extends SortableResource {
 				throw new NotFoundException("Type " + rawType + " does not exist");
 			}
 
+			// fulltext search returns the results in rank order
+			final String fulltextQuery = request != null ? request.getParameter(JsonRestServlet.REQUEST_PARAMETER_FULLTEXT) : null;
+			if (fulltextQuery != null && Indexable.class.isAssignableFrom(entityClass)) {
+
+				return getFulltextResult(fulltextQuery, pageSize, page);
+			}
+
 			collectSearchAttributes(query);
 
 			// default sort key & order
@@ -170,6 +182,8 @@ public class TypeResource extends SortableResource {
 
 			} else {
 
+				extractCursor(request, query);
+
 				return query
 					.includeHidden(includeHidden)
 					.publicOnly(publicOnly)
@@ -177,6 +191,7 @@ public class TypeResource extends SortableResource {
 					.order(actualSortOrder)
 					.pageSize(pageSize)
 					.page(page)
+					.streamResults(streamResults)
 					.getResult();
 			}
 
@@ -400,6 +415,11 @@ public class TypeResource extends SortableResource {
 		return true;
 	}
 
+	@Override
+	public void streamResults(final boolean streamResults) {
+		this.streamResults = streamResults;
+	}
+
 	@Override
 	public boolean isPrimitiveArray() {
 
@@ -478,6 +498,60 @@ public class TypeResource extends SortableResource {
 		return null;
 	}
 
+	/**
+	 * Loads the hits of the given fulltext query in rank order. Hits that are
+	 * not visible or not of the requested type are skipped, other search
+	 * attributes and the sort parameters are ignored.
+	 */
+	private Result getFulltextResult(final String fulltextQuery, final int pageSize, final int page) throws FrameworkException {
+
+		final App app                = StructrApp.getInstance(securityContext);
+		final Iterator<String> uuids = app.getFulltextIndexer().search(fulltextQuery, 0).keySet().iterator();
+		final List<GraphObject> hits = new ArrayList<>();
+		final boolean dontCheckCount = securityContext.ignoreResultCount();
+		boolean isApproximate        = false;
+		int count                    = 0;
+		int checked                  = 0;
+
+		// negative pages are counted from the end, so they need all hits
+		final long required = page > 0 && pageSize > 0 ? (long)page * pageSize : Long.MAX_VALUE;
+
+		// the index does not know the type and visibility of its documents, so the hits
+		// are checked until the requested page is full, and then counted up to the limit
+		while (uuids.hasNext()) {
+
+			if (hits.size() >= required) {
+
+				if (dontCheckCount) {
+					break;
+				}
+
+				if (checked++ == Factory.RESULT_COUNT_ACCURATE_LIMIT) {
+
+					isApproximate = true;
+					break;
+				}
+			}
+
+			final GraphObject hit = app.get(entityClass, uuids.next());
+			if (hit != null && entityClass.isInstance(hit)) {
+
+				if (hits.size() < required) {
+					hits.add(hit);
+				}
+
+				count++;
+			}
+		}
+
+		final Result result = PagingHelper.subResult(new Result(hits, count, true, false), pageSize, page);
+
+		result.setRawResultCount(count);
+		result.setResultCountApproximate(isApproximate);
+
+		return result;
+	}
+
 	private void checkVirtualType(final App app) throws FrameworkException {
 
 		final Class<? extends AbstractNode> virtualTypeClass = StructrApp.getConfiguration().getNodeEntityClass("VirtualType");
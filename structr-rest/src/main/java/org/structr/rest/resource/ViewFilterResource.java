@@ -83,6 +83,15 @@ public class ViewFilterResource extends WrappingResource {
 		throw new IllegalPathException("GET not allowed on " + getResourceSignature());
 	}
 
+	@Override
+	public void streamResults(final boolean streamResults) {
+
+		if (wrappedResource != null) {
+
+			wrappedResource.streamResults(streamResults);
+		}
+	}
+
 	@Override
 	public RestMethodResult doPost(Map<String, Object> propertySet) throws FrameworkException {
 
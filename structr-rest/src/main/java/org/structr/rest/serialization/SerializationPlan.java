@@ -0,0 +1,154 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest.serialization;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.common.View;
+import org.structr.core.app.StructrApp;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.entity.AbstractRelationship;
+import org.structr.core.property.PropertyKey;
+import org.structr.schema.SchemaService;
+
+/**
+ * Precompiled list of property keys that the JSON output writes for a
+ * given (type, view) combination.
+ *
+ * Plans are only built for types whose property set depends on the type
+ * and the view alone, i.e. types that do not override getPropertyKeys().
+ * All plans are discarded when the schema is reloaded.
+ */
+public class SerializationPlan {
+
+	private static final Logger logger                   = LoggerFactory.getLogger(SerializationPlan.class.getName());
+	private static final Map<Class, TypePlans> typePlans = new ConcurrentHashMap<>();
+	private static volatile long schemaVersion           = -1L;
+
+	private final PropertyKey[] keys;
+	private final String[] names;
+
+	private SerializationPlan(final Class type, final String view, final Set<PropertyKey> source) {
+
+		this.keys  = new PropertyKey[source.size()];
+		this.names = new String[source.size()];
+
+		int i = 0;
+
+		for (final PropertyKey key : source) {
+
+			// special handling for the internal _graph view: replace name with
+			// the name property from the ui view, in case it was overwritten
+			if (View.INTERNAL_GRAPH_VIEW.equals(view) && AbstractNode.name.equals(key)) {
+
+				keys[i] = StructrApp.key(type, AbstractNode.name.jsonName());
+
+			} else {
+
+				keys[i] = key;
+			}
+
+			names[i] = key.jsonName();
+
+			i++;
+		}
+	}
+
+	public int size() {
+		return keys.length;
+	}
+
+	public PropertyKey getKey(final int index) {
+		return keys[index];
+	}
+
+	public String getName(final int index) {
+		return names[index];
+	}
+
+	/**
+	 * Returns the serialization plan for the given type and view, or null
+	 * if the property set of the given type cannot be precompiled.
+	 *
+	 * @param type the concrete type of the object to serialize
+	 * @param view the property view
+	 * @param compactKeys the keys to use for compact nested output, or null
+	 *
+	 * @return the plan or null
+	 */
+	public static SerializationPlan get(final Class type, final String view, final Set<PropertyKey> compactKeys) {
+
+		final long currentVersion = SchemaService.getSchemaVersion();
+		if (currentVersion != schemaVersion) {
+
+			synchronized (typePlans) {
+
+				if (currentVersion != schemaVersion) {
+
+					typePlans.clear();
+					schemaVersion = currentVersion;
+				}
+			}
+		}
+
+		final TypePlans plans = typePlans.computeIfAbsent(type, TypePlans::new);
+		if (plans.supported) {
+
+			if (compactKeys != null) {
+
+				return plans.compact.computeIfAbsent(view, v -> new SerializationPlan(type, v, compactKeys));
+			}
+
+			return plans.full.computeIfAbsent(view, v -> new SerializationPlan(type, v, StructrApp.getConfiguration().getPropertySet(type, v)));
+		}
+
+		return null;
+	}
+
+	// ----- private static methods -----
+	private static boolean isSupported(final Class type) {
+
+		try {
+
+			final Class declaringClass = type.getMethod("getPropertyKeys", String.class).getDeclaringClass();
+
+			return AbstractNode.class.equals(declaringClass) || AbstractRelationship.class.equals(declaringClass);
+
+		} catch (NoSuchMethodException nsmex) {
+			logger.warn("Unable to determine property key source for type {}: {}", type.getName(), nsmex.getMessage());
+		}
+
+		return false;
+	}
+
+	// ----- nested classes -----
+	private static class TypePlans {
+
+		private final Map<String, SerializationPlan> compact = new ConcurrentHashMap<>();
+		private final Map<String, SerializationPlan> full    = new ConcurrentHashMap<>();
+		private final boolean supported;
+
+		public TypePlans(final Class type) {
+			this.supported = isSupported(type);
+		}
+	}
+}
@@ -23,28 +23,35 @@ import java.io.StringWriter;
 import java.io.Writer;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import org.apache.commons.collections4.ListUtils;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.config.Settings;
+import org.structr.common.PagingHelper;
+import org.structr.common.PrefetchHelper;
 import org.structr.common.PropertyView;
 import org.structr.common.QueryRange;
 import org.structr.common.SecurityContext;
 import org.structr.common.View;
 import org.structr.core.GraphObject;
 import org.structr.core.Result;
+import org.structr.core.StreamingResult;
 import org.structr.core.Value;
 import org.structr.core.app.StructrApp;
 import org.structr.core.converter.PropertyConverter;
@@ -60,9 +67,23 @@ import org.structr.core.property.PropertyMap;
  */
 public abstract class StreamingWriter {
 
-	private static final Logger logger                   = LoggerFactory.getLogger(StreamingWriter.class.getName());
-	private static final Set<PropertyKey> idTypeNameOnly = new LinkedHashSet<>();
-	private static final Set<String> restrictedViews     = new HashSet<>();
+	private static final Logger logger                           = LoggerFactory.getLogger(StreamingWriter.class.getName());
+	private static final Set<PropertyKey> idTypeNameOnly         = new LinkedHashSet<>();
+	private static final Set<String> restrictedViews             = new HashSet<>();
+	private static final ThreadLocal<Boolean> isSerializerThread = ThreadLocal.withInitial(() -> false);
+	private static final int STREAMING_CHUNK_SIZE                = 1000;
+	private static final int SAMPLE_SIZE                         = 10;
+	private static final long TARGET_CHUNK_NANOS                 = 5000000L;
+	private static final int POOL_SIZE                           = Runtime.getRuntime().availableProcessors();
+
+	// shared by all requests, the calling thread does the work when the pool is busy
+	private static final ExecutorService serializerPool = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(POOL_SIZE * 16), runnable -> {
+
+		final Thread thread = new Thread(runnable, "JsonSerializer");
+		thread.setDaemon(true);
+
+		return thread;
+	});
 
 	static {
 
@@ -75,8 +96,7 @@ public abstract class StreamingWriter {
 		restrictedViews.add(PropertyView.Custom);
 	}
 
-	private final ExecutorService threadPool              = Executors.newWorkStealingPool();
-	private final Map<String, Serializer> serializerCache = new LinkedHashMap<>();
+	private final Map<String, Serializer> serializerCache = new ConcurrentHashMap<>();
 	private final Map<String, Serializer> serializers     = new LinkedHashMap<>();
 	private final Serializer<GraphObject> root            = new RootSerializer();
 	private final Set<String> nonSerializerClasses        = new LinkedHashSet<>();
@@ -85,6 +105,7 @@ public abstract class StreamingWriter {
 	private boolean renderSerializationTime               = true;
 	private boolean renderResultCount                     = true;
 	private boolean reduceRedundancy                      = false;
+	private boolean useSerializationPlans                 = true;
 	private int outputNestingDepth                        = 3;
 	private int parallelizationThreshold                  = 100;
 	private Value<String> propertyView                    = null;
@@ -97,6 +118,7 @@ public abstract class StreamingWriter {
 
 		this.parallelizationThreshold = Settings.JsonParallelizationThreshold.getValue(100);
 		this.reduceRedundancy         = Settings.JsonRedundancyReduction.getValue(true);
+		this.useSerializationPlans    = Settings.JsonSerializationPlans.getValue(true);
 		this.outputNestingDepth       = outputNestingDepth;
 		this.propertyView             = propertyView;
 		this.indent                   = indent;
@@ -144,10 +166,14 @@ public abstract class StreamingWriter {
 
 		configureWriter(rootWriter);
 
+		// streaming results are instantiated while they are written
+		final boolean streaming                   = result instanceof StreamingResult && result.isCollection() && !result.isPrimitiveArray();
+
 		// result fields in alphabetical order
-		final List<? extends GraphObject> results = result.getResults();
+		final List<? extends GraphObject> results = streaming ? null : result.getResults();
 		final Set<Integer> visitedObjects         = new LinkedHashSet<>();
 		final Integer outputNestingDepth          = result.getOutputNestingDepth();
+		final String nextCursor                   = result.getNextCursor();
 		final Integer page                        = result.getPage();
 		final Integer pageCount                   = result.getPageCount();
 		final Integer pageSize                    = result.getPageSize();
@@ -157,12 +183,26 @@ public abstract class StreamingWriter {
 		final String sortKey                      = result.getSortKey();
 		final String sortOrder                    = result.getSortOrder();
 		final GraphObject metaData                = result.getMetaData();
+		Iterator<GraphObject> streamingIterator   = null;
+		String firstChunk                         = null;
+
+		if (streaming) {
+
+			// serialize the first chunk before anything is written, so that a failing
+			// query is still reported with an error status by the caller
+			streamingIterator = ((StreamingResult<GraphObject>)result).getIterable().iterator();
+			firstChunk        = serializeChunk(securityContext, streamingIterator, visitedObjects);
+		}
 
 		rootWriter.beginDocument(baseUrl, propertyView.get(securityContext));
 
 		// open result set
 		rootWriter.beginObject();
 
+		if (nextCursor != null && !streaming) {
+			rootWriter.name("next_cursor").value(nextCursor);
+		}
+
 		if (outputNestingDepth != null) {
 			rootWriter.name("output_nesting_depth").value(outputNestingDepth);
 		}
@@ -171,7 +211,7 @@ public abstract class StreamingWriter {
 			rootWriter.name("page").value(page);
 		}
 
-		if (pageCount != null) {
+		if (pageCount != null && !streaming) {
 			rootWriter.name("page_count").value(pageCount);
 		}
 
@@ -179,15 +219,53 @@ public abstract class StreamingWriter {
 			rootWriter.name("page_size").value(pageSize);
 		}
 
-		if (queryTime != null) {
+		if (queryTime != null && !streaming) {
 			rootWriter.name("query_time").value(queryTime);
 		}
 
-		if (resultCount != null && renderResultCount) {
+		if (resultCount != null && renderResultCount && !streaming) {
 			rootWriter.name("result_count").value(resultCount);
+
+			if (result.isResultCountApproximate()) {
+				rootWriter.name("result_count_approximate").value(true);
+			}
 		}
 
-		if (results != null) {
+		if (streaming) {
+
+			final StreamingResult<GraphObject> streamingResult = (StreamingResult)result;
+
+			final boolean complete            = streamResults(securityContext, rootWriter, streamingIterator, firstChunk, visitedObjects);
+
+			// count, cursor and query time are only known after the result has been written
+			final String streamedNextCursor   = streamingResult.getNextCursor();
+			final Integer streamedResultCount = streamingResult.getRawResultCount();
+			final long sourceTime             = streamingResult.getSourceTime();
+
+			if (streamedNextCursor != null && complete) {
+				rootWriter.name("next_cursor").value(streamedNextCursor);
+			}
+
+			if (streamedResultCount != null && pageSize != null && complete) {
+				rootWriter.name("page_count").value(PagingHelper.getPageCount(streamedResultCount, pageSize));
+			}
+
+			if (queryTime != null) {
+				rootWriter.name("query_time").value(decimalFormat.format(Double.valueOf(queryTime) + sourceTime / 1000000000.0));
+			}
+
+			if (streamedResultCount != null && renderResultCount && complete) {
+				rootWriter.name("result_count").value(streamedResultCount);
+
+				if (streamingResult.isResultCountApproximate()) {
+					rootWriter.name("result_count_approximate").value(true);
+				}
+			}
+
+			// the time spent in the query is reported as query time
+			t0 += sourceTime;
+
+		} else if (results != null) {
 
 			if (results.isEmpty() && result.isPrimitiveArray()) {
 
@@ -241,6 +319,9 @@ public abstract class StreamingWriter {
 
 				if (result.isCollection()) {
 
+					// load the relationships of the view for the whole page at once
+					PrefetchHelper.prefetchRelationships(results, localPropertyView);
+
 					rootWriter.name(resultKeyName).beginArray();
 
 					if (securityContext.doMultiThreadedJsonOutput() && results.size() > parallelizationThreshold) {
@@ -296,8 +377,117 @@ public abstract class StreamingWriter {
 		// finished
 		rootWriter.endObject();
 		rootWriter.endDocument();
+	}
+
+	/**
+	 * Writes the serialized chunks of a streaming result. The status of the
+	 * response is already committed when a later chunk fails, so the error
+	 * is reported in the document itself, after the partial result.
+	 *
+	 * @return whether the complete result has been written
+	 */
+	private boolean streamResults(final SecurityContext securityContext, final RestWriter rootWriter, final Iterator<GraphObject> iterator, final String firstChunk, final Set<Integer> visitedObjects) throws IOException {
+
+		boolean hasOutput = false;
+		String chunk      = firstChunk;
+
+		rootWriter.name(resultKeyName).beginArray();
+
+		while (chunk != null) {
+
+			if (!chunk.isEmpty()) {
+
+				try {
+
+					if (hasOutput) {
+						rootWriter.raw(",");
+					}
+
+					rootWriter.raw(chunk);
+					hasOutput = true;
+
+				} catch (Exception ex) {
+
+					throw new IOException(ex);
+				}
+			}
+
+			// send what we have so far
+			rootWriter.flush();
+
+			try {
+
+				chunk = serializeChunk(securityContext, iterator, visitedObjects);
+
+			} catch (RuntimeException | IOException ex) {
+
+				logger.warn("Unable to stream result", ex);
+
+				rootWriter.endArray();
+
+				rootWriter.name("error").beginObject();
+				rootWriter.name("code").value(500);
+				rootWriter.name("message").value("Exception in GET: " + ex.getMessage());
+				rootWriter.endObject();
+
+				return false;
+			}
+		}
+
+		rootWriter.endArray();
+
+		return true;
+	}
+
+	/**
+	 * Instantiates and serializes the next chunk of a streaming result.
+	 *
+	 * @return the serialized objects without the enclosing brackets, or null if the result is exhausted
+	 */
+	private String serializeChunk(final SecurityContext securityContext, final Iterator<GraphObject> iterator, final Set<Integer> visitedObjects) throws IOException {
 
-		threadPool.shutdown();
+		if (!iterator.hasNext()) {
+			return null;
+		}
+
+		final String localPropertyView = propertyView.get(null);
+		final List<GraphObject> chunk  = new ArrayList<>(STREAMING_CHUNK_SIZE);
+
+		while (chunk.size() < STREAMING_CHUNK_SIZE && iterator.hasNext()) {
+			chunk.add(iterator.next());
+		}
+
+		// load the relationships of the view for the whole chunk at once
+		PrefetchHelper.prefetchRelationships(chunk, localPropertyView);
+
+		final StringWriter buffer            = new StringWriter();
+		final RestWriter bufferingRestWriter = getRestWriter(securityContext, buffer);
+
+		configureWriter(bufferingRestWriter);
+
+		bufferingRestWriter.beginArray();
+
+		if (securityContext.doMultiThreadedJsonOutput() && chunk.size() > parallelizationThreshold) {
+
+			doParallel(chunk, bufferingRestWriter, visitedObjects, (writer, o, nestedObjects) -> {
+
+				root.serialize(writer, (GraphObject)o, localPropertyView, 0, nestedObjects);
+			});
+
+		} else {
+
+			for (final GraphObject graphObject : chunk) {
+
+				root.serialize(bufferingRestWriter, graphObject, localPropertyView, 0, visitedObjects);
+			}
+		}
+
+		bufferingRestWriter.endArray();
+		bufferingRestWriter.flush();
+
+		final String raw = buffer.toString();
+
+		return raw.substring(1, raw.length() - 1);
 	}
 
 	public void setResultKeyName(final String resultKeyName) {
@@ -312,6 +502,10 @@ public abstract class StreamingWriter {
 		this.renderResultCount = doRender;
 	}
 
+	public void setUseSerializationPlans(final boolean useSerializationPlans) {
+		this.useSerializationPlans = useSerializationPlans;
+	}
+
 	private Serializer getSerializerForType(Class type) {
 
 		Class localType       = type;
@@ -467,57 +661,116 @@ public abstract class StreamingWriter {
 				// prevent endless recursion by pruning at depth n
 				if (depth <= outputNestingDepth) {
 
-					// property keys
-					Iterable<PropertyKey> keys = source.getPropertyKeys(localPropertyView);
-					if (keys != null) {
+					final SerializationPlan plan = getSerializationPlan(writer, source, localPropertyView, depth);
+					if (plan != null) {
 
-						// speciality for all, custom and ui view: limit recursive rendering to (id, name)
-						if (compactNestedProperties && depth > 0 && restrictedViews.contains(localPropertyView)) {
-							keys = idTypeNameOnly;
-						}
+						serializeProperties(writer, source, plan, localPropertyView, depth, visitedObjects);
+
+					} else {
+
+						serializeProperties(writer, source, localPropertyView, depth, visitedObjects);
+					}
+				}
 
-						for (final PropertyKey key : keys) {
+				writer.endObject(source);
+
+				// unmark (visiting only counts for children)
+				visitedObjects.remove(hashCode);
+			}
+		}
+
+		private SerializationPlan getSerializationPlan(final RestWriter writer, final GraphObject source, final String localPropertyView, final int depth) {
 
-							final QueryRange range = writer.getSecurityContext().getRange(key.jsonName());
-							if (range != null) {
-								// Reset count for each key
-								range.resetCount();
-							}
+			// custom views are defined per request and cannot be precompiled
+			if (useSerializationPlans && !writer.getSecurityContext().hasCustomView()) {
 
-							// special handling for the internal _graph view: replace name with
-							// the name property from the ui view, in case it was overwritten
-							PropertyKey localKey = key;
+				// speciality for all, custom and ui view: limit recursive rendering to (id, name)
+				final boolean compact = compactNestedProperties && depth > 0 && restrictedViews.contains(localPropertyView);
 
-							if (View.INTERNAL_GRAPH_VIEW.equals(localPropertyView)) {
+				return SerializationPlan.get(source.getClass(), localPropertyView, compact ? idTypeNameOnly : null);
+			}
 
-								if (AbstractNode.name.equals(localKey)) {
+			return null;
+		}
 
-									// replace key
-									localKey = StructrApp.key(source.getClass(), AbstractNode.name.jsonName());
-								}
-							}
+		private void serializeProperties(final RestWriter writer, final GraphObject source, final SerializationPlan plan, final String localPropertyView, final int depth, final Set<Integer> visitedObjects) throws IOException {
 
-							final Object value = source.getProperty(localKey, range);
-							if (value != null) {
+			final SecurityContext securityContext = writer.getSecurityContext();
+			final int size                        = plan.size();
 
-								if (!(reduceRedundancy && value instanceof GraphObject && visitedObjects.contains(value.hashCode()))) {
+			for (int i=0; i<size; i++) {
 
-									writer.name(key.jsonName());
-									serializeProperty(writer, localKey, value, localPropertyView, depth+1, visitedObjects);
-								}
+				final PropertyKey key  = plan.getKey(i);
+				final String name      = plan.getName(i);
+				final QueryRange range = securityContext.getRange(name);
 
-							} else {
+				if (range != null) {
+					// Reset count for each key
+					range.resetCount();
+				}
 
-								writer.name(localKey.jsonName()).nullValue();
-							}
-						}
+				final Object value = source.getProperty(key, range);
+				if (value != null) {
+
+					if (!(reduceRedundancy && value instanceof GraphObject && visitedObjects.contains(value.hashCode()))) {
+
+						writer.name(name);
+						serializeProperty(writer, key, value, localPropertyView, depth+1, visitedObjects);
 					}
+
+				} else {
+
+					writer.name(key.jsonName()).nullValue();
 				}
+			}
+		}
 
-				writer.endObject(source);
+		private void serializeProperties(final RestWriter writer, final GraphObject source, final String localPropertyView, final int depth, final Set<Integer> visitedObjects) throws IOException {
 
-				// unmark (visiting only counts for children)
-				visitedObjects.remove(hashCode);
+			// property keys
+			Iterable<PropertyKey> keys = source.getPropertyKeys(localPropertyView);
+			if (keys != null) {
+
+				// speciality for all, custom and ui view: limit recursive rendering to (id, name)
+				if (compactNestedProperties && depth > 0 && restrictedViews.contains(localPropertyView)) {
+					keys = idTypeNameOnly;
+				}
+
+				for (final PropertyKey key : keys) {
+
+					final QueryRange range = writer.getSecurityContext().getRange(key.jsonName());
+					if (range != null) {
+						// Reset count for each key
+						range.resetCount();
+					}
+
+					// special handling for the internal _graph view: replace name with
+					// the name property from the ui view, in case it was overwritten
+					PropertyKey localKey = key;
+
+					if (View.INTERNAL_GRAPH_VIEW.equals(localPropertyView)) {
+
+						if (AbstractNode.name.equals(localKey)) {
+
+							// replace key
+							localKey = StructrApp.key(source.getClass(), AbstractNode.name.jsonName());
+						}
+					}
+
+					final Object value = source.getProperty(localKey, range);
+					if (value != null) {
+
+						if (!(reduceRedundancy && value instanceof GraphObject && visitedObjects.contains(value.hashCode()))) {
+
+							writer.name(key.jsonName());
+							serializeProperty(writer, localKey, value, localPropertyView, depth+1, visitedObjects);
+						}
+
+					} else {
+
+						writer.name(localKey.jsonName()).nullValue();
+					}
+				}
 			}
 		}
 	}
@@ -606,65 +859,95 @@ public abstract class StreamingWriter {
 	}
 
 	// ----- private methods -----
-	private void doParallel(final List list, final RestWriter parentWriter, final Set<Integer> visitedObjects, final Operation op) {
+	/**
+	 * Serializes the given list in parallel, in chunks whose size depends on
+	 * the measured cost per object. Completed chunks are written to the
+	 * parent writer in order as soon as they are available, and the number
+	 * of chunks held in memory is limited. If a chunk cannot be serialized,
+	 * the run is cancelled and the failure is thrown as an IOException.
+	 */
+	private void doParallel(final List list, final RestWriter parentWriter, final Set<Integer> visitedObjects, final Operation op) throws IOException {
+
+		final int size        = list.size();
+		final int parallelism = Math.max(1, Math.min(Settings.JsonParallelism.getValue(4), POOL_SIZE));
+		final int sampleSize  = Math.min(size, SAMPLE_SIZE);
+
+		// nested lists are serialized sequentially by the worker that found them
+		if (isSerializerThread.get() || parallelism == 1) {
+
+			for (final Object o : list) {
+				op.run(parentWriter, o, visitedObjects);
+			}
 
-		final SecurityContext securityContext = parentWriter.getSecurityContext();
-		final int numberOfPartitions          = (int)Math.rint(Math.log(list.size())) + 1;
-		final List<List> partitions           = ListUtils.partition(list, numberOfPartitions);
-		final List<Future<String>> futures    = new LinkedList<>();
+			return;
+		}
 
-		for (final List partition : partitions) {
+		// measure the cost per object by serializing the first objects directly
+		final long t0 = System.nanoTime();
 
-			futures.add(threadPool.submit(() -> {
+		for (int i=0; i<sampleSize; i++) {
+			op.run(parentWriter, list.get(i), visitedObjects);
+		}
 
-				final StringWriter buffer = new StringWriter();
+		if (sampleSize == size) {
+			return;
+		}
 
-				// avoid deadlocks by preventing writes in this transaction
-				securityContext.setReadOnlyTransaction();
+		final long costPerObject = Math.max(1L, (System.nanoTime() - t0) / Math.max(1, sampleSize));
+		final int remaining      = size - sampleSize;
+		final int maxChunkSize   = Math.max(1, remaining / (parallelism * 2));
+		final int chunkSize      = (int)Math.max(1L, Math.min(maxChunkSize, TARGET_CHUNK_NANOS / costPerObject));
+		final ParallelRun run    = new ParallelRun(list, sampleSize, chunkSize, parallelism, parentWriter.getSecurityContext(), visitedObjects, op);
 
-				try (final Tx tx = StructrApp.getInstance(securityContext).tx(false, false, false)) {
+		for (int i=1; i<parallelism; i++) {
 
-					final RestWriter bufferingRestWriter = getRestWriter(securityContext, buffer);
-					final Set<Integer> nestedObjects     = new LinkedHashSet<>(visitedObjects);
-					configureWriter(bufferingRestWriter);
+			try {
 
-					bufferingRestWriter.beginArray();
+				serializerPool.execute(run::work);
 
-					for (final Object o : partition) {
+			} catch (RejectedExecutionException rex) {
 
-						op.run(bufferingRestWriter, o, nestedObjects);
-					}
+				// the calling thread does the work
+				break;
+			}
+		}
 
-					bufferingRestWriter.endArray();
-					bufferingRestWriter.flush();
+		boolean hasOutput = sampleSize > 0;
 
-					tx.success();
-				}
+		// write chunks in order, help with serialization while waiting
+		for (int index=0; index<run.chunkCount; index++) {
 
-				final String data = buffer.toString();
-				final String sub  = data.substring(1, data.length() - 1);
+			while (!run.isDone(index)) {
 
-				return sub;
+				if (!run.help()) {
 
-			}));
-		}
+					run.await(index);
+				}
+			}
 
-		for (final Iterator<Future<String>> it = futures.iterator(); it.hasNext();) {
+			final Throwable failure = run.getFailure();
+			if (failure != null) {
 
-			try {
+				throw new IOException("Unable to serialize objects", failure);
+			}
 
-				final Future<String> future = it.next();
-				final String raw            = future.get();
+			final String data = run.take(index);
+			if (data != null && !data.isEmpty()) {
 
-				parentWriter.raw(raw);
+				try {
 
-				if (it.hasNext()) {
-					parentWriter.raw(",");
-				}
+					if (hasOutput) {
+						parentWriter.raw(",");
+					}
 
-			} catch (Throwable t) {
+					parentWriter.raw(data);
+					hasOutput = true;
+
+				} catch (Exception ex) {
 
-				t.printStackTrace();
+					run.cancel();
+					throw new IOException(ex);
+				}
 			}
 		}
 	}
@@ -696,4 +979,190 @@ public abstract class StreamingWriter {
 
 		public void run(final RestWriter writer, final Object o, final Set<Integer> visitedObjects) throws IOException;
 	}
+
+	/**
+	 * The state of a single parallel serialization. Chunks are claimed in
+	 * order by the pool threads and the calling thread. Each pool thread
+	 * uses a single read-only transaction for all the chunks it serializes.
+	 */
+	private class ParallelRun {
+
+		private final AtomicInteger nextChunk   = new AtomicInteger();
+		private volatile boolean cancelled      = false;
+		private SecurityContext securityContext = null;
+		private Throwable failure               = null;
+		private Set<Integer> visitedObjects     = null;
+		private Semaphore permits               = null;
+		private Operation op                    = null;
+		private String[] chunks                 = null;
+		private boolean[] done                  = null;
+		private List list                       = null;
+		private int offset                      = 0;
+		private int chunkSize                   = 0;
+		private int chunkCount                  = 0;
+
+		public ParallelRun(final List list, final int offset, final int chunkSize, final int parallelism, final SecurityContext securityContext, final Set<Integer> visitedObjects, final Operation op) {
+
+			this.list            = list;
+			this.offset          = offset;
+			this.chunkSize       = chunkSize;
+			this.chunkCount      = (list.size() - offset + chunkSize - 1) / chunkSize;
+			this.chunks          = new String[chunkCount];
+			this.done            = new boolean[chunkCount];
+			this.securityContext = securityContext;
+			this.visitedObjects  = visitedObjects;
+			this.op              = op;
+
+			// limits the number of serialized chunks that wait to be written
+			this.permits         = new Semaphore(parallelism * 2);
+		}
+
+		public void work() {
+
+			// the calling thread may have done all the work already
+			if (cancelled || nextChunk.get() >= chunkCount) {
+				return;
+			}
+
+			isSerializerThread.set(true);
+
+			// avoid deadlocks by preventing writes in this transaction
+			securityContext.setReadOnlyTransaction();
+
+			try (final Tx tx = StructrApp.getInstance(securityContext).tx(false, false, false)) {
+
+				while (!cancelled && nextChunk.get() < chunkCount) {
+
+					if (permits.tryAcquire(100, TimeUnit.MILLISECONDS) && !serializeNextChunk()) {
+						break;
+					}
+				}
+
+				tx.success();
+
+			} catch (Throwable t) {
+
+				fail(t);
+
+			} finally {
+
+				isSerializerThread.remove();
+			}
+		}
+
+		public boolean help() {
+			return permits.tryAcquire() && serializeNextChunk();
+		}
+
+		public synchronized boolean isDone(final int index) {
+			return done[index];
+		}
+
+		public synchronized void await(final int index) {
+
+			while (!done[index]) {
+
+				try {
+
+					wait(100);
+
+				} catch (InterruptedException iex) {
+
+					Thread.currentThread().interrupt();
+					fail(iex);
+				}
+			}
+		}
+
+		public synchronized String take(final int index) {
+
+			final String data = chunks[index];
+
+			// release memory and let the workers continue
+			chunks[index] = null;
+			permits.release();
+
+			return data;
+		}
+
+		/**
+		 * Cancels this run and records the first failure, so that the
+		 * missing chunks are reported instead of being skipped.
+		 */
+		public synchronized void fail(final Throwable t) {
+
+			if (failure == null) {
+				failure = t;
+			}
+
+			cancel();
+		}
+
+		public synchronized Throwable getFailure() {
+			return failure;
+		}
+
+		public synchronized void cancel() {
+
+			cancelled = true;
+
+			// mark unclaimed chunks as done so nobody waits for them
+			for (int i=Math.min(chunkCount, nextChunk.getAndSet(chunkCount)); i<chunkCount; i++) {
+				done[i] = true;
+			}
+
+			notifyAll();
+		}
+
+		// ----- private methods -----
+		private boolean serializeNextChunk() {
+
+			final int index = nextChunk.getAndIncrement();
+			if (index >= chunkCount) {
+
+				permits.release();
+				return false;
+			}
+
+			final StringWriter buffer = new StringWriter();
+			final int from            = offset + index * chunkSize;
+			final int to              = Math.min(list.size(), from + chunkSize);
+			String data               = null;
+
+			try {
+
+				final RestWriter bufferingRestWriter = getRestWriter(securityContext, buffer);
+				final Set<Integer> nestedObjects     = new LinkedHashSet<>(visitedObjects);
+				configureWriter(bufferingRestWriter);
+
+				bufferingRestWriter.beginArray();
+
+				for (int i=from; i<to; i++) {
+
+					op.run(bufferingRestWriter, list.get(i), nestedObjects);
+				}
+
+				bufferingRestWriter.endArray();
+				bufferingRestWriter.flush();
+
+				final String raw = buffer.toString();
+
+				data = raw.substring(1, raw.length() - 1);
+
+			} catch (Throwable t) {
+
+				fail(t);
+			}
+
+			synchronized (this) {
+
+				chunks[index] = data;
+				done[index]   = true;
+
+				notifyAll();
+			}
+
+			return true;
+		}
+	}
 }
@@ -49,6 +49,7 @@ import org.structr.core.IJsonInput;
 import org.structr.core.JsonInput;
 import org.structr.core.JsonSingleInput;
 import org.structr.core.Result;
+import org.structr.core.StreamingResult;
 import org.structr.core.Services;
 import org.structr.core.Value;
 import org.structr.core.app.App;
@@ -76,6 +77,8 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 
 	public static final int DEFAULT_VALUE_PAGE_SIZE                     = 20;
 	public static final String DEFAULT_VALUE_SORT_ORDER                 = "asc";
+	public static final String REQUEST_PARAMETER_CURSOR                 = "_cursor";
+	public static final String REQUEST_PARAMETER_FULLTEXT               = "_fulltext";
 	public static final String REQUEST_PARAMETER_LOOSE_SEARCH           = "loose";
 	public static final String REQUEST_PARAMETER_PAGE_NUMBER            = "page";
 	public static final String REQUEST_PARAMETER_PAGE_SIZE              = "pageSize";
@@ -87,6 +90,8 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 
 	static {
 
+		commonRequestParameters.add(REQUEST_PARAMETER_CURSOR);
+		commonRequestParameters.add(REQUEST_PARAMETER_FULLTEXT);
 		commonRequestParameters.add(REQUEST_PARAMETER_LOOSE_SEARCH);
 		commonRequestParameters.add(REQUEST_PARAMETER_PAGE_NUMBER);
 		commonRequestParameters.add(REQUEST_PARAMETER_PAGE_SIZE);
@@ -942,6 +947,11 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 				sortKey = StructrApp.getConfiguration().getPropertyKeyForDatabaseName(type, sortKeyName, false);
 			}
 
+			// collection results of the requested resource are instantiated while they are
+			// written, except for the HTML view which renders the result metadata before the result
+			final String acceptHeader = request.getHeader("Accept");
+			resource.streamResults(returnContent && (acceptHeader == null || !acceptHeader.contains("text/html")));
+
 			// isolate doGet
 			boolean retry = true;
 			while (retry) {
@@ -963,7 +973,7 @@ public class JsonRestServlet extends HttpServlet implements HttpServiceServlet {
 
 			if (returnContent) {
 
-				if (!(resource instanceof StaticRelationshipResource) && !result.isPrimitiveArray() && !result.isEmpty()) {
+				if (!(resource instanceof StaticRelationshipResource) && !result.isPrimitiveArray() && (result instanceof StreamingResult || !result.isEmpty())) {
 
 					result.setIsCollection(resource.isCollectionResource());
 					result.setIsPrimitiveArray(resource.isPrimitiveArray());
@@ -0,0 +1,173 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.NullWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.structr.api.config.Settings;
+import org.structr.common.PropertyView;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.Result;
+import org.structr.core.Services;
+import org.structr.core.StaticValue;
+import org.structr.core.app.App;
+import org.structr.core.app.StructrApp;
+import org.structr.core.graph.NodeAttribute;
+import org.structr.core.graph.Tx;
+import org.structr.rest.entity.TestOne;
+import org.structr.rest.serialization.StreamingJsonWriter;
+
+/**
+ * Compares the JSON output of the streaming writer with and without
+ * precompiled serialization plans.
+ *
+ * Run with "mvn -P benchmark test-compile exec:java" from the structr-rest
+ * directory, or start the main method from an IDE. Requires the database
+ * that is configured for the unit tests.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xms1g", "-Xmx4g", "-Djava.system.class.loader=org.structr.StructrClassLoader" })
+public class JsonSerializationBenchmark {
+
+	@Param({ "1000", "100000" })
+	public int count;
+
+	@Param({ PropertyView.Public, PropertyView.Ui })
+	public String view;
+
+	private SecurityContext securityContext = null;
+	private List<TestOne> objects           = null;
+	private String basePath                 = null;
+	private App app                         = null;
+
+	@Setup(Level.Trial)
+	public void setup() throws FrameworkException {
+
+		basePath = "/tmp/structr-benchmark-" + System.currentTimeMillis();
+
+		Settings.Services.setValue("NodeService SchemaService");
+		Settings.ConnectionUrl.setValue(Settings.TestingConnectionUrl.getValue());
+		Settings.BasePath.setValue(basePath);
+		Settings.DatabasePath.setValue(basePath + "/db");
+		Settings.FilesPath.setValue(basePath + "/files");
+		Settings.SuperUserName.setValue("superadmin");
+		Settings.SuperUserPassword.setValue("sehrgeheim");
+
+		final Services services = Services.getInstance();
+
+		// wait for service layer to be initialized
+		do {
+			try { Thread.sleep(100); } catch (Throwable t) {}
+
+		} while (!services.isInitialized());
+
+		securityContext = SecurityContext.getSuperUserInstance();
+		app             = StructrApp.getInstance(securityContext);
+
+		try (final Tx tx = app.tx()) {
+
+			app.cypher("MATCH (n:TestOne) DETACH DELETE n", Collections.emptyMap());
+
+			for (int i=0; i<count; i++) {
+
+				app.create(TestOne.class,
+					new NodeAttribute<>(TestOne.name,  "TestOne" + i),
+					new NodeAttribute<>(TestOne.anInt, i),
+					new NodeAttribute<>(TestOne.aLong, (long)i)
+				);
+			}
+
+			tx.success();
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			objects = app.nodeQuery(TestOne.class).getAsList();
+			tx.success();
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+
+		Services.getInstance().shutdown();
+
+		FileUtils.deleteDirectory(new File(basePath));
+	}
+
+	@Benchmark
+	public void withoutSerializationPlans() throws Exception {
+		serialize(false);
+	}
+
+	@Benchmark
+	public void withSerializationPlans() throws Exception {
+		serialize(true);
+	}
+
+	public static void main(final String[] args) throws RunnerException {
+
+		new Runner(new OptionsBuilder()
+			.include(JsonSerializationBenchmark.class.getSimpleName())
+			.build()
+		).run();
+	}
+
+	// ----- private methods -----
+	private void serialize(final boolean usePlans) throws Exception {
+
+		final StreamingJsonWriter writer = new StreamingJsonWriter(new StaticValue<>(view), false, 3);
+		final Writer output              = new NullWriter();
+
+		writer.setUseSerializationPlans(usePlans);
+
+		try (final Tx tx = app.tx()) {
+
+			writer.stream(securityContext, output, new Result(objects, objects.size(), true, false), null);
+			tx.success();
+		}
+	}
+}
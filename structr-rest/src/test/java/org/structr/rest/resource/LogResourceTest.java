@@ -0,0 +1,284 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest.resource;
+
+import com.jayway.restassured.RestAssured;
+import com.jayway.restassured.filter.log.ResponseLoggingFilter;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.structr.api.config.Settings;
+import org.structr.rest.common.StructrRestTest;
+import org.structr.rest.logging.LogEntry;
+import org.structr.rest.logging.LogEventStore;
+
+/**
+ */
+public class LogResourceTest extends StructrRestTest {
+
+	@Test
+	public void testLogResource() {
+
+		Settings.LogEventStore.setValue(true);
+
+		try {
+
+			createEvent("subject1", "object1", "read",  "page1");
+			createEvent("subject1", "object1", "read",  "page2");
+			createEvent("subject1", "object2", "write", "page3");
+			createEvent("subject2", "object2", "read",  "page4");
+
+			// overview
+			RestAssured
+
+				.given()
+					.filter(ResponseLoggingFilter.logResponseTo(System.out))
+					.contentType("application/json; charset=UTF-8")
+				.expect()
+					.statusCode(200)
+					.body("result[0].entryCount", equalTo(4))
+				.when()
+					.get("/log");
+
+			RestAssured
+
+				.given()
+					.filter(ResponseLoggingFilter.logResponseTo(System.out))
+					.contentType("application/json; charset=UTF-8")
+				.expect()
+					.statusCode(200)
+					.body("result_count", equalTo(3))
+					.body("result[0].message", equalTo("page1"))
+					.body("result[2].message", equalTo("page3"))
+				.when()
+					.get("/log?subject=subject1");
+
+			RestAssured
+
+				.given()
+					.filter(ResponseLoggingFilter.logResponseTo(System.out))
+					.contentType("application/json; charset=UTF-8")
+				.expect()
+					.statusCode(200)
+					.body("result_count", equalTo(1))
+					.body("result[0].action", equalTo("write"))
+				.when()
+					.get("/log?subject=subject1&object=object2");
+
+			final long rollupQueries = (Long)LogEventStore.getStatistics().get("rollupQueries");
+
+			// daily aggregation of a single action is answered from the rollups
+			RestAssured
+
+				.given()
+					.filter(ResponseLoggingFilter.logResponseTo(System.out))
+					.contentType("application/json; charset=UTF-8")
+				.expect()
+					.statusCode(200)
+					.body("result[0].collect { it.value.total }.sum()", equalTo(3))
+				.when()
+					.get("/log?action=read&aggregate=yyyy-MM-dd");
+
+			assertTrue("Aggregation should use the rollups of the log event store", (Long)LogEventStore.getStatistics().get("rollupQueries") > rollupQueries);
+
+			// aggregation with patterns needs the messages
+			RestAssured
+
+				.given()
+					.filter(ResponseLoggingFilter.logResponseTo(System.out))
+					.contentType("application/json; charset=UTF-8")
+				.expect()
+					.statusCode(200)
+					.body("result[0].collect { it.value.total }.sum()", equalTo(3))
+					.body("result[0].collect { it.value.first }.sum()", equalTo(1))
+				.when()
+					.get("/log?action=read&aggregate=yyyy-MM-dd&first=page1");
+
+		} finally {
+
+			Settings.LogEventStore.setValue(false);
+		}
+	}
+
+	@Test
+	public void testMigrationRequiresStore() {
+
+		createEvent("subject1", "object1", "read",  "page1");
+
+		// LogEvent nodes must not be moved into a disabled store
+		RestAssured
+
+			.given()
+				.filter(ResponseLoggingFilter.logResponseTo(System.out))
+				.contentType("application/json; charset=UTF-8")
+				.body(" { } ")
+			.expect()
+				.statusCode(409)
+			.when()
+				.post("/log?migrate=true");
+
+		Settings.LogEventStore.setValue(true);
+
+		try {
+
+			RestAssured
+
+				.given()
+					.filter(ResponseLoggingFilter.logResponseTo(System.out))
+					.contentType("application/json; charset=UTF-8")
+					.body(" { } ")
+				.expect()
+					.statusCode(200)
+				.when()
+					.post("/log?migrate=true");
+
+			// a repeated migration does not append anything
+			RestAssured
+
+				.given()
+					.filter(ResponseLoggingFilter.logResponseTo(System.out))
+					.contentType("application/json; charset=UTF-8")
+					.body(" { } ")
+				.expect()
+					.statusCode(200)
+				.when()
+					.post("/log?migrate=true");
+
+		} finally {
+
+			Settings.LogEventStore.setValue(false);
+		}
+	}
+
+	@Test
+	public void testLogEventStore() {
+
+		final long day   = TimeUnit.DAYS.toMillis(1);
+		final long hour  = TimeUnit.HOURS.toMillis(1);
+		final long start = 100 * day;
+
+		try {
+
+			final Path directory = Files.createTempDirectory("logevents");
+			LogEventStore store  = new LogEventStore(directory);
+
+			final List<LogEntry> entries = new LinkedList<>();
+
+			// two days with three events per hour
+			for (long time = start; time < start + 2 * day; time += hour / 3) {
+				entries.add(new LogEntry(time, time % hour == 0 ? "full" : "partial", "subject" + (time / day), "object", "message at " + time));
+			}
+
+			// events without action and message
+			entries.add(new LogEntry(start + 5, null, "subject", null, null));
+
+			store.append(entries);
+			store.close();
+
+			// delete the meta data of the second day and append an incomplete event to force a rebuild
+			try (final DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.meta")) {
+
+				for (final Path path : stream) {
+
+					if (path.getFileName().toString().equals("19700412.meta")) {
+						Files.delete(path);
+					}
+				}
+			}
+
+			Files.write(directory.resolve("19700412.data"), new byte[] { 1, 2, 3 }, StandardOpenOption.APPEND);
+
+			store = new LogEventStore(directory);
+
+			final List<LogEntry> result = new LinkedList<>();
+
+			store.query("subject101", null, null, Long.MIN_VALUE, Long.MAX_VALUE, result::add);
+
+			assertEquals("Invalid number of events", 72, result.size());
+			assertEquals("Invalid first event", start + day, result.get(0).getTimestamp());
+			assertEquals("Invalid message", "message at " + (start + day), result.get(0).getMessage());
+
+			result.clear();
+			store.query("subject", null, null, Long.MIN_VALUE, Long.MAX_VALUE, result::add);
+
+			assertEquals("Invalid number of events", 1, result.size());
+			assertNull("Invalid action", result.get(0).getAction());
+			assertNull("Invalid object", result.get(0).getObjectId());
+			assertNull("Invalid message", result.get(0).getMessage());
+
+			result.clear();
+			store.query(null, null, "unknown", Long.MIN_VALUE, Long.MAX_VALUE, result::add);
+
+			assertTrue("Unknown actions should not match", result.isEmpty());
+
+			final Map<String, Long> actions = store.countActions(Long.MIN_VALUE, Long.MAX_VALUE);
+
+			assertEquals("Invalid number of actions", 48L, (long)actions.get("full"));
+			assertEquals("Invalid number of actions", 96L, (long)actions.get("partial"));
+			assertEquals("Invalid number of actions", 1L,  (long)actions.get("null"));
+
+			// the boundary hours are only partially covered by the range
+			final TreeMap<Long, Long> hours = store.countPerHour("partial", start + hour / 2, start + 3 * hour + hour / 2);
+
+			assertEquals("Invalid hours", Arrays.asList(start, start + hour, start + 2 * hour, start + 3 * hour), new LinkedList<>(hours.keySet()));
+			assertEquals("Invalid number of events in partially covered hour", 1L, (long)hours.get(start));
+			assertEquals("Invalid number of events in covered hour", 2L, (long)hours.get(start + hour));
+			assertEquals("Invalid number of events in partially covered hour", 1L, (long)hours.get(start + 3 * hour));
+
+			assertEquals("Invalid first timestamp", start, store.getFirstTimestamp());
+			assertEquals("Invalid last timestamp", start + 2 * day - hour / 3, store.getLastTimestamp());
+
+			store.close();
+
+		} catch (IOException ioex) {
+
+			ioex.printStackTrace();
+			fail("Unexpected exception.");
+		}
+	}
+
+	// ----- private methods -----
+	private void createEvent(final String subject, final String object, final String action, final String message) {
+
+		RestAssured
+
+			.given()
+				.filter(ResponseLoggingFilter.logResponseTo(System.out))
+				.contentType("application/json; charset=UTF-8")
+				.body(" { subject: '" + subject + "', object: '" + object + "', action: '" + action + "', message: '" + message + "' } ")
+			.expect()
+				.statusCode(201)
+			.when()
+				.post("/log");
+	}
+}
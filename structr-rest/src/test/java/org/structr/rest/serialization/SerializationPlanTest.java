@@ -0,0 +1,197 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest.serialization;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.common.PropertyView;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
+import org.structr.core.Result;
+import org.structr.core.StaticValue;
+import org.structr.core.app.StructrApp;
+import org.structr.core.entity.SchemaNode;
+import org.structr.core.graph.NodeAttribute;
+import org.structr.core.graph.NodeInterface;
+import org.structr.core.graph.Tx;
+import org.structr.core.property.StringProperty;
+import org.structr.rest.common.StructrRestTest;
+import org.structr.rest.entity.TestOne;
+import org.structr.rest.entity.TestTwo;
+
+/**
+ * Compares the JSON output with and without serialization plans.
+ */
+public class SerializationPlanTest extends StructrRestTest {
+
+	private static final Logger logger = LoggerFactory.getLogger(SerializationPlanTest.class.getName());
+
+	@Test
+	public void testPlansProduceSameOutput() {
+
+		final List<GraphObject> objects = new LinkedList<>();
+
+		try (final Tx tx = app.tx()) {
+
+			final List<TestOne> testOnes = new LinkedList<>();
+
+			for (int i=0; i<3; i++) {
+
+				testOnes.add(app.create(TestOne.class,
+					new NodeAttribute<>(TestOne.name,  "TestOne" + i),
+					new NodeAttribute<>(TestOne.anInt, i),
+					new NodeAttribute<>(TestOne.aLong, (long)i)
+				));
+			}
+
+			objects.add(app.create(TestTwo.class,
+				new NodeAttribute<>(TestTwo.name,     "TestTwo"),
+				new NodeAttribute<>(TestTwo.anInt,    42),
+				new NodeAttribute<>(TestTwo.testOnes, testOnes)
+			));
+
+			objects.addAll(testOnes);
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			for (final String view : Arrays.asList(PropertyView.Public, PropertyView.Ui)) {
+
+				// the depth limits the nesting, nested objects of restricted views are written in compact form
+				for (int depth=0; depth<4; depth++) {
+
+					final String expected = serialize(objects, view, depth, false);
+
+					assertEquals("Output with plans differs for view " + view + " and depth " + depth, expected, serialize(objects, view, depth, true));
+				}
+			}
+
+			assertTrue("Nested objects should be serialized", serialize(objects, PropertyView.Public, 3, true).contains("TestOne2"));
+
+			final SerializationPlan plan = SerializationPlan.get(TestTwo.class, PropertyView.Public, null);
+
+			assertNotNull("Plan should be built for TestTwo", plan);
+			assertSame("Plan should be reused", plan, SerializationPlan.get(TestTwo.class, PropertyView.Public, null));
+
+			tx.success();
+
+		} catch (Throwable t) {
+
+			logger.warn("", t);
+			fail("Unexpected exception.");
+		}
+	}
+
+	@Test
+	public void testSchemaChangeInvalidatesPlans() {
+
+		SerializationPlan planBeforeChange = null;
+		SchemaNode schemaNode              = null;
+
+		try (final Tx tx = app.tx()) {
+
+			schemaNode = app.create(SchemaNode.class,
+				new NodeAttribute<>(SchemaNode.name, "PlanTest"),
+				new NodeAttribute<>(new StringProperty("_one"), "String"),
+				new NodeAttribute<>(new StringProperty("__public"), "one")
+			);
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			planBeforeChange = SerializationPlan.get(TestOne.class, PropertyView.Public, null);
+
+			// add a property to the type and to its public view
+			schemaNode.setProperty(new StringProperty("_two"), "String");
+			schemaNode.setProperty(new StringProperty("__public"), "one, two");
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		final Class type = StructrApp.getConfiguration().getNodeEntityClass("PlanTest");
+
+		assertNotNull("Type PlanTest should exist", type);
+
+		try (final Tx tx = app.tx()) {
+
+			final NodeInterface node = app.create(type,
+				new NodeAttribute<>(StructrApp.key(type, "one"), "first"),
+				new NodeAttribute<>(StructrApp.key(type, "two"), "second")
+			);
+
+			final List<GraphObject> objects = Arrays.<GraphObject>asList(node);
+			final String output             = serialize(objects, PropertyView.Public, 3, true);
+
+			assertTrue("Property added by schema change is missing", output.contains("second"));
+			assertEquals("Output with plans differs after schema change", serialize(objects, PropertyView.Public, 3, false), output);
+			assertNotSame("Plans should be discarded after a schema change", planBeforeChange, SerializationPlan.get(TestOne.class, PropertyView.Public, null));
+
+			tx.success();
+
+		} catch (Throwable t) {
+
+			logger.warn("", t);
+			fail("Unexpected exception.");
+		}
+	}
+
+	// ----- private methods -----
+	private String serialize(final List<GraphObject> objects, final String view, final int depth, final boolean usePlans) throws Exception {
+
+		final StreamingJsonWriter writer = new StreamingJsonWriter(new StaticValue<>(view), true, depth);
+		final StringWriter output        = new StringWriter();
+
+		writer.setUseSerializationPlans(usePlans);
+		writer.setRenderSerializationTime(false);
+
+		writer.stream(securityContext, output, new Result(objects, objects.size(), true, false), null);
+
+		return output.toString();
+	}
+}
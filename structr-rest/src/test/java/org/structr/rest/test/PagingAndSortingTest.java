@@ -21,9 +21,12 @@ package org.structr.rest.test;
 import com.jayway.restassured.RestAssured;
 import com.jayway.restassured.filter.log.ResponseLoggingFilter;
 import java.text.SimpleDateFormat;
+import java.util.LinkedList;
+import java.util.List;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.notNullValue;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
@@ -469,4 +472,86 @@ public class PagingAndSortingTest extends StructrRestTest {
 
 
 	}
+
+	@Test
+	public void testStreamedPaging() {
+
+		try (final Tx tx = app.tx()) {
+
+			for (int i=0; i<1500; i++) {
+				app.create(TestOne.class, "TestOne-" + String.format("%04d", i));
+			}
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fex.printStackTrace();
+		}
+
+		// page size exceeds the size of the chunks that are written at once
+		RestAssured
+
+			.given()
+				.contentType("application/json; charset=UTF-8")
+			.expect()
+				.statusCode(200)
+				.body("result",             hasSize(1200))
+				.body("result_count",       equalTo(1500))
+				.body("page_size",          equalTo(1200))
+				.body("page_count",         equalTo(2))
+				.body("next_cursor",        notNullValue())
+				.body("result[0].name",     equalTo("TestOne-0000"))
+				.body("result[1199].name",  equalTo("TestOne-1199"))
+			.when()
+				.get("/TestOne?sort=name&pageSize=1200&page=1");
+
+		RestAssured
+
+			.given()
+				.contentType("application/json; charset=UTF-8")
+			.expect()
+				.statusCode(200)
+				.body("result",             hasSize(300))
+				.body("result_count",       equalTo(1500))
+				.body("page",               equalTo(2))
+				.body("result[0].name",     equalTo("TestOne-1200"))
+				.body("result[299].name",   equalTo("TestOne-1499"))
+			.when()
+				.get("/TestOne?sort=name&pageSize=1200&page=2");
+	}
+
+	@Test
+	public void testParallelJsonOutput() {
+
+		final List<String> names = new LinkedList<>();
+
+		try (final Tx tx = app.tx()) {
+
+			for (int i=0; i<1500; i++) {
+
+				final String name = "TestOne-" + String.format("%04d", i);
+
+				app.create(TestOne.class, name);
+				names.add(name);
+			}
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fex.printStackTrace();
+		}
+
+		// chunks serialized in parallel must be written in order
+		RestAssured
+
+			.given()
+				.contentType("application/json; charset=UTF-8")
+			.expect()
+				.statusCode(200)
+				.body("result",             hasSize(1500))
+				.body("result_count",       equalTo(1500))
+				.body("result.name",        equalTo(names))
+			.when()
+				.get("/TestOne?sort=name&pageSize=1500&page=1&parallelizeJsonOutput=1");
+	}
 }
@@ -18,31 +18,346 @@
  */
 package org.structr.web.common;
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayDeque;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Special buffer for asynchronous streaming of chunked output.
  *
+ * The renderer appends strings and pre-encoded {@link RenderFragment}s
+ * which are written as UTF-8 directly into a chain of pooled byte
+ * buffers on the rendering thread, so only dynamic values need to be
+ * encoded and the thread that writes to the client hands the buffers
+ * to the output stream without copying them. The number of buffered
+ * bytes is bounded: when the client is slower than the renderer, append
+ * blocks until the writer has taken enough chunks out of the buffer.
  *
+ * The writer is notified via the listener whenever a chunk becomes
+ * available or the output is finished, and should return each chunk
+ * to the pool with {@link #recycle(ByteBuffer)} once it is written.
  */
 public class AsyncBuffer {
 
-	private final Queue<String> queue = new ArrayDeque<>(1000);
+	private static final int CHUNK_SIZE                 = 8192;
+	private static final int MAX_POOLED_CHUNKS          = 512;
+
+	private static final Queue<ByteBuffer> pool         = new ConcurrentLinkedQueue<>();
+	private static final AtomicInteger pooledChunks     = new AtomicInteger();
+
+	private final Queue<ByteBuffer> chunks              = new ArrayDeque<>();
+	private final ReentrantLock lock                    = new ReentrantLock();
+	private final Condition notFull                     = lock.newCondition();
+	private CharsetEncoder encoder                      = null;
+	private ByteBuffer current                          = null;
+	private Runnable listener                           = null;
+	private boolean finished                            = false;
+	private boolean aborted                             = false;
+	private long maxBufferedBytes                       = Long.MAX_VALUE;
+	private long bufferedBytes                          = 0L;
+	private long blockedTime                            = 0L;
+	private long totalBytes                             = 0L;
+
+	public AsyncBuffer() {
+	}
+
+	public AsyncBuffer(final long maxBufferedBytes) {
+		this.maxBufferedBytes = maxBufferedBytes;
+	}
+
+	public void setListener(final Runnable listener) {
+		this.listener = listener;
+	}
 
 	public AsyncBuffer append(final String s) {
 
-		synchronized(queue) {
-			
-			if (s != null) {
-				queue.add(s);
+		if (s != null) {
+
+			final int length = s.length();
+			int pos          = 0;
+
+			// fast path for ASCII characters which make up most of the output
+			while (pos < length) {
+
+				final char c = s.charAt(pos);
+				if (c >= 0x80) {
+					break;
+				}
+
+				currentChunk().put((byte)c);
+				pos++;
+			}
+
+			if (pos < length) {
+				encode(CharBuffer.wrap(s, pos, length));
 			}
 		}
 
 		return this;
 	}
 
-	public Queue<String> getQueue() {
-		return queue;
+	public AsyncBuffer append(final RenderFragment fragment) {
+
+		if (fragment != null) {
+
+			final byte[] bytes = fragment.getBytes();
+			int offset         = 0;
+
+			while (offset < bytes.length) {
+
+				final ByteBuffer chunk = currentChunk();
+				final int count        = Math.min(chunk.remaining(), bytes.length - offset);
+
+				chunk.put(bytes, offset, count);
+				offset += count;
+			}
+		}
+
+		return this;
+	}
+
+	/**
+	 * Makes the output collected so far available to the writer, waiting
+	 * for the writer if the buffer is full.
+	 */
+	public void flush() {
+
+		if (current == null || current.position() == 0) {
+			return;
+		}
+
+		final ByteBuffer chunk = current;
+		final int size         = chunk.position();
+
+		current = null;
+		chunk.flip();
+
+		lock.lock();
+		try {
+
+			// wait for the writer to catch up, but always accept one chunk
+			if (bufferedBytes > 0 && bufferedBytes + size > maxBufferedBytes && !aborted) {
+
+				final long t0 = System.nanoTime();
+
+				while (bufferedBytes > 0 && bufferedBytes + size > maxBufferedBytes && !aborted) {
+
+					try {
+						notFull.await(1, TimeUnit.SECONDS);
+
+					} catch (InterruptedException iex) {
+
+						Thread.currentThread().interrupt();
+						aborted = true;
+					}
+				}
+
+				blockedTime += System.nanoTime() - t0;
+			}
+
+			if (aborted) {
+
+				recycle(chunk);
+				return;
+			}
+
+			chunks.add(chunk);
+
+			bufferedBytes += size;
+			totalBytes    += size;
+
+		} finally {
+			lock.unlock();
+		}
+
+		notifyListener();
+	}
+
+	/**
+	 * Flushes the remaining output and marks this buffer as finished.
+	 */
+	public void finish() {
+
+		flush();
+
+		lock.lock();
+		try {
+
+			finished = true;
+
+		} finally {
+			lock.unlock();
+		}
+
+		notifyListener();
+	}
+
+	/**
+	 * Stops buffering, e.g. because the client has gone away. Blocked
+	 * and subsequent calls to append return immediately.
+	 */
+	public void abort() {
+
+		lock.lock();
+		try {
+
+			aborted = true;
+
+			for (final ByteBuffer chunk : chunks) {
+				recycle(chunk);
+			}
+
+			chunks.clear();
+			bufferedBytes = 0L;
+
+			notFull.signalAll();
+
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the next chunk of output, or null if none is available.
+	 * The returned buffer is ready to be read from its position to its
+	 * limit.
+	 *
+	 * @return the next chunk or null
+	 */
+	public ByteBuffer poll() {
+
+		lock.lock();
+		try {
+
+			final ByteBuffer chunk = chunks.poll();
+			if (chunk != null) {
+
+				bufferedBytes -= chunk.remaining();
+				notFull.signalAll();
+			}
+
+			return chunk;
+
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns true if the output is finished and all chunks have been
+	 * taken out of this buffer.
+	 *
+	 * @return whether the output is complete
+	 */
+	public boolean isDrained() {
+
+		lock.lock();
+		try {
+
+			return finished && chunks.isEmpty();
+
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public long getBlockedTime() {
+		return blockedTime;
+	}
+
+	public long getTotalBytes() {
+		return totalBytes;
+	}
+
+	/**
+	 * Returns a chunk that was taken out of a buffer and is no longer
+	 * used to the pool.
+	 *
+	 * @param chunk
+	 */
+	public static void recycle(final ByteBuffer chunk) {
+
+		if (chunk == null || chunk.capacity() != CHUNK_SIZE) {
+			return;
+		}
+
+		if (pooledChunks.incrementAndGet() > MAX_POOLED_CHUNKS) {
+
+			pooledChunks.decrementAndGet();
+			return;
+		}
+
+		chunk.clear();
+		pool.add(chunk);
+	}
+
+	// ----- private methods -----
+	private ByteBuffer currentChunk() {
+
+		if (current != null && !current.hasRemaining()) {
+			flush();
+		}
+
+		if (current == null) {
+
+			current = pool.poll();
+			if (current != null) {
+
+				pooledChunks.decrementAndGet();
+
+			} else {
+
+				current = ByteBuffer.allocate(CHUNK_SIZE);
+			}
+		}
+
+		return current;
+	}
+
+	private void encode(final CharBuffer chars) {
+
+		if (encoder == null) {
+
+			encoder = StandardCharsets.UTF_8.newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+		} else {
+
+			encoder.reset();
+		}
+
+		CoderResult result = null;
+
+		do {
+			result = encoder.encode(chars, currentChunk(), true);
+
+			if (result.isOverflow()) {
+				flush();
+			}
+
+		} while (result.isOverflow());
+
+		// UTF-8 has no encoder state, but flush is required by the contract
+		while (encoder.flush(currentChunk()).isOverflow()) {
+			flush();
+		}
+	}
+
+	private void notifyListener() {
+
+		if (listener != null) {
+			listener.run();
+		}
 	}
 }
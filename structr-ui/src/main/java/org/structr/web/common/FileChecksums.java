@@ -0,0 +1,363 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.structr.api.config.Settings;
+import org.structr.core.app.StructrApp;
+import org.structr.core.property.PropertyMap;
+import org.structr.web.entity.File;
+import org.structr.web.entity.Folder;
+
+/**
+ * Computes the xxHash checksum and all enabled message digests of a file
+ * in a single pass, either while the data is written to disk or by
+ * reading the file once. All digests are updated from the same buffer.
+ */
+public class FileChecksums {
+
+	private static final int BUFFER_SIZE = 65536;
+
+	private final XxHash64 checksum = new XxHash64();
+	private MessageDigest md5       = null;
+	private MessageDigest sha1      = null;
+	private MessageDigest sha512    = null;
+	private boolean crc32           = false;
+	private long size               = 0L;
+
+	/**
+	 * Creates a new instance for the given checksum configuration.
+	 *
+	 * @param enabledChecksums comma-separated list of the checksums to compute in addition to the xxHash checksum
+	 */
+	public FileChecksums(final String enabledChecksums) {
+
+		if (StringUtils.contains(enabledChecksums, "crc32")) {
+			crc32 = true;
+		}
+
+		if (StringUtils.contains(enabledChecksums, "md5")) {
+			md5 = DigestUtils.getMd5Digest();
+		}
+
+		if (StringUtils.contains(enabledChecksums, "sha1")) {
+			sha1 = DigestUtils.getSha1Digest();
+		}
+
+		if (StringUtils.contains(enabledChecksums, "sha512")) {
+			sha512 = DigestUtils.getSha512Digest();
+		}
+	}
+
+	/**
+	 * Creates a new instance for the checksums that are enabled in the
+	 * closest parent folder of the given file, or in the default settings.
+	 *
+	 * @param file
+	 * @return checksums
+	 */
+	public static FileChecksums forFile(final File file) {
+
+		Folder parentFolder = file.getParent();
+		String checksums    = null;
+
+		while (parentFolder != null && checksums == null) {
+
+			checksums    = parentFolder.getEnabledChecksums();
+			parentFolder = parentFolder.getParent();
+		}
+
+		if (checksums == null) {
+			checksums = Settings.DefaultChecksums.getValue();
+		}
+
+		return new FileChecksums(checksums);
+	}
+
+	public void update(final byte[] data, final int offset, final int length) {
+
+		checksum.update(data, offset, length);
+
+		if (md5 != null) {
+			md5.update(data, offset, length);
+		}
+
+		if (sha1 != null) {
+			sha1.update(data, offset, length);
+		}
+
+		if (sha512 != null) {
+			sha512.update(data, offset, length);
+		}
+
+		size += length;
+	}
+
+	/**
+	 * Copies the given input stream to the given output stream and
+	 * updates all checksums with the copied data. Neither stream is
+	 * closed.
+	 *
+	 * @param in
+	 * @param out
+	 * @return the number of bytes copied
+	 * @throws IOException
+	 */
+	public long copy(final InputStream in, final OutputStream out) throws IOException {
+
+		final byte[] buffer = new byte[BUFFER_SIZE];
+		long count          = 0L;
+		int n               = 0;
+
+		while ((n = in.read(buffer)) != -1) {
+
+			out.write(buffer, 0, n);
+			update(buffer, 0, n);
+
+			count += n;
+		}
+
+		return count;
+	}
+
+	/**
+	 * Reads the given file once and updates all checksums with its content.
+	 *
+	 * @param fileOnDisk
+	 * @return this
+	 * @throws IOException
+	 */
+	public FileChecksums read(final java.io.File fileOnDisk) throws IOException {
+
+		try (final InputStream in = FileUtils.openInputStream(fileOnDisk)) {
+
+			final byte[] buffer = new byte[BUFFER_SIZE];
+			int n               = 0;
+
+			while ((n = in.read(buffer)) != -1) {
+				update(buffer, 0, n);
+			}
+		}
+
+		return this;
+	}
+
+	public long getChecksum() {
+		return checksum.getValue();
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * Returns the checksum properties of a file. The digests are finished
+	 * by this call, so it may only be called once.
+	 *
+	 * @return checksum properties
+	 */
+	public PropertyMap getProperties() {
+
+		final PropertyMap properties = new PropertyMap();
+		final Long value             = checksum.getValue();
+
+		// New, very fast xxHash default checksum, will always be calculated
+		properties.put(StructrApp.key(File.class, "checksum"), value);
+
+		// the crc32 property has always been filled with the xxHash checksum
+		if (crc32) {
+			properties.put(StructrApp.key(File.class, "crc32"), value);
+		}
+
+		if (md5 != null) {
+			properties.put(StructrApp.key(File.class, "md5"), Hex.encodeHexString(md5.digest()));
+		}
+
+		if (sha1 != null) {
+			properties.put(StructrApp.key(File.class, "sha1"), Hex.encodeHexString(sha1.digest()));
+		}
+
+		if (sha512 != null) {
+			properties.put(StructrApp.key(File.class, "sha512"), Hex.encodeHexString(sha512.digest()));
+		}
+
+		return properties;
+	}
+
+	// ----- nested classes -----
+	/**
+	 * Streaming implementation of the 64 bit xxHash with seed 0, produces
+	 * the same values as LongHashFunction.xx() on the complete data.
+	 */
+	private static class XxHash64 {
+
+		private static final long PRIME1 = 0x9E3779B185EBCA87L;
+		private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+		private static final long PRIME3 = 0x165667B19E3779F9L;
+		private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+		private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+		private final byte[] pending = new byte[32];
+		private int pendingLength    = 0;
+		private long totalLength     = 0L;
+		private long v1              = PRIME1 + PRIME2;
+		private long v2              = PRIME2;
+		private long v3              = 0L;
+		private long v4              = -PRIME1;
+
+		public void update(final byte[] data, final int offset, final int length) {
+
+			final int end = offset + length;
+			int pos       = offset;
+
+			totalLength += length;
+
+			// fill up the stripe that was left over from the last update
+			if (pendingLength > 0) {
+
+				final int count = Math.min(32 - pendingLength, length);
+
+				System.arraycopy(data, pos, pending, pendingLength, count);
+
+				pendingLength += count;
+				pos           += count;
+
+				if (pendingLength < 32) {
+					return;
+				}
+
+				processStripe(pending, 0);
+				pendingLength = 0;
+			}
+
+			while (pos + 32 <= end) {
+
+				processStripe(data, pos);
+				pos += 32;
+			}
+
+			if (pos < end) {
+
+				pendingLength = end - pos;
+				System.arraycopy(data, pos, pending, 0, pendingLength);
+			}
+		}
+
+		public long getValue() {
+
+			long hash = 0L;
+			int pos   = 0;
+
+			if (totalLength >= 32) {
+
+				hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+				hash = mergeRound(hash, v1);
+				hash = mergeRound(hash, v2);
+				hash = mergeRound(hash, v3);
+				hash = mergeRound(hash, v4);
+
+			} else {
+
+				hash = PRIME5;
+			}
+
+			hash += totalLength;
+
+			while (pos + 8 <= pendingLength) {
+
+				hash ^= round(0L, getLong(pending, pos));
+				hash  = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+				pos  += 8;
+			}
+
+			if (pos + 4 <= pendingLength) {
+
+				hash ^= (getInt(pending, pos) & 0xFFFFFFFFL) * PRIME1;
+				hash  = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+				pos  += 4;
+			}
+
+			while (pos < pendingLength) {
+
+				hash ^= (pending[pos] & 0xFFL) * PRIME5;
+				hash  = Long.rotateLeft(hash, 11) * PRIME1;
+				pos  += 1;
+			}
+
+			hash ^= hash >>> 33;
+			hash *= PRIME2;
+			hash ^= hash >>> 29;
+			hash *= PRIME3;
+			hash ^= hash >>> 32;
+
+			return hash;
+		}
+
+		// ----- private methods -----
+		private void processStripe(final byte[] data, final int pos) {
+
+			v1 = round(v1, getLong(data, pos));
+			v2 = round(v2, getLong(data, pos + 8));
+			v3 = round(v3, getLong(data, pos + 16));
+			v4 = round(v4, getLong(data, pos + 24));
+		}
+
+		private static long round(long acc, final long input) {
+
+			acc += input * PRIME2;
+			acc  = Long.rotateLeft(acc, 31);
+
+			return acc * PRIME1;
+		}
+
+		private static long mergeRound(long acc, final long value) {
+
+			acc ^= round(0L, value);
+
+			return acc * PRIME1 + PRIME4;
+		}
+
+		private static long getLong(final byte[] data, final int pos) {
+
+			return (data[pos] & 0xFFL)
+				| (data[pos + 1] & 0xFFL) << 8
+				| (data[pos + 2] & 0xFFL) << 16
+				| (data[pos + 3] & 0xFFL) << 24
+				| (data[pos + 4] & 0xFFL) << 32
+				| (data[pos + 5] & 0xFFL) << 40
+				| (data[pos + 6] & 0xFFL) << 48
+				| (data[pos + 7] & 0xFFL) << 56;
+		}
+
+		private static int getInt(final byte[] data, final int pos) {
+
+			return (data[pos] & 0xFF)
+				| (data[pos + 1] & 0xFF) << 8
+				| (data[pos + 2] & 0xFF) << 16
+				| (data[pos + 3] & 0xFF) << 24;
+		}
+	}
+}
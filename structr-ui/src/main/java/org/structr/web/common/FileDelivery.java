@@ -0,0 +1,503 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.common;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.jetty.server.HttpOutput;
+import org.structr.web.entity.File;
+
+/**
+ * Delivers the content of files from local storage without copying it
+ * through the heap. Jetty writes the file to the socket through a small,
+ * bounded pool of reusable direct buffers, other containers are served
+ * with FileChannel.transferTo.
+ *
+ * Supports single and multiple byte ranges, If-Range and If-None-Match
+ * with a strong ETag derived from the stored xxHash checksum.
+ */
+public class FileDelivery {
+
+	private static final Pattern RangePattern                = Pattern.compile("(\\d*)-(\\d*)");
+	private static final int BUFFER_SIZE                     = 1024 * 1024;
+	private static final int MAX_BUFFERS                     = 16;
+	private static final BlockingQueue<ByteBuffer> buffers   = new ArrayBlockingQueue<>(MAX_BUFFERS);
+	private static final AtomicInteger allocatedBuffers      = new AtomicInteger();
+	private static final long MIN_BUFFERED_SIZE              = 64 * 1024;
+	private static final int MAX_RANGES                      = 32;
+	private static final LongAdder requests                  = new LongAdder();
+	private static final LongAdder ranges                    = new LongAdder();
+	private static final LongAdder notModified               = new LongAdder();
+	private static final LongAdder bytes                     = new LongAdder();
+	private static final LongAdder nanos                     = new LongAdder();
+
+	/**
+	 * Indicates whether the content of the given file can be delivered
+	 * directly from local storage. Templates are rendered on access and
+	 * must be delivered through their input stream.
+	 *
+	 * @param file
+	 * @return whether the file can be delivered
+	 */
+	public static boolean canDeliver(final File file) {
+
+		if (file.isTemplate()) {
+			return false;
+		}
+
+		final java.io.File fileOnDisk = file.getFileOnDisk(false);
+
+		return fileOnDisk != null && fileOnDisk.isFile() && fileOnDisk.canRead();
+	}
+
+	/**
+	 * Returns the strong entity tag of the given file, or null if the file
+	 * has no checksum.
+	 *
+	 * @param file
+	 * @return the entity tag
+	 */
+	public static String getETag(final File file) {
+
+		final Long checksum = file.getChecksum();
+		if (checksum != null) {
+
+			return "\"" + Long.toHexString(checksum) + "\"";
+		}
+
+		return null;
+	}
+
+	/**
+	 * Writes the content of the given file to the response, honoring the
+	 * Range, If-Range and If-None-Match headers of the request. The content
+	 * type of the response must already be set.
+	 *
+	 * @param file
+	 * @param request
+	 * @param response
+	 * @return the status code of the response
+	 * @throws IOException
+	 */
+	public static int deliver(final File file, final HttpServletRequest request, final HttpServletResponse response) throws IOException {
+
+		final java.io.File fileOnDisk = file.getFileOnDisk(false);
+		final String contentType      = response.getContentType();
+		final String etag             = getETag(file);
+
+		requests.increment();
+
+		response.setHeader("Accept-Ranges", "bytes");
+
+		if (etag != null) {
+
+			response.setHeader("ETag", etag);
+
+			if (matches(request.getHeader("If-None-Match"), etag)) {
+
+				notModified.increment();
+				response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+
+				return HttpServletResponse.SC_NOT_MODIFIED;
+			}
+		}
+
+		try (final FileChannel channel = FileChannel.open(fileOnDisk.toPath(), StandardOpenOption.READ)) {
+
+			final long length             = channel.size();
+			final String range            = request.getHeader("Range");
+			final List<long[]> requested  = StringUtils.isNotBlank(range) && isRangeApplicable(request, file, etag) ? parseRanges(range, length) : null;
+			final ServletOutputStream out = response.getOutputStream();
+			final long t0                 = System.nanoTime();
+			long count                    = 0L;
+			int status                    = HttpServletResponse.SC_OK;
+
+			if (requested == null) {
+
+				response.setStatus(HttpServletResponse.SC_OK);
+				response.setContentLengthLong(length);
+
+				count = transfer(channel, 0L, length, out);
+
+			} else if (requested.isEmpty()) {
+
+				status = HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE;
+
+				response.setStatus(status);
+				response.setHeader("Content-Range", "bytes */" + length);
+				response.setContentLength(0);
+
+			} else if (requested.size() == 1) {
+
+				final long start = requested.get(0)[0];
+				final long end   = requested.get(0)[1];
+
+				status = HttpServletResponse.SC_PARTIAL_CONTENT;
+
+				response.setStatus(status);
+				response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + length);
+				response.setContentLengthLong(end - start + 1);
+
+				count = transfer(channel, start, end - start + 1, out);
+
+			} else {
+
+				final String boundary      = UUID.randomUUID().toString().replace("-", "");
+				final List<byte[]> headers = new LinkedList<>();
+				final byte[] trailer       = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+				long contentLength         = trailer.length;
+
+				for (final long[] part : requested) {
+
+					final StringBuilder buf = new StringBuilder();
+
+					buf.append(headers.isEmpty() ? "" : "\r\n").append("--").append(boundary).append("\r\n");
+
+					if (contentType != null) {
+						buf.append("Content-Type: ").append(contentType).append("\r\n");
+					}
+
+					buf.append("Content-Range: bytes ").append(part[0]).append("-").append(part[1]).append("/").append(length).append("\r\n\r\n");
+
+					final byte[] header = buf.toString().getBytes(StandardCharsets.US_ASCII);
+
+					headers.add(header);
+					contentLength += header.length + part[1] - part[0] + 1;
+				}
+
+				status = HttpServletResponse.SC_PARTIAL_CONTENT;
+
+				response.setStatus(status);
+				response.setContentType("multipart/byteranges; boundary=" + boundary);
+				response.setContentLengthLong(contentLength);
+
+				int i = 0;
+
+				for (final long[] part : requested) {
+
+					out.write(headers.get(i++));
+					count += transfer(channel, part[0], part[1] - part[0] + 1, out);
+				}
+
+				out.write(trailer);
+			}
+
+			if (requested != null) {
+				ranges.increment();
+			}
+
+			bytes.add(count);
+			nanos.add(System.nanoTime() - t0);
+
+			return status;
+		}
+	}
+
+	/**
+	 * Parses the given Range header. Overlapping and adjacent ranges are
+	 * merged, and a header whose ranges request more bytes than the
+	 * content has is ignored, so that a request cannot make the server
+	 * send the content several times.
+	 *
+	 * @param header the value of the Range header
+	 * @param length the length of the content
+	 *
+	 * @return the satisfiable ranges as inclusive start and end positions in ascending order, an empty list if no range is satisfiable, or null if the header is invalid and should be ignored
+	 */
+	public static List<long[]> parseRanges(final String header, final long length) {
+
+		final String value = header.trim();
+
+		if (!value.startsWith("bytes=")) {
+			return null;
+		}
+
+		final String[] specs = value.substring(6).split(",");
+		if (specs.length > MAX_RANGES) {
+			return null;
+		}
+
+		final List<long[]> result = new LinkedList<>();
+
+		try {
+
+			for (final String spec : specs) {
+
+				final Matcher matcher = RangePattern.matcher(spec.trim());
+				if (!matcher.matches()) {
+					return null;
+				}
+
+				final String startGroup = matcher.group(1);
+				final String endGroup   = matcher.group(2);
+
+				if (startGroup.isEmpty()) {
+
+					if (endGroup.isEmpty()) {
+						return null;
+					}
+
+					// suffix range, i.e. the last n bytes
+					final long suffix = Long.parseLong(endGroup);
+					if (suffix > 0 && length > 0) {
+
+						result.add(new long[] { Math.max(0L, length - suffix), length - 1 });
+					}
+
+				} else {
+
+					final long start = Long.parseLong(startGroup);
+					final long end   = endGroup.isEmpty() ? length - 1 : Long.parseLong(endGroup);
+
+					if (!endGroup.isEmpty() && end < start) {
+						return null;
+					}
+
+					if (start < length) {
+
+						result.add(new long[] { start, Math.min(end, length - 1) });
+					}
+				}
+			}
+
+		} catch (NumberFormatException nfex) {
+			return null;
+		}
+
+		long requestedBytes = 0L;
+
+		for (final long[] part : result) {
+			requestedBytes += part[1] - part[0] + 1;
+		}
+
+		// deliver the full content instead of repeating it
+		if (requestedBytes > length) {
+			return null;
+		}
+
+		return merge(result);
+	}
+
+	public static Map<String, Object> getStatistics() {
+
+		final Map<String, Object> data = new LinkedHashMap<>();
+		final long totalBytes          = bytes.sum();
+		final long totalNanos          = nanos.sum();
+
+		data.put("requests",       requests.sum());
+		data.put("rangeRequests",  ranges.sum());
+		data.put("notModified",    notModified.sum());
+		data.put("bytesServed",    totalBytes);
+		data.put("transferMillis", totalNanos / 1000000L);
+		data.put("bytesPerSecond", totalNanos > 0L ? (long)(totalBytes * 1000000000.0 / totalNanos) : 0L);
+
+		return data;
+	}
+
+	// ----- private methods -----
+	private static long transfer(final FileChannel channel, final long start, final long count, final ServletOutputStream out) throws IOException {
+
+		long position  = start;
+		long remaining = count;
+
+		if (out instanceof HttpOutput && count >= MIN_BUFFERED_SIZE) {
+
+			final ByteBuffer buffer = acquireBuffer();
+			if (buffer != null) {
+
+				final HttpOutput httpOutput = (HttpOutput)out;
+
+				// the file is read outside of the heap, and Jetty writes direct buffers to the socket without copying
+				try {
+
+					while (remaining > 0) {
+
+						buffer.clear();
+						buffer.limit((int)Math.min(remaining, buffer.capacity()));
+
+						final int read = channel.read(buffer, position);
+						if (read <= 0) {
+
+							// file was truncated while being delivered
+							break;
+						}
+
+						buffer.flip();
+						httpOutput.write(buffer);
+
+						position  += read;
+						remaining -= read;
+					}
+
+				} finally {
+
+					buffers.offer(buffer);
+				}
+
+				return position - start;
+			}
+		}
+
+		final WritableByteChannel target = Channels.newChannel(out);
+
+		while (remaining > 0) {
+
+			final long transferred = channel.transferTo(position, remaining, target);
+			if (transferred <= 0) {
+
+				// file was truncated while being delivered
+				break;
+			}
+
+			position  += transferred;
+			remaining -= transferred;
+		}
+
+		return position - start;
+	}
+
+	/**
+	 * Returns a pooled direct buffer, or null if all buffers are in use.
+	 */
+	private static ByteBuffer acquireBuffer() {
+
+		final ByteBuffer buffer = buffers.poll();
+		if (buffer != null) {
+
+			return buffer;
+		}
+
+		if (allocatedBuffers.incrementAndGet() <= MAX_BUFFERS) {
+
+			return ByteBuffer.allocateDirect(BUFFER_SIZE);
+		}
+
+		allocatedBuffers.decrementAndGet();
+
+		return null;
+	}
+
+	private static List<long[]> merge(final List<long[]> parts) {
+
+		final List<long[]> sorted = new ArrayList<>(parts);
+		final List<long[]> merged = new LinkedList<>();
+		long[] current            = null;
+
+		sorted.sort(Comparator.comparingLong(part -> part[0]));
+
+		for (final long[] part : sorted) {
+
+			if (current != null && part[0] <= current[1] + 1) {
+
+				current[1] = Math.max(current[1], part[1]);
+
+			} else {
+
+				current = new long[] { part[0], part[1] };
+				merged.add(current);
+			}
+		}
+
+		return merged;
+	}
+
+	/**
+	 * A Range header is only applied if the If-Range header is absent or
+	 * matches the current version of the file.
+	 */
+	private static boolean isRangeApplicable(final HttpServletRequest request, final File file, final String etag) {
+
+		final String ifRange = request.getHeader("If-Range");
+
+		if (StringUtils.isBlank(ifRange)) {
+			return true;
+		}
+
+		final String value = ifRange.trim();
+
+		if (value.startsWith("\"") || value.startsWith("W/")) {
+
+			// strong comparison only
+			return etag != null && etag.equals(value);
+		}
+
+		final Date lastModified = file.getLastModifiedDate();
+		if (lastModified != null) {
+
+			final DateFormat httpDateFormat = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss z", Locale.US);
+			httpDateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+
+			try {
+
+				return httpDateFormat.parse(value).getTime() / 1000L == (lastModified.getTime() + 500L) / 1000L;
+
+			} catch (ParseException pex) {
+			}
+		}
+
+		return false;
+	}
+
+	private static boolean matches(final String ifNoneMatch, final String etag) {
+
+		if (StringUtils.isBlank(ifNoneMatch)) {
+			return false;
+		}
+
+		for (final String candidate : ifNoneMatch.split(",")) {
+
+			final String value = candidate.trim();
+
+			// weak comparison, see RFC 7232, section 3.2
+			if ("*".equals(value) || etag.equals(value) || etag.equals(StringUtils.removeStart(value, "W/"))) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+}
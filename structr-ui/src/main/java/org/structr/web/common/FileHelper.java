@@ -28,7 +28,6 @@ import java.util.Date;
 import java.util.List;
 import java.util.UUID;
 import javax.activation.MimetypesFileTypeMap;
-import net.openhft.hashing.LongHashFunction;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -38,7 +37,6 @@ import org.apache.tika.metadata.Metadata;
 import org.apache.tika.mime.MediaType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.structr.api.config.Settings;
 import org.structr.common.PathHelper;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
@@ -247,8 +245,12 @@ public class FileHelper {
 	 */
 	public static void setFileData(final File file, final byte[] fileData, final String contentType) throws FrameworkException, IOException {
 
+		final FileChecksums checksums = FileChecksums.forFile(file);
+
 		FileHelper.writeToFile(file, fileData);
-		setFileProperties(file, contentType);
+		checksums.update(fileData, 0, fileData.length);
+
+		setFileProperties(file, contentType, checksums);
 	}
 
 	/**
@@ -262,8 +264,11 @@ public class FileHelper {
 	 */
 	public static void setFileData(final File file, final InputStream fileStream, final String contentType) throws FrameworkException, IOException {
 
-		FileHelper.writeToFile(file, fileStream);
-		setFileProperties(file, contentType);
+		final FileChecksums checksums = FileChecksums.forFile(file);
+
+		// checksums are computed while the data is written
+		FileHelper.writeToFile(file, fileStream, checksums);
+		setFileProperties(file, contentType, checksums);
 	}
 
 	/**
@@ -275,6 +280,19 @@ public class FileHelper {
 	 * @throws IOException
 	 */
 	public static void setFileProperties (final File file, final String contentType) throws IOException, FrameworkException {
+		setFileProperties(file, contentType, null);
+	}
+
+	/**
+	 * Set the contentType, checksum, size and version properties of the given fileNode
+	 *
+	 * @param file
+	 * @param contentType if null, try to auto-detect content type
+	 * @param checksums the checksums of the file data, or null to read the file from disk
+	 * @throws FrameworkException
+	 * @throws IOException
+	 */
+	private static void setFileProperties (final File file, final String contentType, final FileChecksums checksums) throws IOException, FrameworkException {
 
 		final java.io.File fileOnDisk = file.getFileOnDisk(false);
 		final PropertyMap map         = new PropertyMap();
@@ -283,7 +301,14 @@ public class FileHelper {
 		map.put(StructrApp.key(File.class, "size"),        FileHelper.getSize(fileOnDisk));
 		map.put(StructrApp.key(File.class, "version"),     1);
 
-		map.putAll(getChecksums(file, fileOnDisk));
+		if (checksums != null) {
+
+			map.putAll(checksums.getProperties());
+
+		} else {
+
+			map.putAll(getChecksums(file, fileOnDisk));
+		}
 
 		file.setProperties(file.getSecurityContext(), map);
 	}
@@ -315,6 +340,7 @@ public class FileHelper {
 
 	/**
 	 * Calculate checksums that are configured in settings of parent folder.
+	 * The file is read only once for all checksums.
 	 *
 	 * @param file
 	 * @param fileOnDisk
@@ -322,43 +348,9 @@ public class FileHelper {
 	 * @throws IOException
 	 */
 	private static PropertyMap getChecksums(final File file, final java.io.File fileOnDisk) throws IOException {
-
-		final PropertyMap propertiesWithChecksums = new PropertyMap();
-
-		Folder parentFolder = file.getParent();
-		String checksums = null;
-
-		while (parentFolder != null && checksums == null) {
-
-			checksums    = parentFolder.getEnabledChecksums();
-			parentFolder = parentFolder.getParent();
-		}
-
-		if (checksums == null) {
-			checksums = Settings.DefaultChecksums.getValue();
-		}
-
-		// New, very fast xxHash default checksum, will always be calculated
-		propertiesWithChecksums.put(StructrApp.key(File.class, "checksum"), FileHelper.getChecksum(fileOnDisk));
-
-		if (StringUtils.contains(checksums, "crc32"))	{
-			propertiesWithChecksums.put(StructrApp.key(File.class, "crc32"), FileHelper.getChecksum(fileOnDisk));
-		}
-
-		if (StringUtils.contains(checksums, "md5"))	{
-			propertiesWithChecksums.put(StructrApp.key(File.class, "md5"), FileHelper.getMD5Checksum(file));
-		}
-
-		if (StringUtils.contains(checksums, "sha1"))	{
-			propertiesWithChecksums.put(StructrApp.key(File.class, "sha1"), FileHelper.getSHA1Checksum(file));
-		}
-
-		if (StringUtils.contains(checksums, "sha512"))	{
-			propertiesWithChecksums.put(StructrApp.key(File.class, "sha512"), FileHelper.getSHA512Checksum(file));
-		}
-
-		return propertiesWithChecksums;
+		return FileChecksums.forFile(file).read(fileOnDisk).getProperties();
 	}
+
 	/**
 	 * Update checksums, content type, size and additional properties of the given file
 	 *
@@ -533,12 +525,33 @@ public class FileHelper {
 	 * @throws IOException
 	 */
 	public static void writeToFile(final File fileNode, final InputStream data) throws FrameworkException, IOException {
+		writeToFile(fileNode, data, null);
+	}
+
+	/**
+	 * Write binary data from FileInputStream to a file and reference the file on disk at the given file node,
+	 * updating the given checksums with the data.
+	 *
+	 * @param fileNode
+	 * @param data	The input stream from which to read the file data (Stream is not closed automatically - has to be handled by caller)
+	 * @param checksums the checksums to update, may be null
+	 * @throws FrameworkException
+	 * @throws IOException
+	 */
+	public static void writeToFile(final File fileNode, final InputStream data, final FileChecksums checksums) throws FrameworkException, IOException {
 
 		setFileProperties(fileNode);
 
 		try (final FileOutputStream out = new FileOutputStream(fileNode.getFileOnDisk())) {
 
-			IOUtils.copy(data, out);
+			if (checksums != null) {
+
+				checksums.copy(data, out);
+
+			} else {
+
+				IOUtils.copy(data, out);
+			}
 		}
 	}
 
@@ -739,7 +752,7 @@ public class FileHelper {
 	}
 
 	public static Long getChecksum(final java.io.File fileOnDisk) throws IOException {
-		return LongHashFunction.xx().hashBytes(FileUtils.readFileToByteArray(fileOnDisk));
+		return new FileChecksums(null).read(fileOnDisk).getChecksum();
 	}
 
 	public static Long getCRC32Checksum(final java.io.File fileOnDisk) throws IOException {
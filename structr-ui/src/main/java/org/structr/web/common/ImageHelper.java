@@ -34,8 +34,12 @@ import java.awt.image.ColorModel;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Arrays;
+import java.util.Iterator;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
 import javax.imageio.stream.ImageInputStream;
 import net.coobird.thumbnailator.Thumbnails;
 import org.apache.commons.io.IOUtils;
@@ -288,79 +292,178 @@ public abstract class ImageHelper extends FileHelper {
 				properties.put(StructrApp.key(Image.class, "height"), sourceHeight);
 				originalImage.setProperties(originalImage.getSecurityContext(), properties);
 
-				// float aspectRatio = sourceWidth/sourceHeight;
-				final float scale = getScaleRatio(sourceWidth, sourceHeight, maxWidth, maxHeight, crop);
+				writeThumbnail(source, tn, baos, format, maxWidth, maxHeight, crop, reqOffsetX, reqOffsetY);
 
-				// Don't scale up
-				if (scale > 1.0) {
+			} else {
 
-					final int destWidth  = getThumbnailWidth(sourceWidth, scale);
-					final int destHeight = getThumbnailHeight(sourceHeight, scale);
+				logger.debug("Thumbnail could not be created");
 
-					if (crop) {
+				return null;
 
-						final int offsetX = reqOffsetX != null ? reqOffsetX : Math.abs(maxWidth - destWidth) / 2;
-						final int offsetY = reqOffsetY != null ? reqOffsetY : Math.abs(maxHeight - destHeight) / 2;
+			}
 
-						final Integer[] dims = finalImageDimensions(offsetX, offsetY, maxWidth, maxHeight, sourceWidth, sourceHeight);
+			final long end  = System.nanoTime();
+			final long time = (end - start) / 1000000;
 
-						logger.debug("Offset and Size (x,y,w,h): {},{},{},{}", new Object[] { dims[0], dims[1], dims[2], dims[3] });
+			logger.debug("Thumbnail created. Reading, scaling and writing took {} ms", time);
 
-						Thumbnails.of(source)
-								.scale(1.0f / scale)
-								.sourceRegion((int) (dims[0]*scale), (int) (dims[1]*scale), (int) (dims[2]*scale), (int) (dims[3]*scale))
-								.outputFormat(format.name())
-								.toOutputStream(baos);
+			tn.setBytes(baos.toByteArray());
 
+			return tn;
 
-						tn.setWidth(dims[2]);
-						tn.setHeight(dims[3]);
+		} catch (Throwable t) {
 
-					} else {
+			logger.warn("Unable to create thumbnail for image with ID {}.", originalImage.getUuid(), t);
+		}
 
-						Thumbnails.of(source)
-								.scale(1.0f / scale)
-								.outputFormat(format.name())
-								.toOutputStream(baos);
+		return null;
+	}
 
-						tn.setWidth(destWidth);
-						tn.setHeight(destHeight);
 
-					}
+	/**
+	 * Create a thumbnail from the given file on disk without touching the
+	 * database. Large images are decoded with source subsampling so that only
+	 * a fraction of the pixels has to be read and held in memory.
+	 *
+	 * @param fileOnDisk
+	 * @param formatString
+	 * @param maxWidth
+	 * @param maxHeight
+	 * @param crop
+	 * @return thumbnail or null
+	 */
+	public static Thumbnail createThumbnail(final java.io.File fileOnDisk, final String formatString, final int maxWidth, final int maxHeight, final boolean crop) {
 
-				} else {
+		Thumbnail.Format format = Thumbnail.defaultFormat;
+		try {
+			format = formatString != null ? Thumbnail.Format.valueOf(formatString) : Thumbnail.defaultFormat;
+		} catch (IllegalArgumentException iae) {
+			logger.debug("Unsupported thumbnail format - using default");
+		}
 
-					// Thumbnail is source image
-					ImageIO.write(source, format.name(), baos);
-					tn.setWidth(sourceWidth);
-					tn.setHeight(sourceHeight);
-				}
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		final Thumbnail tn               = new Thumbnail();
 
-			} else {
+		try (final ImageInputStream in = ImageIO.createImageInputStream(fileOnDisk)) {
 
-				logger.debug("Thumbnail could not be created");
+			final Iterator<ImageReader> readers = in != null ? ImageIO.getImageReaders(in) : null;
+			if (readers == null || !readers.hasNext()) {
 
+				logger.debug("No image reader found for {}", fileOnDisk);
 				return null;
-
 			}
 
-			final long end  = System.nanoTime();
-			final long time = (end - start) / 1000000;
+			final ImageReader reader = readers.next();
 
-			logger.debug("Thumbnail created. Reading, scaling and writing took {} ms", time);
+			try {
 
-			tn.setBytes(baos.toByteArray());
+				final long start = System.nanoTime();
 
-			return tn;
+				reader.setInput(in, true, true);
+
+				// orientations 5 to 8 swap width and height
+				final int orientation  = getOrientation(fileOnDisk);
+				final boolean swapped  = orientation >= 5 && orientation <= 8;
+				final int sourceWidth  = swapped ? reader.getHeight(0) : reader.getWidth(0);
+				final int sourceHeight = swapped ? reader.getWidth(0)  : reader.getHeight(0);
+				final float scale      = getScaleRatio(sourceWidth, sourceHeight, maxWidth, maxHeight, crop);
+
+				// keep at least twice the target resolution so that the final downscaling stays smooth
+				final int subsampling      = Math.max(1, (int)(scale / 2.0f));
+				final ImageReadParam param = reader.getDefaultReadParam();
+
+				if (subsampling > 1) {
+					param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+				}
+
+				final BufferedImage source = getRotatedImage(reader.read(0, param), orientation);
+				if (source == null) {
+
+					logger.debug("Thumbnail could not be created");
+					return null;
+				}
+
+				tn.setSourceWidth(sourceWidth);
+				tn.setSourceHeight(sourceHeight);
+
+				writeThumbnail(source, tn, baos, format, maxWidth, maxHeight, crop, null, null);
+
+				final long end  = System.nanoTime();
+				final long time = (end - start) / 1000000;
+
+				logger.debug("Thumbnail created with subsampling {}. Reading, scaling and writing took {} ms", subsampling, time);
+
+				tn.setBytes(baos.toByteArray());
+
+				return tn;
+
+			} finally {
+
+				reader.dispose();
+			}
 
 		} catch (Throwable t) {
 
-			logger.warn("Unable to create thumbnail for image with ID {}.", originalImage.getUuid(), t);
+			logger.warn("Unable to create thumbnail for file {}.", fileOnDisk, t);
 		}
 
 		return null;
 	}
 
+	private static void writeThumbnail(final BufferedImage source, final Thumbnail tn, final OutputStream out, final Thumbnail.Format format, final int maxWidth, final int maxHeight, final boolean crop, final Integer reqOffsetX, final Integer reqOffsetY) throws IOException {
+
+		final int sourceWidth  = source.getWidth();
+		final int sourceHeight = source.getHeight();
+
+		// float aspectRatio = sourceWidth/sourceHeight;
+		final float scale = getScaleRatio(sourceWidth, sourceHeight, maxWidth, maxHeight, crop);
+
+		// Don't scale up
+		if (scale > 1.0) {
+
+			final int destWidth  = getThumbnailWidth(sourceWidth, scale);
+			final int destHeight = getThumbnailHeight(sourceHeight, scale);
+
+			if (crop) {
+
+				final int offsetX = reqOffsetX != null ? reqOffsetX : Math.abs(maxWidth - destWidth) / 2;
+				final int offsetY = reqOffsetY != null ? reqOffsetY : Math.abs(maxHeight - destHeight) / 2;
+
+				final Integer[] dims = finalImageDimensions(offsetX, offsetY, maxWidth, maxHeight, sourceWidth, sourceHeight);
+
+				logger.debug("Offset and Size (x,y,w,h): {},{},{},{}", new Object[] { dims[0], dims[1], dims[2], dims[3] });
+
+				Thumbnails.of(source)
+						.scale(1.0f / scale)
+						.sourceRegion((int) (dims[0]*scale), (int) (dims[1]*scale), (int) (dims[2]*scale), (int) (dims[3]*scale))
+						.outputFormat(format.name())
+						.toOutputStream(out);
+
+
+				tn.setWidth(dims[2]);
+				tn.setHeight(dims[3]);
+
+			} else {
+
+				Thumbnails.of(source)
+						.scale(1.0f / scale)
+						.outputFormat(format.name())
+						.toOutputStream(out);
+
+				tn.setWidth(destWidth);
+				tn.setHeight(destHeight);
+
+			}
+
+		} else {
+
+			// Thumbnail is source image
+			ImageIO.write(source, format.name(), out);
+			tn.setWidth(sourceWidth);
+			tn.setHeight(sourceHeight);
+		}
+	}
+
 
 	public static Thumbnail createCroppedImage(final Image originalImage, final int maxWidth, final int maxHeight, final Integer reqOffsetX, final Integer reqOffsetY, final String formatString) {
 
@@ -441,63 +544,71 @@ public abstract class ImageHelper extends FileHelper {
 			final int           orientation = getOrientation(originalImage);
 			final BufferedImage source      = ImageIO.read(in);
 
-			if (source != null) {
+			return getRotatedImage(source, orientation);
 
-				final int sourceWidth  = source.getWidth();
-				final int sourceHeight = source.getHeight();
+		} catch (IOException ex) {
+			logger.warn("Unable to rotate image", ex);
+		}
 
-				final AffineTransform affineTransform = new AffineTransform();
-
-				switch (orientation) {
-				case 1:
-					break;
-				case 2: // Flip X
-					affineTransform.scale(-1.0, 1.0);
-					affineTransform.translate(-sourceWidth, 0);
-					break;
-				case 3: // PI rotation
-					affineTransform.translate(sourceWidth, sourceHeight);
-					affineTransform.rotate(Math.PI);
-					break;
-				case 4: // Flip Y
-					affineTransform.scale(1.0, -1.0);
-					affineTransform.translate(0, -sourceHeight);
-					break;
-				case 5: // - PI/2 and Flip X
-					affineTransform.rotate(-Math.PI / 2);
-					affineTransform.scale(-1.0, 1.0);
-					break;
-				case 6: // -PI/2 and -width
-					affineTransform.translate(sourceHeight, 0);
-					affineTransform.rotate(Math.PI / 2);
-					break;
-				case 7: // PI/2 and Flip
-					affineTransform.scale(-1.0, 1.0);
-					affineTransform.translate(-sourceHeight, 0);
-					affineTransform.translate(0, sourceWidth);
-					affineTransform.rotate(3 * Math.PI / 2);
-					break;
-				case 8: // PI / 2
-					affineTransform.translate(0, sourceWidth);
-					affineTransform.rotate(3 * Math.PI / 2);
-					break;
-				default:
-					break;
-				}
+		return null;
+	}
 
-				final AffineTransformOp op = new AffineTransformOp(affineTransform, AffineTransformOp.TYPE_BICUBIC);
-				BufferedImage destinationImage = op.createCompatibleDestImage(source, ColorModel.getRGBdefault());
+	public static BufferedImage getRotatedImage(final BufferedImage source, final int orientation) {
+
+		if (source != null) {
+
+			final int sourceWidth  = source.getWidth();
+			final int sourceHeight = source.getHeight();
+
+			final AffineTransform affineTransform = new AffineTransform();
+
+			switch (orientation) {
+			case 1:
+				break;
+			case 2: // Flip X
+				affineTransform.scale(-1.0, 1.0);
+				affineTransform.translate(-sourceWidth, 0);
+				break;
+			case 3: // PI rotation
+				affineTransform.translate(sourceWidth, sourceHeight);
+				affineTransform.rotate(Math.PI);
+				break;
+			case 4: // Flip Y
+				affineTransform.scale(1.0, -1.0);
+				affineTransform.translate(0, -sourceHeight);
+				break;
+			case 5: // - PI/2 and Flip X
+				affineTransform.rotate(-Math.PI / 2);
+				affineTransform.scale(-1.0, 1.0);
+				break;
+			case 6: // -PI/2 and -width
+				affineTransform.translate(sourceHeight, 0);
+				affineTransform.rotate(Math.PI / 2);
+				break;
+			case 7: // PI/2 and Flip
+				affineTransform.scale(-1.0, 1.0);
+				affineTransform.translate(-sourceHeight, 0);
+				affineTransform.translate(0, sourceWidth);
+				affineTransform.rotate(3 * Math.PI / 2);
+				break;
+			case 8: // PI / 2
+				affineTransform.translate(0, sourceWidth);
+				affineTransform.rotate(3 * Math.PI / 2);
+				break;
+			default:
+				break;
+			}
 
-				final Graphics2D g = destinationImage.createGraphics();
-				g.setBackground(Color.WHITE);
-				g.clearRect(0, 0, destinationImage.getWidth(), destinationImage.getHeight());
+			final AffineTransformOp op = new AffineTransformOp(affineTransform, AffineTransformOp.TYPE_BICUBIC);
+			BufferedImage destinationImage = op.createCompatibleDestImage(source, ColorModel.getRGBdefault());
 
-				destinationImage = op.filter(source, destinationImage);
+			final Graphics2D g = destinationImage.createGraphics();
+			g.setBackground(Color.WHITE);
+			g.clearRect(0, 0, destinationImage.getWidth(), destinationImage.getHeight());
 
-				return destinationImage;
-			}
-		} catch (IOException ex) {
-			logger.warn("Unable to rotate image", ex);
+			destinationImage = op.filter(source, destinationImage);
+
+			return destinationImage;
 		}
 
 		return null;
@@ -762,6 +873,24 @@ public abstract class ImageHelper extends FileHelper {
 		return 1;
 	}
 
+	public static int getOrientation(final java.io.File fileOnDisk) {
+
+		try {
+
+			final ExifIFD0Directory exifIFD0Directory = ImageMetadataReader.readMetadata(fileOnDisk).getFirstDirectoryOfType(ExifIFD0Directory.class);
+
+			if (exifIFD0Directory != null && exifIFD0Directory.hasTagName(ExifIFD0Directory.TAG_ORIENTATION)) {
+
+				return exifIFD0Directory.getInt(ExifIFD0Directory.TAG_ORIENTATION);
+			}
+
+		} catch (NegativeArraySizeException | ImageProcessingException | MetadataException | IOException ex) {
+			logger.debug("Unable to get orientation information from {}", fileOnDisk);
+		}
+
+		return 1;
+	}
+
 	public static JSONObject getExifData(final File originalImage) {
 
 		final JSONObject exifDataJson = new JSONObject();
@@ -903,6 +1032,8 @@ public abstract class ImageHelper extends FileHelper {
 		private byte[] bytes;
 		private int height;
 		private int width;
+		private int sourceHeight;
+		private int sourceWidth;
 		private Format format;
 
 		//~--- constructors -------------------------------------------
@@ -945,6 +1076,14 @@ public abstract class ImageHelper extends FileHelper {
 			return height;
 		}
 
+		public int getSourceWidth() {
+			return sourceWidth;
+		}
+
+		public int getSourceHeight() {
+			return sourceHeight;
+		}
+
 		public Format getFormat() {
 			return format;
 		}
@@ -967,6 +1106,14 @@ public abstract class ImageHelper extends FileHelper {
 			this.height = height;
 		}
 
+		public void setSourceWidth(final int sourceWidth) {
+			this.sourceWidth = sourceWidth;
+		}
+
+		public void setSourceHeight(final int sourceHeight) {
+			this.sourceHeight = sourceHeight;
+		}
+
 		public void setFormat(final Format format) {
 			this.format = format;
 		}
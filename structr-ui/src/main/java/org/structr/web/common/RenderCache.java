@@ -0,0 +1,317 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.common;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.lang3.StringUtils;
+import org.structr.api.config.Settings;
+import org.structr.api.graph.Node;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.StructrTransactionListener;
+import org.structr.core.TransactionSource;
+import org.structr.core.app.StructrApp;
+import org.structr.core.graph.ModificationEvent;
+import org.structr.core.graph.RelationshipInterface;
+import org.structr.core.graph.TransactionCommand;
+import org.structr.web.common.RenderContext.EditMode;
+import org.structr.web.entity.dom.Content;
+import org.structr.web.entity.dom.DOMElement;
+import org.structr.web.entity.dom.DOMNode;
+import org.structr.web.entity.dom.Template;
+
+/**
+ * Server-side cache for the rendered output of static DOM subtrees.
+ *
+ * A subtree is static if none of its nodes has a data binding, a query,
+ * show/hide conditions or locales, a shared component configuration or
+ * a script expression in any of its properties, and all of its nodes
+ * are visible to public and authenticated users. The output of such a
+ * subtree is the same for every request, so it is rendered once per
+ * node, edit mode and indentation level and then appended as a single
+ * pre-encoded fragment.
+ *
+ * For every analyzed node, the IDs of the nodes its result depends on
+ * are recorded. After each transaction, the cache drops every entry that
+ * depends on a node in the modification queue of the transaction.
+ */
+public class RenderCache implements StructrTransactionListener {
+
+	private static final Map<Long, Map<String, RenderFragment>> fragments = new ConcurrentHashMap<>();
+	private static final Map<Long, Boolean> analyzedNodes                  = new ConcurrentHashMap<>();
+	private static final Map<Long, Set<Long>> dependentNodes               = new ConcurrentHashMap<>();
+	private static final AtomicLong generation                             = new AtomicLong();
+
+	private static final String[] dynamicProperties = new String[] {
+		"dataKey", "cypherQuery", "xpathQuery", "restQuery", "functionQuery", "showConditions", "hideConditions",
+		"showForLocales", "hideForLocales", "sharedComponentConfiguration", DOMElement.STRUCTR_ACTION_PROPERTY
+	};
+
+	static {
+
+		TransactionCommand.registerTransactionListener(new RenderCache());
+	}
+
+	/**
+	 * Renders the given node from the cache if it is the root of a static
+	 * subtree, populating the cache if necessary.
+	 *
+	 * @param node the node to render
+	 * @param renderContext the render context
+	 * @param editMode the current edit mode
+	 * @param depth the current depth
+	 *
+	 * @return true if the node was rendered, false if it must be rendered normally
+	 *
+	 * @throws FrameworkException
+	 */
+	public static boolean render(final DOMNode node, final RenderContext renderContext, final EditMode editMode, final int depth) throws FrameworkException {
+
+		if (!Settings.RenderCacheEnabled.getValue() || !(EditMode.NONE.equals(editMode) || EditMode.RAW.equals(editMode))) {
+			return false;
+		}
+
+		final AsyncBuffer out = renderContext.getBuffer();
+
+		// nested static nodes are already part of the fragment that is being rendered
+		if (out instanceof CaptureBuffer) {
+			return false;
+		}
+
+		final long currentGeneration = generation.get();
+		final long id                = node.getId();
+
+		if (!isStatic(node, currentGeneration)) {
+			return false;
+		}
+
+		final String variant    = editMode.name() + ":" + depth + ":" + renderContext.shouldIndentHtml();
+		RenderFragment fragment = fragments.getOrDefault(id, Collections.emptyMap()).get(variant);
+
+		if (fragment == null) {
+
+			final CaptureBuffer capture = new CaptureBuffer();
+
+			renderContext.setBuffer(capture);
+
+			try {
+
+				node.renderContent(renderContext, depth);
+
+			} finally {
+
+				renderContext.setBuffer(out);
+			}
+
+			fragment = RenderFragment.of(capture.getBuffer().toString());
+
+			// do not store output that was rendered while the tree was modified
+			if (generation.get() == currentGeneration) {
+
+				fragments.computeIfAbsent(id, k -> new ConcurrentHashMap<>()).put(variant, fragment);
+			}
+
+		} else if (node instanceof DOMElement && DOMElement.lowercaseBodyName.equals(((DOMElement)node).getTag())) {
+
+			// keep the render context in the same state as after rendering the body element
+			renderContext.setInBody(true);
+		}
+
+		out.append(fragment);
+
+		return true;
+	}
+
+	public static void clear() {
+
+		fragments.clear();
+		analyzedNodes.clear();
+		dependentNodes.clear();
+
+		generation.incrementAndGet();
+	}
+
+	public static int getSize() {
+		return fragments.size();
+	}
+
+	// ----- interface StructrTransactionListener -----
+	@Override
+	public void beforeCommit(final SecurityContext securityContext, final Collection<ModificationEvent> modificationEvents, final TransactionSource source) throws FrameworkException {
+	}
+
+	@Override
+	public void afterCommit(final SecurityContext securityContext, final Collection<ModificationEvent> modificationEvents, final TransactionSource source) {
+	}
+
+	@Override
+	public void afterTransaction(final Set<Long> modifiedNodeIds) {
+
+		if (modifiedNodeIds == null) {
+
+			clear();
+			return;
+		}
+
+		for (final Long id : modifiedNodeIds) {
+			invalidate(id);
+		}
+	}
+
+	// ----- private methods -----
+	private static boolean isStatic(final DOMNode node, final long currentGeneration) throws FrameworkException {
+
+		final Boolean known = analyzedNodes.get(node.getId());
+		if (known != null) {
+
+			return known;
+		}
+
+		// analyze as superuser so that no child nodes are hidden from the analysis
+		final DOMNode superUserNode = StructrApp.getInstance().get(DOMNode.class, node.getUuid());
+		if (superUserNode == null) {
+
+			return false;
+		}
+
+		return analyze(superUserNode, new HashSet<>(), currentGeneration);
+	}
+
+	/**
+	 * Determines whether the subtree rooted at the given node is static
+	 * and records the result for every node that was examined, along
+	 * with the IDs of the nodes the result depends on.
+	 */
+	private static boolean analyze(final DOMNode node, final Set<Long> parentDependencies, final long currentGeneration) {
+
+		final long id       = node.getId();
+		final Boolean known = analyzedNodes.get(id);
+
+		if (known != null && !known) {
+
+			// a dynamic node makes the parent dynamic, no need to look any further
+			parentDependencies.add(id);
+			return false;
+		}
+
+		final Set<Long> dependencies = new HashSet<>();
+		boolean isStatic             = isStaticNode(node);
+
+		dependencies.add(id);
+
+		if (isStatic) {
+
+			List<RelationshipInterface> rels = node.getChildRelationships();
+
+			final DOMNode sharedComponent = node.getSharedComponent();
+			if (sharedComponent != null) {
+
+				dependencies.add(sharedComponent.getId());
+
+				// children of shared components are rendered from the synced node
+				if (rels.isEmpty()) {
+					rels = sharedComponent.getChildRelationships();
+				}
+			}
+
+			for (final RelationshipInterface rel : rels) {
+
+				if (!analyze((DOMNode)rel.getTargetNode(), dependencies, currentGeneration)) {
+
+					isStatic = false;
+					break;
+				}
+			}
+		}
+
+		// do not record results that were computed while the tree was modified
+		if (generation.get() == currentGeneration) {
+
+			for (final Long dependency : dependencies) {
+				dependentNodes.computeIfAbsent(dependency, k -> ConcurrentHashMap.newKeySet()).add(id);
+			}
+
+			analyzedNodes.put(id, isStatic);
+		}
+
+		parentDependencies.addAll(dependencies);
+
+		return isStatic;
+	}
+
+	private static boolean isStaticNode(final DOMNode node) {
+
+		if (!(node instanceof DOMElement || node instanceof Content) || node instanceof Template) {
+			return false;
+		}
+
+		if (!node.isVisibleToPublicUsers() || !node.isVisibleToAuthenticatedUsers() || node.dontCache() || node.hideOnIndex() || node.hideOnDetail()) {
+			return false;
+		}
+
+		final Node dbNode = node.getNode();
+
+		for (final String name : dynamicProperties) {
+
+			final Object value = dbNode.getProperty(name, null);
+			if (value != null && StringUtils.isNotBlank(value.toString())) {
+
+				return false;
+			}
+		}
+
+		// any script expression, in the content or in an attribute
+		for (final String key : dbNode.getPropertyKeys()) {
+
+			final Object value = dbNode.getProperty(key, null);
+			if (value instanceof String && ((String)value).contains("${")) {
+
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static void invalidate(final Long id) {
+
+		final Set<Long> dependents = dependentNodes.remove(id);
+		if (dependents != null) {
+
+			generation.incrementAndGet();
+
+			for (final Long dependent : dependents) {
+
+				analyzedNodes.remove(dependent);
+				fragments.remove(dependent);
+			}
+		}
+	}
+
+	// ----- nested classes -----
+	private static class CaptureBuffer extends StringRenderBuffer {
+	}
+}
@@ -105,6 +105,8 @@ public class RenderContext extends ActionContext {
 		this.locale = other.locale;
 		this.indentHtml = other.indentHtml;
 
+		// nested rendering is always collected as a string
+		this.buffer = new StringRenderBuffer();
 	}
 
 	public RenderContext(final SecurityContext securityContext, final HttpServletRequest request, HttpServletResponse response, final EditMode editMode) {
@@ -0,0 +1,93 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.common;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A constant piece of rendered output that is encoded to UTF-8 only once.
+ *
+ * Static markup like tag names, attribute names and fixed attribute
+ * prefixes is appended to the {@link AsyncBuffer} as a fragment, so the
+ * buffer can copy the bytes directly instead of encoding the same
+ * string for every rendered node.
+ */
+public class RenderFragment {
+
+	private static final Map<String, RenderFragment> cache = new ConcurrentHashMap<>();
+	private static final int MAX_CACHE_SIZE                = 10000;
+
+	private final String text;
+	private final byte[] bytes;
+
+	private RenderFragment(final String text) {
+
+		this.text  = text;
+		this.bytes = text.getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Creates a new fragment for the given text.
+	 *
+	 * @param text
+	 * @return the fragment
+	 */
+	public static RenderFragment of(final String text) {
+		return new RenderFragment(text);
+	}
+
+	/**
+	 * Returns a shared fragment for the given text. The number of cached
+	 * fragments is bounded, so this method is safe to use with strings
+	 * that come from the database, like tag or attribute names.
+	 *
+	 * @param text
+	 * @return the cached fragment
+	 */
+	public static RenderFragment cached(final String text) {
+
+		final RenderFragment fragment = cache.get(text);
+		if (fragment != null) {
+
+			return fragment;
+		}
+
+		if (cache.size() >= MAX_CACHE_SIZE) {
+
+			return new RenderFragment(text);
+		}
+
+		return cache.computeIfAbsent(text, RenderFragment::new);
+	}
+
+	public byte[] getBytes() {
+		return bytes;
+	}
+
+	public int length() {
+		return bytes.length;
+	}
+
+	@Override
+	public String toString() {
+		return text;
+	}
+}
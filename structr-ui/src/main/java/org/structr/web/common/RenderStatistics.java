@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.common;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the time spent rendering asynchronously delivered pages vs.
+ * the time spent waiting for and flushing to the client, per page.
+ */
+public class RenderStatistics {
+
+	private static final Map<String, PageStatistics> pages = new ConcurrentHashMap<>();
+
+	/**
+	 * Records the timings of a single rendering of the given page.
+	 *
+	 * @param pageName the name of the page
+	 * @param renderTime nanoseconds spent rendering
+	 * @param blockedTime nanoseconds the renderer waited for the client
+	 * @param flushTime nanoseconds between the end of rendering and the last byte sent
+	 * @param bytes the number of bytes sent
+	 */
+	public static void record(final String pageName, final long renderTime, final long blockedTime, final long flushTime, final long bytes) {
+
+		final String key = pageName != null ? pageName : "unnamed";
+
+		pages.computeIfAbsent(key, k -> new PageStatistics()).record(renderTime, blockedTime, flushTime, bytes);
+	}
+
+	public static Map<String, Object> getStatistics() {
+
+		final Map<String, Object> data = new TreeMap<>();
+
+		for (final Map.Entry<String, PageStatistics> entry : pages.entrySet()) {
+
+			data.put(entry.getKey(), entry.getValue().toMap());
+		}
+
+		return data;
+	}
+
+	public static void reset() {
+		pages.clear();
+	}
+
+	// ----- nested classes -----
+	private static class PageStatistics {
+
+		private final LongAdder count               = new LongAdder();
+		private final LongAdder renderTime          = new LongAdder();
+		private final LongAdder blockedTime         = new LongAdder();
+		private final LongAdder flushTime           = new LongAdder();
+		private final LongAdder bytes               = new LongAdder();
+		private final LongAccumulator maxRenderTime = new LongAccumulator(Math::max, 0L);
+		private final LongAccumulator maxFlushTime  = new LongAccumulator(Math::max, 0L);
+
+		public void record(final long render, final long blocked, final long flush, final long size) {
+
+			count.increment();
+			renderTime.add(render);
+			blockedTime.add(blocked);
+			flushTime.add(flush);
+			bytes.add(size);
+			maxRenderTime.accumulate(render);
+			maxFlushTime.accumulate(flush);
+		}
+
+		public Map<String, Object> toMap() {
+
+			final Map<String, Object> data = new LinkedHashMap<>();
+			final long n                   = Math.max(1L, count.sum());
+
+			data.put("count",              count.sum());
+			data.put("avgRenderMillis",    renderTime.sum() / n / 1000000.0);
+			data.put("maxRenderMillis",    maxRenderTime.get() / 1000000.0);
+			data.put("avgBlockedMillis",   blockedTime.sum() / n / 1000000.0);
+			data.put("avgFlushMillis",     flushTime.sum() / n / 1000000.0);
+			data.put("maxFlushMillis",     maxFlushTime.get() / 1000000.0);
+			data.put("avgBytes",           bytes.sum() / n);
+
+			return data;
+		}
+	}
+}
@@ -34,6 +34,12 @@ public class StringRenderBuffer extends AsyncBuffer {
 		return this;
 	}
 
+	@Override
+	public AsyncBuffer append(final RenderFragment fragment) {
+		buf.append(fragment);
+		return this;
+	}
+
 	public StringBuilder getBuffer() {
 		return buf;
 	}
@@ -0,0 +1,369 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.common;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
+import org.structr.common.PropertyView;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.app.App;
+import org.structr.core.app.StructrApp;
+import org.structr.core.graph.Tx;
+import org.structr.core.property.PropertyKey;
+import org.structr.core.property.PropertyMap;
+import org.structr.web.common.ImageHelper.Thumbnail;
+import org.structr.web.entity.File;
+import org.structr.web.entity.Image;
+import org.structr.web.property.ThumbnailProperty;
+
+/**
+ * Renders thumbnails on a bounded pool of background threads.
+ *
+ * Jobs are deduplicated by image, size and crop mode, so concurrent
+ * requests for the same thumbnail only render it once. Finished
+ * thumbnails are collected and stored in batches, each batch in a
+ * single transaction.
+ */
+public class ThumbnailQueue {
+
+	private static final Logger logger                = LoggerFactory.getLogger(ThumbnailQueue.class.getName());
+	private static final int QUEUE_SIZE               = 1000;
+	private static final int BATCH_SIZE               = 100;
+	private static final int MAX_ATTEMPTS             = 50;
+	private static final int MAX_FAILED               = 10000;
+	private static final long COMMIT_DELAY            = 200L;
+	private static final Map<String, Long> pending    = new ConcurrentHashMap<>();
+	private static final Map<String, Long> failed     = new ConcurrentHashMap<>();
+	private static final Queue<Job> results           = new ConcurrentLinkedQueue<>();
+	private static final AtomicBoolean scheduled      = new AtomicBoolean(false);
+	private static final LongAdder enqueued           = new LongAdder();
+	private static final LongAdder deduplicated       = new LongAdder();
+	private static final LongAdder rejected           = new LongAdder();
+	private static final LongAdder rendered           = new LongAdder();
+	private static final LongAdder failures           = new LongAdder();
+	private static final LongAdder persisted          = new LongAdder();
+	private static final LongAdder batches            = new LongAdder();
+	private static ThreadPoolExecutor renderers       = null;
+	private static ScheduledExecutorService committer = null;
+
+	/**
+	 * Enqueue all thumbnails defined for the type of the given file,
+	 * if it is an image. Called after an upload has completed.
+	 *
+	 * @param file
+	 */
+	public static void enqueueDefaults(final File file) {
+
+		if (!Settings.ThumbnailsAsync.getValue() || !(file instanceof Image)) {
+			return;
+		}
+
+		try (final Tx tx = StructrApp.getInstance().tx()) {
+
+			final Image image        = (Image)file;
+			final String contentType = image.getContentType();
+
+			if (image.isThumbnail() || contentType == null || contentType.startsWith("image/svg") || contentType.endsWith("icon")) {
+				return;
+			}
+
+			Long checksum = image.getChecksum();
+			if (checksum == null || checksum == 0) {
+
+				checksum = FileHelper.getChecksum(image.getFileOnDisk());
+			}
+
+			for (final PropertyKey key : StructrApp.getConfiguration().getPropertySet(image.getClass(), PropertyView.All)) {
+
+				if (key instanceof ThumbnailProperty) {
+
+					final ThumbnailProperty tn = (ThumbnailProperty)key;
+
+					enqueue(image, checksum, tn.getWidth(), tn.getHeight(), tn.getCrop());
+				}
+			}
+
+			tx.success();
+
+		} catch (FrameworkException | IOException ex) {
+			logger.warn("Unable to enqueue thumbnails for {}: {}", file.getUuid(), ex.getMessage());
+		}
+	}
+
+	/**
+	 * Enqueue a thumbnail of the given size for the given image, unless the
+	 * same thumbnail is already being rendered.
+	 *
+	 * @param image
+	 * @param checksum the checksum of the image data the thumbnail is rendered from
+	 * @param maxWidth
+	 * @param maxHeight
+	 * @param crop
+	 */
+	public static void enqueue(final Image image, final Long checksum, final int maxWidth, final int maxHeight, final boolean crop) {
+
+		if (checksum == null || checksum == 0) {
+			return;
+		}
+
+		final String key = image.getUuid() + ":" + maxWidth + "x" + maxHeight + ":" + crop;
+
+		// do not retry images that could not be rendered unless their content changes
+		if (checksum.equals(failed.get(key))) {
+			return;
+		}
+
+		if (pending.putIfAbsent(key, checksum) != null) {
+
+			deduplicated.increment();
+			return;
+		}
+
+		final Job job = new Job(key, image.getUuid(), image.getFileOnDisk(), ImageHelper.getImageFormatString(image), checksum, maxWidth, maxHeight, crop);
+
+		try {
+
+			getRenderers().execute(job);
+			enqueued.increment();
+
+		} catch (RejectedExecutionException rex) {
+
+			pending.remove(key);
+			rejected.increment();
+
+			logger.debug("Thumbnail queue is full, not rendering {}", key);
+		}
+	}
+
+	/**
+	 * @return true if no thumbnails are being rendered or waiting to be stored
+	 */
+	public static boolean isIdle() {
+		return pending.isEmpty() && results.isEmpty();
+	}
+
+	public static Map<String, Object> getStatistics() {
+
+		final Map<String, Object> data = new LinkedHashMap<>();
+
+		data.put("enqueued",     enqueued.sum());
+		data.put("deduplicated", deduplicated.sum());
+		data.put("rejected",     rejected.sum());
+		data.put("rendered",     rendered.sum());
+		data.put("failed",       failures.sum());
+		data.put("persisted",    persisted.sum());
+		data.put("batches",      batches.sum());
+		data.put("pending",      pending.size());
+		data.put("queued",       renderers != null ? renderers.getQueue().size() : 0);
+
+		return data;
+	}
+
+	// ----- private methods -----
+	private static synchronized ThreadPoolExecutor getRenderers() {
+
+		if (renderers == null) {
+
+			final int threads       = Math.max(1, Runtime.getRuntime().availableProcessors());
+			final AtomicInteger num = new AtomicInteger(0);
+
+			renderers = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(QUEUE_SIZE), r -> {
+
+				final Thread thread = new Thread(r, "ThumbnailRenderer-" + num.incrementAndGet());
+				thread.setDaemon(true);
+
+				return thread;
+			});
+
+			renderers.allowCoreThreadTimeOut(true);
+
+			committer = Executors.newSingleThreadScheduledExecutor(r -> {
+
+				final Thread thread = new Thread(r, "ThumbnailCommitter");
+				thread.setDaemon(true);
+
+				return thread;
+			});
+		}
+
+		return renderers;
+	}
+
+	private static void scheduleCommit() {
+
+		if (scheduled.compareAndSet(false, true)) {
+
+			// collect the results of a short period into one transaction
+			committer.schedule(ThumbnailQueue::commit, COMMIT_DELAY, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private static void commit() {
+
+		scheduled.set(false);
+
+		final App app          = StructrApp.getInstance();
+		final List<Job> retry  = new LinkedList<>();
+
+		while (!results.isEmpty()) {
+
+			final List<Job> batch = new LinkedList<>();
+			Job job               = null;
+
+			while (batch.size() < BATCH_SIZE && (job = results.poll()) != null) {
+				batch.add(job);
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				for (final Job current : batch) {
+
+					if (!persist(app, current)) {
+						retry.add(current);
+					}
+				}
+
+				tx.success();
+
+			} catch (Throwable t) {
+
+				logger.warn("Unable to store thumbnails: {}", t.getMessage());
+			}
+
+			batches.increment();
+
+			// thumbnails are visible now, so new requests can find them
+			for (final Job current : batch) {
+
+				if (!retry.contains(current)) {
+					pending.remove(current.key);
+				}
+			}
+		}
+
+		if (!retry.isEmpty()) {
+
+			results.addAll(retry);
+			scheduleCommit();
+		}
+	}
+
+	/**
+	 * Store the thumbnail of the given job. Returns false if the image is
+	 * not (yet) in the expected state, i.e. the transaction that uploaded
+	 * it has not been committed, and the job should be retried.
+	 */
+	private static boolean persist(final App app, final Job job) throws FrameworkException {
+
+		final Image image    = app.get(Image.class, job.uuid);
+		final Long checksum  = image != null ? image.getChecksum() : null;
+
+		if (image == null || (checksum != null && checksum != 0 && !job.checksum.equals(checksum))) {
+
+			return ++job.attempts >= MAX_ATTEMPTS;
+		}
+
+		final PropertyMap properties = new PropertyMap();
+		properties.put(StructrApp.key(Image.class, "width"),  job.thumbnail.getSourceWidth());
+		properties.put(StructrApp.key(Image.class, "height"), job.thumbnail.getSourceHeight());
+		image.setProperties(image.getSecurityContext(), properties);
+
+		final List<Image> oldThumbnails = new LinkedList<>();
+
+		// another request may have created the thumbnail in the meantime
+		if (Image.getExistingThumbnail(image, job.maxWidth, job.maxHeight, job.checksum, oldThumbnails) == null) {
+
+			if (Image.storeThumbnail(image, job.thumbnail, job.checksum, oldThumbnails) != null) {
+				persisted.increment();
+			}
+		}
+
+		return true;
+	}
+
+	// ----- nested classes -----
+	private static class Job implements Runnable {
+
+		private java.io.File fileOnDisk = null;
+		private Thumbnail thumbnail     = null;
+		private String format           = null;
+		private Long checksum           = null;
+		private String uuid             = null;
+		private String key              = null;
+		private boolean crop            = false;
+		private int maxWidth            = 0;
+		private int maxHeight           = 0;
+		private int attempts            = 0;
+
+		public Job(final String key, final String uuid, final java.io.File fileOnDisk, final String format, final Long checksum, final int maxWidth, final int maxHeight, final boolean crop) {
+
+			this.fileOnDisk = fileOnDisk;
+			this.format     = format;
+			this.checksum   = checksum;
+			this.uuid       = uuid;
+			this.key        = key;
+			this.crop       = crop;
+			this.maxWidth   = maxWidth;
+			this.maxHeight  = maxHeight;
+		}
+
+		@Override
+		public void run() {
+
+			thumbnail = ImageHelper.createThumbnail(fileOnDisk, format, maxWidth, maxHeight, crop);
+
+			if (thumbnail != null) {
+
+				rendered.increment();
+
+				results.add(this);
+				scheduleCommit();
+
+			} else {
+
+				failures.increment();
+
+				if (failed.size() > MAX_FAILED) {
+					failed.clear();
+				}
+
+				failed.put(key, checksum);
+				pending.remove(key);
+			}
+		}
+	}
+}
@@ -23,6 +23,7 @@ import java.net.URI;
 import java.util.LinkedList;
 import java.util.List;
 import org.apache.commons.lang3.StringUtils;
+import org.structr.api.config.Settings;
 import org.structr.common.ConstantBooleanTrue;
 import org.structr.common.Permission;
 import org.structr.common.PropertyView;
@@ -45,6 +46,7 @@ import org.structr.schema.json.JsonSchema.Cascade;
 import org.structr.web.common.FileHelper;
 import org.structr.web.common.ImageHelper;
 import org.structr.web.common.ImageHelper.Thumbnail;
+import org.structr.web.common.ThumbnailQueue;
 import org.structr.web.property.ImageDataProperty;
 import org.structr.web.property.ThumbnailProperty;
 
@@ -333,14 +335,10 @@ public interface Image extends File {
 	 * */
 	public static Image getScaledImage(final Image thisImage, final int maxWidth, final int maxHeight, final boolean cropToFit) {
 
-		final Class<Relation> thumbnailRel              = StructrApp.getConfiguration().getRelationshipEntityClass("ImageTHUMBNAILImage");
-		final Iterable<Relation> thumbnailRelationships = thisImage.getOutgoingRelationships(thumbnailRel);
 		final SecurityContext securityContext           = thisImage.getSecurityContext();
 		final List<Image> oldThumbnails                 = new LinkedList<>();
 		Image thumbnail                                 = null;
 		final Image originalImage                       = thisImage;
-		final Integer origWidth                         = originalImage.getWidth();
-		final Integer origHeight                        = originalImage.getHeight();
 		final Long currentChecksum                      = originalImage.getChecksum();
 		Long newChecksum                                = 0L;
 
@@ -375,37 +373,23 @@ public interface Image extends File {
 			return thisImage;
 		}
 
-		if (origWidth != null && origHeight != null && thumbnailRelationships != null) {
-
-			for (final Relation r : thumbnailRelationships) {
-
-				final Integer w = r.getProperty(StructrApp.key(Image.class, "width"));
-				final Integer h = r.getProperty(StructrApp.key(Image.class, "height"));
-
-				if (w != null && h != null) {
-
-					// orginal image is equal or smaller than requested size
-					if (((w == maxWidth) && (h <= maxHeight)) || ((w <= maxWidth) && (h == maxHeight)) || ((origWidth <= w) && (origHeight <= h))) {
-
-						thumbnail = (Image)r.getTargetNode();
+		thumbnail = getExistingThumbnail(originalImage, maxWidth, maxHeight, newChecksum, oldThumbnails);
+		if (thumbnail != null) {
 
-						// Use thumbnail only if checksum of original image matches with stored checksum
-						final Long storedChecksum = r.getProperty(StructrApp.key(Image.class, "checksum"));
-
-						if (storedChecksum != null && storedChecksum.equals(newChecksum)) {
-
-							return thumbnail;
+			return thumbnail;
+		}
 
-						} else {
+		// an outdated thumbnail of the requested size is better than nothing
+		if (!oldThumbnails.isEmpty()) {
+			thumbnail = oldThumbnails.get(oldThumbnails.size() - 1);
+		}
 
-							oldThumbnails.add(thumbnail);
-						}
-					}
+		// render in the background while serving requests and deliver the original image until the thumbnail is ready
+		if (Settings.ThumbnailsAsync.getValue() && securityContext.getRequest() != null) {
 
-				}
-
-			}
+			ThumbnailQueue.enqueue(originalImage, newChecksum, maxWidth, maxHeight, cropToFit);
 
+			return thumbnail != null ? thumbnail : originalImage;
 		}
 
 		// do not create thumbnails if this transaction is set to read-only
@@ -427,61 +411,13 @@ public interface Image extends File {
 				originalImage.unlockSystemPropertiesOnce();
 				originalImage.setIsCreatingThumb(true);
 
-				final App app = StructrApp.getInstance();
-
-				originalImage.unlockSystemPropertiesOnce();
-				originalImage.setProperty(StructrApp.key(File.class, "checksum"), newChecksum);
-
 				final Thumbnail thumbnailData = ImageHelper.createThumbnail(originalImage, maxWidth, maxHeight, cropToFit);
 				if (thumbnailData != null) {
 
-					final Integer tnWidth  = thumbnailData.getWidth();
-					final Integer tnHeight = thumbnailData.getHeight();
-					byte[] data            = null;
-
-					try {
-
-						data = thumbnailData.getBytes();
-						final String thumbnailName = ImageHelper.getThumbnailName(originalImage.getName(), tnWidth, tnHeight);
-
-						// create thumbnail node
-						thumbnail = ImageHelper.createImageNode(securityContext, data, "image/" + Thumbnail.defaultFormat, Image.class, thumbnailName, true);
-
-					} catch (IOException ex) {
-
-						logger.warn("Could not create thumbnail image for " + getUuid(), ex);
-
-					}
-
-					if (thumbnail != null && data != null) {
-
-						// Create a thumbnail relationship
-						final PropertyMap relProperties = new PropertyMap();
-						relProperties.put(StructrApp.key(Image.class, "width"),                  tnWidth);
-						relProperties.put(StructrApp.key(Image.class, "height"),                 tnHeight);
-						relProperties.put(StructrApp.key(Image.class, "checksum"),               newChecksum);
-
-						app.create(originalImage, thumbnail, thumbnailRel, relProperties);
-
-						final PropertyMap properties = new PropertyMap();
-						properties.put(StructrApp.key(Image.class, "width"),                              tnWidth);
-						properties.put(StructrApp.key(Image.class, "height"),                             tnHeight);
-						properties.put(StructrApp.key(AbstractNode.class, "hidden"),                      originalImage.getProperty(AbstractNode.hidden));
-						properties.put(StructrApp.key(AbstractNode.class, "visibleToAuthenticatedUsers"), originalImage.getProperty(AbstractNode.visibleToAuthenticatedUsers));
-						properties.put(StructrApp.key(AbstractNode.class, "visibleToPublicUsers"),        originalImage.getProperty(AbstractNode.visibleToPublicUsers));
-						properties.put(StructrApp.key(File.class, "size"),                                Long.valueOf(data.length));
-						properties.put(StructrApp.key(AbstractNode.class, "owner"),                       originalImage.getProperty(AbstractNode.owner));
-						properties.put(StructrApp.key(File.class, "parent"),                              originalImage.getThumbnailParentFolder(originalImage.getProperty(StructrApp.key(File.class, "parent")), securityContext));
-						properties.put(StructrApp.key(File.class, "hasParent"),                           originalImage.getProperty(StructrApp.key(Image.class, "hasParent")));
-
-						thumbnail.unlockSystemPropertiesOnce();
-						thumbnail.setProperties(securityContext, properties);
-
-						// Delete outdated thumbnails
-						for (final Image tn : oldThumbnails) {
-							app.delete(tn);
-						}
+					final Image newThumbnail = storeThumbnail(originalImage, thumbnailData, newChecksum, oldThumbnails);
+					if (newThumbnail != null) {
 
+						thumbnail = newThumbnail;
 					}
 
 				} else {
@@ -504,6 +440,136 @@ public interface Image extends File {
 		return thumbnail;
 	}
 
+	/**
+	 * Find a thumbnail of the given size that was created from the current
+	 * version of the image. Thumbnails of the right size that were created
+	 * from an older version are added to the given list.
+	 *
+	 * @param thisImage
+	 * @param maxWidth
+	 * @param maxHeight
+	 * @param checksum
+	 * @param oldThumbnails
+	 *
+	 * @return thumbnail or null
+	 */
+	public static Image getExistingThumbnail(final Image thisImage, final int maxWidth, final int maxHeight, final Long checksum, final List<Image> oldThumbnails) {
+
+		final Class<Relation> thumbnailRel              = StructrApp.getConfiguration().getRelationshipEntityClass("ImageTHUMBNAILImage");
+		final Iterable<Relation> thumbnailRelationships = thisImage.getOutgoingRelationships(thumbnailRel);
+		final Integer origWidth                         = thisImage.getWidth();
+		final Integer origHeight                        = thisImage.getHeight();
+
+		if (origWidth != null && origHeight != null && thumbnailRelationships != null) {
+
+			for (final Relation r : thumbnailRelationships) {
+
+				final Integer w = r.getProperty(StructrApp.key(Image.class, "width"));
+				final Integer h = r.getProperty(StructrApp.key(Image.class, "height"));
+
+				if (w != null && h != null) {
+
+					// orginal image is equal or smaller than requested size
+					if (((w == maxWidth) && (h <= maxHeight)) || ((w <= maxWidth) && (h == maxHeight)) || ((origWidth <= w) && (origHeight <= h))) {
+
+						final Image thumbnail = (Image)r.getTargetNode();
+
+						// Use thumbnail only if checksum of original image matches with stored checksum
+						final Long storedChecksum = r.getProperty(StructrApp.key(Image.class, "checksum"));
+
+						if (storedChecksum != null && storedChecksum.equals(checksum)) {
+
+							return thumbnail;
+
+						} else {
+
+							oldThumbnails.add(thumbnail);
+						}
+					}
+
+				}
+
+			}
+
+		}
+
+		return null;
+	}
+
+	/**
+	 * Store the given thumbnail data as a new thumbnail of the original image
+	 * and delete the given outdated thumbnails.
+	 *
+	 * @param originalImage
+	 * @param thumbnailData
+	 * @param checksum
+	 * @param oldThumbnails
+	 *
+	 * @return the new thumbnail or null
+	 * @throws FrameworkException
+	 */
+	public static Image storeThumbnail(final Image originalImage, final Thumbnail thumbnailData, final Long checksum, final List<Image> oldThumbnails) throws FrameworkException {
+
+		final Class<Relation> thumbnailRel    = StructrApp.getConfiguration().getRelationshipEntityClass("ImageTHUMBNAILImage");
+		final SecurityContext securityContext = originalImage.getSecurityContext();
+		final App app                         = StructrApp.getInstance();
+		final Integer tnWidth                 = thumbnailData.getWidth();
+		final Integer tnHeight                = thumbnailData.getHeight();
+		Image thumbnail                       = null;
+		byte[] data                           = null;
+
+		originalImage.unlockSystemPropertiesOnce();
+		originalImage.setProperty(StructrApp.key(File.class, "checksum"), checksum);
+
+		try {
+
+			data = thumbnailData.getBytes();
+			final String thumbnailName = ImageHelper.getThumbnailName(originalImage.getName(), tnWidth, tnHeight);
+
+			// create thumbnail node
+			thumbnail = ImageHelper.createImageNode(securityContext, data, "image/" + Thumbnail.defaultFormat, Image.class, thumbnailName, true);
+
+		} catch (IOException ex) {
+
+			logger.warn("Could not create thumbnail image for " + originalImage.getUuid(), ex);
+
+		}
+
+		if (thumbnail != null && data != null) {
+
+			// Create a thumbnail relationship
+			final PropertyMap relProperties = new PropertyMap();
+			relProperties.put(StructrApp.key(Image.class, "width"),                  tnWidth);
+			relProperties.put(StructrApp.key(Image.class, "height"),                 tnHeight);
+			relProperties.put(StructrApp.key(Image.class, "checksum"),               checksum);
+
+			app.create(originalImage, thumbnail, thumbnailRel, relProperties);
+
+			final PropertyMap properties = new PropertyMap();
+			properties.put(StructrApp.key(Image.class, "width"),                              tnWidth);
+			properties.put(StructrApp.key(Image.class, "height"),                             tnHeight);
+			properties.put(StructrApp.key(AbstractNode.class, "hidden"),                      originalImage.getProperty(AbstractNode.hidden));
+			properties.put(StructrApp.key(AbstractNode.class, "visibleToAuthenticatedUsers"), originalImage.getProperty(AbstractNode.visibleToAuthenticatedUsers));
+			properties.put(StructrApp.key(AbstractNode.class, "visibleToPublicUsers"),        originalImage.getProperty(AbstractNode.visibleToPublicUsers));
+			properties.put(StructrApp.key(File.class, "size"),                                Long.valueOf(data.length));
+			properties.put(StructrApp.key(AbstractNode.class, "owner"),                       originalImage.getProperty(AbstractNode.owner));
+			properties.put(StructrApp.key(File.class, "parent"),                              originalImage.getThumbnailParentFolder(originalImage.getProperty(StructrApp.key(File.class, "parent")), securityContext));
+			properties.put(StructrApp.key(File.class, "hasParent"),                           originalImage.getProperty(StructrApp.key(Image.class, "hasParent")));
+
+			thumbnail.unlockSystemPropertiesOnce();
+			thumbnail.setProperties(securityContext, properties);
+
+			// Delete outdated thumbnails
+			for (final Image tn : oldThumbnails) {
+				app.delete(tn);
+			}
+
+			return thumbnail;
+		}
+
+		return null;
+	}
+
 	/**
 	 * Return true if this image is a thumbnail image.
 	 *
@@ -40,6 +40,7 @@ import org.structr.schema.json.JsonSchema;
 import org.structr.web.common.AsyncBuffer;
 import org.structr.web.common.RenderContext;
 import org.structr.web.common.RenderContext.EditMode;
+import org.structr.web.common.RenderFragment;
 import org.structr.web.converter.ContentConverters;
 import static org.structr.web.entity.dom.DOMNode.escapeForHtml;
 import static org.structr.web.entity.dom.DOMNode.escapeForHtmlAttributes;
@@ -55,6 +56,11 @@ import org.w3c.dom.Text;
  */
 public interface Content extends DOMNode, Text, NonIndexed, Favoritable {
 
+	static final RenderFragment EDIT_COMMENT_START     = RenderFragment.of("<!--data-structr-id=\"");
+	static final RenderFragment EDIT_COMMENT_RAW_VALUE = RenderFragment.of("\" data-structr-raw-value=\"");
+	static final RenderFragment EDIT_COMMENT_END       = RenderFragment.of("\"-->");
+	static final RenderFragment EMPTY_COMMENT          = RenderFragment.of("<!---->");
+
 	static class Impl { static {
 
 		final JsonSchema schema   = SchemaService.getDynamicSchema();
@@ -308,8 +314,7 @@ public interface Content extends DOMNode, Text, NonIndexed, Favoritable {
 
 					// In edit mode, add an artificial comment tag around content nodes within body to make them editable
 					final String cleanedContent = StringUtils.remove(StringUtils.remove(org.apache.commons.lang3.StringUtils.replace(thisNode.getContent(), "\n", "\\\\n"), "<!--"), "-->");
-					out.append("<!--data-structr-id=\"".concat(id)
-						.concat("\" data-structr-raw-value=\"").concat(escapeForHtmlAttributes(cleanedContent)).concat("\"-->"));
+					out.append(EDIT_COMMENT_START).append(id).append(EDIT_COMMENT_RAW_VALUE).append(escapeForHtmlAttributes(cleanedContent)).append(EDIT_COMMENT_END);
 
 				}
 
@@ -355,7 +360,7 @@ public interface Content extends DOMNode, Text, NonIndexed, Favoritable {
 
 			if (EditMode.CONTENT.equals(edit) && inBody && !("text/javascript".equals(_contentType) && !("text/css".equals(_contentType)))) {
 
-				out.append("<!---->");
+				out.append(EMPTY_COMMENT);
 			}
 
 		} catch (Throwable t) {
@@ -47,6 +47,7 @@ import org.structr.web.common.AsyncBuffer;
 import org.structr.web.common.HtmlProperty;
 import org.structr.web.common.RenderContext;
 import org.structr.web.common.RenderContext.EditMode;
+import org.structr.web.common.RenderFragment;
 import static org.structr.web.entity.dom.DOMNode.escapeForHtmlAttributes;
 import org.w3c.dom.Attr;
 import org.w3c.dom.DOMException;
@@ -63,6 +64,13 @@ public interface DOMElement extends DOMNode, Element, NamedNodeMap, NonIndexed {
 
 	static final int HtmlPrefixLength            = PropertyView.Html.length();
 
+	static final RenderFragment TAG_START      = RenderFragment.of("<");
+	static final RenderFragment END_TAG_START  = RenderFragment.of("</");
+	static final RenderFragment TAG_END        = RenderFragment.of(">");
+	static final RenderFragment DATA_PAGE_ATTR = RenderFragment.of(" data-structr-page=\"");
+	static final RenderFragment DATA_ID_ATTR   = RenderFragment.of(" data-structr-id=\"");
+	static final RenderFragment DATA_HASH_ATTR = RenderFragment.of(" data-structr-hash=\"");
+
 	static class Impl { static {
 
 		final JsonSchema schema   = SchemaService.getDynamicSchema();
@@ -460,7 +468,7 @@ public interface DOMElement extends DOMNode, Element, NamedNodeMap, NonIndexed {
 
 				} else {
 
-					out.append("</").append(_tag).append(">");
+					out.append(END_TAG_START).append(RenderFragment.cached(_tag)).append(TAG_END);
 				}
 			}
 
@@ -518,7 +526,7 @@ public interface DOMElement extends DOMNode, Element, NamedNodeMap, NonIndexed {
 
 		} else {
 
-			out.append("<").append(tag);
+			out.append(TAG_START).append(RenderFragment.cached(tag));
 
 			final ConfigurationProvider config = StructrApp.getConfiguration();
 			final Class type = thisElement.getEntityType();
@@ -554,9 +562,9 @@ public interface DOMElement extends DOMNode, Element, NamedNodeMap, NonIndexed {
 
 				if (value != null) {
 
-					String key = attribute.jsonName().substring(PropertyView.Html.length());
+					final String key = attribute.jsonName().substring(HtmlPrefixLength);
 
-					out.append(" ").append(key).append("=\"").append(value).append("\"");
+					out.append(ATTR_SEPARATOR).append(RenderFragment.cached(key)).append(ATTR_VALUE_START).append(value).append(ATTR_VALUE_END);
 
 				}
 
@@ -577,21 +585,21 @@ public interface DOMElement extends DOMNode, Element, NamedNodeMap, NonIndexed {
 
 						if (pageId != null) {
 
-							out.append(" data-structr-page=\"").append(pageId).append("\"");
+							out.append(DATA_PAGE_ATTR).append(pageId).append(ATTR_VALUE_END);
 						}
 					}
 
-					out.append(" data-structr-id=\"").append(thisElement.getUuid()).append("\"");
+					out.append(DATA_ID_ATTR).append(thisElement.getUuid()).append(ATTR_VALUE_END);
 					break;
 
 				case RAW:
 
-					out.append(" ").append("data-structr-hash").append("=\"").append(thisElement.getIdHash()).append("\"");
+					out.append(DATA_HASH_ATTR).append(thisElement.getIdHash()).append(ATTR_VALUE_END);
 					break;
 	 		}
 		}
 
-		out.append(">");
+		out.append(TAG_END);
 	}
 
 	public static Node doImport(final DOMElement thisNode, final Page newPage) throws DOMException {
@@ -21,6 +21,7 @@ package org.structr.web.entity.dom;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -37,6 +38,7 @@ import org.structr.common.ConstantBooleanTrue;
 import org.structr.common.ContextAwareEntity;
 import org.structr.common.Filter;
 import org.structr.common.Permission;
+import org.structr.common.PrefetchHelper;
 import org.structr.common.PropertyView;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.ErrorBuffer;
@@ -66,8 +68,10 @@ import org.structr.schema.json.JsonReferenceType;
 import org.structr.schema.json.JsonSchema;
 import org.structr.web.common.AsyncBuffer;
 import org.structr.web.common.GraphDataSource;
+import org.structr.web.common.RenderCache;
 import org.structr.web.common.RenderContext;
 import org.structr.web.common.RenderContext.EditMode;
+import org.structr.web.common.RenderFragment;
 import org.structr.web.common.StringRenderBuffer;
 import org.structr.web.datasource.CypherGraphDataSource;
 import org.structr.web.datasource.FunctionDataSource;
@@ -277,6 +281,10 @@ public interface DOMNode extends NodeInterface, Node, Renderable, DOMAdoptable,
 	static final String EDIT_MODE_BINDING_CATEGORY = "Edit Mode Binding";
 	static final String QUERY_CATEGORY             = "Query and Data Binding";
 
+	static final RenderFragment ATTR_SEPARATOR     = RenderFragment.of(" ");
+	static final RenderFragment ATTR_VALUE_START   = RenderFragment.of("=\"");
+	static final RenderFragment ATTR_VALUE_END     = RenderFragment.of("\"");
+
 	// ----- error messages for DOMExceptions -----
 	public static final String NO_MODIFICATION_ALLOWED_MESSAGE         = "Permission denied.";
 	public static final String INVALID_ACCESS_ERR_MESSAGE              = "Permission denied.";
@@ -481,6 +489,12 @@ public interface DOMNode extends NodeInterface, Node, Renderable, DOMAdoptable,
 		final Iterable<GraphObject> listSource = renderContext.getListSource();
 		if (listSource != null) {
 
+			// load the relationships of the data objects' default view at once,
+			// lazy sources are not prefetched because they would be evaluated twice
+			if (listSource instanceof Collection) {
+				PrefetchHelper.prefetchRelationships(listSource, PropertyView.Public);
+			}
+
 			for (final GraphObject dataObject : listSource) {
 
 				// make current data object available in renderContext
@@ -1343,9 +1357,9 @@ public interface DOMNode extends NodeInterface, Node, Renderable, DOMAdoptable,
 			if (StringUtils.isNotBlank(value)) {
 
 				if (key instanceof CustomHtmlAttributeProperty) {
-					out.append(" ").append(((CustomHtmlAttributeProperty)key).cleanName()).append("=\"").append(value).append("\"");
+					out.append(ATTR_SEPARATOR).append(RenderFragment.cached(((CustomHtmlAttributeProperty)key).cleanName())).append(ATTR_VALUE_START).append(value).append(ATTR_VALUE_END);
 				} else {
-					out.append(" ").append(key.dbName()).append("=\"").append(value).append("\"");
+					out.append(ATTR_SEPARATOR).append(RenderFragment.cached(key.dbName())).append(ATTR_VALUE_START).append(value).append(ATTR_VALUE_END);
 				}
 			}
 		}
@@ -1459,6 +1473,11 @@ public interface DOMNode extends NodeInterface, Node, Renderable, DOMAdoptable,
 
 		final EditMode editMode = renderContext.getEditMode(securityContext.getUser(false));
 
+		// static subtrees are rendered from the cache
+		if (RenderCache.render(thisNode, renderContext, editMode, depth)) {
+			return;
+		}
+
 		if (EditMode.RAW.equals(editMode) || EditMode.WIDGET.equals(editMode) || EditMode.DEPLOYMENT.equals(editMode)) {
 
 			thisNode.renderContent(renderContext, depth);
@@ -36,6 +36,7 @@ import org.structr.core.property.PropertyKey;
 import org.structr.schema.action.ActionContext;
 import org.structr.schema.action.Function;
 import org.structr.web.common.RenderContext;
+import org.structr.web.common.StringRenderBuffer;
 import org.structr.web.datasource.FunctionDataSource;
 import org.structr.web.entity.File;
 import org.structr.web.entity.dom.DOMNode;
@@ -213,7 +214,7 @@ public class IncludeFunction extends Function<Object, Object> {
 
 		}
 
-		return StringUtils.join(innerCtx.getBuffer().getQueue(), "");		
+		return ((StringRenderBuffer)innerCtx.getBuffer()).getBuffer().toString();
 	}
 	
 }
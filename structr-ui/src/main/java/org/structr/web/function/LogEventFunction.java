@@ -18,12 +18,16 @@
  */
 package org.structr.web.function;
 
+import java.io.IOException;
 import java.util.Date;
 import java.util.Map;
+import org.structr.api.config.Settings;
 import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObjectMap;
 import org.structr.core.app.StructrApp;
 import org.structr.core.graph.NodeAttribute;
 import org.structr.core.property.PropertyMap;
+import org.structr.rest.logging.LogEventStore;
 import org.structr.rest.logging.entity.LogEvent;
 import org.structr.schema.action.ActionContext;
 import org.structr.web.entity.dom.DOMNode;
@@ -51,6 +55,10 @@ public class LogEventFunction extends UiFunction {
 			final String subject = DOMNode.objectToString(map.get("subject"));
 			final String object  = DOMNode.objectToString(map.get("object"));
 
+			if (Settings.LogEventStore.getValue()) {
+				return store(action, message, subject, object);
+			}
+
 			return StructrApp.getInstance().create(LogEvent.class,
 				new NodeAttribute(LogEvent.actionProperty, action),
 				new NodeAttribute(LogEvent.messageProperty, message),
@@ -68,6 +76,14 @@ public class LogEventFunction extends UiFunction {
 				final String action = sources[0].toString();
 				final String message = sources[1].toString();
 
+				if (Settings.LogEventStore.getValue()) {
+
+					final String subject = sources.length > 2 ? sources[2].toString() : null;
+					final String object  = sources.length > 3 ? sources[3].toString() : null;
+
+					return store(action, message, subject, object);
+				}
+
 				final LogEvent logEvent = StructrApp.getInstance().create(LogEvent.class,
 					new NodeAttribute(LogEvent.actionProperty, action),
 					new NodeAttribute(LogEvent.messageProperty, message),
@@ -106,4 +122,16 @@ public class LogEventFunction extends UiFunction {
 	public String shortDescription() {
 		return "Logs an event to the Structr log";
 	}
+
+	// ----- private methods -----
+	private GraphObjectMap store(final String action, final String message, final String subject, final String object) throws FrameworkException {
+
+		try {
+
+			return LogEventStore.getInstance().append(action, message, subject, object).toGraphObjectMap();
+
+		} catch (IOException ioex) {
+			throw new FrameworkException(500, "Unable to store log event: " + ioex.getMessage());
+		}
+	}
 }
@@ -19,11 +19,11 @@
 package org.structr.web.function;
 
 import java.util.Collection;
-import org.apache.commons.lang3.StringUtils;
 import org.structr.common.error.FrameworkException;
 import org.structr.schema.action.ActionContext;
 import org.structr.schema.action.Function;
 import org.structr.web.common.RenderContext;
+import org.structr.web.common.StringRenderBuffer;
 import org.structr.web.entity.dom.DOMNode;
 
 /**
@@ -71,7 +71,7 @@ public class RenderFunction extends Function<Object, Object> {
 
 			}
 
-			return StringUtils.join(innerCtx.getBuffer().getQueue(), "");
+			return ((StringRenderBuffer)innerCtx.getBuffer()).getBuffer().toString();
 
 		} else {
 
@@ -0,0 +1,53 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.resource;
+
+import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObjectMap;
+import org.structr.core.Result;
+import org.structr.core.property.GenericProperty;
+import org.structr.core.property.PropertyKey;
+import org.structr.rest.resource.MetricsResource;
+import org.structr.web.common.FileDelivery;
+import org.structr.web.common.RenderStatistics;
+import org.structr.web.common.ThumbnailQueue;
+
+/**
+ * Adds the page rendering and file delivery statistics of structr-ui to
+ * the runtime statistics of the metrics resource.
+ */
+public class UiMetricsResource extends MetricsResource {
+
+	@Override
+	public Result doGet(PropertyKey sortKey, boolean sortDescending, int pageSize, int page) throws FrameworkException {
+
+		final Result result = super.doGet(sortKey, sortDescending, pageSize, page);
+
+		if (!result.isEmpty()) {
+
+			final GraphObjectMap info = (GraphObjectMap)result.get(0);
+
+			info.setProperty(new GenericProperty("pageRendering"), RenderStatistics.getStatistics());
+			info.setProperty(new GenericProperty("fileDelivery"),  FileDelivery.getStatistics());
+			info.setProperty(new GenericProperty("thumbnails"),    ThumbnailQueue.getStatistics());
+		}
+
+		return result;
+	}
+}
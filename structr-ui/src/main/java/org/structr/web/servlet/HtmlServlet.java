@@ -21,6 +21,7 @@ package org.structr.web.servlet;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.text.DateFormat;
 import java.text.ParseException;
@@ -36,12 +37,10 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Queue;
 import java.util.Set;
 import java.util.TimeZone;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.servlet.AsyncContext;
@@ -85,9 +84,12 @@ import org.structr.rest.service.StructrHttpServiceConfig;
 import org.structr.schema.ConfigurationProvider;
 import org.structr.util.Base64;
 import org.structr.web.auth.UiAuthenticator;
+import org.structr.web.common.AsyncBuffer;
+import org.structr.web.common.FileDelivery;
 import org.structr.web.common.FileHelper;
 import org.structr.web.common.RenderContext;
 import org.structr.web.common.RenderContext.EditMode;
+import org.structr.web.common.RenderStatistics;
 import org.structr.web.common.StringRenderBuffer;
 import org.structr.web.entity.AbstractFile;
 import org.structr.web.entity.File;
@@ -123,6 +125,7 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 	private static final ExecutorService threadPool                = Executors.newCachedThreadPool();
 
 	private final Pattern FilenameCleanerPattern                      = Pattern.compile("[\n\r]", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.DOTALL);
+	private static final Pattern RangePattern                         = Pattern.compile("bytes=(?<start>\\d*)-(?<end>\\d*)");
 	private final StructrHttpServiceConfig config                     = new StructrHttpServiceConfig();
 	private final Set<String> possiblePropertyNamesForEntityResolving = new LinkedHashSet<>();
 
@@ -817,21 +820,28 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 	}
 
 	protected void renderAsyncOutput(HttpServletRequest request, HttpServletResponse response, App app, RenderContext renderContext, DOMNode rootElement) throws IOException {
-		final AsyncContext async = request.startAsync();
-		final ServletOutputStream out = async.getResponse().getOutputStream();
-		final AtomicBoolean finished = new AtomicBoolean(false);
-		final DOMNode rootNode = rootElement;
+
+		final AsyncContext async        = request.startAsync();
+		final ServletOutputStream out   = async.getResponse().getOutputStream();
+		final AsyncBuffer buffer        = new AsyncBuffer(Settings.AsyncBufferSize.getValue());
+		final AsyncPageWriter writer    = new AsyncPageWriter(request, async, out, buffer, renderContext, rootElement.getName());
+		final DOMNode rootNode          = rootElement;
+
+		// the writer is notified by the buffer when output is available
+		buffer.setListener(writer::writeAvailable);
+		renderContext.setBuffer(buffer);
 
 		threadPool.submit(new Runnable() {
 
 			@Override
 			public void run() {
 
+				final long t0 = System.nanoTime();
+
 				try (final Tx tx = app.tx()) {
 
 					// render
 					rootNode.render(renderContext, 0);
-					finished.set(true);
 
 					tx.success();
 
@@ -843,81 +853,22 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 					try {
 
 						response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-						finished.set(true);
 
 					} catch (IOException ex) {
 						logger.warn("", ex);
 					}
-				}
-			}
-
-		});
-
-		// start output write listener
-		out.setWriteListener(new WriteListener() {
-
-			@Override
-			public void onWritePossible() throws IOException {
-
-				try {
-
-					final Queue<String> queue = renderContext.getBuffer().getQueue();
-					while (out.isReady()) {
-
-						String buffer = null;
-
-						synchronized (queue) {
-							buffer = queue.poll();
-						}
-
-						if (buffer != null) {
-
-							out.print(buffer);
-
-						} else {
-
-							if (finished.get()) {
-
-								async.complete();
-
-								// prevent this block from being called again
-								break;
-							}
-
-							Thread.sleep(1);
-						}
-					}
-
-				} catch (EofException ee) {
-
-					final SecurityContext sc = renderContext.getSecurityContext();
-					final Principal user     = sc.getUser(false);
-					final String username    = (user != null) ? user.getName() : "anonymous";
 
-					logger.warn("Could not flush the response body content to the client, probably because the network connection was terminated.");
-					logger.warn(" -> From: {} | URI: {} | Query: {} | User: {}", request.getRemoteAddr(), request.getRequestURI(), request.getQueryString(), username);
+				} finally {
 
-				} catch (IOException | InterruptedException t) {
-					logger.warn("Unexpected exception", t);
+					writer.renderingFinished(System.nanoTime() - t0);
+					buffer.finish();
 				}
 			}
 
-			@Override
-			public void onError(Throwable t) {
-				if (t instanceof EofException) {
-
-					final SecurityContext sc = renderContext.getSecurityContext();
-					final Principal user     = sc.getUser(false);
-					final String username    = (user != null) ? user.getName() : "anonymous";
-
-					logger.warn("Could not flush the response body content to the client, probably because the network connection was terminated.");
-					logger.warn(" -> From: {} | URI: {} | Query: {} | User: {}", request.getRemoteAddr(), request.getRequestURI(), request.getQueryString(), username);
-
-				} else {
-					logger.warn("Unexpected exception", t);
-				}
-			}
 		});
+
+		// start output write listener
+		out.setWriteListener(writer);
 	}
 
 	protected void writeOutputSteam(HttpServletResponse response, StringRenderBuffer buffer) throws IOException {
@@ -1526,7 +1477,6 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 			} else {
 
 				// 2b: stream file to response
-				final InputStream in = file.getInputStream();
 				final String contentType = file.getContentType();
 
 				if (contentType != null) {
@@ -1539,68 +1489,93 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 					response.setContentType("application/octet-stream");
 				}
 
-				final String range = request.getHeader("Range");
+				if (FileDelivery.canDeliver(file)) {
 
-				try {
+					// 2c: deliver file from local storage without copying
+					try {
+
+						callbackMap.put("statusCode", FileDelivery.deliver(file, request, response));
 
-					if (StringUtils.isNotEmpty(range)) {
+					} catch (IOException ioex) {
 
-						final long len = file.getSize();
-						long start     = 0;
-						long end       = len - 1;
+						logger.debug("Unable to deliver file {}: {}", file.getUuid(), ioex.getMessage());
 
-						final Matcher matcher = Pattern.compile("bytes=(?<start>\\d*)-(?<end>\\d*)").matcher(range);
+					} finally {
 
-						if (matcher.matches()) {
-							String startGroup = matcher.group("start");
-							start = startGroup.isEmpty() ? start : Long.valueOf(startGroup);
-							start = Math.max(0, start);
+						try {
+							out.flush();
+							out.close();
 
-							String endGroup = matcher.group("end");
-							end = endGroup.isEmpty() ? end : Long.valueOf(endGroup);
-							end = end > len - 1 ? len - 1 : end;
+						} catch (Throwable t) {
 						}
+					}
+
+				} else {
 
-						long contentLength = end - start + 1;
+					final InputStream in = file.getInputStream();
+					final String range   = request.getHeader("Range");
 
-						// Tell the client that we support byte ranges
-						response.setHeader("Accept-Ranges", "bytes");
-						response.setHeader("Content-Range", String.format("bytes %s-%s/%s", start, end, len));
-						response.setHeader("Content-Length", String.format("%s", contentLength));
+					try {
 
-						response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
-						callbackMap.put("statusCode", HttpServletResponse.SC_PARTIAL_CONTENT);
+						if (StringUtils.isNotEmpty(range)) {
 
-						IOUtils.copyLarge(in, out, start, contentLength);
+							final long len = file.getSize();
+							long start     = 0;
+							long end       = len - 1;
 
-					} else {
+							final Matcher matcher = RangePattern.matcher(range);
 
-						response.setStatus(HttpServletResponse.SC_OK);
-						callbackMap.put("statusCode", HttpServletResponse.SC_OK);
+							if (matcher.matches()) {
+								String startGroup = matcher.group("start");
+								start = startGroup.isEmpty() ? start : Long.valueOf(startGroup);
+								start = Math.max(0, start);
 
-						IOUtils.copyLarge(in, out);
-					}
+								String endGroup = matcher.group("end");
+								end = endGroup.isEmpty() ? end : Long.valueOf(endGroup);
+								end = end > len - 1 ? len - 1 : end;
+							}
 
-				} catch (Throwable t) {
+							long contentLength = end - start + 1;
 
-				} finally {
+							// Tell the client that we support byte ranges
+							response.setHeader("Accept-Ranges", "bytes");
+							response.setHeader("Content-Range", String.format("bytes %s-%s/%s", start, end, len));
+							response.setHeader("Content-Length", String.format("%s", contentLength));
 
-					if (out != null) {
+							response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+							callbackMap.put("statusCode", HttpServletResponse.SC_PARTIAL_CONTENT);
 
-						try {
-							// 3: output content
-							out.flush();
-							out.close();
+							IOUtils.copyLarge(in, out, start, contentLength);
 
-						} catch (Throwable t) {
+						} else {
+
+							response.setStatus(HttpServletResponse.SC_OK);
+							callbackMap.put("statusCode", HttpServletResponse.SC_OK);
+
+							IOUtils.copyLarge(in, out);
 						}
-					}
 
-					if (in != null) {
-						in.close();
-					}
+					} catch (Throwable t) {
+
+					} finally {
 
-					response.setStatus(HttpServletResponse.SC_OK);
+						if (out != null) {
+
+							try {
+								// 3: output content
+								out.flush();
+								out.close();
+
+							} catch (Throwable t) {
+							}
+						}
+
+						if (in != null) {
+							in.close();
+						}
+
+						response.setStatus(HttpServletResponse.SC_OK);
+					}
 				}
 			}
 		}
@@ -1892,4 +1867,138 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 			return rootElement;
 		}
 	}
+
+	// ----- nested classes -----
+	/**
+	 * Writes the chunks of an asynchronously rendered page to the client.
+	 * Called by the container when the client can receive more data, and
+	 * by the buffer when the renderer has produced more output.
+	 */
+	private static class AsyncPageWriter implements WriteListener {
+
+		private final Object lock                  = new Object();
+		private HttpServletRequest request         = null;
+		private AsyncContext async                 = null;
+		private ServletOutputStream out            = null;
+		private AsyncBuffer buffer                 = null;
+		private RenderContext renderContext        = null;
+		private String pageName                    = null;
+		private volatile long renderTime           = 0L;
+		private volatile long renderFinished       = 0L;
+		private ByteBuffer pending                 = null;
+		private boolean completed                  = false;
+
+		public AsyncPageWriter(final HttpServletRequest request, final AsyncContext async, final ServletOutputStream out, final AsyncBuffer buffer, final RenderContext renderContext, final String pageName) {
+
+			this.request       = request;
+			this.async         = async;
+			this.out           = out;
+			this.buffer        = buffer;
+			this.renderContext = renderContext;
+			this.pageName      = pageName;
+		}
+
+		@Override
+		public void onWritePossible() throws IOException {
+			writeAvailable();
+		}
+
+		@Override
+		public void onError(Throwable t) {
+
+			if (t instanceof EofException) {
+
+				logConnectionTerminated();
+
+			} else {
+				logger.warn("Unexpected exception", t);
+			}
+
+			// stop the renderer from waiting for the client
+			buffer.abort();
+		}
+
+		public void renderingFinished(final long renderTime) {
+
+			this.renderTime     = renderTime;
+			this.renderFinished = System.nanoTime();
+		}
+
+		public void writeAvailable() {
+
+			synchronized (lock) {
+
+				if (completed) {
+					return;
+				}
+
+				try {
+
+					while (out.isReady()) {
+
+						// the previous write has completed, so its chunk can be reused
+						AsyncBuffer.recycle(pending);
+						pending = null;
+
+						final ByteBuffer chunk = buffer.poll();
+						if (chunk != null) {
+
+							// write the backing array of the chunk without copying it
+							out.write(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+							pending = chunk;
+
+						} else {
+
+							if (buffer.isDrained()) {
+
+								complete();
+							}
+
+							// wait for the next chunk or the end of the output
+							return;
+						}
+					}
+
+				} catch (EofException ee) {
+
+					logConnectionTerminated();
+
+					buffer.abort();
+					complete();
+
+				} catch (IOException | IllegalStateException t) {
+
+					logger.warn("Unexpected exception", t);
+
+					buffer.abort();
+					complete();
+				}
+			}
+		}
+
+		// ----- private methods -----
+		private void complete() {
+
+			completed = true;
+
+			async.complete();
+
+			final long flushTime   = renderFinished > 0L ? System.nanoTime() - renderFinished : 0L;
+			final long blockedTime = buffer.getBlockedTime();
+
+			RenderStatistics.record(pageName, renderTime - blockedTime, blockedTime, flushTime, buffer.getTotalBytes());
+
+			logger.debug("Rendered page {} in {} ms ({} ms waiting for the client), flushed in {} ms", pageName, (renderTime - blockedTime) / 1000000L, blockedTime / 1000000L, flushTime / 1000000L);
+		}
+
+		private void logConnectionTerminated() {
+
+			final SecurityContext sc = renderContext.getSecurityContext();
+			final Principal user     = sc.getUser(false);
+			final String username    = (user != null) ? user.getName() : "anonymous";
+
+			logger.warn("Could not flush the response body content to the client, probably because the network connection was terminated.");
+			logger.warn(" -> From: {} | URI: {} | Query: {} | User: {}", request.getRemoteAddr(), request.getRequestURI(), request.getQueryString(), username);
+		}
+	}
 }
@@ -58,6 +58,7 @@ import org.structr.rest.service.StructrHttpServiceConfig;
 import org.structr.schema.SchemaHelper;
 import org.structr.web.auth.UiAuthenticator;
 import org.structr.web.common.FileHelper;
+import org.structr.web.common.ThumbnailQueue;
 import org.structr.web.entity.AbstractFile;
 import org.structr.web.entity.Folder;
 import org.structr.web.entity.File;
@@ -322,6 +323,9 @@ public class UploadServlet extends HttpServlet implements HttpServiceServlet {
 							// upload trigger
 							newFile.notifyUploadCompletion();
 
+							// render thumbnails in the background
+							ThumbnailQueue.enqueueDefaults(newFile);
+
 							// send redirect to allow form-based file upload without JavaScript..
 							if (StringUtils.isNotBlank(redirectUrl)) {
 
@@ -442,6 +446,9 @@ public class UploadServlet extends HttpServlet implements HttpServiceServlet {
 
 								// upload trigger
 								file.notifyUploadCompletion();
+
+								// render thumbnails in the background
+								ThumbnailQueue.enqueueDefaults(file);
 							}
 
 						} else {
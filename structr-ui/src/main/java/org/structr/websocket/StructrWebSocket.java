@@ -66,6 +66,7 @@ public class StructrWebSocket implements WebSocketListener {
 
 	//~--- fields ---------------------------------------------------------
 	private Session session = null;
+	private WebSocketSendQueue sendQueue = null;
 	private Gson gson = null;
 	private HttpServletRequest request = null;
 	private SecurityContext securityContext = null;
@@ -98,7 +99,8 @@ public class StructrWebSocket implements WebSocketListener {
 
 		logger.debug("New connection with protocol {}", session.getProtocolVersion());
 
-		this.session = session;
+		this.session   = session;
+		this.sendQueue = new WebSocketSendQueue(session, Settings.WsSendQueueSize.getValue());
 
 		syncController.registerClient(this);
 
@@ -119,6 +121,10 @@ public class StructrWebSocket implements WebSocketListener {
 
 			syncController.unregisterClient(this);
 
+			if (sendQueue != null) {
+				sendQueue.close();
+			}
+
 			// flush and close open uploads
 			for (FileUploadHandler upload : uploads.values()) {
 
@@ -355,7 +361,7 @@ public class StructrWebSocket implements WebSocketListener {
 				securityContext.clearCustomView();
 			}
 
-			session.getRemote().sendString(msg);
+			sendQueue.send(msg);
 
 			tx.success();
 
@@ -366,6 +372,18 @@ public class StructrWebSocket implements WebSocketListener {
 
 	}
 
+	/**
+	 * Enqueues a serialized broadcast message for this client.
+	 *
+	 * @param message
+	 */
+	public void sendBroadcast(final String message) {
+
+		if (sendQueue != null) {
+			sendQueue.broadcast(message);
+		}
+	}
+
 	// ----- file handling -----
 	public void createFileUploadHandler(File file) {
 
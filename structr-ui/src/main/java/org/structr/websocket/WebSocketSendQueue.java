@@ -0,0 +1,239 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.websocket;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded, ordered queue of outgoing messages for a single websocket client.
+ *
+ * Messages are written asynchronously, one at a time, so a slow client
+ * never blocks the sending thread. Broadcast messages are coalesced with
+ * identical pending broadcasts, and the oldest pending broadcast is
+ * dropped when the client falls more than maxSize broadcasts behind.
+ * Direct replies are never dropped.
+ */
+public class WebSocketSendQueue implements WriteCallback {
+
+	private static final Logger logger         = LoggerFactory.getLogger(WebSocketSendQueue.class.getName());
+
+	private final Set<String> pendingBroadcasts = new HashSet<>();
+	private final Deque<Message> queue          = new ArrayDeque<>();
+	private Session session                     = null;
+	private int maxSize                         = 1000;
+	private long droppedCount                   = 0L;
+	private boolean completedInline             = false;
+	private boolean sending                     = false;
+	private boolean inSend                      = false;
+	private boolean closed                      = false;
+
+	public WebSocketSendQueue(final Session session, final int maxSize) {
+
+		this.session = session;
+		this.maxSize = Math.max(1, maxSize);
+	}
+
+	/**
+	 * Enqueues a direct reply, which is always delivered.
+	 *
+	 * @param message
+	 */
+	public void send(final String message) {
+		enqueue(message, false);
+	}
+
+	/**
+	 * Enqueues a broadcast message, which may be coalesced or dropped if
+	 * the client cannot keep up.
+	 *
+	 * @param message
+	 */
+	public void broadcast(final String message) {
+		enqueue(message, true);
+	}
+
+	public synchronized void close() {
+
+		closed = true;
+
+		queue.clear();
+		pendingBroadcasts.clear();
+	}
+
+	public synchronized int size() {
+		return queue.size();
+	}
+
+	public synchronized long getDroppedCount() {
+		return droppedCount;
+	}
+
+	// ----- interface WriteCallback -----
+	@Override
+	public void writeFailed(final Throwable t) {
+
+		logger.debug("Error sending message to client.", t);
+
+		if (!session.isOpen()) {
+			close();
+		}
+
+		writeDone();
+	}
+
+	@Override
+	public void writeSuccess() {
+		writeDone();
+	}
+
+	// ----- private methods -----
+	private void enqueue(final String message, final boolean droppable) {
+
+		synchronized (this) {
+
+			if (closed) {
+				return;
+			}
+
+			if (droppable) {
+
+				// identical message is already waiting
+				if (!pendingBroadcasts.add(message)) {
+					return;
+				}
+
+				if (pendingBroadcasts.size() > maxSize) {
+					dropOldestBroadcast();
+				}
+			}
+
+			queue.add(new Message(message, droppable));
+
+			if (sending) {
+				return;
+			}
+
+			sending = true;
+		}
+
+		sendNext();
+	}
+
+	private void dropOldestBroadcast() {
+
+		for (final Iterator<Message> it = queue.iterator(); it.hasNext();) {
+
+			final Message message = it.next();
+			if (message.droppable) {
+
+				it.remove();
+				pendingBroadcasts.remove(message.payload);
+
+				if (droppedCount++ % 1000 == 0) {
+					logger.warn("Client {} cannot keep up with broadcast messages, {} messages dropped so far.", session.getRemoteAddress(), droppedCount);
+				}
+
+				return;
+			}
+		}
+	}
+
+	private void writeDone() {
+
+		synchronized (this) {
+
+			// the write completed on the sending thread, let it continue
+			if (inSend) {
+
+				completedInline = true;
+				return;
+			}
+		}
+
+		sendNext();
+	}
+
+	private void sendNext() {
+
+		while (true) {
+
+			final Message next;
+
+			synchronized (this) {
+
+				next = closed ? null : queue.poll();
+				if (next == null) {
+
+					sending = false;
+					return;
+				}
+
+				if (next.droppable) {
+					pendingBroadcasts.remove(next.payload);
+				}
+
+				completedInline = false;
+				inSend          = true;
+			}
+
+			boolean failed = false;
+
+			try {
+
+				session.getRemote().sendString(next.payload, this);
+
+			} catch (Throwable t) {
+
+				logger.debug("Error sending message to client.", t);
+				failed = true;
+			}
+
+			synchronized (this) {
+
+				inSend = false;
+
+				// otherwise the write callback continues with the next message
+				if (!failed && !completedInline) {
+					return;
+				}
+			}
+		}
+	}
+
+	// ----- nested classes -----
+	private static class Message {
+
+		private final String payload;
+		private final boolean droppable;
+
+		public Message(final String payload, final boolean droppable) {
+
+			this.payload   = payload;
+			this.droppable = droppable;
+		}
+	}
+}
@@ -19,8 +19,11 @@
 package org.structr.websocket;
 
 import com.google.gson.Gson;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
@@ -29,9 +32,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.eclipse.jetty.util.URIUtil;
 import org.eclipse.jetty.websocket.api.Session;
-import org.eclipse.jetty.websocket.api.WebSocketException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.graph.RelationshipType;
@@ -40,11 +44,14 @@ import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
 import org.structr.core.StructrTransactionListener;
 import org.structr.core.TransactionSource;
+import org.structr.core.app.StructrApp;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.entity.Group;
+import org.structr.core.entity.Principal;
 import org.structr.core.graph.ModificationEvent;
 import org.structr.core.graph.NodeInterface;
 import org.structr.core.graph.RelationshipInterface;
+import org.structr.core.graph.Tx;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.property.PropertyMap;
 import org.structr.web.entity.AbstractFile;
@@ -63,11 +70,21 @@ public class WebsocketController implements StructrTransactionListener {
 	private static final Set<String> BroadcastCommands = new HashSet<>(Arrays.asList(new String[] { "UPDATE", "ADD", "CREATE" } ));
 
 	private final Set<StructrWebSocket> clients = ConcurrentHashMap.newKeySet();
+	private ExecutorService broadcastExecutor   = null;
 	private Gson gson                           = null;
 
 	public WebsocketController(final Gson gson) {
 
 		this.gson = gson;
+
+		// a single thread keeps the order of broadcast messages
+		this.broadcastExecutor = Executors.newSingleThreadExecutor(runnable -> {
+
+			final Thread thread = new Thread(runnable, "WebsocketBroadcast");
+			thread.setDaemon(true);
+
+			return thread;
+		});
 	}
 
 	public void registerClient(final StructrWebSocket client) {
@@ -96,8 +113,9 @@ public class WebsocketController implements StructrTransactionListener {
 		final List<? extends GraphObject> result     = webSocketData.getResult();
 		final String command                         = webSocketData.getCommand();
 		final GraphObject obj                        = webSocketData.getGraphObject();
-
-		String message;
+		final boolean filterResult                   = result != null && !result.isEmpty() && BroadcastCommands.contains(command);
+		final Map<String, String> messagesByUser     = new HashMap<>();
+		final Map<BitSet, String> messagesByResult   = new HashMap<>();
 
 		// create message
 		for (StructrWebSocket socket : clients) {
@@ -118,78 +136,134 @@ public class WebsocketController implements StructrTransactionListener {
 					continue;
 				}
 
-				// if the object IS NOT of type AbstractNode AND the client is NOT priviledged OR
-				// if the object IS of type AbstractNode AND the client has no access to the node
-				// THEN skip sending a message
-				if (obj instanceof AbstractNode) {
+				if (!session.isOpen()) {
 
-					final AbstractNode node = (AbstractNode)obj;
+					clientsToRemove.add(socket);
+					continue;
+				}
 
-					if (node.isHidden() || !securityContext.isVisible(node)) {
-						continue;
-					}
+				// clients of the same user share visibility and message
+				final Principal user = socket.getCurrentUser();
+				final String userId  = user != null ? user.getUuid() : null;
+				String message       = null;
+
+				if (userId != null && messagesByUser.containsKey(userId)) {
+
+					message = messagesByUser.get(userId);
 
 				} else {
 
-					if (!socket.isPrivilegedUser(socket.getCurrentUser())) {
-						continue;
+					message = getMessageForClient(socket, securityContext, webSocketData, obj, filterResult, messagesByResult);
+
+					if (userId != null) {
+						messagesByUser.put(userId, message);
 					}
 				}
 
-				if (result != null && !result.isEmpty() && BroadcastCommands.contains(command)) {
+				// null means the client is not allowed to see the message
+				if (message != null) {
+
+					socket.sendBroadcast(message);
+				}
+			}
+		}
 
-					final WebSocketMessage clientData = webSocketData.copy();
+		for (StructrWebSocket s : clientsToRemove) {
 
-					clientData.setResult(filter(securityContext, result));
+			unregisterClient(s);
 
-					message = gson.toJson(clientData, WebSocketMessage.class);
+			logger.warn("Client removed from broadcast list: {}", s);
+		}
+	}
 
-				} else {
+	private String getMessageForClient(final StructrWebSocket socket, final SecurityContext securityContext, final WebSocketMessage webSocketData, final GraphObject obj, final boolean filterResult, final Map<BitSet, String> messagesByResult) {
 
-					message = gson.toJson(webSocketData, WebSocketMessage.class);
-				}
+		// if the object IS NOT of type AbstractNode AND the client is NOT priviledged OR
+		// if the object IS of type AbstractNode AND the client has no access to the node
+		// THEN skip sending a message
+		if (obj instanceof AbstractNode) {
 
-				try {
+			final AbstractNode node = (AbstractNode)obj;
 
-					session.getRemote().sendString(message);
+			if (node.isHidden() || !securityContext.isVisible(node)) {
+				return null;
+			}
 
-				} catch (Throwable t) {
+		} else {
 
-					if (t instanceof WebSocketException) {
+			if (!socket.isPrivilegedUser(socket.getCurrentUser())) {
+				return null;
+			}
+		}
 
-						WebSocketException wse = (WebSocketException) t;
+		final List<? extends GraphObject> result = webSocketData.getResult();
+		final BitSet visibleResults              = new BitSet(filterResult ? result.size() : 0);
 
-						if ("RemoteEndpoint unavailable, current state [CLOSED], expecting [OPEN or CONNECTED]".equals(wse.getMessage())) {
-							clientsToRemove.add(socket);
-						}
-					}
+		if (filterResult) {
 
-					logger.debug("Error sending message to client.", t);
+			int index = 0;
+
+			for (final GraphObject resultObject : result) {
+
+				if (securityContext.isVisible((AbstractNode)resultObject)) {
+					visibleResults.set(index);
 				}
+
+				index++;
 			}
 		}
 
-		for (StructrWebSocket s : clientsToRemove) {
+		// serialize each distinct message only once
+		return messagesByResult.computeIfAbsent(visibleResults, visible -> {
 
-			unregisterClient(s);
+			if (filterResult) {
 
-			logger.warn("Client removed from broadcast list: {}", s);
-		}
+				final WebSocketMessage clientData = webSocketData.copy();
+
+				clientData.setResult(filter(result, visible));
+
+				return gson.toJson(clientData, WebSocketMessage.class);
+			}
+
+			return gson.toJson(webSocketData, WebSocketMessage.class);
+		});
 	}
 
-	private <T extends GraphObject> List<T> filter(final SecurityContext securityContext, final List<T> all) {
+	private void dispatch(final List<WebSocketMessage> messages, final String exemptedSessionId) {
+
+		broadcastExecutor.submit(() -> {
+
+			try (final Tx tx = StructrApp.getInstance().tx(false, false, false)) {
+
+				for (final WebSocketMessage message : messages) {
 
-		List<T> filteredResult = new LinkedList<>();
-		for (T obj : all) {
+					try {
 
-			if (securityContext.isVisible((AbstractNode) obj)) {
+						broadcast(message, exemptedSessionId);
 
-				filteredResult.add(obj);
+					} catch (Throwable t) {
+						logger.warn("Unable to broadcast websocket message {}: {}", message.getCommand(), t.getMessage());
+					}
+				}
+
+				tx.success();
+
+			} catch (Throwable t) {
+				logger.warn("Unable to broadcast websocket messages: {}", t.getMessage());
 			}
+		});
+	}
+
+	private <T extends GraphObject> List<T> filter(final List<T> all, final BitSet visible) {
+
+		final List<T> filteredResult = new LinkedList<>();
+
+		for (int i = visible.nextSetBit(0); i >= 0; i = visible.nextSetBit(i + 1)) {
+
+			filteredResult.add(all.get(i));
 		}
 
 		return filteredResult;
-
 	}
 
 	// ----- interface StructrTransactionListener -----
@@ -200,24 +274,32 @@ public class WebsocketController implements StructrTransactionListener {
 	@Override
 	public void afterCommit(final SecurityContext securityContext, final Collection<ModificationEvent> modificationEvents, final TransactionSource source) {
 
+		// messages are created here, visibility checks, serialization and sending happen asynchronously
+		final List<WebSocketMessage> messages = new ArrayList<>(modificationEvents.size());
+
 		for (final ModificationEvent event : modificationEvents) {
 
 			try {
 				final WebSocketMessage message = getMessageForEvent(securityContext, event);
 				if (message != null) {
 
-					broadcast(message);
+					messages.add(message);
 				}
 
 			} catch (FrameworkException ignore) {
 			}
 		}
+
+		if (!messages.isEmpty() && !clients.isEmpty()) {
+
+			dispatch(messages, null);
+		}
 	}
 
 	@Override
 	public void simpleBroadcast(final String commandName, final Map<String, Object> data, final String exemptedSessionId) {
 
-		broadcast(MessageBuilder.forName(commandName).data(data).build(), exemptedSessionId);
+		dispatch(Arrays.asList(MessageBuilder.forName(commandName).data(data).build()), exemptedSessionId);
 
 	}
 
@@ -26,6 +26,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.app.StructrApp;
+import org.structr.web.common.ThumbnailQueue;
 import org.structr.web.entity.File;
 
 /**
@@ -119,6 +120,9 @@ public class FileUploadHandler {
 
 				//file.increaseVersion();
 				file.notifyUploadCompletion();
+
+				// render thumbnails in the background
+				ThumbnailQueue.enqueueDefaults(file);
 			}
 
 		} catch (IOException e) {
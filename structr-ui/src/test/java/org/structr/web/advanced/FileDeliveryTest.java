@@ -0,0 +1,137 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.advanced;
+
+import com.jayway.restassured.RestAssured;
+import com.jayway.restassured.response.Response;
+import java.util.Arrays;
+import java.util.Random;
+import org.hamcrest.Matchers;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.structr.core.GraphObject;
+import org.structr.core.graph.Tx;
+import org.structr.web.StructrUiTest;
+import org.structr.web.common.FileDelivery;
+import org.structr.web.common.FileHelper;
+import org.structr.web.entity.File;
+
+public class FileDeliveryTest extends StructrUiTest {
+
+	@Test
+	public void testRangeRequests() {
+
+		final String content = "0123456789abcdefghij";
+		String etag          = null;
+
+		RestAssured.basePath = "/";
+
+		try (final Tx tx = app.tx()) {
+
+			final File file = FileHelper.createFile(securityContext, content.getBytes("utf-8"), "text/plain", File.class, "test.txt");
+
+			file.setProperty(GraphObject.visibleToPublicUsers, true);
+
+			etag = FileDelivery.getETag(file);
+
+			tx.success();
+
+		} catch (Throwable t) {
+			t.printStackTrace();
+			fail("Unexpected exception.");
+		}
+
+		RestAssured.expect().statusCode(200).header("ETag", etag).header("Accept-Ranges", "bytes").body(Matchers.equalTo(content)).when().get("test.txt");
+
+		// single, open-ended and suffix ranges
+		RestAssured.given().header("Range", "bytes=2-5").expect().statusCode(206).header("Content-Range", "bytes 2-5/20").body(Matchers.equalTo("2345")).when().get("test.txt");
+		RestAssured.given().header("Range", "bytes=15-").expect().statusCode(206).header("Content-Range", "bytes 15-19/20").body(Matchers.equalTo("fghij")).when().get("test.txt");
+		RestAssured.given().header("Range", "bytes=-3").expect().statusCode(206).header("Content-Range", "bytes 17-19/20").body(Matchers.equalTo("hij")).when().get("test.txt");
+
+		// multiple ranges
+		RestAssured
+			.given()
+				.header("Range", "bytes=0-1,4-5")
+			.expect()
+				.statusCode(206)
+				.contentType(Matchers.startsWith("multipart/byteranges; boundary="))
+				.body(Matchers.containsString("Content-Range: bytes 0-1/20\r\n\r\n01\r\n"))
+				.body(Matchers.containsString("Content-Range: bytes 4-5/20\r\n\r\n45\r\n"))
+			.when()
+				.get("test.txt");
+
+		// unsatisfiable range
+		RestAssured.given().header("Range", "bytes=30-40").expect().statusCode(416).header("Content-Range", "bytes */20").when().get("test.txt");
+
+		// If-Range with a different entity tag delivers the complete file
+		RestAssured.given().header("Range", "bytes=2-5").header("If-Range", "\"0\"").expect().statusCode(200).body(Matchers.equalTo(content)).when().get("test.txt");
+		RestAssured.given().header("Range", "bytes=2-5").header("If-Range", etag).expect().statusCode(206).body(Matchers.equalTo("2345")).when().get("test.txt");
+
+		// conditional request
+		RestAssured.given().header("If-None-Match", etag).expect().statusCode(304).when().get("test.txt");
+	}
+
+	@Test
+	public void testLargeFile() {
+
+		final byte[] data = new byte[300000];
+
+		new Random(42).nextBytes(data);
+
+		RestAssured.basePath = "/";
+
+		try (final Tx tx = app.tx()) {
+
+			final File file = FileHelper.createFile(securityContext, data, "application/octet-stream", File.class, "test.bin");
+
+			file.setProperty(GraphObject.visibleToPublicUsers, true);
+
+			tx.success();
+
+		} catch (Throwable t) {
+			t.printStackTrace();
+			fail("Unexpected exception.");
+		}
+
+		assertArrayEquals("Invalid file content", data, RestAssured.expect().statusCode(200).when().get("test.bin").asByteArray());
+
+		final Response response = RestAssured.given().header("Range", "bytes=100000-299998").expect().statusCode(206).when().get("test.bin");
+
+		assertArrayEquals("Invalid range content", Arrays.copyOfRange(data, 100000, 299999), response.asByteArray());
+	}
+
+	@Test
+	public void testParseRanges() {
+
+		assertNull("Invalid unit should be ignored",         FileDelivery.parseRanges("items=0-1", 100));
+		assertNull("Invalid range should be ignored",        FileDelivery.parseRanges("bytes=5-2", 100));
+		assertNull("Empty range should be ignored",          FileDelivery.parseRanges("bytes=-", 100));
+		assertEquals("Unsatisfiable range should be empty",  0, FileDelivery.parseRanges("bytes=100-", 100).size());
+		assertEquals("Invalid number of ranges",             2, FileDelivery.parseRanges("bytes=0-0, -1", 100).size());
+		assertEquals("Range end should be limited",          99L, FileDelivery.parseRanges("bytes=50-500", 100).get(0)[1]);
+		assertNull("Repeated content should be ignored",     FileDelivery.parseRanges("bytes=0-,0-,0-", 100));
+		assertEquals("Overlapping ranges should be merged",  1, FileDelivery.parseRanges("bytes=20-30, 0-10, 5-19", 100).size());
+		assertEquals("Invalid merged range start",           0L, FileDelivery.parseRanges("bytes=20-30, 0-10, 5-19", 100).get(0)[0]);
+		assertEquals("Invalid merged range end",             30L, FileDelivery.parseRanges("bytes=20-30, 0-10, 5-19", 100).get(0)[1]);
+		assertEquals("Separate ranges should be sorted",     90L, FileDelivery.parseRanges("bytes=90-99, 0-9", 100).get(1)[0]);
+	}
+}
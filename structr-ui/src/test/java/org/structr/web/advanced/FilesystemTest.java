@@ -18,12 +18,16 @@
  */
 package org.structr.web.advanced;
 
+import java.io.ByteArrayInputStream;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import net.openhft.hashing.LongHashFunction;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,6 +37,8 @@ import org.structr.core.app.StructrApp;
 import org.structr.core.graph.NodeAttribute;
 import org.structr.core.graph.Tx;
 import org.structr.web.StructrUiTest;
+import org.structr.web.common.FileHelper;
+import org.structr.web.entity.File;
 import org.structr.web.entity.Folder;
 import org.structr.web.entity.Image;
 import org.structr.web.entity.User;
@@ -195,4 +201,54 @@ public class FilesystemTest extends StructrUiTest {
 			fail("Unexpected exception.");
 		}
 	}
+
+	@Test
+	public void test04UploadChecksums() {
+
+		final byte[] data = new byte[200000];
+
+		new Random(42).nextBytes(data);
+
+		try (final Tx tx = app.tx()) {
+
+			final Folder folder = app.create(Folder.class,
+				new NodeAttribute<>(Folder.name, "checksums"),
+				new NodeAttribute<>(StructrApp.key(Folder.class, "enabledChecksums"), "crc32,md5,sha1,sha512")
+			);
+
+			FileHelper.createFile(securityContext, new ByteArrayInputStream(data), "application/octet-stream", File.class, "test04.bin", folder);
+
+			tx.success();
+
+		} catch (Throwable t) {
+			t.printStackTrace();
+			fail("Unexpected exception.");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			final File file = app.nodeQuery(File.class).andName("test04.bin").getFirst();
+
+			assertEquals("Invalid checksum", Long.valueOf(LongHashFunction.xx().hashBytes(data)), file.getProperty(StructrApp.key(File.class, "checksum")));
+			assertEquals("Invalid crc32",    Long.valueOf(LongHashFunction.xx().hashBytes(data)), file.getProperty(StructrApp.key(File.class, "crc32")));
+			assertEquals("Invalid md5",      DigestUtils.md5Hex(data),                            file.getProperty(StructrApp.key(File.class, "md5")));
+			assertEquals("Invalid sha1",     DigestUtils.sha1Hex(data),                           file.getProperty(StructrApp.key(File.class, "sha1")));
+			assertEquals("Invalid sha512",   DigestUtils.sha512Hex(data),                         file.getProperty(StructrApp.key(File.class, "sha512")));
+			assertEquals("Invalid size",     Long.valueOf(data.length),                           file.getProperty(StructrApp.key(File.class, "size")));
+
+			// checksums computed from the file on disk must match the ones computed during upload
+			final String md5 = file.getProperty(StructrApp.key(File.class, "md5"));
+
+			FileHelper.updateMetadata(file, true);
+
+			assertEquals("Invalid md5 after update",      md5,                                         file.getProperty(StructrApp.key(File.class, "md5")));
+			assertEquals("Invalid checksum after update", FileHelper.getChecksum(file.getFileOnDisk()), file.getChecksum());
+
+			tx.success();
+
+		} catch (Throwable t) {
+			t.printStackTrace();
+			fail("Unexpected exception.");
+		}
+	}
 }
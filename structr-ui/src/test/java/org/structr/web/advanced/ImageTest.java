@@ -18,9 +18,14 @@
  */
 package org.structr.web.advanced;
 
+import com.jayway.restassured.RestAssured;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
+import javax.imageio.ImageIO;
+import org.hamcrest.Matchers;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 import org.junit.Test;
@@ -40,8 +45,11 @@ import org.structr.core.property.PropertyKey;
 import org.structr.web.StructrUiTest;
 import org.structr.web.common.FileHelper;
 import org.structr.web.common.ImageHelper;
+import org.structr.web.common.ImageHelper.Thumbnail;
+import org.structr.web.common.ThumbnailQueue;
 import org.structr.web.entity.Folder;
 import org.structr.web.entity.Image;
+import org.structr.web.entity.User;
 
 public class ImageTest extends StructrUiTest {
 
@@ -247,6 +255,91 @@ public class ImageTest extends StructrUiTest {
 	}
 	*/
 
+	@Test
+	public void testAsyncThumbnails() {
+
+		final long rendered = (Long)ThumbnailQueue.getStatistics().get("rendered");
+		String uuid         = null;
+
+		try (final Tx tx = app.tx()) {
+
+			createTestNode(User.class,
+				new NodeAttribute<>(StructrApp.key(User.class, "name"),     "admin"),
+				new NodeAttribute<>(StructrApp.key(User.class, "password"), "admin"),
+				new NodeAttribute<>(StructrApp.key(User.class, "isAdmin"), true)
+			);
+
+			final Image image = ImageHelper.createImageNode(securityContext, createJpeg(2400, 1600), "image/jpeg", Image.class, "large.jpg", false);
+
+			// large images are decoded with subsampling, the thumbnail size must not change
+			final Thumbnail tn = ImageHelper.createThumbnail(image.getFileOnDisk(), "jpeg", 300, 300, false);
+
+			assertEquals("Invalid thumbnail width",     300,  tn.getWidth());
+			assertEquals("Invalid thumbnail height",    200,  tn.getHeight());
+			assertEquals("Invalid source image width",  2400, tn.getSourceWidth());
+			assertEquals("Invalid source image height", 1600, tn.getSourceHeight());
+
+			uuid = image.getUuid();
+
+			tx.success();
+
+		} catch (FrameworkException | IOException ex) {
+			logger.warn("", ex);
+			fail("Unexpected exception.");
+		}
+
+		RestAssured.basePath = restUrl;
+
+		// the original image is delivered until the thumbnails are ready, which is pruned from the output as a repeated object
+		RestAssured
+			.given()
+				.header("X-User",     "admin")
+				.header("X-Password", "admin")
+			.expect()
+				.statusCode(200)
+				.body("result.tnSmall", Matchers.anyOf(Matchers.nullValue(), Matchers.hasEntry("id", uuid)))
+			.when()
+				.get("/Image/" + uuid);
+
+		// requests for the same thumbnails must not render them again
+		RestAssured.given().header("X-User", "admin").header("X-Password", "admin").expect().statusCode(200).when().get("/Image/" + uuid);
+
+		waitForThumbnails();
+
+		assertEquals("Thumbnails should be rendered exactly once", rendered + 2, (long)(Long)ThumbnailQueue.getStatistics().get("rendered"));
+
+		try (final Tx tx = app.tx()) {
+
+			final Image image = app.get(Image.class, uuid);
+
+			assertEquals("Invalid image width",          Integer.valueOf(2400), image.getWidth());
+			assertEquals("Invalid image height",         Integer.valueOf(1600), image.getHeight());
+			assertEquals("Invalid number of thumbnails", 2, image.getThumbnails().size());
+
+			final Image tnSmall = image.getProperty(StructrApp.key(Image.class, "tnSmall"));
+
+			assertEquals("Invalid thumbnail width",  Integer.valueOf(100), tnSmall.getWidth());
+			assertEquals("Invalid thumbnail height", Integer.valueOf(67),  tnSmall.getHeight());
+
+			tx.success();
+
+		} catch (FrameworkException ex) {
+			logger.warn("", ex);
+			fail("Unexpected exception.");
+		}
+
+		// the stored thumbnail is delivered now
+		RestAssured
+			.given()
+				.header("X-User",     "admin")
+				.header("X-Password", "admin")
+			.expect()
+				.statusCode(200)
+				.body("result.tnSmall.id", Matchers.not(Matchers.equalTo(uuid)))
+			.when()
+				.get("/Image/" + uuid);
+	}
+
 	private void createImage(final SecurityContext securityContext, final String name, final String folderPath) throws FrameworkException {
 
 		try( final InputStream is = ImageTest.class.getResourceAsStream("/test/thumbtest.png")) {
@@ -264,4 +357,31 @@ public class ImageTest extends StructrUiTest {
 			ioex.printStackTrace();
 		}
 	}
+
+	private byte[] createJpeg(final int width, final int height) throws IOException {
+
+		final BufferedImage image       = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		final ByteArrayOutputStream out   = new ByteArrayOutputStream();
+
+		for (int y=0; y<height; y++) {
+			for (int x=0; x<width; x++) {
+
+				image.setRGB(x, y, ((x * 255 / width) << 16) | ((y * 255 / height) << 8));
+			}
+		}
+
+		ImageIO.write(image, "jpeg", out);
+
+		return out.toByteArray();
+	}
+
+	private void waitForThumbnails() {
+
+		final long start = System.currentTimeMillis();
+
+		while (!ThumbnailQueue.isIdle() && System.currentTimeMillis() - start < 30000) {
+
+			try { Thread.sleep(100); } catch (InterruptedException ignore) {}
+		}
+	}
 }
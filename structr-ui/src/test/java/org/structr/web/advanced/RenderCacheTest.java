@@ -0,0 +1,150 @@
+/**
+ * Copyright (C) 2010-2018 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.advanced;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.app.StructrApp;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.graph.Tx;
+import org.structr.web.StructrUiTest;
+import org.structr.web.common.RenderCache;
+import org.structr.web.common.RenderContext.EditMode;
+import org.structr.web.entity.dom.Content;
+import org.structr.web.entity.dom.DOMNode;
+import org.structr.web.entity.dom.Page;
+import org.w3c.dom.Element;
+
+/**
+ * Test the render cache for static DOM subtrees.
+ */
+public class RenderCacheTest extends StructrUiTest {
+
+	private static final Logger logger = LoggerFactory.getLogger(RenderCacheTest.class.getName());
+
+	@Test
+	public void testStaticSubtreeInvalidation() {
+
+		String pageId   = null;
+		Content content = null;
+		Element div     = null;
+
+		try (final Tx tx = app.tx()) {
+
+			final Page page = Page.createSimplePage(securityContext, "page1");
+
+			// static subtrees must be visible to everyone
+			for (final DOMNode node : app.nodeQuery(DOMNode.class).getAsList()) {
+				node.setVisibility(true, true);
+			}
+
+			div     = (Element)page.getElementsByTagName("div").item(0);
+			content = (Content)div.getFirstChild();
+			pageId  = page.getUuid();
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception");
+		}
+
+		RenderCache.clear();
+
+		final String initial = render(pageId);
+
+		assertTrue("Static content should be rendered", initial.contains("Initial body text"));
+		assertTrue("Static subtrees should be cached", RenderCache.getSize() > 0);
+		assertEquals("Cached output should be identical to uncached output", initial, render(pageId));
+
+		try (final Tx tx = app.tx()) {
+
+			content.setProperty(StructrApp.key(Content.class, "content"), "Modified body text");
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception");
+		}
+
+		final String modified = render(pageId);
+
+		assertTrue("Modified content should be rendered", modified.contains("Modified body text"));
+		assertFalse("Cached content should be invalidated", modified.contains("Initial body text"));
+
+		try (final Tx tx = app.tx()) {
+
+			final Page page    = app.get(Page.class, pageId);
+			final Content text = (Content)page.createTextNode("Another text");
+
+			text.setVisibility(true, true);
+			div.appendChild(text);
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception");
+		}
+
+		assertTrue("New child nodes should be rendered", render(pageId).contains("Another text"));
+
+		try (final Tx tx = app.tx()) {
+
+			app.get(Page.class, pageId).setProperty(AbstractNode.name, "renamed");
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception");
+		}
+
+		assertTrue("Dynamic content should not be cached", render(pageId).contains("Renamed"));
+	}
+
+	// ----- private methods -----
+	private String render(final String pageId) {
+
+		try (final Tx tx = app.tx()) {
+
+			final String output = app.get(Page.class, pageId).getContent(EditMode.NONE);
+
+			tx.success();
+
+			return output;
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception");
+		}
+
+		return null;
+	}
+}
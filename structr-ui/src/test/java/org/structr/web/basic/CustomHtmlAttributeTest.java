@@ -18,7 +18,6 @@
  */
 package org.structr.web.basic;
 
-import org.apache.commons.lang3.StringUtils;
 import org.junit.Assert;
 import org.junit.Test;
 import org.slf4j.Logger;
@@ -28,6 +27,7 @@ import org.structr.core.graph.Tx;
 import org.structr.core.property.GenericProperty;
 import org.structr.web.StructrUiTest;
 import org.structr.web.common.RenderContext;
+import org.structr.web.common.StringRenderBuffer;
 import org.structr.web.entity.dom.DOMNode;
 import org.structr.web.entity.dom.Page;
 import org.structr.web.entity.html.Body;
@@ -66,9 +66,12 @@ public class CustomHtmlAttributeTest extends StructrUiTest {
 
 
 			final RenderContext renderContext = new RenderContext(securityContext);
+			final StringRenderBuffer buffer   = new StringRenderBuffer();
+
+			renderContext.setBuffer(buffer);
 			newPage.render(renderContext, 0);
 
-			final String renderedHtml = StringUtils.join(renderContext.getBuffer().getQueue(), "");
+			final String renderedHtml = buffer.getBuffer().toString();
 
 			final String expectedHtml =
 					"<!DOCTYPE html>\n" +
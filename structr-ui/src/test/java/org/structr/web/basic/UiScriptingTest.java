@@ -76,7 +76,9 @@ import org.structr.core.property.PropertyMap;
 import org.structr.core.property.StringProperty;
 import org.structr.core.script.Scripting;
 import org.structr.web.StructrUiTest;
+import org.structr.web.common.AsyncBuffer;
 import org.structr.web.common.RenderContext;
+import org.structr.web.common.RenderFragment;
 import org.structr.web.entity.Folder;
 import org.structr.web.entity.TestOne;
 import org.structr.web.entity.User;
@@ -724,11 +726,12 @@ public class UiScriptingTest extends StructrUiTest {
 
 		text.setTextContent(content);
 
-		// clear queue
-		context.getBuffer().getQueue().clear();
+		final QueueRenderBuffer buffer = new QueueRenderBuffer();
+
+		context.setBuffer(buffer);
 		p.render(context, 0);
 
-		assertEquals("Invalid JavaScript evaluation result", expected, concat(context.getBuffer().getQueue()));
+		assertEquals("Invalid JavaScript evaluation result", expected, concat(buffer.getQueue()));
 	}
 
 	private String concat(final Queue<String> queue) {
@@ -747,6 +750,27 @@ public class UiScriptingTest extends StructrUiTest {
 		return buf.toString();
 	}
 
+	private static class QueueRenderBuffer extends AsyncBuffer {
+
+		private final Queue<String> queue = new LinkedList<>();
+
+		@Override
+		public AsyncBuffer append(final String s) {
+			queue.add(s);
+			return this;
+		}
+
+		@Override
+		public AsyncBuffer append(final RenderFragment fragment) {
+			queue.add(fragment.toString());
+			return this;
+		}
+
+		public Queue<String> getQueue() {
+			return queue;
+		}
+	}
+
 	public class RequestMockUp implements HttpServletRequest {
 
 		@Override